@@ -0,0 +1,62 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options, e.g. a regular expression to select the
+ * benchmarks and -p to choose the parameters.
+ * <p>
+ * Unless another format is requested with -rf, the results are written as JSON to {@value #DEFAULT_RESULT},
+ * so they can be compared between builds to find regressions.
+ * </p>
+ */
+public class BenchmarkMain {
+
+    public static final String DEFAULT_RESULT = "mdbc-jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions cmdOptions;
+        try {
+            cmdOptions = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+            if (!cmdOptions.getResult().hasValue()) {
+                options.result(DEFAULT_RESULT);
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}
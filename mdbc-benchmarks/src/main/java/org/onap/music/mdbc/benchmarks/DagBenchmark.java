@@ -0,0 +1,109 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.onap.music.mdbc.DatabasePartition;
+import org.onap.music.mdbc.MDBCUtils;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.ownership.Dag;
+import org.onap.music.mdbc.tables.MusicRangeInformationRow;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction of the dag of mri rows, done by each ownership request and by each warmup of the daemon
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DagBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int rows;
+
+    /** number of tables, each row holds one of them, or two when partitions were merged */
+    @Param({ "10" })
+    public int tables;
+
+    private List<MusicRangeInformationRow> mriRows;
+    private Set<Range> ranges;
+
+    @Setup
+    public void setup() {
+        List<Range> all = new ArrayList<>();
+        for (int i = 0; i < tables; i++) {
+            all.add(new Range("TABLE" + i));
+        }
+        ranges = new HashSet<>(all);
+        mriRows = new ArrayList<>(rows);
+        Map<Range, UUID> latest = new HashMap<>();
+        for (int i = 0; i < rows; i++) {
+            Set<Range> rowRanges = new HashSet<>();
+            rowRanges.add(all.get(i % tables));
+            if (i % 7 == 0) {
+                rowRanges.add(all.get((i + 1) % tables));
+            }
+            UUID index = MDBCUtils.generateTimebasedUniqueKey();
+            Set<UUID> previous = new HashSet<>();
+            for (Range range : rowRanges) {
+                UUID prev = latest.put(range, index);
+                if (prev != null) {
+                    previous.add(prev);
+                }
+            }
+            List<MusicTxDigestId> redoLog = Collections.singletonList(
+                new MusicTxDigestId(index, MDBCUtils.generateUniqueKey(), 0));
+            mriRows.add(new MusicRangeInformationRow(new DatabasePartition(rowRanges, index, ""), redoLog,
+                false, previous));
+        }
+        //the rows are read from music in no particular order
+        Collections.shuffle(mriRows);
+    }
+
+    @Benchmark
+    public Dag getDag() {
+        //the dag sorts the list it receives
+        return Dag.getDag(new ArrayList<>(mriRows), ranges);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+package org.onap.music.mdbc.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.query.SQLOperation;
+import org.onap.music.mdbc.tables.StagingTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization and compression of a digest at commit, comparing the pooled codec (see DigestCodec) with
+ * serializing to an array and compressing it with a new Deflater, as it was done before. Both include the
+ * staging of the rows, so only the difference between them is the cost of the serialization.
+ * <p>
+ * The heap allocated per commit is reported with the gc profiler, e.g. {@code DigestCodecBenchmark -prof gc}.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DigestCodecBenchmark {
+
+    /** rows of each digest */
+    @Param({ "100", "10000" })
+    public int rows;
+
+    private final Range range = new Range("mdbc_codec_bench");
+
+    private StagingTable stage() throws MDBCServiceException {
+        StagingTable staging = new StagingTable(new HashSet<>());
+        for (int i = 0; i < rows; i++) {
+            staging.addOperation(range, SQLOperation.INSERT,
+                "{\"id\":" + i + ",\"name\":\"row-" + i + "\",\"val\":" + (i * 31) + "}", "{\"id\":" + i + "}");
+        }
+        return staging;
+    }
+
+    /**
+     * Compression as it was done before the codec, with a new Deflater and two copies of the output
+     */
+    private static ByteBuffer copyingCompress(ByteBuffer serialized) {
+        Deflater compressor = new Deflater();
+        compressor.setInput(serialized.array());
+        compressor.finish();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(serialized.array().length);
+        byte[] buf = new byte[1024];
+        try {
+            while (!compressor.finished()) {
+                int i = compressor.deflate(buf);
+                bos.write(buf, 0, i);
+            }
+        } finally {
+            compressor.end();
+        }
+        return ByteBuffer.wrap(bos.toByteArray());
+    }
+
+    @Benchmark
+    public ByteBuffer pooled() throws MDBCServiceException {
+        return stage().getSerializedStagingAndClean(true);
+    }
+
+    @Benchmark
+    public ByteBuffer copying() throws MDBCServiceException {
+        return copyingCompress(stage().getSerializedStagingAndClean());
+    }
+}
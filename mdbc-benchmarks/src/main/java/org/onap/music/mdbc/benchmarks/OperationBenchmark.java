@@ -0,0 +1,89 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.mixins.MySQLMixin;
+import org.onap.music.mdbc.query.SQLOperation;
+import org.onap.music.mdbc.tables.Operation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Work done for each operation replayed from a digest: decoding its row and building the statement that
+ * applies it to the local database
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OperationBenchmark {
+
+    /** columns of the changed row */
+    @Param({ "5", "50" })
+    public int columns;
+
+    @Param({ "INSERT", "UPDATE", "DELETE" })
+    public SQLOperation type;
+
+    private final MySQLMixin mixin = new MySQLMixin();
+    private Operation operation;
+    private ArrayList<String> cols;
+    private ArrayList<Object> vals;
+
+    @Setup
+    public void setup() {
+        JSONObject row = new JSONObject();
+        row.put("PERSONID", 1);
+        for (int i = 1; i < columns; i++) {
+            row.put("COLUMN" + i, "value of column " + i);
+        }
+        operation = new Operation("PERSONS", type, row.toString(), "{\"PERSONID\":1}");
+        cols = new ArrayList<>();
+        vals = new ArrayList<>();
+        mixin.constructColValues(row, cols, vals);
+    }
+
+    @Benchmark
+    public JSONObject getVal() {
+        return operation.getVal();
+    }
+
+    @Benchmark
+    public StringBuilder constructSQL() throws MDBCServiceException {
+        return mixin.constructSQL(operation, cols, vals);
+    }
+}
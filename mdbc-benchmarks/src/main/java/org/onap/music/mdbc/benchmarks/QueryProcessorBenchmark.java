@@ -0,0 +1,92 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.benchmarks;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.onap.music.mdbc.query.QueryProcessor;
+import org.onap.music.mdbc.query.SQLOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the statements received by a connection, done for every statement to find the tables it uses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryProcessorBenchmark {
+
+    @Param({ "insert", "update", "delete", "select", "join" })
+    public String statement;
+
+    private static final Set<String> TABLES = new HashSet<>(Arrays.asList("PERSONS", "ORDERS", "ITEMS"));
+    private String query;
+
+    @Setup
+    public void setup() {
+        switch (statement) {
+            case "insert":
+                query = "INSERT INTO PERSONS (PERSONID, LASTNAME, FIRSTNAME, ADDRESS, CITY) "
+                    + "VALUES (1, 'Smith', 'Jane', '2 Main Street', 'Springfield');";
+                break;
+            case "update":
+                query = "UPDATE PERSONS SET ADDRESS = '3 Elm Street', CITY = 'Shelbyville' WHERE PERSONID = 1;";
+                break;
+            case "delete":
+                query = "DELETE FROM ORDERS WHERE ORDERID = 10 AND PERSONID = 1;";
+                break;
+            case "select":
+                query = "SELECT LASTNAME, FIRSTNAME FROM PERSONS WHERE CITY = 'Springfield' ORDER BY LASTNAME;";
+                break;
+            case "join":
+                query = "SELECT P.LASTNAME, O.ORDERID, I.NAME FROM PERSONS P "
+                    + "JOIN ORDERS O ON P.PERSONID = O.PERSONID JOIN ITEMS I ON O.ITEMID = I.ITEMID "
+                    + "WHERE P.CITY = 'Springfield';";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown statement " + statement);
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<SQLOperation>> parseSqlQuery() throws SQLException {
+        return QueryProcessor.parseSqlQuery(query, TABLES);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.onap.music.mdbc.Range;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups of ranges in the maps and sets kept per connection and per partition, and the overlap checks
+ * done when a statement is matched against the ranges of a partition
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RangeBenchmark {
+
+    /** ranges of the partition */
+    @Param({ "10", "1000" })
+    public int ranges;
+
+    private Set<Range> partition;
+    private Map<Range, Integer> applied;
+    private Range present;
+    private Range absent;
+    private String table;
+
+    @Setup
+    public void setup() {
+        List<Range> all = new ArrayList<>();
+        for (int i = 0; i < ranges; i++) {
+            all.add(new Range("TABLE" + i));
+        }
+        partition = new HashSet<>(all);
+        applied = new HashMap<>();
+        for (int i = 0; i < all.size(); i++) {
+            applied.put(all.get(i), i);
+        }
+        present = new Range("TABLE" + (ranges / 2));
+        absent = new Range("OTHER");
+        table = "table" + (ranges - 1);
+    }
+
+    @Benchmark
+    public int hashCodeOfRange() {
+        return present.hashCode();
+    }
+
+    @Benchmark
+    public Integer mapLookup() {
+        return applied.get(present);
+    }
+
+    @Benchmark
+    public boolean setContainsMissing() {
+        return partition.contains(absent);
+    }
+
+    @Benchmark
+    public boolean overlapsRange() {
+        return present.overlaps(absent);
+    }
+
+    @Benchmark
+    public boolean overlapsTable() {
+        return Range.overlaps(partition, table);
+    }
+}
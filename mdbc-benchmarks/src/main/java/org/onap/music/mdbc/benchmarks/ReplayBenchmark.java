@@ -0,0 +1,167 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+package org.onap.music.mdbc.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Configuration;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.mixins.DBInterface;
+import org.onap.music.mdbc.mixins.MySQLMixin;
+import org.onap.music.mdbc.mixins.PostgresMixin;
+import org.onap.music.mdbc.query.SQLOperation;
+import org.onap.music.mdbc.tables.StagingTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replay of a large digest row by row and with the bulk replay (see bulkreplayrows): a digest that inserts
+ * the rows into an empty table, and on mysql a digest that updates all of them.
+ * <p>
+ * It needs a database, so it fails unless the url is given, e.g.
+ * {@code ReplayBenchmark -p url=jdbc:mysql://localhost/test -p password=secret}. It creates and drops the
+ * table mdbc_replay_bench, so it should be run against a scratch database.
+ * </p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+
+    private static final String TABLE = "mdbc_replay_bench";
+
+    /** JDBC url of the scratch database (mysql or postgresql) */
+    @Param("")
+    public String url;
+
+    @Param("root")
+    public String user;
+
+    @Param("")
+    public String password;
+
+    /** per-row or bulk replay */
+    @Param({ "per-row", "bulk" })
+    public String mode;
+
+    /** rows of each digest */
+    @Param("50000")
+    public int rows;
+
+    private Connection conn;
+    private DBInterface dbi;
+    private StagingTable inserts;
+    private StagingTable updates;
+
+    private boolean isPostgres() {
+        return url.startsWith("jdbc:postgresql");
+    }
+
+    private StagingTable createDigest(SQLOperation op) throws MDBCServiceException {
+        Range range = new Range(TABLE);
+        StagingTable digest = new StagingTable();
+        for (int i = 0; i < rows; i++) {
+            JSONObject row = new JSONObject();
+            row.put("id", i);
+            row.put("name", "row-" + i + (op == SQLOperation.UPDATE ? "-updated" : ""));
+            row.put("val", (op == SQLOperation.UPDATE) ? -i : i);
+            JSONObject key = new JSONObject();
+            key.put("id", i);
+            digest.addOperation(range, op, row.toString(), key.toString());
+        }
+        return digest;
+    }
+
+    @Setup
+    public void setup() throws SQLException, MDBCServiceException {
+        if (url.isEmpty()) {
+            throw new IllegalStateException("The url of a scratch database is required, e.g. -p url=jdbc:mysql://...");
+        }
+        conn = DriverManager.getConnection(url, user, password);
+        Properties info = new Properties();
+        info.setProperty(Configuration.KEY_BULK_REPLAY_ROWS, "bulk".equals(mode) ? "1" : "0");
+        dbi = isPostgres() ? new PostgresMixin(null, url, conn, info) : new MySQLMixin(null, url, conn, info);
+        dbi.initTables();
+        inserts = createDigest(SQLOperation.INSERT);
+        updates = createDigest(SQLOperation.UPDATE);
+    }
+
+    @Setup(Level.Invocation)
+    public void createTable() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + TABLE);
+            stmt.execute("CREATE TABLE " + TABLE + " (id INT PRIMARY KEY, name VARCHAR(64), val INT)");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + TABLE);
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Rows of the table, inserted before each update
+     */
+    @State(Scope.Benchmark)
+    public static class Inserted {
+        @Setup(Level.Invocation)
+        public void insert(ReplayBenchmark benchmark) throws SQLException, MDBCServiceException {
+            //the postgres row by row update resolves the key through music, which is not available here
+            if (benchmark.isPostgres()) {
+                throw new IllegalStateException("The update replay is only measured on mysql");
+            }
+            benchmark.dbi.applyTxDigest(benchmark.inserts);
+        }
+    }
+
+    @Benchmark
+    public void insert() throws SQLException, MDBCServiceException {
+        dbi.applyTxDigest(inserts);
+    }
+
+    @Benchmark
+    public void update(Inserted inserted) throws SQLException, MDBCServiceException {
+        dbi.applyTxDigest(updates);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.query.SQLOperation;
+import org.onap.music.mdbc.tables.DigestCodec;
+import org.onap.music.mdbc.tables.StagingTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Staging of the rows changed by a transaction, and the serialization, compression and decoding of the
+ * resulting digest, for digests of different sizes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StagingTableBenchmark {
+
+    /** rows changed by each transaction */
+    @Param({ "1", "100", "10000" })
+    public int rows;
+
+    private final Range range = new Range("PERSONS");
+    private String[] values;
+    private String[] keys;
+    private ByteBuffer serialized;
+    private ByteBuffer compressed;
+
+    private static String value(int i) {
+        return "{\"PERSONID\":" + i + ",\"LASTNAME\":\"Smith" + i + "\",\"FIRSTNAME\":\"Jane\","
+            + "\"ADDRESS\":\"" + i + " Main Street\",\"CITY\":\"Springfield\"}";
+    }
+
+    @Setup
+    public void setup() throws MDBCServiceException {
+        values = new String[rows];
+        keys = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = value(i);
+            keys[i] = "{\"PERSONID\":" + i + "}";
+        }
+        serialized = DigestCodec.copy(stage().getSerializedStagingAndClean(false));
+        compressed = StagingTable.Compress(serialized);
+    }
+
+    private StagingTable stage() throws MDBCServiceException {
+        StagingTable staging = new StagingTable(new HashSet<>());
+        for (int i = 0; i < rows; i++) {
+            staging.addOperation(range, SQLOperation.INSERT, values[i], keys[i]);
+        }
+        return staging;
+    }
+
+    @Benchmark
+    public StagingTable addOperation() throws MDBCServiceException {
+        return stage();
+    }
+
+    @Benchmark
+    public ByteBuffer addAndSerialize() throws MDBCServiceException {
+        return stage().getSerializedStagingAndClean(false);
+    }
+
+    @Benchmark
+    public ByteBuffer addSerializeAndCompress() throws MDBCServiceException {
+        return stage().getSerializedStagingAndClean(true);
+    }
+
+    @Benchmark
+    public ByteBuffer compress() throws MDBCServiceException {
+        return StagingTable.Compress(serialized);
+    }
+
+    @Benchmark
+    public ByteBuffer decompress() throws MDBCServiceException {
+        return StagingTable.Decompress(compressed);
+    }
+
+    @Benchmark
+    public StagingTable decode() throws MDBCServiceException {
+        return new StagingTable(serialized.duplicate());
+    }
+}
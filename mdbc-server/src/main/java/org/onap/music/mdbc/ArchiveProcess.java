@@ -7,9 +7,9 @@
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
- * 
+ *
  *      http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -19,43 +19,103 @@
  */
 package org.onap.music.mdbc;
 
-import org.json.JSONObject;
-
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.logging.EELFLoggerDelegate;
 import org.onap.music.mdbc.mixins.DBInterface;
 import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
 
-public class ArchiveProcess {
-	protected MusicInterface mi;
-	protected DBInterface dbi;
+/**
+ * Background compaction of the redo history. Periodically stores in MUSIC a snapshot of the contents of each
+ * range, tagged with the mri row and transaction digest it reflects. Nodes without any local state for a range
+ * load the latest snapshot and only replay the redo log after it.
+ */
+public class ArchiveProcess implements Runnable {
 
-	//TODO: This is a place holder for taking snapshots and moving data from redo record into actual tables
-	
-	/**
-	 * This method is called whenever there is a DELETE on the transaction digest and should be called when ownership changes, if required
-	 *  It updates the MUSIC/Cassandra tables (both dirty bits and actual data) corresponding to the SQL DELETE.
-	 * Music propagates it to the other replicas.
-	 * @param tableName This is the table on which the select is being performed
-	 * @param oldRow This is information about the row that is being deleted
-	 */
-	@SuppressWarnings("unused")
-	private void deleteFromEntityTableInMusic(String tableName, JSONObject oldRow) {
-			TableInfo ti = dbi.getTableInfo(tableName);
-			mi.deleteFromEntityTableInMusic(ti,tableName, oldRow);
+	private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(ArchiveProcess.class);
+
+	private StateManager stateManager;
+	private int compactionPeriodS;
+	/** position of the last snapshot written by this process, used to skip ranges without changes */
+	private Map<Range, Pair<MriReference, MusicTxDigestId>> lastSnapshot;
+
+	public ArchiveProcess(int compactionPeriodS, StateManager stateManager) {
+		this.stateManager = stateManager;
+		this.compactionPeriodS = compactionPeriodS;
+		this.lastSnapshot = new HashMap<>();
 	}
-	
+
 	/**
-	 * This method is called whenever there is an INSERT or UPDATE to a the transaction digest, and should be called by an
-	 * ownership chance. It updates the MUSIC/Cassandra tables (both dirty bits and actual data) corresponding to the SQL write.
-	 * Music propagates it to the other replicas.  If the local database is in the middle of a transaction, the updates to MUSIC are
-	 * delayed until the transaction is either committed or rolled back.
-	 *
-	 * @param tableName This is the table that has changed.
-	 * @param changedRow This is information about the row that has changed, an array of objects representing the data being inserted/updated
+	 * Snapshot all the ranges that changed since the last compaction
+	 * @param mi music interface
+	 * @param dbi interface to the database that contains the data to snapshot
+	 * @param ranges candidate ranges, ranges owned by this server should not be included
 	 */
-	@SuppressWarnings("unused")
-	private void updateDirtyRowAndEntityTableInMusic(String tableName, JSONObject changedRow) {
-		//TODO: is this right? should we be saving updates at the client? we should leverage JDBC to handle this
-			TableInfo ti = dbi.getTableInfo(tableName);
-			mi.updateDirtyRowAndEntityTableInMusic(ti,tableName, changedRow);
+	public void compact(MusicInterface mi, DBInterface dbi, Set<Range> ranges) {
+		for (Range range : ranges) {
+			Pair<MriReference, MusicTxDigestId> applied = stateManager.getOwnAndCheck().getAlreadyApplied().get(range);
+			if (applied == null || applied.equals(lastSnapshot.get(range))) {
+				continue;
+			}
+			try {
+				Pair<MriReference, MusicTxDigestId> position =
+					stateManager.getOwnAndCheck().snapshot(mi, dbi, range);
+				if (position != null) {
+					lastSnapshot.put(range, position);
+					logger.info("Compacted range " + range + " at (" + position.getLeft() + ", "
+						+ position.getRight() + ")");
+				}
+			} catch (MDBCServiceException e) {
+				logger.error("Unable to compact range " + range + ". " + e.getMessage());
+			} catch (RuntimeException e) {
+				//a failure in one range should not prevent the compaction of the others
+				logger.error("Unexpected error compacting range " + range + ". " + e.getMessage(), e);
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		logger.info("Archive process started");
+		if (stateManager == null) {
+			logger.error("State manager is null in archive process");
+			return;
+		}
+		MusicInterface mi = stateManager.getMusicInterface();
+		while (!Thread.currentThread().isInterrupted()) {
+			MdbcConnection conn = null;
+			try {
+				Thread.sleep(TimeUnit.SECONDS.toMillis(this.compactionPeriodS));
+				conn = (MdbcConnection) stateManager.getConnection("archive");
+				if (conn == null) {
+					logger.error("Connection created is null in archive process");
+					return;
+				}
+				Set<Range> ranges = new HashSet<>(stateManager.getRangesToWarmup());
+				for (DatabasePartition part : stateManager.getPartitions()) {
+					ranges.removeAll(part.getSnapshot());
+				}
+				compact(mi, conn.getDBInterface(), ranges);
+			} catch (InterruptedException e) {
+				logger.error("Archive process stopped " + e.getMessage(), e);
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException e) {
+				logger.error("Archive process iteration failed, retrying next period " + e.getMessage(), e);
+			} finally {
+				try {
+					if (conn != null && !conn.isClosed()) conn.close();
+				} catch (SQLException e) {
+					logger.error("Archive process error closing" + e.getMessage(), e);
+				}
+			}
+		}
 	}
 }
@@ -0,0 +1,96 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import org.onap.music.logging.EELFLoggerDelegate;
+
+/**
+ * Commits the autocommit groups of the connections that are idle, so the write statements of a group are not
+ * kept out of MUSIC for longer than the group time when no other statement closes it.
+ * <p>
+ * The groups are checked every half of the shortest group time of the open connections, so a group is
+ * committed at most 1.5 times its group time after it was opened, whatever the group time of the connection
+ * that started the flusher.
+ * </p>
+ */
+public class AutocommitGroupFlusher implements Runnable {
+
+	private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(AutocommitGroupFlusher.class);
+
+	/** time, in ms, between checks while none of the open connections uses autocommit groups */
+	static final long IDLE_PERIOD_MS = 1000;
+
+	private final Collection<MdbcConnection> connections;
+
+	/**
+	 * @param connections open connections of the server, a live view
+	 */
+	public AutocommitGroupFlusher(Collection<MdbcConnection> connections) {
+		this.connections = connections;
+	}
+
+	/**
+	 * @return time, in ms, until the next check of the groups, half of the shortest group time of the open
+	 * connections
+	 */
+	long nextPeriodMs() {
+		long periodMs = IDLE_PERIOD_MS;
+		for (MdbcConnection connection : connections) {
+			long groupMs = connection.getAutocommitGroupMs();
+			if (groupMs > 0) {
+				periodMs = Math.min(periodMs, Math.max(1, groupMs / 2));
+			}
+		}
+		return periodMs;
+	}
+
+	/**
+	 * Commit the groups older than the group time of their connection
+	 */
+	public void flush() {
+		for (MdbcConnection connection : connections) {
+			try {
+				connection.flushAutocommitGroup();
+			} catch (SQLException e) {
+				//the group is kept, it is committed by the next statement or attempt
+				logger.error("Committing the autocommit group of a connection failed, trying again next iteration. "
+					+ e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		logger.info("Autocommit group flusher started");
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				Thread.sleep(nextPeriodMs());
+				flush();
+			} catch (InterruptedException e) {
+				logger.error("Autocommit group flusher stopped " + e.getMessage(), e);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -40,6 +40,48 @@ public class Configuration {
 	public static final String TX_DAEMON_SLEEPTIME_S = "txdaemonsleeps";
 	/** Default txDigest Daemon sleep time */
 	public static final String TX_DAEMON_SLEEPTIME_S_DEFAULT = "10";
+	/** The property name to provide the minimum time, in ms, between daemon iterations while there is work pending */
+	public static final String KEY_TX_DAEMON_MIN_SLEEPTIME_MS = "txdaemonminsleepms";
+	/** Default minimum daemon sleep time */
+	public static final String TX_DAEMON_MIN_SLEEPTIME_MS_DEFAULT = "100";
+	/** The property name to provide the maximum time, in seconds, between full scans of the mri table by the daemon */
+	public static final String KEY_TX_DAEMON_RESCAN_S = "txdaemonrescans";
+	/** Default time between full scans */
+	public static final String TX_DAEMON_RESCAN_S_DEFAULT = "60";
+	/** The property name to provide the number of independent groups of ranges warmed up in parallel */
+	public static final String KEY_WARMUP_WORKERS = "warmupworkers";
+	/** Default number of warmup workers */
+	public static final String WARMUP_WORKERS_DEFAULT = "4";
+	/** The property name to provide the maximum number of digests per second read by warmup. Non positive is unlimited */
+	public static final String KEY_WARMUP_MAX_DIGESTS_PER_S = "warmupmaxdigestspers";
+	/** Default warmup rate, unlimited */
+	public static final String WARMUP_MAX_DIGESTS_PER_S_DEFAULT = "0";
+	/** The property name to provide the maximum number of digests of a mri row applied in a single local transaction while catching up */
+	public static final String KEY_REPLAY_BATCH_DIGESTS = "replaybatchdigests";
+	/** Default number of digests per local transaction */
+	public static final String REPLAY_BATCH_DIGESTS_DEFAULT = "100";
+	/** The property name to provide the maximum time, in ms, spent reading the digests of a single local transaction */
+	public static final String KEY_REPLAY_BATCH_MS = "replaybatchms";
+	/** Default time spent reading the digests of a local transaction */
+	public static final String REPLAY_BATCH_MS_DEFAULT = "500";
+	/** The property name to provide the size, in bytes, above which the rows staged by a transaction are spilled to a file. Non positive disables it */
+	public static final String KEY_STAGING_SPILL_BYTES = "stagingspillbytes";
+	/** Default size of the staged rows kept in the heap per connection */
+	public static final String STAGING_SPILL_BYTES_DEFAULT = "67108864";
+	/** The property name to provide the directory of the staging spill files, the default temporary directory if not set */
+	public static final String KEY_STAGING_SPILL_DIR = "stagingspilldir";
+	/** The property name to provide the minimum number of operations of a digest replayed with bulk statements. Non positive disables it */
+	public static final String KEY_BULK_REPLAY_ROWS = "bulkreplayrows";
+	/** Default minimum number of operations replayed in bulk */
+	public static final String BULK_REPLAY_ROWS_DEFAULT = "10000";
+	/** The property name to provide the time, in ms, between writes of the checkpoint locations. Non positive writes them synchronously */
+	public static final String KEY_CHECKPOINT_FLUSH_PERIOD_MS = "checkpointflushms";
+	/** Default time between writes of the checkpoint locations */
+	public static final String CHECKPOINT_FLUSH_PERIOD_MS_DEFAULT = "1000";
+	/** The property name to provide the number of eventual digests read from music per query */
+	public static final String KEY_EVENTUAL_PAGE_SIZE = "eventualpagesize";
+	/** Default number of eventual digests per page */
+	public static final String EVENTUAL_PAGE_SIZE_DEFAULT = "1000";
     /**  The property name to use to provide a timeout to mdbc (ownership) */
     public static final String KEY_OWNERSHIP_TIMEOUT = "mdbc_timeout";
     /** The default property value to use for the MDBC timeout */
@@ -52,4 +94,74 @@ public class Configuration {
 	public static final String KEY_WRITE_LOCKS_ONLY = "write_locks_only";
 	/** Default if only write locks are allowed */
 	public static final Boolean WRITE_LOCK_ONLY_DEFAULT = false;
+	/** The property name to provide the time, in seconds, between range snapshots. Non positive disables compaction */
+	public static final String KEY_COMPACTION_PERIOD_S = "compactionperiods";
+	/** Default compaction period, compaction is disabled by default */
+	public static final String COMPACTION_PERIOD_S_DEFAULT = "0";
+	/** The property name to provide the time, in seconds, between garbage collections of the mri table. Non positive disables it */
+	public static final String KEY_GC_PERIOD_S = "gcperiods";
+	/** Default garbage collection period, garbage collection is disabled by default */
+	public static final String GC_PERIOD_S_DEFAULT = "0";
+	/** The property name to provide the minimum age, in seconds, of an mri row before it can be garbage collected */
+	public static final String KEY_GC_RETENTION_S = "gcretentions";
+	/** Default garbage collection retention of one day */
+	public static final String GC_RETENTION_S_DEFAULT = "86400";
+	/** The property name to provide the number of mri rows deleted per garbage collection batch */
+	public static final String KEY_GC_BATCH_SIZE = "gcbatchsize";
+	/** Default garbage collection batch size */
+	public static final String GC_BATCH_SIZE_DEFAULT = "50";
+	/** The property name to provide the maximum number of mri rows deleted per second. Non positive is unlimited */
+	public static final String KEY_GC_MAX_ROWS_PER_S = "gcmaxrowspers";
+	/** Default garbage collection rate limit */
+	public static final String GC_MAX_ROWS_PER_S_DEFAULT = "20";
+	/** The property name to only log the rows that would be garbage collected */
+	public static final String KEY_GC_DRY_RUN = "gcdryrun";
+	/** Default garbage collection dry-run option */
+	public static final String GC_DRY_RUN_DEFAULT = "true";
+	/** The property name to only garbage collect rows that are older than the latest snapshot of their ranges */
+	public static final String KEY_GC_REQUIRE_SNAPSHOT = "gcrequiresnapshot";
+	/** Default garbage collection snapshot requirement, so new servers can always bootstrap */
+	public static final String GC_REQUIRE_SNAPSHOT_DEFAULT = "true";
+	/** The property name to provide a directory with snapshot files, used to bootstrap ranges without local state */
+	public static final String KEY_BOOTSTRAP_SNAPSHOT_DIR = "bootstrapsnapshotdir";
+	/** The property name to provide the time, in seconds, between samples of the lock queues of the mri rows. Non positive disables it */
+	public static final String KEY_LOCK_HEATMAP_PERIOD_S = "lockheatmapperiods";
+	/** Default lock heatmap period, the sampling is disabled by default */
+	public static final String LOCK_HEATMAP_PERIOD_S_DEFAULT = "0";
+	/** The property name to provide the number of mri rows kept by each sample of the lock heatmap */
+	public static final String KEY_LOCK_HEATMAP_ROWS = "lockheatmaprows";
+	/** Default number of rows of the lock heatmap */
+	public static final String LOCK_HEATMAP_ROWS_DEFAULT = "20";
+	/** The property name to provide the maximum number of statement fingerprints with their own statistics. Non positive disables them */
+	public static final String KEY_STATEMENT_STATS_MAX = "statementstatsmax";
+	/** Default maximum number of statement fingerprints */
+	public static final String STATEMENT_STATS_MAX_DEFAULT = "1000";
+	/** The property name to provide the time, in ms, during which the write statements of an autocommit connection are grouped in one MUSIC commit. It can be given by each connection. Non positive disables the groups */
+	public static final String KEY_AUTOCOMMIT_GROUP_MS = "autocommitgroupms";
+	/** Default autocommit group time, statements are not grouped by default */
+	public static final String AUTOCOMMIT_GROUP_MS_DEFAULT = "0";
+	/** The property name to provide the number of write statements after which an autocommit group is committed. It can be given by each connection. Non positive is unlimited */
+	public static final String KEY_AUTOCOMMIT_GROUP_STATEMENTS = "autocommitgroupstatements";
+	/** Default maximum number of statements of an autocommit group */
+	public static final String AUTOCOMMIT_GROUP_STATEMENTS_DEFAULT = "100";
+	/** The property name to provide where the Avatica requests run: jetty, pool or virtual, see ExecutorHandler */
+	public static final String KEY_SERVER_EXECUTOR = "serverexecutor";
+	/** Default request executor, the Jetty threads of the Avatica server */
+	public static final String SERVER_EXECUTOR_DEFAULT = "jetty";
+	/** The property name to provide the number of threads of the request pool, or the requests in progress with virtual threads */
+	public static final String KEY_SERVER_THREADS = "serverthreads";
+	/** Default number of request threads */
+	public static final String SERVER_THREADS_DEFAULT = "200";
+	/** The property name to provide the number of requests that can wait for a request thread before new ones are rejected */
+	public static final String KEY_SERVER_QUEUE = "serverqueue";
+	/** Default number of queued requests */
+	public static final String SERVER_QUEUE_DEFAULT = "1000";
+	/** The property name to provide the maximum number of requests taking the ownership of a range at a time, the others are rejected. Non positive is unlimited */
+	public static final String KEY_OWNERSHIP_QUEUE_PER_RANGE = "ownershipqueueperrange";
+	/** Default ownership requests per range, unlimited */
+	public static final String OWNERSHIP_QUEUE_PER_RANGE_DEFAULT = "0";
+	/** The property name to provide the size, in bytes, above which digests are written to MUSIC in chunks. Only enable it once every server reads chunked digests */
+	public static final String KEY_DIGEST_CHUNK_BYTES = "mdbc_digest_chunk_bytes";
+	/** Default digest chunk size, each digest is written as a single blob */
+	public static final String DIGEST_CHUNK_BYTES_DEFAULT = "0";
 }
@@ -0,0 +1,214 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
+import org.apache.calcite.avatica.server.AvaticaHandler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.onap.music.logging.EELFLoggerDelegate;
+import org.onap.music.mdbc.metrics.Counter;
+import org.onap.music.mdbc.metrics.LatencyHistogram;
+import org.onap.music.mdbc.metrics.MetricsRegistry;
+import org.onap.music.mdbc.tables.DigestCodec;
+
+/**
+ * Runs the Avatica requests on an executor of the server instead of the Jetty threads, with admission control.
+ * <p>
+ * A request can block for seconds while the ownership of its ranges is taken, so with the Jetty threads a few
+ * hot ranges can hold all of them. The request is suspended, releasing its Jetty thread, and handled by:
+ * </p>
+ * <ul>
+ * <li>{@link Mode#POOL}: a pool with a fixed number of threads and a bounded queue</li>
+ * <li>{@link Mode#VIRTUAL}: a virtual thread per request, with a bound on the requests in progress. It needs
+ * a JVM with virtual threads, the pool is used otherwise</li>
+ * <li>{@link Mode#JETTY}: the Jetty thread of the request, as the Avatica server does by default</li>
+ * </ul>
+ * <p>
+ * Requests that don't fit are rejected right away with a 503 (service unavailable) response, so an overloaded
+ * server sheds load instead of letting every request time out.
+ * </p>
+ */
+public class ExecutorHandler extends HandlerWrapper implements AvaticaHandler {
+
+    private static final EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(ExecutorHandler.class);
+    private static final Counter REJECTED = MetricsRegistry.get().counter("mdbc_server_requests_rejected_total",
+        "Requests rejected because the request executor of the server was full", null, null);
+    private static final LatencyHistogram QUEUE_WAIT = MetricsRegistry.get().timer("mdbc_server_queue_wait_seconds",
+        "Time from the arrival of a request until a thread of the request executor handles it", null, null);
+
+    public enum Mode {
+        JETTY, POOL, VIRTUAL;
+
+        public static Mode of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final AvaticaHandler avatica;
+    /** null if the requests run on the Jetty threads */
+    private final ExecutorService executor;
+    /** bounds the requests in progress when the executor doesn't, null otherwise */
+    private final Semaphore admission;
+
+    /**
+     * @param avatica handler of the Avatica requests
+     * @param mode where the requests are run
+     * @param threads threads of the pool, or requests in progress with virtual threads
+     * @param queue requests waiting for a thread of the pool, or added to the requests in progress with virtual
+     * threads
+     */
+    public ExecutorHandler(AvaticaHandler avatica, Mode mode, int threads, int queue) {
+        this.avatica = avatica;
+        setHandler(avatica);
+        int maxThreads = Math.max(1, threads);
+        int maxQueued = Math.max(0, queue);
+        ExecutorService virtual = (mode == Mode.VIRTUAL) ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            executor = virtual;
+            admission = new Semaphore(maxThreads + maxQueued);
+            logger.info("Avatica requests run on virtual threads, at most " + (maxThreads + maxQueued)
+                + " at a time");
+        } else if (mode == Mode.JETTY) {
+            executor = null;
+            admission = null;
+            logger.info("Avatica requests run on the Jetty threads");
+        } else {
+            executor = newPool(maxThreads, maxQueued);
+            admission = null;
+            logger.info("Avatica requests run on a pool of " + maxThreads + " threads, with at most " + maxQueued
+                + " queued requests");
+        }
+    }
+
+    private static ExecutorService newPool(int threads, int queue) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "MdbcRequest-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        //a synchronous handoff when there is no queue, the abort policy rejects the requests that don't fit
+        BlockingQueue<Runnable> requests = (queue > 0) ? new ArrayBlockingQueue<Runnable>(queue)
+            : new SynchronousQueue<Runnable>();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, requests, factory,
+            new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task, null if the JVM doesn't have them
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            //looked up at runtime, the server is built for Java 8
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Virtual threads are not available in this JVM, using a pool of threads instead");
+            return null;
+        }
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+        throws IOException, ServletException {
+        if (executor == null || !request.isAsyncSupported()) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        if (admission != null && !admission.tryAcquire()) {
+            reject(baseRequest, response);
+            return;
+        }
+        final AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        final long arrival = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                QUEUE_WAIT.recordSince(arrival);
+                try {
+                    ExecutorHandler.super.handle(target, baseRequest, request, response);
+                } catch (IOException | ServletException | RuntimeException e) {
+                    logger.error(EELFLoggerDelegate.errorLogger, "Failure handling request " + target + ": "
+                        + e.getMessage());
+                    if (!response.isCommitted()) {
+                        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                } finally {
+                    if (admission != null) {
+                        admission.release();
+                        //the virtual thread ends with the request, its codec is reused by the next one
+                        DigestCodec.releaseThreadCodec();
+                    }
+                    async.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (admission != null) {
+                admission.release();
+            }
+            reject(baseRequest, response);
+            async.complete();
+            return;
+        }
+        baseRequest.setHandled(true);
+    }
+
+    private static void reject(Request baseRequest, HttpServletResponse response) throws IOException {
+        REJECTED.increment();
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "MDBC server overloaded, try again later");
+        baseRequest.setHandled(true);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void setServerRpcMetadata(RpcMetadataResponse metadata) {
+        avatica.setServerRpcMetadata(metadata);
+    }
+}
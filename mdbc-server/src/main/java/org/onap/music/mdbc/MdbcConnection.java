@@ -34,15 +34,21 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.onap.music.exceptions.MDBCServiceException;
 import org.onap.music.exceptions.MusicDeadlockException;
 import org.onap.music.exceptions.QueryException;
@@ -50,6 +56,10 @@ import org.onap.music.logging.EELFLoggerDelegate;
 import org.onap.music.logging.format.AppMessages;
 import org.onap.music.logging.format.ErrorSeverity;
 import org.onap.music.logging.format.ErrorTypes;
+import org.onap.music.mdbc.metrics.CommitPhase;
+import org.onap.music.mdbc.metrics.MetricsRegistry;
+import org.onap.music.mdbc.metrics.StatementStats;
+import org.onap.music.mdbc.metrics.ValueHistogram;
 import org.onap.music.mdbc.mixins.DBInterface;
 import org.onap.music.mdbc.mixins.LockResult;
 import org.onap.music.mdbc.mixins.MixinFactory;
@@ -77,6 +87,10 @@ import org.onap.music.mdbc.tables.TxCommitProgress;
  */
 public class MdbcConnection implements Connection {
     private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(MdbcConnection.class);
+    /** debug statement that returns the metrics of the server, see {@link #preStatementHook(String)} */
+    public static final String DEBUG_METRICS = "DEBUG:METRICS";
+    /** debug statement that returns the statistics of the statements by fingerprint */
+    public static final String DEBUG_STATEMENTS = "DEBUG:STATEMENTS";
 
     private final String id;            // This is the transaction id, assigned to this connection. There is no need to change the id, if connection is reused
     private final Connection jdbcConn;      // the JDBC Connection to the actual underlying database
@@ -92,6 +106,29 @@ public class MdbcConnection implements Connection {
     /** ranges needed for this transaction */
     private Set<Range> rangesUsed;
     private String ownerId = UUID.randomUUID().toString();
+    /** statistics of the statement being executed, null if there is none or they are disabled */
+    private StatementStats.Statement statementStats;
+    private long statementStartNanos;
+    private boolean statementOwned;
+    private long statementStartRows;
+    private long statementStartBytes;
+    /** maximum age of an autocommit group before it is committed to MUSIC, 0 if autocommit statements are not grouped */
+    private final long autocommitGroupNanos;
+    /** number of write statements after which an autocommit group is committed, even if it is not old enough */
+    private final int autocommitGroupStatements;
+    /** guards the autocommit group, which can be committed by the connection or by the AutocommitGroupFlusher */
+    private final Object autocommitGroupLock = new Object();
+    /** start of the open autocommit group, -1 if there is none */
+    private long autocommitGroupStartNanos = -1;
+    private int autocommitGroupSize;
+    /** completed when the open autocommit group is committed to MUSIC, the statements of the group wait for it */
+    private CompletableFuture<Void> autocommitGroupDone;
+    /** true from the pre statement hook to {@link #endStatement()}, the flusher doesn't commit a group meanwhile */
+    private boolean statementInProgress;
+    /** time between checks of a group that can't be committed yet, because another statement is running */
+    private static final long AUTOCOMMIT_GROUP_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final ValueHistogram AUTOCOMMIT_GROUP_SIZE = MetricsRegistry.get().histogram(
+        "mdbc_autocommit_group_statements", "Write statements committed to MUSIC in each autocommit group", null, null);
 
     public MdbcConnection(String id, String url, Connection c, Properties info, MusicInterface mi,
             TxCommitProgress progressKeeper, DatabasePartition partition, StateManager statemanager) throws MDBCServiceException {
@@ -102,7 +139,15 @@ public class MdbcConnection implements Connection {
             throw new MDBCServiceException("Connection is null");
         }
         this.jdbcConn = c;
+        //the group options can be given by each connection, they take precedence over mdbc.properties
+        String groupMs = info.getProperty(Configuration.KEY_AUTOCOMMIT_GROUP_MS);
+        String groupStatements = info.getProperty(Configuration.KEY_AUTOCOMMIT_GROUP_STATEMENTS);
         info.putAll(MDBCUtils.getMdbcProperties());
+        this.autocommitGroupNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, Long.parseLong((groupMs != null) ? groupMs
+            : info.getProperty(Configuration.KEY_AUTOCOMMIT_GROUP_MS, Configuration.AUTOCOMMIT_GROUP_MS_DEFAULT))));
+        this.autocommitGroupStatements = Integer.parseInt((groupStatements != null) ? groupStatements
+            : info.getProperty(Configuration.KEY_AUTOCOMMIT_GROUP_STATEMENTS,
+                Configuration.AUTOCOMMIT_GROUP_STATEMENTS_DEFAULT));
         String mixinDb  = info.getProperty(Configuration.KEY_DB_MIXIN_NAME, Configuration.DB_MIXIN_DEFAULT);
         this.dbi       = MixinFactory.createDBInterface(mixinDb, mi, url, jdbcConn, info);
         this.mi        = mi;
@@ -116,6 +161,9 @@ public class MdbcConnection implements Connection {
         this.progressKeeper = progressKeeper;
         this.partition = partition;
         this.statemanager = statemanager;
+        if (autocommitGroupNanos > 0) {
+            statemanager.startAutocommitGroupFlusher();
+        }
 
         logger.debug("Mdbc connection created with id: "+id);
     }
@@ -185,6 +233,27 @@ public class MdbcConnection implements Connection {
     }
 
     private void musicCommit() throws SQLException {
+        synchronized (autocommitGroupLock) {
+            //whatever is staged is committed, including the statements of an open autocommit group
+            CompletableFuture<Void> group = autocommitGroupDone;
+            autocommitGroupStartNanos = -1;
+            autocommitGroupSize = 0;
+            autocommitGroupDone = null;
+            try {
+                musicCommitStaged();
+            } catch (SQLException | RuntimeException e) {
+                if (group != null) {
+                    group.completeExceptionally(e);
+                }
+                throw e;
+            }
+            if (group != null) {
+                group.complete(null);
+            }
+        }
+    }
+
+    private void musicCommitStaged() throws SQLException {
         if(progressKeeper.isComplete(id)) {
             return;
         }
@@ -192,7 +261,9 @@ public class MdbcConnection implements Connection {
             progressKeeper.commitRequested(id);
         }
 
+        long start = System.nanoTime();
         dbi.preCommitHook();
+        start = CommitPhase.HARVEST.record(start);
         try {
             partition = mi.splitPartitionIfNecessary(partition, rangesUsed, ownerId);
         } catch (MDBCServiceException e) {
@@ -200,12 +271,15 @@ public class MdbcConnection implements Connection {
                     "Failure to split partition '" + partition.getMRIIndex() + "' trying to continue",
                     AppMessages.UNKNOWNERROR, ErrorTypes.UNKNOWN, ErrorSeverity.FATAL);
         }
+        start = CommitPhase.SPLIT_PARTITION.record(start);
         
         try {
             logger.debug(EELFLoggerDelegate.applicationLogger, " commit ");
             // transaction was committed -- add all the updates into the REDO-Log in MUSIC
             MusicTxDigestId digestCreated = mi.commitLog(partition, statemanager.getEventualRanges(), transactionDigest, id, progressKeeper);
+            start = CommitPhase.COMMIT_LOG.record(start);
             statemanager.getOwnAndCheck().updateAlreadyApplied(mi, dbi, partition.getSnapshot(), partition.getMRIIndex(), digestCreated);
+            CommitPhase.UPDATE_APPLIED.record(start);
         } catch (MDBCServiceException e) {
             //If the commit fail, then a new commitId should be used
             logger.error(EELFLoggerDelegate.errorLogger, "Commit to music failed", AppMessages.UNKNOWNERROR, ErrorTypes.UNKNOWN, ErrorSeverity.FATAL);
@@ -220,13 +294,16 @@ public class MdbcConnection implements Connection {
      */
     @Override
     public void commit() throws SQLException {
+        final long commitStart = System.nanoTime();
         musicCommit();
 
         if(progressKeeper != null) {
             progressKeeper.setMusicDone(id);
         }
 
+        long start = System.nanoTime();
         jdbcConn.commit();
+        start = CommitPhase.LOCAL_COMMIT.record(start);
 
         if(progressKeeper != null) {
             progressKeeper.setSQLDone(id);
@@ -244,6 +321,8 @@ public class MdbcConnection implements Connection {
         } catch (MDBCServiceException e) {
             logger.warn("Error trying to relinquish: "+partition.toString());
         }
+        CommitPhase.RELINQUISH.record(start);
+        CommitPhase.TOTAL.record(commitStart);
     }
 
     /**
@@ -253,6 +332,12 @@ public class MdbcConnection implements Connection {
     @Override
     public void rollback() throws SQLException {
         logger.debug(EELFLoggerDelegate.applicationLogger, "Rollback");;
+        synchronized (autocommitGroupLock) {
+            //the statements of an autocommit group are committed locally, they can't be rolled back
+            if (autocommitGroupStartNanos >= 0) {
+                commitAutocommitGroup();
+            }
+        }
         try {
             transactionDigest.clear();
         } catch (MDBCServiceException e) {
@@ -277,6 +362,23 @@ public class MdbcConnection implements Connection {
     @Override
     public void close() throws SQLException {
         logger.debug("Closing mdbc connection with id:"+id);
+        try {
+            //releases the statements waiting for the open autocommit group
+            synchronized (autocommitGroupLock) {
+                if (autocommitGroupStartNanos >= 0) {
+                    commitAutocommitGroup();
+                }
+            }
+        } catch (SQLException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "Failure committing the autocommit group of connection "
+                + id + ": " + e.getMessage(), AppMessages.UNKNOWNERROR, ErrorTypes.UNKNOWN, ErrorSeverity.CRITICAL);
+        }
+        try {
+            //removes the spill file of an unfinished transaction
+            transactionDigest.clear();
+        } catch (MDBCServiceException e) {
+            logger.warn("Failure to clear the transaction digest of connection "+id);
+        }
         if (dbi != null) {
             dbi.close();
         }
@@ -524,14 +626,110 @@ public class MdbcConnection implements Connection {
        
         // some debug specific logic
         if(sql.startsWith("DEBUG")) {
+            // "DEBUG:METRICS" prints the metrics of the server, including the ownership and lock contention ones
+            if(sql.equals(DEBUG_METRICS)) {
+                StringBuilder metrics = new StringBuilder();
+                MetricsRegistry.get().writeText(metrics);
+                throw new SQLException("\nThis call was made for debugging purposes only\n" + metrics);
+            }
+            // "DEBUG:STATEMENTS" prints the statistics of the statements, the highest total time first
+            if(sql.equals(DEBUG_STATEMENTS)) {
+                throw new SQLException("\nThis call was made for debugging purposes only\n"
+                    + StatementStats.get().report(0));
+            }
             // if the SQL follows this convention: "DEBUG:TABLE_A,TABLE_B",
             // DAG information pertaining to the tables will get printed
             throw new SQLException("\nThis call was made for debugging purposes only\n" + statemanager.getOwnAndCheck().getDebugInfo(mi,sql.split(":")[1]));
         }
         
+        startStatement(sql);
         //TODO: verify ownership of keys here
         //Parse tables from the sql query
         Map<String, List<SQLOperation>> tableToQueryType = QueryProcessor.parseSqlQuery(sql, table_set);
+        ownQueryRanges(tableToQueryType);
+        dbi.preStatementHook(sql);
+    }
+
+    /**
+     * Code to be run before a batch of statements is executed. The ranges of all the statements are owned
+     * together, with a single ownership check for the batch.
+     * @param batch the SQL statements of the batch, in order, a prepared statement appears once per set of
+     * parameters
+     */
+    public void preBatchHook(List<String> batch) throws MDBCServiceException, SQLException {
+        Set<String> statements = distinctStatements(batch);
+        if (statements.isEmpty()) {
+            return;
+        }
+        startStatement(String.join("; ", statements));
+        Map<String, List<SQLOperation>> tableToQueryType = new HashMap<>();
+        for (String sql : statements) {
+            if (sql.startsWith("DEBUG")) {
+                throw new SQLException("Debug statements can't be executed in a batch: " + sql);
+            }
+            for (Map.Entry<String, List<SQLOperation>> tableOps : QueryProcessor.parseSqlQuery(sql, table_set).entrySet()) {
+                tableToQueryType.computeIfAbsent(tableOps.getKey(), t -> new ArrayList<>()).addAll(tableOps.getValue());
+            }
+        }
+        ownQueryRanges(tableToQueryType);
+        for (String sql : statements) {
+            dbi.preStatementHook(sql);
+        }
+    }
+
+    /**
+     * Code to be run after a batch of statements has been executed. The rows written by all the statements
+     * are copied to the staging table at once.
+     * @param batch the SQL statements of the batch, as given to {@link #preBatchHook(List)}
+     */
+    public void postBatchHook(List<String> batch) throws SQLException {
+        Set<String> statements = distinctStatements(batch);
+        if (statements.isEmpty()) {
+            return;
+        }
+        //the mixins copy every row in the translog, so one harvest covers the whole batch, it is triggered by
+        //the first statement that writes
+        String harvested = statements.iterator().next();
+        for (String sql : statements) {
+            if (isWrite(sql)) {
+                harvested = sql;
+                break;
+            }
+        }
+        postStatementHook(harvested);
+    }
+
+    private static boolean isWrite(String sql) {
+        String cmd = sql.trim().toLowerCase();
+        return cmd.startsWith("insert") || cmd.startsWith("update") || cmd.startsWith("delete");
+    }
+
+    private static Set<String> distinctStatements(List<String> batch) {
+        Set<String> statements = new LinkedHashSet<>();
+        for (String sql : batch) {
+            if (sql != null) {
+                statements.add(sql);
+            }
+        }
+        return statements;
+    }
+
+    private void startStatement(String sql) {
+        synchronized (autocommitGroupLock) {
+            statementInProgress = true;
+        }
+        statementStats = StatementStats.get().lookup(sql);
+        if (statementStats != null) {
+            statementStartNanos = System.nanoTime();
+            statementStartRows = transactionDigest.getAddedRows();
+            statementStartBytes = transactionDigest.getAddedBytes();
+        }
+    }
+
+    /**
+     * Adds the ranges of a statement to the ones used by the transaction, and takes ownership of them
+     */
+    private void ownQueryRanges(Map<String, List<SQLOperation>> tableToQueryType) throws MDBCServiceException {
         //Check ownership of keys
         String defaultSchema = dbi.getSchema();
         Set<Range> queryTables = MDBCUtils.getTables(defaultSchema, tableToQueryType);
@@ -544,13 +742,12 @@ public class MdbcConnection implements Connection {
         // category as these tables do not need ownership
         Set<Range> scRanges = filterEveTables(rangesUsed);
         DatabasePartition tempPartition = own(scRanges, MDBCUtils.getOperationType(tableToQueryType));
+        statementOwned = (tempPartition != null);
         if(tempPartition!=null && tempPartition != partition) {
             this.partition.updateDatabasePartition(tempPartition);
         }
-        dbi.preStatementHook(sql);
     }
 
-
     private Set<Range> filterEveTables(Set<Range> queryTables) {
         queryTables.removeAll(statemanager.getEventualRanges());
         return queryTables;
@@ -561,8 +758,136 @@ public class MdbcConnection implements Connection {
      * statement actions can be copied back to Cassandra/MUSIC.
      * @param sql the SQL statement that was executed
      */
-    public void postStatementHook(String sql) {
+    public void postStatementHook(String sql) throws SQLException {
         dbi.postStatementHook(sql, transactionDigest);
+        StatementStats.Statement stats = statementStats;
+        if (stats != null) {
+            statementStats = null;
+            //with the asynchronous staging update, rows harvested later are counted in the next statement
+            stats.record(System.nanoTime() - statementStartNanos, statementOwned,
+                transactionDigest.getAddedRows() - statementStartRows,
+                transactionDigest.getAddedBytes() - statementStartBytes);
+        }
+        endAutocommitStatement(sql);
+    }
+
+    /**
+     * Code to be run by the statements once a statement or a batch is done, in a finally block, so a statement
+     * that failed in the database or in its hooks doesn't keep the autocommit group from being flushed
+     */
+    public void endStatement() {
+        synchronized (autocommitGroupLock) {
+            statementInProgress = false;
+        }
+        statementStats = null;
+    }
+
+    /**
+     * @return maximum age, in ms, of the autocommit groups of the connection, 0 if they are not used
+     */
+    long getAutocommitGroupMs() {
+        return TimeUnit.NANOSECONDS.toMillis(autocommitGroupNanos);
+    }
+
+    /**
+     * @return number of write statements in the open autocommit group
+     */
+    int getAutocommitGroupSize() {
+        synchronized (autocommitGroupLock) {
+            return autocommitGroupSize;
+        }
+    }
+
+    /**
+     * Adds a write statement executed with autocommit to the open group, and commits the group to MUSIC if it
+     * is old or large enough. Every statement of the group is only acknowledged after the group commit.
+     */
+    private void endAutocommitStatement(String sql) throws SQLException {
+        CompletableFuture<Void> group;
+        long deadlineNanos;
+        synchronized (autocommitGroupLock) {
+            if (autocommitGroupNanos <= 0 || sql == null || !isWrite(sql) || !jdbcConn.getAutoCommit()) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (autocommitGroupStartNanos < 0) {
+                autocommitGroupStartNanos = now;
+                autocommitGroupDone = new CompletableFuture<>();
+            }
+            autocommitGroupSize++;
+            if (now - autocommitGroupStartNanos >= autocommitGroupNanos
+                || (autocommitGroupStatements > 0 && autocommitGroupSize >= autocommitGroupStatements)) {
+                commitAutocommitGroup();
+                return;
+            }
+            group = autocommitGroupDone;
+            deadlineNanos = autocommitGroupStartNanos + autocommitGroupNanos;
+            //the statement is done with the database, the group can be committed while it waits
+            statementInProgress = false;
+        }
+        awaitAutocommitGroup(group, deadlineNanos);
+    }
+
+    /**
+     * Waits until the group is committed, by another statement, the flusher or an explicit commit. Once the group
+     * is old enough, the waiting statement commits it itself, unless another statement is running.
+     */
+    private void awaitAutocommitGroup(CompletableFuture<Void> group, long deadlineNanos) throws SQLException {
+        try {
+            while (true) {
+                try {
+                    group.get(Math.max(AUTOCOMMIT_GROUP_RECHECK_NANOS, deadlineNanos - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    synchronized (autocommitGroupLock) {
+                        if (autocommitGroupDone == group && !statementInProgress) {
+                            commitAutocommitGroup();
+                        }
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof SQLException) ? (SQLException) cause
+                : new SQLException("Failure committing the autocommit group", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the autocommit group commit", e);
+        }
+    }
+
+    /**
+     * Commits the open autocommit group if it is older than the group time and no statement is running,
+     * called periodically by the {@link AutocommitGroupFlusher}
+     */
+    void flushAutocommitGroup() throws SQLException {
+        synchronized (autocommitGroupLock) {
+            if (autocommitGroupStartNanos < 0 || statementInProgress
+                || System.nanoTime() - autocommitGroupStartNanos < autocommitGroupNanos) {
+                return;
+            }
+            commitAutocommitGroup();
+        }
+    }
+
+    /**
+     * Commits the rows staged by the statements of the open autocommit group as a single digest. Their local
+     * commit was already done by the database, and the ownership of the ranges is kept for the next group.
+     */
+    private void commitAutocommitGroup() throws SQLException {
+        AUTOCOMMIT_GROUP_SIZE.record(autocommitGroupSize);
+        if(progressKeeper != null) {
+            progressKeeper.commitRequested(id);
+        }
+        musicCommit();
+        if(progressKeeper != null) {
+            progressKeeper.setMusicDone(id);
+            progressKeeper.setSQLDone(id);
+            if(progressKeeper.isComplete(id)) {
+                progressKeeper.reinitializeTxProgress(id);
+            }
+        }
     }
 
     public void initDatabase() throws QueryException {
@@ -97,6 +97,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
 		} catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return r;
 	}
@@ -117,6 +119,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return n;
 	}
@@ -206,6 +210,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 			}
 		} catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return b;
 	}
@@ -255,32 +261,6 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 		return stmt.getResultSetType();
 	}
 
-	@Override
-	public void addBatch(String sql) throws SQLException {
-		stmt.addBatch(sql);
-	}
-
-	@Override
-	public void clearBatch() throws SQLException {
-		stmt.clearBatch();
-	}
-
-	@Override
-	public int[] executeBatch() throws SQLException {
-		logger.debug(EELFLoggerDelegate.applicationLogger,"executeBatch: ");
-		int[] n = null;
-		try {
-			logger.debug(EELFLoggerDelegate.applicationLogger,"executeBatch() is not supported by MDBC; your results may be incorrect as a result.");
-			n = stmt.executeBatch();
-		} catch (Exception e) {
-			String nm = e.getClass().getName();
-			logger.error(EELFLoggerDelegate.errorLogger,"executeBatch: exception "+nm);
-			if (!nm.startsWith(DATASTAX_PREFIX))
-				throw e;
-		}
-		return n;
-	}
-
 	@Override
 	public Connection getConnection() throws SQLException {
 		return stmt.getConnection();
@@ -311,6 +291,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
 		} catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return n;
 	}
@@ -330,6 +312,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+        } finally {
+			mConn.endStatement();
         }
 		return n;
 	}
@@ -349,6 +333,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return n;
 	}
@@ -368,6 +354,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return b;
 	}
@@ -387,6 +375,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
 		} catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return b;
 	}
@@ -406,6 +396,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return b;
 	}
@@ -456,6 +448,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 
 
@@ -478,6 +472,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 				throw e;
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return n;
 	}
@@ -606,6 +602,8 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 			}
         } catch (MDBCServiceException e) {
 		    throw new SQLException(e.getMessage(), e);
+		} finally {
+			mConn.endStatement();
 		}
 		return b;
 	}
@@ -613,6 +611,7 @@ public class MdbcPreparedStatement extends MdbcStatement implements PreparedStat
 	@Override
 	public void addBatch() throws SQLException {
 		((PreparedStatement)stmt).addBatch();
+		batch.add(sql);
 	}
 
 	@Override
@@ -20,9 +20,11 @@
 package org.onap.music.mdbc;
 
 import org.onap.music.mdbc.configurations.NodeConfiguration;
+import org.onap.music.mdbc.metrics.MetricsHandler;
 import org.onap.music.mdbc.tables.MusicTxDigestDaemon;
 import org.apache.calcite.avatica.remote.Driver.Serialization;
 import org.apache.calcite.avatica.remote.LocalService;
+import org.apache.calcite.avatica.server.HandlerFactory;
 import org.apache.calcite.avatica.server.HttpServer;
 import org.apache.calcite.avatica.util.Unsafe;
 
@@ -92,9 +94,19 @@ public class MdbcServer {
     	meta = new MdbcServerLogic(url,connectionProps,config);
     	LocalService service = new LocalService(meta);
 
-    	// Construct the server
+    	// Construct the server, the requests run on the configured executor and the metrics are served on the
+    	// same port, without going through it
+    	Properties mdbcProps = MDBCUtils.getMdbcProperties();
+    	ExecutorHandler executorHandler = new ExecutorHandler(new HandlerFactory().getHandler(service, serialization),
+    			ExecutorHandler.Mode.of(mdbcProps.getProperty(Configuration.KEY_SERVER_EXECUTOR,
+    					Configuration.SERVER_EXECUTOR_DEFAULT)),
+    			Integer.parseInt(mdbcProps.getProperty(Configuration.KEY_SERVER_THREADS,
+    					Configuration.SERVER_THREADS_DEFAULT)),
+    			Integer.parseInt(mdbcProps.getProperty(Configuration.KEY_SERVER_QUEUE,
+    					Configuration.SERVER_QUEUE_DEFAULT)));
+    	MetricsHandler handler = new MetricsHandler(executorHandler);
     	this.server = new HttpServer.Builder<>()
-    			.withHandler(service, serialization)
+    			.withHandler(handler)
     			.withPort(port)
     			.build();
 
@@ -120,7 +120,7 @@ public class MdbcServerLogic extends JdbcMeta{
         }
         // Avoid global synchronization of connection opening
         try {
-            this.manager.openConnection(ch.id);
+            this.manager.openConnection(ch.id, fullInfo);
             Connection conn = this.manager.getConnection(ch.id);
             if(conn == null) {
                 logger.error(EELFLoggerDelegate.errorLogger, "Connection created was null");
@@ -203,13 +203,17 @@ public class MdbcServerLogic extends JdbcMeta{
 		return e;
 	}
 
+	/**
+	 * The statements are added to the batch of an MdbcStatement, which owns their ranges and copies their rows
+	 * to the staging table once for the whole batch
+	 */
 	@Override
 	public ExecuteBatchResult prepareAndExecuteBatch(StatementHandle h, List<String> sqlCommands)
 			throws NoSuchStatementException {
 		ExecuteBatchResult e;
 		try {
 			e = super.prepareAndExecuteBatch(h, sqlCommands);
-			logger.debug("prepare and execute batch statement {}", h);
+			logger.debug("prepare and execute batch statement {} with {} statements", h, sqlCommands.size());
 		} catch (Exception err ) {
 			logger.error(EELFLoggerDelegate.errorLogger, err.getMessage(), AppMessages.QUERYERROR, ErrorTypes.QUERYERROR, ErrorSeverity.CRITICAL);
 			throw(err);
@@ -217,13 +221,17 @@ public class MdbcServerLogic extends JdbcMeta{
 		return e;
 	}
 
+	/**
+	 * Each set of parameters is added to the batch of an MdbcPreparedStatement, see
+	 * {@link #prepareAndExecuteBatch(StatementHandle, List)}
+	 */
 	@Override
 	public ExecuteBatchResult executeBatch(StatementHandle h, List<List<TypedValue>> parameterValues)
 			throws NoSuchStatementException {
 		ExecuteBatchResult e;
 		try {
 			e = super.executeBatch(h, parameterValues);
-			logger.debug("execute batch statement {}", h);
+			logger.debug("execute batch statement {} with {} parameter sets", h, parameterValues.size());
 		} catch (Exception err ) {
 			logger.error(EELFLoggerDelegate.errorLogger, err.getMessage(), AppMessages.QUERYERROR, ErrorTypes.QUERYERROR, ErrorSeverity.CRITICAL);
 			throw(err);
@@ -19,11 +19,14 @@
  */
 package org.onap.music.mdbc;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.onap.music.exceptions.MDBCServiceException;
 import org.onap.music.exceptions.QueryException;
@@ -44,6 +47,8 @@ public class MdbcStatement implements Statement {
 
     final Statement stmt;		// the Statement that we are proxying
     final MdbcConnection mConn;
+    /** statements added to the batch of the proxied statement, see {@link #executeBatch()} */
+    final List<String> batch = new ArrayList<>();
     //\TODO We may need to all pass the connection object to support autocommit
 
     public MdbcStatement(Statement s, MdbcConnection mConn) {
@@ -84,6 +89,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return r;
     }
@@ -104,6 +111,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return n;
     }
@@ -195,6 +204,8 @@ public class MdbcStatement implements Statement {
             }
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return b;
     }
@@ -247,25 +258,66 @@ public class MdbcStatement implements Statement {
     @Override
     public void addBatch(String sql) throws SQLException {
         stmt.addBatch(sql);
+        batch.add(sql);
     }
 
     @Override
     public void clearBatch() throws SQLException {
         stmt.clearBatch();
+        batch.clear();
     }
 
+    /**
+     * Executes the batch with a single ownership check for the ranges of all its statements, and a single
+     * copy of their rows to the staging table
+     */
     @Override
     public int[] executeBatch() throws SQLException {
-        logger.debug(EELFLoggerDelegate.applicationLogger,"executeBatch: ");
+        logger.debug(EELFLoggerDelegate.applicationLogger,"executeBatch: "+batch.size()+" statements");
         int[] n = null;
+        List<String> statements = new ArrayList<>(batch);
+        batch.clear();
         try {
-            logger.debug(EELFLoggerDelegate.applicationLogger,"executeBatch() is not supported by MDBC; your results may be incorrect as a result.");
-            n = stmt.executeBatch();
-        } catch (Exception e) {
+            mConn.preBatchHook(statements);
+            try {
+                n = stmt.executeBatch();
+            } catch (BatchUpdateException e) {
+                //the statements executed before the failure may have written rows, they are staged as well
+                try {
+                    mConn.postBatchHook(statements);
+                } catch (SQLException hookError) {
+                    e.addSuppressed(hookError);
+                }
+                throw e;
+            }
+            mConn.postBatchHook(statements);
+        } catch (SQLException e) {
             String nm = e.getClass().getName();
             logger.error(EELFLoggerDelegate.errorLogger,"executeBatch: exception "+nm);
             if (!nm.startsWith(DATASTAX_PREFIX))
                 throw e;
+        } catch (MDBCServiceException e) {
+            //the batch of the proxied statement was not executed, it is discarded as well
+            stmt.clearBatch();
+            throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
+        }
+        return n;
+    }
+
+    /**
+     * Same as {@link #executeBatch()}, used by the Avatica server to execute the batches of its clients
+     */
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        int[] counts = executeBatch();
+        if (counts == null) {
+            return null;
+        }
+        long[] n = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            n[i] = counts[i];
         }
         return n;
     }
@@ -300,6 +352,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return n;
     }
@@ -319,6 +373,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return n;
     }
@@ -338,6 +394,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return n;
     }
@@ -357,6 +415,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return b;
     }
@@ -376,6 +436,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return b;
     }
@@ -396,6 +458,8 @@ public class MdbcStatement implements Statement {
                 throw e;
         } catch (MDBCServiceException e) {
             throw new SQLException(e.getMessage(), e);
+        } finally {
+            mConn.endStatement();
         }
         return b;
     }
@@ -0,0 +1,169 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+package org.onap.music.mdbc;
+
+import com.datastax.driver.core.utils.UUIDs;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.logging.EELFLoggerDelegate;
+import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.MusicRangeInformationRow;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+
+/**
+ * Background garbage collection of the redo history. A non-latest mri row, and the transaction digests in its
+ * redo log, are deleted once every mdbc server in musicmdbccheckpoints has applied a newer row for all of its
+ * ranges. Optionally, a newer snapshot of each range is also required, so new servers can still bootstrap.
+ */
+public class MriGarbageCollector implements Runnable {
+
+	private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(MriGarbageCollector.class);
+
+	private final MusicInterface mi;
+	private final int gcPeriodS;
+	private final long retentionMs;
+	private final int batchSize;
+	private final int maxRowsPerS;
+	private final boolean dryRun;
+	private final boolean requireSnapshot;
+
+	public MriGarbageCollector(MusicInterface mi, int gcPeriodS, long retentionS, int batchSize, int maxRowsPerS,
+			boolean dryRun, boolean requireSnapshot) {
+		this.mi = mi;
+		this.gcPeriodS = gcPeriodS;
+		this.retentionMs = TimeUnit.SECONDS.toMillis(retentionS);
+		this.batchSize = Math.max(1, batchSize);
+		this.maxRowsPerS = maxRowsPerS;
+		this.dryRun = dryRun;
+		this.requireSnapshot = requireSnapshot;
+	}
+
+	/**
+	 * Select the mri rows that are not required by any mdbc server
+	 * @param allRows all the rows in the mri table
+	 * @param checkpoints applied position of each mdbc server
+	 * @param now current time in ms
+	 * @return rows that can be deleted, oldest first
+	 * @throws MDBCServiceException
+	 */
+	public List<MusicRangeInformationRow> findObsoleteRows(List<MusicRangeInformationRow> allRows,
+			Map<String, Map<Range, Pair<MriReference, MusicTxDigestId>>> checkpoints, long now)
+			throws MDBCServiceException {
+		List<MusicRangeInformationRow> obsolete = new ArrayList<>();
+		if (checkpoints.isEmpty()) {
+			return obsolete;
+		}
+		Map<Range, Pair<MriReference, MusicTxDigestId>> snapshots = new HashMap<>();
+		for (MusicRangeInformationRow row : allRows) {
+			if (row.getIsLatest() || UUIDs.unixTimestamp(row.getPartitionIndex()) > now - retentionMs) {
+				continue;
+			}
+			boolean applied = true;
+			for (Range range : row.getDBPartition().getSnapshot()) {
+				for (Map<Range, Pair<MriReference, MusicTxDigestId>> siteCheckpoints : checkpoints.values()) {
+					if (!isPast(siteCheckpoints.get(range), row)) {
+						applied = false;
+						break;
+					}
+				}
+				if (applied && requireSnapshot) {
+					if (!snapshots.containsKey(range)) {
+						snapshots.put(range, mi.getLatestRangeSnapshotPosition(range));
+					}
+					applied = isPast(snapshots.get(range), row);
+				}
+				if (!applied) {
+					break;
+				}
+			}
+			if (applied) {
+				obsolete.add(row);
+			}
+		}
+		obsolete.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+		return obsolete;
+	}
+
+	private boolean isPast(Pair<MriReference, MusicTxDigestId> position, MusicRangeInformationRow row) {
+		return position != null && position.getLeft() != null
+			&& position.getLeft().getTimestamp() > row.getTimestamp();
+	}
+
+	/**
+	 * Run a full garbage collection pass
+	 * @return number of mri rows deleted, or that would be deleted in dry-run mode
+	 * @throws MDBCServiceException
+	 * @throws InterruptedException
+	 */
+	public int collect() throws MDBCServiceException, InterruptedException {
+		List<MusicRangeInformationRow> obsolete =
+			findObsoleteRows(mi.getAllMriRows(), mi.getAllCheckpointLocations(), System.currentTimeMillis());
+		for (int begin = 0; begin < obsolete.size(); begin += batchSize) {
+			long batchStart = System.currentTimeMillis();
+			List<MusicRangeInformationRow> batch = obsolete.subList(begin, Math.min(begin + batchSize, obsolete.size()));
+			for (MusicRangeInformationRow row : batch) {
+				if (dryRun) {
+					logger.info("GC dry-run: would delete mri row " + row.getPartitionIndex() + " with "
+						+ row.getRedoLog().size() + " digests");
+					continue;
+				}
+				//digests first, a row with missing digests is tolerated by the replay, the opposite leaks
+				mi.deleteTxDigests(row.getRedoLog());
+				mi.deleteMriRow(row);
+			}
+			if (maxRowsPerS > 0) {
+				long minBatchTime = TimeUnit.SECONDS.toMillis(batch.size()) / maxRowsPerS;
+				long elapsed = System.currentTimeMillis() - batchStart;
+				if (elapsed < minBatchTime) {
+					Thread.sleep(minBatchTime - elapsed);
+				}
+			}
+		}
+		return obsolete.size();
+	}
+
+	@Override
+	public void run() {
+		logger.info("MRI garbage collector started" + (dryRun ? " in dry-run mode" : ""));
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				Thread.sleep(TimeUnit.SECONDS.toMillis(this.gcPeriodS));
+				int collected = collect();
+				logger.info("MRI garbage collector " + (dryRun ? "found " : "deleted ") + collected
+					+ " obsolete rows");
+			} catch (MDBCServiceException e) {
+				logger.error("MRI garbage collection failed, trying again next iteration. " + e.getMessage());
+			} catch (RuntimeException e) {
+				//e.g. a timeout of the driver, the collector should keep running
+				logger.error("MRI garbage collection failed unexpectedly, trying again next iteration. "
+					+ e.getMessage(), e);
+			} catch (InterruptedException e) {
+				logger.error("MRI garbage collector stopped " + e.getMessage(), e);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
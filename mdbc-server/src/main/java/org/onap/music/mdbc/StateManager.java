@@ -29,16 +29,23 @@ import org.onap.music.logging.EELFLoggerDelegate;
 import org.onap.music.logging.format.AppMessages;
 import org.onap.music.logging.format.ErrorSeverity;
 import org.onap.music.logging.format.ErrorTypes;
+import org.onap.music.mdbc.metrics.LockHeatmap;
+import org.onap.music.mdbc.metrics.MetricsRegistry;
+import org.onap.music.mdbc.metrics.StatementStats;
 import org.onap.music.mdbc.mixins.DBInterface;
 import org.onap.music.mdbc.mixins.MixinFactory;
 import org.onap.music.mdbc.mixins.MusicInterface;
 import org.onap.music.mdbc.mixins.MusicInterface.OwnershipReturn;
+import org.onap.music.mdbc.ownership.CheckpointWriter;
 import org.onap.music.mdbc.ownership.OwnershipAndCheckpoint;
 import org.onap.music.mdbc.tables.MriReference;
 import org.onap.music.mdbc.tables.MusicTxDigestDaemon;
 import org.onap.music.mdbc.tables.MusicTxDigestId;
+import org.onap.music.mdbc.tables.RangeSnapshotFile;
+import org.onap.music.mdbc.tables.StagingTable;
 import org.onap.music.mdbc.tables.TxCommitProgress;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -76,6 +83,11 @@ public class StateManager {
      */
     private TxCommitProgress transactionInfo;
     private Map<String,MdbcConnection> mdbcConnections;
+    /** properties that the clients can set for their connection, see {@link #openConnection(String, Properties)} */
+    private static final String[] CLIENT_CONNECTION_KEYS = { Configuration.KEY_AUTOCOMMIT_GROUP_MS,
+        Configuration.KEY_AUTOCOMMIT_GROUP_STATEMENTS };
+    /** started by the first connection that groups its autocommit statements */
+    private Thread autocommitGroupFlusher;
     private String sqlDBName;
     private String sqlDBUrl;
     
@@ -96,6 +108,9 @@ public class StateManager {
     private Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied;
     private OwnershipAndCheckpoint ownAndCheck;
     private Thread txDaemon ;
+    private Thread archiveProcess;
+    private Thread garbageCollector;
+    private CheckpointWriter checkpointWriter;
 
     /**
      * For testing purposes only
@@ -126,6 +141,11 @@ public class StateManager {
         
         String writeLocksOnly = info.getProperty(Configuration.KEY_WRITE_LOCKS_ONLY);
         MDBCUtils.writeLocksOnly = (writeLocksOnly==null) ? Configuration.WRITE_LOCK_ONLY_DEFAULT : Boolean.parseBoolean(writeLocksOnly);
+        String spillDir = info.getProperty(Configuration.KEY_STAGING_SPILL_DIR);
+        StagingTable.setSpill(Long.parseLong(info.getProperty(Configuration.KEY_STAGING_SPILL_BYTES,
+            Configuration.STAGING_SPILL_BYTES_DEFAULT)), (spillDir==null || spillDir.isEmpty()) ? null : new File(spillDir));
+        StatementStats.get().setMaxFingerprints(Integer.parseInt(info.getProperty(Configuration.KEY_STATEMENT_STATS_MAX,
+            Configuration.STATEMENT_STATS_MAX_DEFAULT)));
         
         initMusic();
         Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied = initSqlDatabase();
@@ -133,8 +153,19 @@ public class StateManager {
         String t = info.getProperty(Configuration.KEY_OWNERSHIP_TIMEOUT);
         long timeout = (t == null) ? Configuration.DEFAULT_OWNERSHIP_TIMEOUT : Integer.parseInt(t);
         ownAndCheck = new OwnershipAndCheckpoint(alreadyApplied, timeout);
+        ownAndCheck.setWarmupRateLimit(Double.parseDouble(info.getProperty(Configuration.KEY_WARMUP_MAX_DIGESTS_PER_S,
+            Configuration.WARMUP_MAX_DIGESTS_PER_S_DEFAULT)));
+        ownAndCheck.setReplayBatch(
+            Integer.parseInt(info.getProperty(Configuration.KEY_REPLAY_BATCH_DIGESTS, Configuration.REPLAY_BATCH_DIGESTS_DEFAULT)),
+            Long.parseLong(info.getProperty(Configuration.KEY_REPLAY_BATCH_MS, Configuration.REPLAY_BATCH_MS_DEFAULT)));
+        ownAndCheck.setMaxOwnershipRequestsPerRange(Integer.parseInt(info.getProperty(
+            Configuration.KEY_OWNERSHIP_QUEUE_PER_RANGE, Configuration.OWNERSHIP_QUEUE_PER_RANGE_DEFAULT)));
         
+        initCheckpointWriterThread();
         initTxDaemonThread();
+        initArchiveThread();
+        initGarbageCollectorThread();
+        initLockHeatmapThread();
     }
 
     protected String cleanSqlUrl(String url){
@@ -147,23 +178,103 @@ public class StateManager {
         return url;
     }
 
+    protected void initCheckpointWriterThread(){
+        long flushPeriodMs = Long.parseLong(info.getProperty(Configuration.KEY_CHECKPOINT_FLUSH_PERIOD_MS,
+            Configuration.CHECKPOINT_FLUSH_PERIOD_MS_DEFAULT));
+        if (flushPeriodMs <= 0) {
+            return;
+        }
+        checkpointWriter = new CheckpointWriter(flushPeriodMs, this);
+        ownAndCheck.setCheckpointWriter(checkpointWriter);
+        Thread writerThread = new Thread(checkpointWriter);
+        writerThread.setName("CheckpointWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
     protected void initTxDaemonThread(){
         txDaemon = new Thread(
             new MusicTxDigestDaemon(Integer.parseInt(
                 info.getProperty(Configuration.TX_DAEMON_SLEEPTIME_S, Configuration.TX_DAEMON_SLEEPTIME_S_DEFAULT)),
+                Long.parseLong(info.getProperty(Configuration.KEY_TX_DAEMON_MIN_SLEEPTIME_MS,
+                    Configuration.TX_DAEMON_MIN_SLEEPTIME_MS_DEFAULT)),
+                Integer.parseInt(
+                info.getProperty(Configuration.KEY_TX_DAEMON_RESCAN_S, Configuration.TX_DAEMON_RESCAN_S_DEFAULT)),
+                Integer.parseInt(
+                info.getProperty(Configuration.KEY_EVENTUAL_PAGE_SIZE, Configuration.EVENTUAL_PAGE_SIZE_DEFAULT)),
+                Integer.parseInt(info.getProperty(Configuration.KEY_WARMUP_WORKERS, Configuration.WARMUP_WORKERS_DEFAULT)),
                 this));
         txDaemon.setName("TxDaemon");
         txDaemon.setDaemon(true);
         txDaemon.start();
     }
 
+    protected void initArchiveThread(){
+        int compactionPeriodS = Integer.parseInt(
+            info.getProperty(Configuration.KEY_COMPACTION_PERIOD_S, Configuration.COMPACTION_PERIOD_S_DEFAULT));
+        if (compactionPeriodS <= 0) {
+            return;
+        }
+        archiveProcess = new Thread(new ArchiveProcess(compactionPeriodS, this));
+        archiveProcess.setName("ArchiveProcess");
+        archiveProcess.setDaemon(true);
+        archiveProcess.start();
+    }
+
+    protected void initGarbageCollectorThread(){
+        int gcPeriodS = Integer.parseInt(info.getProperty(Configuration.KEY_GC_PERIOD_S, Configuration.GC_PERIOD_S_DEFAULT));
+        if (gcPeriodS <= 0) {
+            return;
+        }
+        garbageCollector = new Thread(new MriGarbageCollector(musicInterface, gcPeriodS,
+            Long.parseLong(info.getProperty(Configuration.KEY_GC_RETENTION_S, Configuration.GC_RETENTION_S_DEFAULT)),
+            Integer.parseInt(info.getProperty(Configuration.KEY_GC_BATCH_SIZE, Configuration.GC_BATCH_SIZE_DEFAULT)),
+            Integer.parseInt(info.getProperty(Configuration.KEY_GC_MAX_ROWS_PER_S, Configuration.GC_MAX_ROWS_PER_S_DEFAULT)),
+            Boolean.parseBoolean(info.getProperty(Configuration.KEY_GC_DRY_RUN, Configuration.GC_DRY_RUN_DEFAULT)),
+            Boolean.parseBoolean(info.getProperty(Configuration.KEY_GC_REQUIRE_SNAPSHOT,
+                Configuration.GC_REQUIRE_SNAPSHOT_DEFAULT))));
+        garbageCollector.setName("MriGarbageCollector");
+        garbageCollector.setDaemon(true);
+        garbageCollector.start();
+    }
+
+    protected void initLockHeatmapThread(){
+        int periodS = Integer.parseInt(info.getProperty(Configuration.KEY_LOCK_HEATMAP_PERIOD_S,
+            Configuration.LOCK_HEATMAP_PERIOD_S_DEFAULT));
+        if (periodS <= 0) {
+            return;
+        }
+        LockHeatmap heatmap = new LockHeatmap(musicInterface, periodS, Integer.parseInt(
+            info.getProperty(Configuration.KEY_LOCK_HEATMAP_ROWS, Configuration.LOCK_HEATMAP_ROWS_DEFAULT)));
+        MetricsRegistry.get().register(LockHeatmap.METRIC, "Lock queue length of the hottest mri rows", null, null,
+            () -> heatmap);
+        Thread heatmapThread = new Thread(heatmap);
+        heatmapThread.setName("LockHeatmap");
+        heatmapThread.setDaemon(true);
+        heatmapThread.start();
+    }
+
+    /**
+     * Start the thread that commits the autocommit groups of idle connections, if it is not running yet
+     */
+    protected synchronized void startAutocommitGroupFlusher() {
+        if (autocommitGroupFlusher != null) {
+            return;
+        }
+        autocommitGroupFlusher = new Thread(new AutocommitGroupFlusher(mdbcConnections.values()));
+        autocommitGroupFlusher.setName("AutocommitGroupFlusher");
+        autocommitGroupFlusher.setDaemon(true);
+        autocommitGroupFlusher.start();
+    }
+
     /**
      * Initialize all the  interfaces and datastructures
      * @throws MDBCServiceException
      */
     protected void initMusic() throws MDBCServiceException {
         this.musicInterface = MixinFactory.createMusicInterface(this, musicmixin, mdbcServerName, info);
-        this.mdbcConnections = new HashMap<>();
+        //read by the autocommit group flusher while connections are opened and closed
+        this.mdbcConnections = new ConcurrentHashMap<>();
     }
     
     /**
@@ -194,6 +305,7 @@ public class StateManager {
             MdbcConnection mdbcConn = (MdbcConnection) openConnection("init");
             mdbcConn.initDatabase();
             alreadyAppliedToDb = mdbcConn.getDBInterface().getCheckpointLocations();
+            bootstrapFromSnapshotFiles(mdbcConn.getDBInterface(), alreadyAppliedToDb);
             closeConnection("init");
         } catch (QueryException e) {
             logger.error("Error initializing sql database tables");
@@ -206,6 +318,40 @@ public class StateManager {
         return alreadyAppliedToDb;
     }
     
+    /**
+     * Bulk load the snapshot files in the bootstrap directory, only for ranges without local state. The warmup
+     * and checkpoint processes then replay just the redo log after the position of each snapshot.
+     * @param dbi interface to the local database
+     * @param alreadyApplied local checkpoint locations, updated with the position of the loaded snapshots
+     */
+    private void bootstrapFromSnapshotFiles(DBInterface dbi, Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied) {
+        String dir = info.getProperty(Configuration.KEY_BOOTSTRAP_SNAPSHOT_DIR);
+        if (dir == null) {
+            return;
+        }
+        File[] files = new File(dir).listFiles((d, name) -> name.endsWith(RangeSnapshotFile.SUFFIX));
+        if (files == null) {
+            logger.warn("Bootstrap snapshot directory " + dir + " is not readable");
+            return;
+        }
+        for (File file : files) {
+            try (RangeSnapshotFile snapshot = RangeSnapshotFile.open(file)) {
+                if (alreadyApplied.containsKey(snapshot.getRange())) {
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                Pair<MriReference, MusicTxDigestId> position = snapshot.loadInto(dbi);
+                musicInterface.updateCheckpointLocations(snapshot.getRange(), position);
+                alreadyApplied.put(snapshot.getRange(), position);
+                logger.info("Bootstrapped " + snapshot.getRange() + " from " + file + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            } catch (MDBCServiceException | IOException e) {
+                logger.error(EELFLoggerDelegate.errorLogger, "Unable to bootstrap from snapshot file " + file
+                    + ", the range will be replayed from music. " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Get list of ranges to warmup from configuration file
      * if no configuration is provided, will return null
@@ -335,6 +481,16 @@ public class StateManager {
      * @param id UUID of a connection
      */
 	public Connection openConnection(String id) {
+		return openConnection(id, null);
+	}
+
+    /**
+     * Opens a connection into database, setting up all necessary triggers, etc
+     * @param id UUID of a connection
+     * @param connectionInfo properties given by the client of the connection, only the autocommit group options are
+     * used, they take precedence over the ones of the server. Null if there are none
+     */
+	public Connection openConnection(String id, Properties connectionInfo) {
 		Connection sqlConnection;
     	MdbcConnection newConnection;
         Utils.registerDefaultDrivers();
@@ -355,7 +511,19 @@ public class StateManager {
         
         //Create MDBC connection
     	try {
-			newConnection = new MdbcConnection(id,this.sqlDBUrl+"/"+this.sqlDBName, sqlConnection, info, this.musicInterface,
+			Properties mdbcInfo = info;
+			if (connectionInfo != null) {
+				mdbcInfo = new Properties();
+				mdbcInfo.putAll(info);
+				//the clients can only choose the options of their own connection, not the ones of the server
+				for (String key : CLIENT_CONNECTION_KEYS) {
+					String value = connectionInfo.getProperty(key);
+					if (value != null) {
+						mdbcInfo.setProperty(key, value);
+					}
+				}
+			}
+			newConnection = new MdbcConnection(id,this.sqlDBUrl+"/"+this.sqlDBName, sqlConnection, mdbcInfo, this.musicInterface,
                 transactionInfo,ranges, this);
 		} catch (MDBCServiceException e) {
 			logger.error(EELFLoggerDelegate.errorLogger, e.getMessage(),AppMessages.UNKNOWNERROR, ErrorSeverity.CRITICAL,
@@ -422,6 +590,9 @@ public class StateManager {
      * Close all connections for this server, relinquishing any locks/partitions owned by this server
      */
     public void releaseAllPartitions() {
+        if (checkpointWriter != null) {
+            checkpointWriter.flush();
+        }
         for(String connection: this.mdbcConnections.keySet()) {
             closeConnection(connection);
         } 
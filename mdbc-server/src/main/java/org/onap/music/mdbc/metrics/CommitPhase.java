@@ -0,0 +1,72 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+/**
+ * Phases of a commit, each one with the histogram of its latency in the metric {@value #METRIC}.
+ * <p>
+ * A phase is measured from a start time taken with {@link System#nanoTime()}, and
+ * {@link #record(long)} returns the time used as the start of the next phase, e.g.
+ * <code>start = CommitPhase.HARVEST.record(start);</code>
+ * </p>
+ */
+public enum CommitPhase {
+    /** wait for the pending changes of the transaction to be staged */
+    HARVEST("harvest"),
+    SPLIT_PARTITION("split_partition"),
+    /** serialization and write of the digest of the eventual ranges */
+    EVENTUAL_DIGEST("eventual_digest"),
+    /** serialization and compression of the digest */
+    SERIALIZE("serialize"),
+    /** write of the digest in music */
+    DIGEST_PUT("digest_put"),
+    /** append of the digest to the redo log of the mri row */
+    REDO_APPEND("redo_append"),
+    /** all the writes to music, see MusicInterface#commitLog */
+    COMMIT_LOG("commit_log"),
+    UPDATE_APPLIED("update_applied"),
+    /** commit of the transaction in the local database */
+    LOCAL_COMMIT("local_commit"),
+    RELINQUISH("relinquish"),
+    /** the whole commit requested by the client */
+    TOTAL("total");
+
+    public static final String METRIC = "mdbc_commit_phase_seconds";
+
+    private final LatencyHistogram histogram;
+
+    CommitPhase(String label) {
+        histogram = MetricsRegistry.get().timer(METRIC, "Time spent in each phase of the commits", "phase", label);
+    }
+
+    /**
+     * @param startNanos start of the phase
+     * @return the end of the phase
+     */
+    public long record(long startNanos) {
+        return histogram.recordSince(startNanos);
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
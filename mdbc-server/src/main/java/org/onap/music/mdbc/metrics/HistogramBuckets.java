@@ -0,0 +1,145 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non negative values that can be recorded concurrently without locks or allocation.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split in {@value #SUB_BUCKETS} buckets, so
+ * the quantiles are reported with an error below 12.5%, using a fixed amount of memory.
+ * </p>
+ */
+final class HistogramBuckets {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** enough buckets for any positive long */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the largest value counted in the bucket
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * @param value value to record, negative values are recorded as 0
+     */
+    void record(long value) {
+        long positive = Math.max(0, value);
+        counts.incrementAndGet(index(positive));
+        count.increment();
+        sum.add(positive);
+        max.accumulate(positive);
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the value below which the requested fraction of the recorded values are
+     */
+    long quantile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long sum() {
+        return sum.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    long mean() {
+        long n = count.sum();
+        return (n == 0) ? 0 : sum.sum() / n;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Appends the quantiles, sum and count of the distribution
+     * @param divisor divisor of the values in the text, e.g. 1e9 to show nanoseconds in seconds
+     */
+    void writeText(StringBuilder out, String name, String labels, double divisor) {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(separator).append("quantile=\"").append(quantile)
+                .append("\"} ").append(quantile(quantile) / divisor).append('\n');
+        }
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(name).append("_sum").append(suffix).append(sum() / divisor).append('\n');
+        out.append(name).append("_count").append(suffix).append(count()).append('\n');
+    }
+}
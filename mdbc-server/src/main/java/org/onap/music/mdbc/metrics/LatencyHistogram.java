@@ -0,0 +1,113 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of latencies, in nanoseconds, see {@link HistogramBuckets}. It is shown in seconds in the
+ * text format and in microseconds with JMX.
+ */
+public final class LatencyHistogram implements Metric, LatencyHistogramMXBean {
+
+    private final HistogramBuckets buckets = new HistogramBuckets();
+
+    /**
+     * @param nanos latency to record, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        buckets.record(nanos);
+    }
+
+    /**
+     * Records the time elapsed since a start time
+     * @param startNanos start time, from {@link System#nanoTime()}
+     * @return the current time, to be used as the start of the next measurement
+     */
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        buckets.record(now - startNanos);
+        return now;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the value, in nanoseconds, below which the requested fraction of the recorded values are
+     */
+    public long getQuantile(double quantile) {
+        return buckets.quantile(quantile);
+    }
+
+    public long getSumNanos() {
+        return buckets.sum();
+    }
+
+    @Override
+    public long getCount() {
+        return buckets.count();
+    }
+
+    @Override
+    public long getMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(buckets.mean());
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(buckets.max());
+    }
+
+    @Override
+    public long getP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(getQuantile(0.5));
+    }
+
+    @Override
+    public long getP90Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(getQuantile(0.9));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(getQuantile(0.99));
+    }
+
+    @Override
+    public long getP999Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(getQuantile(0.999));
+    }
+
+    @Override
+    public void reset() {
+        buckets.reset();
+    }
+
+    @Override
+    public String getType() {
+        return "summary";
+    }
+
+    @Override
+    public void writeText(StringBuilder out, String name, String labels) {
+        buckets.writeText(out, name, labels, 1e9);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.logging.EELFLoggerDelegate;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.mixins.MusicInterface;
+
+/**
+ * Periodically samples the length of the lock queue of the mri rows this server locked or waited for, and keeps
+ * the hottest ones.
+ * <p>
+ * Rows with more than one request in their queue are contended: other servers, or other connections of this
+ * one, are waiting for them. The sample is exposed as the gauge {@value #METRIC} and with JMX.
+ * </p>
+ * <p>
+ * Only the rows given to {@link #watch(UUID, Collection)} by the ownership are sampled, so a sample reads one
+ * lock queue per row in use instead of the whole mri table. A row is no longer sampled once its queue is empty
+ * and it was not locked during the last period.
+ * </p>
+ */
+public class LockHeatmap implements Runnable, Metric, LockHeatmapMXBean {
+
+    private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(LockHeatmap.class);
+    public static final String METRIC = "mdbc_mri_lock_queue_size";
+
+    /** lock queue of an mri row when it was sampled */
+    public static final class Entry {
+        private final String mriIndex;
+        private final String ranges;
+        private final long queueSize;
+
+        Entry(String mriIndex, String ranges, long queueSize) {
+            this.mriIndex = mriIndex;
+            this.ranges = ranges;
+            this.queueSize = queueSize;
+        }
+
+        public String getMriIndex() {
+            return mriIndex;
+        }
+
+        public String getRanges() {
+            return ranges;
+        }
+
+        public long getQueueSize() {
+            return queueSize;
+        }
+
+        @Override
+        public String toString() {
+            return mriIndex + " [" + ranges + "] queue=" + queueSize;
+        }
+    }
+
+    /** last time, in ms, a watched row was locked or waited for by this server, by mri index */
+    private static final Map<UUID, Long> WATCHED = new ConcurrentHashMap<>();
+    /** ranges of each watched row, by mri index */
+    private static final Map<UUID, String> WATCHED_RANGES = new ConcurrentHashMap<>();
+    /** rows are only watched once a heatmap exists, so they are not kept when it is disabled */
+    private static volatile boolean watching;
+
+    private final MusicInterface mi;
+    private final int periodS;
+    private final int topRows;
+    private volatile List<Entry> hottest = Collections.emptyList();
+    private volatile long lastSampleMs;
+
+    public LockHeatmap(MusicInterface mi, int periodS, int topRows) {
+        this.mi = mi;
+        this.periodS = periodS;
+        this.topRows = Math.max(1, topRows);
+        watching = true;
+    }
+
+    /**
+     * Sample the lock queue of an mri row, called when this server waits for its lock or locks it
+     */
+    public static void watch(UUID mriIndex, Collection<Range> ranges) {
+        if (!watching || mriIndex == null) {
+            return;
+        }
+        if (!WATCHED_RANGES.containsKey(mriIndex)) {
+            StringBuilder names = new StringBuilder();
+            for (Range range : ranges) {
+                names.append(names.length() == 0 ? "" : " ").append(range.getTable());
+            }
+            WATCHED_RANGES.put(mriIndex, names.toString());
+        }
+        WATCHED.put(mriIndex, System.currentTimeMillis());
+    }
+
+    /**
+     * Read the lock queue of the watched mri rows and keep the longest ones
+     * @return the hottest rows, longest queue first
+     */
+    public List<Entry> sample() throws MDBCServiceException {
+        long now = System.currentTimeMillis();
+        long idleMs = TimeUnit.SECONDS.toMillis(periodS);
+        List<Entry> sampled = new ArrayList<>();
+        for (Map.Entry<UUID, Long> watched : WATCHED.entrySet()) {
+            UUID mriIndex = watched.getKey();
+            long queueSize = mi.getLockQueueSize(mriIndex);
+            if (queueSize <= 0) {
+                if (now - watched.getValue() >= idleMs && WATCHED.remove(mriIndex, watched.getValue())) {
+                    WATCHED_RANGES.remove(mriIndex);
+                }
+                continue;
+            }
+            sampled.add(new Entry(mriIndex.toString(), WATCHED_RANGES.getOrDefault(mriIndex, ""), queueSize));
+        }
+        sampled.sort((a, b) -> Long.compare(b.queueSize, a.queueSize));
+        List<Entry> top = Collections.unmodifiableList(new ArrayList<>(sampled.subList(0,
+            Math.min(topRows, sampled.size()))));
+        hottest = top;
+        lastSampleMs = System.currentTimeMillis();
+        return top;
+    }
+
+    public List<Entry> getHottest() {
+        return hottest;
+    }
+
+    @Override
+    public String[] getHottestRows() {
+        List<Entry> entries = hottest;
+        String[] rows = new String[entries.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = entries.get(i).toString();
+        }
+        return rows;
+    }
+
+    @Override
+    public long getLastSampleTime() {
+        return lastSampleMs;
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    public void writeText(StringBuilder out, String name, String labels) {
+        for (Entry entry : hottest) {
+            out.append(name).append("{mri=\"").append(entry.mriIndex).append("\",ranges=\"").append(entry.ranges)
+                .append("\"} ").append(entry.queueSize).append('\n');
+        }
+    }
+
+    @Override
+    public void run() {
+        logger.info("Lock heatmap started, sampling every " + periodS + " seconds");
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(this.periodS));
+                sample();
+            } catch (MDBCServiceException e) {
+                logger.error("Sampling the mri lock queues failed, trying again next iteration. " + e.getMessage());
+            } catch (InterruptedException e) {
+                logger.error("Lock heatmap stopped " + e.getMessage(), e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+/**
+ * Management interface of the {@link LockHeatmap}
+ */
+public interface LockHeatmapMXBean {
+
+    /**
+     * @return the mri rows with the longest lock queues in the last sample, longest first
+     */
+    String[] getHottestRows();
+
+    /**
+     * @return time of the last sample, in ms since the epoch, 0 if there is none yet
+     */
+    long getLastSampleTime();
+}
@@ -0,0 +1,41 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+/**
+ * Metric that can be written in the plain-text scrape format (see {@link MetricsRegistry#writeText(StringBuilder)})
+ */
+public interface Metric {
+
+    /**
+     * @return the type of the metric in the text format, e.g. summary, counter or gauge
+     */
+    String getType();
+
+    /**
+     * Appends the samples of the metric
+     * @param out text being written
+     * @param name name of the metric
+     * @param labels labels of the metric, e.g. <code>phase="serialize"</code>, empty if it has none
+     */
+    void writeText(StringBuilder out, String name, String labels);
+}
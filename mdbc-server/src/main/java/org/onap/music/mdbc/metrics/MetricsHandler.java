@@ -0,0 +1,76 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
+import org.apache.calcite.avatica.server.AvaticaHandler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+/**
+ * Serves the metrics in plain text on {@value #PATH} of the Avatica server port, and the statistics of the
+ * statements on {@value #STATEMENTS_PATH}, the other requests are handled by the Avatica handler it wraps.
+ */
+public class MetricsHandler extends HandlerWrapper implements AvaticaHandler {
+
+    public static final String PATH = "/metrics";
+    public static final String STATEMENTS_PATH = "/statements";
+
+    private final AvaticaHandler avatica;
+
+    public MetricsHandler(AvaticaHandler avatica) {
+        this.avatica = avatica;
+        setHandler(avatica);
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+        throws IOException, ServletException {
+        boolean statements = STATEMENTS_PATH.equals(target);
+        if ((!PATH.equals(target) && !statements) || !"GET".equals(request.getMethod())) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        if (statements) {
+            text.append(StatementStats.get().report(0));
+        } else {
+            MetricsRegistry.get().writeText(text);
+        }
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        baseRequest.setHandled(true);
+    }
+
+    @Override
+    public void setServerRpcMetadata(RpcMetadataResponse metadata) {
+        avatica.setServerRpcMetadata(metadata);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.onap.music.logging.EELFLoggerDelegate;
+
+/**
+ * Metrics of the mdbc server. Each metric is registered once, by name and an optional label, and is exposed
+ * as an MBean of the platform server and in the plain-text format served by {@link MetricsHandler}.
+ * <p>
+ * Metrics should be looked up once and kept, e.g. in a static field, so recording a value doesn't go
+ * through the registry.
+ * </p>
+ */
+public final class MetricsRegistry {
+
+    private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(MetricsRegistry.class);
+    /** domain of the MBeans of the metrics */
+    public static final String JMX_DOMAIN = "org.onap.music.mdbc";
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private static final class Family {
+        private final String help;
+        private final String label;
+        /** metrics by label value, the empty string when there is no label */
+        private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+        private Family(String help, String label) {
+            this.help = help;
+            this.label = label;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param name name of the metric, in seconds, e.g. mdbc_commit_phase_seconds
+     * @param help description of the metric
+     * @param label name of the label that distinguishes the histograms of the metric, null if there is none
+     * @param value value of the label
+     * @return the histogram of the metric with the label value, created the first time it is requested
+     */
+    public LatencyHistogram timer(String name, String help, String label, String value) {
+        return register(name, help, label, value, LatencyHistogram::new);
+    }
+
+    /**
+     * @return the counter of the metric with the label value, created the first time it is requested
+     */
+    public Counter counter(String name, String help, String label, String value) {
+        return register(name, help, label, value, Counter::new);
+    }
+
+    /**
+     * @return the histogram of the metric with the label value, created the first time it is requested
+     */
+    public ValueHistogram histogram(String name, String help, String label, String value) {
+        return register(name, help, label, value, ValueHistogram::new);
+    }
+
+    /**
+     * @param factory creates the metric if it is not registered yet
+     * @return the metric registered with the name and label value
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Metric> T register(String name, String help, String label, String value, Supplier<T> factory) {
+        Family family = families.computeIfAbsent(name, n -> new Family(help, label));
+        String key = (label == null) ? "" : value;
+        return (T) family.metrics.computeIfAbsent(key, k -> {
+            T metric = factory.get();
+            registerMBean(name, label, value, metric);
+            return metric;
+        });
+    }
+
+    private static void registerMBean(String name, String label, String value, Metric metric) {
+        try {
+            String objectName = JMX_DOMAIN + ":type=" + name + ((label == null) ? "" : "," + label + "=" + value);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metric, new ObjectName(objectName));
+        } catch (JMException e) {
+            //MBeans are optional, e.g. a metric without a management interface
+            logger.debug("Metric " + name + " is not exposed with JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write all the metrics in the plain-text scrape format, one sample per line
+     */
+    public void writeText(StringBuilder out) {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            boolean first = true;
+            for (Map.Entry<String, Metric> metric : family.metrics.entrySet()) {
+                if (first) {
+                    out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+                    out.append("# TYPE ").append(name).append(' ').append(metric.getValue().getType()).append('\n');
+                    first = false;
+                }
+                String labels = (family.label == null) ? "" : family.label + "=\"" + metric.getKey() + "\"";
+                metric.getValue().writeText(out, name, labels);
+            }
+        }
+    }
+}
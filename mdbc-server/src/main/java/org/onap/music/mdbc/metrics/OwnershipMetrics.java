@@ -0,0 +1,56 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+/**
+ * Metrics of the ownership of ranges: how often mri rows are locked, how long it takes, and how often
+ * partitions are merged and split
+ */
+public final class OwnershipMetrics {
+
+    private static final MetricsRegistry registry = MetricsRegistry.get();
+
+    /** calls to own that required taking locks */
+    public static final Counter ATTEMPTS = registry.counter("mdbc_ownership_attempts_total",
+        "Ownership requests that were not already satisfied by the current partition", null, null);
+    public static final Counter TIMEOUTS = registry.counter("mdbc_ownership_timeouts_total",
+        "Ownership requests that timed out", null, null);
+    public static final Counter REJECTED = registry.counter("mdbc_ownership_rejected_total",
+        "Ownership requests rejected because too many requests were queued for one of their ranges", null, null);
+    public static final LatencyHistogram OWN_TIME = registry.timer("mdbc_ownership_seconds",
+        "Time to own the ranges of a request, including locks, merges and recovery", null, null);
+    public static final LatencyHistogram LOCK_WAIT = registry.timer("mdbc_lock_wait_seconds",
+        "Time from the lock request of an mri row until it is granted", null, null);
+    public static final Counter LOCK_ATTEMPTS = registry.counter("mdbc_lock_acquire_attempts_total",
+        "Attempts to acquire the lock of an mri row", null, null);
+    public static final LatencyHistogram BACKOFF = registry.timer("mdbc_lock_backoff_seconds",
+        "Back-off sleeps between attempts to acquire the lock of an mri row", null, null);
+    public static final Counter MERGES = registry.counter("mdbc_partition_changes_total",
+        "Partitions created by merging or splitting mri rows", "type", "merge");
+    public static final Counter SPLITS = registry.counter("mdbc_partition_changes_total",
+        "Partitions created by merging or splitting mri rows", "type", "split");
+    public static final ValueHistogram DAG_SIZE = registry.histogram("mdbc_ownership_dag_rows",
+        "Number of mri rows in the dag of each ownership request", null, null);
+
+    private OwnershipMetrics() {
+    }
+}
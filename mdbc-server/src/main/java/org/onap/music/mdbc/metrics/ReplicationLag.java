@@ -0,0 +1,380 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.tuple.Pair;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.MusicRangeInformationRow;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+
+/**
+ * Tracks, for each range, how far the local database is behind the redo log stored in MUSIC.
+ * <p>
+ * The tail of the redo log of the ranges is taken from the mri rows read by the background daemon, and the
+ * position already applied from the checkpoint of each range, so both are updated as they change without
+ * reading MUSIC again. The lag is the number of redo entries not yet applied, and the age of the oldest one,
+ * estimated from the time-based index of the mri row that holds it. Entries are appended after their row is
+ * created, so the age is an upper bound.
+ * </p>
+ * <p>
+ * Each range is updated under its own lock, so the replay of independent ranges in parallel doesn't contend on
+ * it. The tail is indexed when it is observed, and moving the applied position forward, as the replay does,
+ * costs constant time amortized, whatever the length of the redo log.
+ * </p>
+ * <p>
+ * The values are exposed as the gauges {@value #ENTRIES_METRIC} and {@value #SECONDS_METRIC}, and with JMX.
+ * </p>
+ */
+public final class ReplicationLag implements Metric, ReplicationLagMXBean {
+
+    public static final String ENTRIES_METRIC = "mdbc_replication_lag_entries";
+    public static final String SECONDS_METRIC = "mdbc_replication_lag_seconds";
+    /** difference between the uuid epoch (1582-10-15) and the unix epoch, in 100ns units */
+    private static final long UUID_EPOCH_OFFSET = 0x01b21dd213814000L;
+
+    private static final ReplicationLag INSTANCE = new ReplicationLag();
+
+    static {
+        MetricsRegistry registry = MetricsRegistry.get();
+        registry.register(ENTRIES_METRIC, "Redo log entries of each range not yet applied to the local database",
+            null, null, () -> INSTANCE);
+        registry.register(SECONDS_METRIC, "Estimated age of the oldest redo log entry of each range not yet applied",
+            null, null, () -> INSTANCE.seconds);
+    }
+
+    /** redo log tail of a range, sorted by mri row, immutable */
+    private static final class Tail {
+        private static final Tail EMPTY = new Tail(Collections.<MusicRangeInformationRow>emptyList());
+
+        private final UUID[] rows;
+        private final long[] orders;
+        private final List<List<MusicTxDigestId>> redoLogs = new ArrayList<>();
+        private final Map<UUID, Integer> positions = new HashMap<>();
+        /** entries of the rows from each position to the end of the tail */
+        private final long[] entriesFrom;
+        /** first row with entries from each position, rows.length if none */
+        private final int[] firstWithEntries;
+
+        private Tail(List<MusicRangeInformationRow> sorted) {
+            int size = sorted.size();
+            rows = new UUID[size];
+            orders = new long[size];
+            entriesFrom = new long[size + 1];
+            firstWithEntries = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                rows[i] = sorted.get(i).getPartitionIndex();
+                orders[i] = order(rows[i]);
+                redoLogs.add(sorted.get(i).getRedoLog());
+                positions.put(rows[i], i);
+            }
+            firstWithEntries[size] = size;
+            for (int i = size - 1; i >= 0; i--) {
+                int entries = redoLogs.get(i).size();
+                entriesFrom[i] = entriesFrom[i + 1] + entries;
+                firstWithEntries[i] = (entries > 0) ? i : firstWithEntries[i + 1];
+            }
+        }
+
+        /**
+         * @return first position whose row is after the order, the rows are sorted
+         */
+        private int firstAfter(long order) {
+            int low = 0;
+            int high = orders.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (orders[middle] > order) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    /** pending entries of a range and time of the oldest one, in ms since the epoch (-1 if unknown), immutable */
+    private static final class Lag {
+        private static final Lag NONE = new Lag(0, -1);
+
+        private final long pending;
+        private final long oldestPendingMs;
+
+        private Lag(long pending, long oldestPendingMs) {
+            this.pending = pending;
+            this.oldestPendingMs = oldestPendingMs;
+        }
+    }
+
+    /** lag of a range, updated under its own lock when its tail or its applied position changes */
+    private static final class RangeLag {
+        private Tail tail = Tail.EMPTY;
+        private UUID appliedRow;
+        private UUID appliedDigest;
+        /** position of the applied row in the tail, -1 if it is not in the tail */
+        private int appliedRowPosition = -1;
+        /** position of the applied digest in the redo log of the applied row, -1 if none was applied */
+        private int appliedDigestPosition = -1;
+        private volatile Lag lag = Lag.NONE;
+    }
+
+    private final Map<Range, RangeLag> ranges = new ConcurrentHashMap<>();
+    private final Metric seconds = new Metric() {
+        @Override
+        public String getType() {
+            return "gauge";
+        }
+
+        @Override
+        public void writeText(StringBuilder out, String name, String labels) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, long[]> entry : snapshot().entrySet()) {
+                out.append(name).append("{range=\"").append(entry.getKey()).append("\"} ")
+                    .append(lagMs(entry.getValue(), now) / 1000.0).append('\n');
+            }
+        }
+    };
+
+    ReplicationLag() {
+    }
+
+    public static ReplicationLag get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return order of an mri row index, the time of the uuid if it is time-based
+     */
+    private static long order(UUID index) {
+        return (index.version() == 1) ? index.timestamp() : 0;
+    }
+
+    private static long unixMs(UUID index) {
+        return (index.version() == 1) ? (index.timestamp() - UUID_EPOCH_OFFSET) / 10000 : -1;
+    }
+
+    private static long lagMs(long[] lag, long now) {
+        return (lag[0] == 0 || lag[1] < 0) ? 0 : Math.max(0, now - lag[1]);
+    }
+
+    /**
+     * Replace the redo log tail of the tracked ranges, without checkpoint locations to start from
+     * @see #observe(Set, List, Map)
+     */
+    public void observe(Set<Range> tracked, List<MusicRangeInformationRow> rows) {
+        observe(tracked, rows, Collections.<Range, Pair<MriReference, MusicTxDigestId>>emptyMap());
+    }
+
+    /**
+     * Replace the redo log tail of the tracked ranges with the mri rows read from MUSIC. Ranges that are
+     * not in the set are no longer tracked, e.g. because they are owned by this server now.
+     * <p>
+     * The applied position of a range without one is taken from the checkpoint locations, so a range that
+     * starts being tracked after it was replayed (e.g. the checkpoint was loaded at startup) is not
+     * reported with its whole history pending.
+     * </p>
+     * @param tracked ranges whose rows were read
+     * @param rows all the mri rows of the ranges, not only the latest ones
+     * @param alreadyApplied checkpoint location of each range already replayed in the local database
+     */
+    public void observe(Set<Range> tracked, List<MusicRangeInformationRow> rows,
+            Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied) {
+        ranges.keySet().retainAll(tracked);
+        Map<Range, List<MusicRangeInformationRow>> tails = new HashMap<>();
+        for (MusicRangeInformationRow row : rows) {
+            for (Range range : row.getDBPartition().getSnapshot()) {
+                if (tracked.contains(range)) {
+                    tails.computeIfAbsent(range, r -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+        for (Range range : tracked) {
+            List<MusicRangeInformationRow> sorted = tails.getOrDefault(range,
+                Collections.<MusicRangeInformationRow>emptyList());
+            sorted.sort((a, b) -> Long.compare(order(a.getPartitionIndex()), order(b.getPartitionIndex())));
+            Tail tail = new Tail(sorted);
+            RangeLag lag = ranges.computeIfAbsent(range, r -> new RangeLag());
+            synchronized (lag) {
+                lag.tail = tail;
+                Pair<MriReference, MusicTxDigestId> position = alreadyApplied.get(range);
+                if (lag.appliedRow == null && position != null && position.getLeft() != null) {
+                    lag.appliedRow = position.getLeft().getIndex();
+                    lag.appliedDigest = (position.getRight() == null) ? null : position.getRight().transactionId;
+                }
+                locate(lag, -1);
+                recompute(lag);
+            }
+        }
+    }
+
+    /**
+     * Move the applied position of a range, called each time the checkpoint of the range is updated
+     */
+    public void applied(Range range, UUID mriIndex, MusicTxDigestId digestId) {
+        RangeLag lag = ranges.get(range);
+        if (lag == null) {
+            return;
+        }
+        synchronized (lag) {
+            //the replay moves forward in the same row, the search continues from the previous digest
+            int from = mriIndex.equals(lag.appliedRow) ? lag.appliedDigestPosition : -1;
+            lag.appliedRow = mriIndex;
+            lag.appliedDigest = (digestId == null) ? null : digestId.transactionId;
+            locate(lag, from);
+            recompute(lag);
+        }
+    }
+
+    /**
+     * Find the applied row in the tail and the applied digest in its redo log, searching forward from a position
+     * of the redo log first
+     */
+    private static void locate(RangeLag lag, int from) {
+        Integer row = (lag.appliedRow == null) ? null : lag.tail.positions.get(lag.appliedRow);
+        lag.appliedRowPosition = (row == null) ? -1 : row;
+        lag.appliedDigestPosition = -1;
+        if (row == null || lag.appliedDigest == null) {
+            return;
+        }
+        List<MusicTxDigestId> redoLog = lag.tail.redoLogs.get(row);
+        for (int i = Math.max(0, from); i < redoLog.size(); i++) {
+            if (lag.appliedDigest.equals(redoLog.get(i).transactionId)) {
+                lag.appliedDigestPosition = i;
+                return;
+            }
+        }
+        for (int i = Math.min(from, redoLog.size()) - 1; i >= 0; i--) {
+            if (lag.appliedDigest.equals(redoLog.get(i).transactionId)) {
+                lag.appliedDigestPosition = i;
+                return;
+            }
+        }
+    }
+
+    /**
+     * The entries after the applied digest in the applied row, and all the entries of the rows after it, are
+     * pending. Rows that are not after the applied row are considered applied
+     */
+    private static void recompute(RangeLag lag) {
+        Tail tail = lag.tail;
+        long appliedOrder = (lag.appliedRow == null) ? Long.MIN_VALUE : order(lag.appliedRow);
+        int after = (appliedOrder == Long.MIN_VALUE) ? 0 : tail.firstAfter(appliedOrder);
+        long partial = 0;
+        if (lag.appliedRowPosition >= 0) {
+            partial = tail.redoLogs.get(lag.appliedRowPosition).size() - (lag.appliedDigestPosition + 1);
+        }
+        long oldest = -1;
+        if (partial > 0) {
+            oldest = unixMs(lag.appliedRow);
+        } else if (tail.firstWithEntries[after] < tail.rows.length) {
+            oldest = unixMs(tail.rows[tail.firstWithEntries[after]]);
+        }
+        lag.lag = new Lag(partial + tail.entriesFrom[after], oldest);
+    }
+
+    /**
+     * @return pending entries and time of the oldest one of each tracked range, sorted by range
+     */
+    private Map<String, long[]> snapshot() {
+        Map<String, long[]> lags = new TreeMap<>();
+        for (Map.Entry<Range, RangeLag> entry : ranges.entrySet()) {
+            Lag lag = entry.getValue().lag;
+            lags.put(entry.getKey().getTable(), new long[] { lag.pending, lag.oldestPendingMs });
+        }
+        return lags;
+    }
+
+    /**
+     * @return redo log entries of the range not yet applied, 0 if it is not tracked
+     */
+    public long getPendingEntries(Range range) {
+        RangeLag lag = ranges.get(range);
+        return (lag == null) ? 0 : lag.lag.pending;
+    }
+
+    /**
+     * @return estimated lag of the range in ms, 0 if it is up to date or not tracked
+     */
+    public long getLagMs(Range range) {
+        RangeLag current = ranges.get(range);
+        if (current == null) {
+            return 0;
+        }
+        Lag lag = current.lag;
+        return lagMs(new long[] { lag.pending, lag.oldestPendingMs }, System.currentTimeMillis());
+    }
+
+    @Override
+    public long getTotalPendingEntries() {
+        long total = 0;
+        for (long[] lag : snapshot().values()) {
+            total += lag[0];
+        }
+        return total;
+    }
+
+    @Override
+    public long getMaxLagMs() {
+        long now = System.currentTimeMillis();
+        long max = 0;
+        for (long[] lag : snapshot().values()) {
+            max = Math.max(max, lagMs(lag, now));
+        }
+        return max;
+    }
+
+    @Override
+    public String[] getLaggingRanges() {
+        long now = System.currentTimeMillis();
+        List<String> lagging = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : snapshot().entrySet()) {
+            if (entry.getValue()[0] > 0) {
+                lagging.add(entry.getKey() + " pending=" + entry.getValue()[0] + " lagMs="
+                    + lagMs(entry.getValue(), now));
+            }
+        }
+        return lagging.toArray(new String[0]);
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    public void writeText(StringBuilder out, String name, String labels) {
+        for (Map.Entry<String, long[]> entry : snapshot().entrySet()) {
+            out.append(name).append("{range=\"").append(entry.getKey()).append("\"} ")
+                .append(entry.getValue()[0]).append('\n');
+        }
+    }
+}
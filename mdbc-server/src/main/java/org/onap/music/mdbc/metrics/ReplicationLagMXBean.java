@@ -0,0 +1,43 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+/**
+ * Management interface of the {@link ReplicationLag}
+ */
+public interface ReplicationLagMXBean {
+
+    /**
+     * @return redo log entries not yet applied, over all the tracked ranges
+     */
+    long getTotalPendingEntries();
+
+    /**
+     * @return estimated lag of the range that is furthest behind, in ms
+     */
+    long getMaxLagMs();
+
+    /**
+     * @return the ranges with pending entries, with their number of entries and estimated lag
+     */
+    String[] getLaggingRanges();
+}
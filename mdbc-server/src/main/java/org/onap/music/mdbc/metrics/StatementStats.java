@@ -0,0 +1,419 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Aggregates the statements executed through the connections of the server by fingerprint, the text of the
+ * statement with its literals replaced by {@code ?}, similar to the pg_stat_statements view of PostgreSQL.
+ * <p>
+ * For each fingerprint it keeps the number of calls, the distribution of their latency, the number of calls
+ * that had to take ownership of their ranges, and the rows and bytes they added to the staging table, that
+ * is, to the digest of their transaction. All of them are striped counters, so recording a statement doesn't
+ * take locks.
+ * </p>
+ * <p>
+ * The number of fingerprints is bounded, see {@link #setMaxFingerprints(int)}, the statements that don't fit
+ * are aggregated under {@value #OTHER}. Each fingerprint keeps a histogram of a few KB. The fingerprints with
+ * the highest total time are exposed as the summary {@value #METRIC} and the mdbc_statement_*_total counters,
+ * and with JMX, the complete table is returned by {@link #report(int)}.
+ * </p>
+ */
+public final class StatementStats implements Metric, StatementStatsMXBean {
+
+    public static final String METRIC = "mdbc_statement_seconds";
+    /** fingerprint of the statements that are not tracked on their own */
+    public static final String OTHER = "<other>";
+    public static final int MAX_FINGERPRINTS_DEFAULT = 1000;
+    /** fingerprints shown in the scrape text, the highest total time first */
+    static final int TOP_METRICS = 20;
+    /** longer fingerprints are truncated, so a single statement can't take too much memory */
+    static final int MAX_FINGERPRINT_CHARS = 2048;
+
+    private static final StatementStats INSTANCE = new StatementStats();
+
+    static {
+        MetricsRegistry registry = MetricsRegistry.get();
+        registry.register(METRIC, "Latency of the statements with the highest total time, by fingerprint",
+            null, null, () -> INSTANCE);
+        registry.register("mdbc_statement_ownerships_total",
+            "Calls of the statements with the highest total time that took ownership of their ranges", null, null,
+            () -> INSTANCE.counter(Statement::getOwnerships));
+        registry.register("mdbc_statement_staged_rows_total",
+            "Rows added to the staging table by the statements with the highest total time", null, null,
+            () -> INSTANCE.counter(Statement::getStagedRows));
+        registry.register("mdbc_statement_staged_bytes_total",
+            "Serialized bytes added to the digests by the statements with the highest total time", null, null,
+            () -> INSTANCE.counter(Statement::getStagedBytes));
+    }
+
+    /** statistics of a fingerprint */
+    public static final class Statement {
+        private final String fingerprint;
+        private final HistogramBuckets latency = new HistogramBuckets();
+        private final LongAdder ownerships = new LongAdder();
+        private final LongAdder stagedRows = new LongAdder();
+        private final LongAdder stagedBytes = new LongAdder();
+
+        Statement(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @param nanos time from the start of the statement to the end of its post statement hook
+         * @param owned true if the statement had to take ownership of its ranges
+         * @param rows rows added to the staging table by the statement
+         * @param bytes serialized size of the rows added to the staging table
+         */
+        public void record(long nanos, boolean owned, long rows, long bytes) {
+            latency.record(nanos);
+            if (owned) {
+                ownerships.increment();
+            }
+            if (rows > 0) {
+                stagedRows.add(rows);
+                stagedBytes.add(bytes);
+            }
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCalls() {
+            return latency.count();
+        }
+
+        public long getTotalNanos() {
+            return latency.sum();
+        }
+
+        public long getMeanNanos() {
+            return latency.mean();
+        }
+
+        public long getMaxNanos() {
+            return latency.max();
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         */
+        public long getQuantileNanos(double quantile) {
+            return latency.quantile(quantile);
+        }
+
+        public long getOwnerships() {
+            return ownerships.sum();
+        }
+
+        public long getStagedRows() {
+            return stagedRows.sum();
+        }
+
+        public long getStagedBytes() {
+            return stagedBytes.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d total_ms=%.3f mean_ms=%.3f p99_ms=%.3f ownerships=%d rows=%d bytes=%d %s",
+                getCalls(), millis(getTotalNanos()), millis(getMeanNanos()), millis(getQuantileNanos(0.99)),
+                getOwnerships(), getStagedRows(), getStagedBytes(), fingerprint);
+        }
+    }
+
+    private final Map<String, Statement> statements = new ConcurrentHashMap<>();
+    private final Statement other = new Statement(OTHER);
+    private volatile int maxFingerprints = MAX_FINGERPRINTS_DEFAULT;
+
+    StatementStats() {
+    }
+
+    public static StatementStats get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param maxFingerprints maximum number of fingerprints tracked on their own, non positive disables the
+     * statistics
+     */
+    public void setMaxFingerprints(int maxFingerprints) {
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    public int getMaxFingerprints() {
+        return maxFingerprints;
+    }
+
+    /**
+     * @param sql statement about to be executed
+     * @return the statistics of its fingerprint, created if there is still space, or null if the statistics
+     * are disabled
+     */
+    public Statement lookup(String sql) {
+        int max = maxFingerprints;
+        if (max <= 0 || sql == null) {
+            return null;
+        }
+        String fingerprint = fingerprint(sql);
+        Statement statement = statements.get(fingerprint);
+        if (statement != null) {
+            return statement;
+        }
+        if (statements.size() >= max) {
+            return other;
+        }
+        //the bound can be exceeded by the statements added concurrently, by at most one per connection
+        return statements.computeIfAbsent(fingerprint, Statement::new);
+    }
+
+    /**
+     * Normalizes a statement: comments are removed, white space is collapsed, string and numeric literals are
+     * replaced by {@code ?}, and lists of them by {@code ?, ...}
+     */
+    public static String fingerprint(String sql) {
+        StringBuilder out = new StringBuilder(Math.min(sql.length(), MAX_FINGERPRINT_CHARS));
+        int n = sql.length();
+        int i = 0;
+        while (i < n && out.length() < MAX_FINGERPRINT_CHARS) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                space(out);
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i < n && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                space(out);
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = (end < 0) ? n : end + 2;
+                space(out);
+            } else if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                literal(out);
+            } else if (c == '"' || c == '`') {
+                //quoted identifiers are kept
+                int end = skipQuoted(sql, i, c);
+                out.append(sql, i, end);
+                i = end;
+            } else if (isDigit(c) && !isIdentifierEnd(out)) {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                literal(out);
+            } else {
+                if ((c == ',' || c == ')') && out.length() > 0 && out.charAt(out.length() - 1) == ' ') {
+                    out.setLength(out.length() - 1);
+                }
+                out.append(c);
+                i++;
+            }
+        }
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            out.setLength(end - 1);
+        }
+        return out.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return true if the last character written is part of an identifier, e.g. the 1 of T1
+     */
+    private static boolean isIdentifierEnd(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
+    /**
+     * @return the index after the closing quote, a doubled quote is part of the text
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote == '\'') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < n && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    private static void space(StringBuilder out) {
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) != ' ' && out.charAt(length - 1) != '(') {
+            out.append(' ');
+        }
+    }
+
+    /**
+     * Appends a placeholder, merging it with a previous list of placeholders: "?, ?" becomes "?, ..."
+     */
+    private static void literal(StringBuilder out) {
+        for (String merged : new String[] { "?, ..., ", "?, ...," }) {
+            if (endsWith(out, merged)) {
+                out.setLength(out.length() - merged.length() + "?, ...".length());
+                return;
+            }
+        }
+        for (String list : new String[] { "?, ", "?," }) {
+            if (endsWith(out, list)) {
+                out.setLength(out.length() - list.length());
+                out.append("?, ...");
+                return;
+            }
+        }
+        out.append('?');
+    }
+
+    private static boolean endsWith(StringBuilder out, String suffix) {
+        int start = out.length() - suffix.length();
+        return start >= 0 && out.indexOf(suffix, start) == start;
+    }
+
+    /**
+     * @return the statistics of all the fingerprints, the highest total time first
+     */
+    public List<Statement> getStatements() {
+        List<Statement> all = new ArrayList<>(statements.values());
+        if (other.getCalls() > 0) {
+            all.add(other);
+        }
+        all.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return all;
+    }
+
+    /**
+     * @param limit maximum number of fingerprints in the report, non positive for all of them
+     * @return one line per fingerprint, the highest total time first
+     */
+    public String report(int limit) {
+        List<Statement> all = getStatements();
+        StringBuilder out = new StringBuilder();
+        out.append(all.size()).append(" statement fingerprints, at most ").append(maxFingerprints)
+            .append(" tracked\n");
+        int shown = 0;
+        for (Statement statement : all) {
+            if (limit > 0 && shown++ >= limit) {
+                break;
+            }
+            out.append(statement).append('\n');
+        }
+        return out.toString();
+    }
+
+    @Override
+    public int getFingerprints() {
+        return statements.size();
+    }
+
+    @Override
+    public String[] getTopStatements() {
+        List<Statement> top = top();
+        String[] rows = new String[top.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = top.get(i).toString();
+        }
+        return rows;
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+        other.latency.reset();
+        other.ownerships.reset();
+        other.stagedRows.reset();
+        other.stagedBytes.reset();
+    }
+
+    @Override
+    public String getType() {
+        return "summary";
+    }
+
+    @Override
+    public void writeText(StringBuilder out, String name, String labels) {
+        for (Statement statement : top()) {
+            statement.latency.writeText(out, name, label(statement), TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * @return counter with a value of each of the fingerprints with the highest total time
+     */
+    private Metric counter(ToLongFunction<Statement> value) {
+        return new Metric() {
+            @Override
+            public String getType() {
+                return "counter";
+            }
+
+            @Override
+            public void writeText(StringBuilder out, String name, String labels) {
+                for (Statement statement : top()) {
+                    out.append(name).append('{').append(label(statement)).append("} ")
+                        .append(value.applyAsLong(statement)).append('\n');
+                }
+            }
+        };
+    }
+
+    private List<Statement> top() {
+        List<Statement> all = getStatements();
+        return all.subList(0, Math.min(TOP_METRICS, all.size()));
+    }
+
+    private static String label(Statement statement) {
+        return "fingerprint=\"" + statement.fingerprint.replace("\\", "\\\\").replace("\"", "\\\"")
+            .replace("\n", "\\n") + "\"";
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+/**
+ * Distribution of sizes or counts, e.g. the number of rows of a dag, see {@link HistogramBuckets}
+ */
+public final class ValueHistogram implements Metric, ValueHistogramMXBean {
+
+    private final HistogramBuckets buckets = new HistogramBuckets();
+
+    /**
+     * @param value value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        buckets.record(value);
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the value below which the requested fraction of the recorded values are
+     */
+    public long getQuantile(double quantile) {
+        return buckets.quantile(quantile);
+    }
+
+    @Override
+    public long getCount() {
+        return buckets.count();
+    }
+
+    @Override
+    public long getMean() {
+        return buckets.mean();
+    }
+
+    @Override
+    public long getMax() {
+        return buckets.max();
+    }
+
+    @Override
+    public long getP50() {
+        return getQuantile(0.5);
+    }
+
+    @Override
+    public long getP99() {
+        return getQuantile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        buckets.reset();
+    }
+
+    @Override
+    public String getType() {
+        return "summary";
+    }
+
+    @Override
+    public void writeText(StringBuilder out, String name, String labels) {
+        buckets.writeText(out, name, labels, 1);
+    }
+}
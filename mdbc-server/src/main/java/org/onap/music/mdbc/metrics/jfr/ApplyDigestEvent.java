@@ -0,0 +1,55 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.Set;
+import java.util.UUID;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.onap.music.mdbc.Range;
+
+@Name("org.onap.music.mdbc.ApplyDigest")
+@Label("Apply Digests")
+@Description("Batch of digests of an mri row applied to the local database in one transaction")
+public class ApplyDigestEvent extends MdbcEvent implements MdbcEvents.ApplyDigest {
+
+    @Label("MRI Index")
+    String mriIndex;
+
+    @Label("Ranges")
+    String ranges;
+
+    @Label("Digests")
+    int digests;
+
+    @Override
+    public void finish(UUID mriIndex, Set<Range> ranges, int digests) {
+        end();
+        if (shouldCommit()) {
+            this.mriIndex = text(mriIndex);
+            this.ranges = names(ranges);
+            this.digests = digests;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.Set;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.onap.music.mdbc.Range;
+
+@Name("org.onap.music.mdbc.Checkpoint")
+@Label("Checkpoint")
+@Description("Replay of the redo log of owned ranges into the local database, including the wait for the range locks")
+public class CheckpointEvent extends MdbcEvent implements MdbcEvents.Checkpoint {
+
+    @Label("Ranges")
+    String ranges;
+
+    @Label("Locked Ranges")
+    @Description("Ranges locked while replaying, including the other ranges of the rows in the dag")
+    String lockedRanges;
+
+    @Override
+    public void finish(Set<Range> ranges, Set<Range> lockedRanges) {
+        end();
+        if (shouldCommit()) {
+            this.ranges = names(ranges);
+            this.lockedRanges = names(lockedRanges);
+            commit();
+        }
+    }
+}
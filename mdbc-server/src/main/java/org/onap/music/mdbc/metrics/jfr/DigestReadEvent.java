@@ -0,0 +1,64 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.UUID;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.onap.music.mdbc.DigestRead")
+@Label("Digest Read")
+@Description("Quorum read of the digest of a transaction from music")
+public class DigestReadEvent extends MdbcEvent implements MdbcEvents.DigestRead {
+
+    @Label("MRI Index")
+    String mriIndex;
+
+    @Label("Digest")
+    String digestId;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Chunks")
+    @Description("Chunks of a large digest, 0 if it is stored in a single row")
+    int chunks;
+
+    @Label("Compressed")
+    boolean compressed;
+
+    @Override
+    public void finish(UUID mriIndex, UUID digestId, long bytes, int chunks, boolean compressed) {
+        end();
+        if (shouldCommit()) {
+            this.mriIndex = text(mriIndex);
+            this.digestId = text(digestId);
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.compressed = compressed;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.UUID;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("org.onap.music.mdbc.DigestWrite")
+@Label("Digest Write")
+@Description("Serialization of the digest of a transaction and its write to music, a phase of the commit log")
+public class DigestWriteEvent extends MdbcEvent implements MdbcEvents.DigestWrite {
+
+    @Label("Digest")
+    String digestId;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Compressed")
+    boolean compressed;
+
+    @Label("Serialization")
+    @Timespan(Timespan.NANOSECONDS)
+    long serialization;
+
+    @Override
+    public void finish(UUID digestId, long bytes, boolean compressed, long serializationNanos) {
+        end();
+        if (shouldCommit()) {
+            this.digestId = text(digestId);
+            this.bytes = bytes;
+            this.compressed = compressed;
+            this.serialization = serializationNanos;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.onap.music.mdbc.Harvest")
+@Label("Staging Harvest")
+@Description("Copy of the rows written by the triggers of the local database into the staging table of a transaction")
+public class HarvestEvent extends MdbcEvent implements MdbcEvents.Harvest {
+
+    @Label("Connection")
+    String connectionId;
+
+    @Label("Rows")
+    int rows;
+
+    @Override
+    public void finish(String connectionId, int rows) {
+        end();
+        if (shouldCommit()) {
+            this.connectionId = connectionId;
+            this.rows = rows;
+            commit();
+        }
+    }
+}
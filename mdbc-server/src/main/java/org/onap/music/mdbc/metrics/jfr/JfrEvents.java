@@ -0,0 +1,86 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+/**
+ * Creates and begins the Flight Recorder events. Only referenced by {@link MdbcEvents} once it checked that
+ * jdk.jfr is available, so it is the only class that links the event classes.
+ */
+final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    static MdbcEvents.Own own() {
+        OwnEvent event = new OwnEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.LockWait lockWait() {
+        LockWaitEvent event = new LockWaitEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.Checkpoint checkpoint() {
+        CheckpointEvent event = new CheckpointEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.ApplyDigest applyDigest() {
+        ApplyDigestEvent event = new ApplyDigestEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.CommitLog commitLog() {
+        CommitLogEvent event = new CommitLogEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.DigestWrite digestWrite() {
+        DigestWriteEvent event = new DigestWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.RedoAppend redoAppend() {
+        RedoAppendEvent event = new RedoAppendEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.DigestRead digestRead() {
+        DigestReadEvent event = new DigestReadEvent();
+        event.begin();
+        return event;
+    }
+
+    static MdbcEvents.Harvest harvest() {
+        HarvestEvent event = new HarvestEvent();
+        event.begin();
+        return event;
+    }
+}
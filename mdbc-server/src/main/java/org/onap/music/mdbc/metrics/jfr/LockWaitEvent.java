@@ -0,0 +1,65 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.List;
+import java.util.UUID;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.onap.music.mdbc.Range;
+
+@Name("org.onap.music.mdbc.LockWait")
+@Label("MRI Lock Wait")
+@Description("Wait for the lock of an mri row while taking ownership of a dag, including the back-off sleeps")
+public class LockWaitEvent extends MdbcEvent implements MdbcEvents.LockWait {
+
+    @Label("MRI Index")
+    String mriIndex;
+
+    @Label("Ranges")
+    String ranges;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Back-off")
+    @Timespan(Timespan.NANOSECONDS)
+    long backoff;
+
+    @Label("Acquired")
+    boolean acquired;
+
+    @Override
+    public void finish(UUID mriIndex, List<Range> ranges, int attempts, long backoffNanos, boolean acquired) {
+        end();
+        if (shouldCommit()) {
+            this.mriIndex = text(mriIndex);
+            this.ranges = names(ranges);
+            this.attempts = attempts;
+            this.backoff = backoffNanos;
+            this.acquired = acquired;
+            commit();
+        }
+    }
+}
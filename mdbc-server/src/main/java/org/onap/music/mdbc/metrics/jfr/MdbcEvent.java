@@ -0,0 +1,62 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.Collection;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.StackTrace;
+import org.onap.music.mdbc.Range;
+
+/**
+ * Flight Recorder event of the mdbc server. The events are disabled by default and are enabled by the
+ * profile in mdbc.jfc, e.g. <code>jcmd &lt;pid&gt; JFR.start settings=default settings=mdbc.jfc</code>.
+ * <p>
+ * The events are created through {@link MdbcEvents}, which begins them. The call site does the work and
+ * then calls the finish method of the event, which only formats the fields when the event is going to be
+ * committed. When the events are disabled nothing is recorded.
+ * </p>
+ */
+@Category("MDBC")
+@Enabled(false)
+@StackTrace(false)
+public abstract class MdbcEvent extends Event {
+
+    /**
+     * @return the names of the ranges separated by spaces
+     */
+    static String names(Collection<Range> ranges) {
+        if (ranges == null) {
+            return "";
+        }
+        StringBuilder names = new StringBuilder();
+        for (Range range : ranges) {
+            names.append(names.length() == 0 ? "" : " ").append(range.getTable());
+        }
+        return names.toString();
+    }
+
+    static String text(Object value) {
+        return (value == null) ? null : value.toString();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.onap.music.mdbc.Range;
+
+/**
+ * Entry point of the Flight Recorder events of the mdbc server. The call sites only see the interfaces of this
+ * class, so that the event classes, which extend jdk.jfr.Event, are not loaded by a JVM without jdk.jfr (e.g. the
+ * 8u212 of the docker image). In that case every factory returns a no-op event.
+ * <p>
+ * The factories begin the event, the call site does the work and then calls finish.
+ * </p>
+ */
+public final class MdbcEvents {
+
+    /**
+     * True when the JVM ships Flight Recorder, checked once when the class is loaded
+     */
+    public static final boolean AVAILABLE = isAvailable();
+
+    public interface Own {
+        void finish(Set<Range> ranges, int dagRows, UUID mriIndex, boolean owned);
+    }
+
+    public interface LockWait {
+        void finish(UUID mriIndex, List<Range> ranges, int attempts, long backoffNanos, boolean acquired);
+    }
+
+    public interface Checkpoint {
+        void finish(Set<Range> ranges, Set<Range> lockedRanges);
+    }
+
+    public interface ApplyDigest {
+        void finish(UUID mriIndex, Set<Range> ranges, int digests);
+    }
+
+    public interface CommitLog {
+        void finish(UUID mriIndex, Set<Range> ranges, UUID digestId);
+    }
+
+    public interface DigestWrite {
+        void finish(UUID digestId, long bytes, boolean compressed, long serializationNanos);
+    }
+
+    public interface RedoAppend {
+        void finish(UUID mriIndex, UUID digestId);
+    }
+
+    public interface DigestRead {
+        void finish(UUID mriIndex, UUID digestId, long bytes, int chunks, boolean compressed);
+    }
+
+    public interface Harvest {
+        void finish(String connectionId, int rows);
+    }
+
+    private static final Noop NOOP = new Noop();
+
+    private MdbcEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, MdbcEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static Own own() {
+        return AVAILABLE ? JfrEvents.own() : NOOP;
+    }
+
+    public static LockWait lockWait() {
+        return AVAILABLE ? JfrEvents.lockWait() : NOOP;
+    }
+
+    public static Checkpoint checkpoint() {
+        return AVAILABLE ? JfrEvents.checkpoint() : NOOP;
+    }
+
+    public static ApplyDigest applyDigest() {
+        return AVAILABLE ? JfrEvents.applyDigest() : NOOP;
+    }
+
+    public static CommitLog commitLog() {
+        return AVAILABLE ? JfrEvents.commitLog() : NOOP;
+    }
+
+    public static DigestWrite digestWrite() {
+        return AVAILABLE ? JfrEvents.digestWrite() : NOOP;
+    }
+
+    public static RedoAppend redoAppend() {
+        return AVAILABLE ? JfrEvents.redoAppend() : NOOP;
+    }
+
+    public static DigestRead digestRead() {
+        return AVAILABLE ? JfrEvents.digestRead() : NOOP;
+    }
+
+    public static Harvest harvest() {
+        return AVAILABLE ? JfrEvents.harvest() : NOOP;
+    }
+
+    /**
+     * Event used when Flight Recorder is not available, it is stateless and shared
+     */
+    private static final class Noop implements Own, LockWait, Checkpoint, ApplyDigest, CommitLog, DigestWrite,
+            RedoAppend, DigestRead, Harvest {
+
+        @Override
+        public void finish(Set<Range> ranges, int dagRows, UUID mriIndex, boolean owned) {
+        }
+
+        @Override
+        public void finish(UUID mriIndex, List<Range> ranges, int attempts, long backoffNanos, boolean acquired) {
+        }
+
+        @Override
+        public void finish(Set<Range> ranges, Set<Range> lockedRanges) {
+        }
+
+        @Override
+        public void finish(UUID mriIndex, Set<Range> ranges, int digests) {
+        }
+
+        @Override
+        public void finish(UUID mriIndex, Set<Range> ranges, UUID digestId) {
+        }
+
+        @Override
+        public void finish(UUID digestId, long bytes, boolean compressed, long serializationNanos) {
+        }
+
+        @Override
+        public void finish(UUID mriIndex, UUID digestId) {
+        }
+
+        @Override
+        public void finish(UUID mriIndex, UUID digestId, long bytes, int chunks, boolean compressed) {
+        }
+
+        @Override
+        public void finish(String connectionId, int rows) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.Set;
+import java.util.UUID;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.onap.music.mdbc.Range;
+
+@Name("org.onap.music.mdbc.Own")
+@Label("Ownership")
+@Description("Request to own ranges that were not owned by the partition of the connection")
+public class OwnEvent extends MdbcEvent implements MdbcEvents.Own {
+
+    @Label("Ranges")
+    String ranges;
+
+    @Label("MRI Rows")
+    @Description("Rows in the dag of the ranges when the request started")
+    int dagRows;
+
+    @Label("MRI Index")
+    @Description("Row of the partition that owns the ranges, if they were owned")
+    String mriIndex;
+
+    @Label("Owned")
+    boolean owned;
+
+    @Override
+    public void finish(Set<Range> ranges, int dagRows, UUID mriIndex, boolean owned) {
+        end();
+        if (shouldCommit()) {
+            this.ranges = names(ranges);
+            this.dagRows = dagRows;
+            this.mriIndex = text(mriIndex);
+            this.owned = owned;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import java.util.UUID;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.onap.music.mdbc.RedoAppend")
+@Label("Redo Log Append")
+@Description("Append of a digest to the redo log of an mri row, a phase of the commit log")
+public class RedoAppendEvent extends MdbcEvent implements MdbcEvents.RedoAppend {
+
+    @Label("MRI Index")
+    String mriIndex;
+
+    @Label("Digest")
+    String digestId;
+
+    @Override
+    public void finish(UUID mriIndex, UUID digestId) {
+        end();
+        if (shouldCommit()) {
+            this.mriIndex = text(mriIndex);
+            this.digestId = text(digestId);
+            commit();
+        }
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.onap.music.mdbc.mixins;
 
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -144,6 +145,15 @@ public interface DBInterface {
 
 	void applyTxDigest(StagingTable txDigest) throws SQLException, MDBCServiceException;
 
+	/**
+	 * Apply several TxDigests into the local DB as a single local transaction, either all of them are applied
+	 * or none of them
+	 * @param txDigests digests, in the order they should be applied
+	 * @throws SQLException if replay cannot occur correctly
+	 * @throws MDBCServiceException
+	 */
+	void applyTxDigests(List<StagingTable> txDigests) throws SQLException, MDBCServiceException;
+
 	Connection getSQLConnection();
 
 	String getSchema();
@@ -152,8 +162,9 @@ public interface DBInterface {
 	 * Update pointer to where this server has successfully replayed transactions
 	 * @param r
 	 * @param playbackPointer
+	 * @return true if the location was persisted
 	 */
-	public void updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer);
+	public boolean updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer);
     /**
      * Get current locations of this database's already applied locations
      * @return
@@ -164,4 +175,33 @@ public interface DBInterface {
      * Initialize the SQL database by creating any tables necessary
      */
     public void initTables();
+
+    /**
+     * Capture the current contents of the ranges as a digest with one insert per row.
+     * Used to compact the redo history of a range into a snapshot
+     * @param ranges ranges to capture
+     * @return staging table with the contents of the ranges
+     * @throws SQLException if the contents cannot be read
+     * @throws MDBCServiceException
+     */
+    StagingTable getRangeSnapshot(Set<Range> ranges) throws SQLException, MDBCServiceException;
+
+    /**
+     * Replace the local contents of the ranges with a snapshot created by {@link #getRangeSnapshot(Set)}
+     * @param snapshot contents to load
+     * @param ranges ranges that are replaced, any row not in the snapshot is deleted
+     * @throws SQLException if the snapshot cannot be applied, the local contents are left untouched
+     * @throws MDBCServiceException
+     */
+    void applyRangeSnapshot(StagingTable snapshot, Set<Range> ranges) throws SQLException, MDBCServiceException;
+
+    /**
+     * Replace the local contents of a range using the bulk load path of the database
+     * @param range range that is replaced, any existing row is deleted
+     * @param columns columns contained in each row, in order
+     * @param rows rows in tab separated text format, NULL as \N and backslash escapes
+     * @throws SQLException if the rows cannot be loaded, the local contents are left untouched
+     * @throws MDBCServiceException
+     */
+    void bulkLoadRange(Range range, List<String> columns, InputStream rows) throws SQLException, MDBCServiceException;
 }
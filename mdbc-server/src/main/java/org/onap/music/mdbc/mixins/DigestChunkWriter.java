@@ -0,0 +1,161 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.mixins;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import org.onap.music.exceptions.MDBCServiceException;
+
+/**
+ * Stream that cuts the bytes written into it in fixed-size chunks, as {@link DigestChunks#split} does, and writes
+ * each chunk in parallel as soon as it is full, so a large digest is never held in memory as a whole.
+ * <p>
+ * At most a fixed number of chunks are buffered or being written at the same time, the writer blocks when the
+ * limit is reached. The checksums of the chunks are collected for the header of the digest.
+ * </p>
+ */
+final class DigestChunkWriter extends OutputStream {
+
+    /**
+     * Destination of the chunks, called concurrently from the threads of the executor
+     */
+    interface ChunkStore {
+        void write(int chunk, ByteBuffer data) throws MDBCServiceException;
+    }
+
+    private final ExecutorService executor;
+    private final ChunkStore store;
+    private final int chunkBytes;
+    private final Semaphore inFlight;
+    private final List<Future<?>> writes = new ArrayList<>();
+    private final List<Long> checksums = new ArrayList<>();
+    /** first failure of a chunk write, the following writes into the stream fail with it */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private byte[] current;
+    private int currentSize;
+    private long size;
+
+    /**
+     * @param executor threads that write the chunks
+     * @param chunkBytes size of each chunk, the last one can be shorter
+     * @param maxInFlight maximum number of chunks buffered and not written yet
+     * @param store destination of the chunks
+     */
+    DigestChunkWriter(ExecutorService executor, int chunkBytes, int maxInFlight, ChunkStore store) {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Invalid digest chunk size " + chunkBytes);
+        }
+        this.executor = executor;
+        this.chunkBytes = chunkBytes;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.store = store;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (current == null) {
+                current = new byte[chunkBytes];
+                currentSize = 0;
+            }
+            int copied = Math.min(len, chunkBytes - currentSize);
+            System.arraycopy(b, off, current, currentSize, copied);
+            currentSize += copied;
+            size += copied;
+            off += copied;
+            len -= copied;
+            if (currentSize == chunkBytes) {
+                submitChunk();
+            }
+        }
+    }
+
+    private void submitChunk() throws IOException {
+        checkFailure();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the digest chunks to be written");
+        }
+        final int chunk = writes.size();
+        final ByteBuffer data = ByteBuffer.wrap(current, 0, currentSize);
+        current = null;
+        checksums.add(DigestChunks.checksum(data));
+        writes.add(executor.submit(() -> {
+            try {
+                store.write(chunk, data);
+            } catch (MDBCServiceException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            } finally {
+                inFlight.release();
+            }
+            return null;
+        }));
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable failed = failure.get();
+        if (failed != null) {
+            throw new IOException("Failure writing a digest chunk", failed);
+        }
+    }
+
+    /**
+     * Submits the last chunk, the writes should then be awaited with {@link #getWrites()}
+     * @return checksums of the chunks in order
+     */
+    List<Long> finish() throws IOException {
+        if (current != null && currentSize > 0) {
+            submitChunk();
+        }
+        return Collections.unmodifiableList(checksums);
+    }
+
+    /**
+     * @return the writes of the chunks submitted so far, in order
+     */
+    List<Future<?>> getWrites() {
+        return Collections.unmodifiableList(writes);
+    }
+
+    /**
+     * @return number of bytes written into the stream
+     */
+    long size() {
+        return size;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.mixins;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.onap.music.exceptions.MDBCServiceException;
+
+/**
+ * Splits a serialized digest into fixed-size chunks, each written as its own row in MUSIC, and joins them
+ * back when the digest is read.
+ * <p>
+ * The header row of the digest keeps the number of chunks and the CRC32 of each one, so a missing or
+ * partially written chunk is detected before the digest is replayed.
+ * </p>
+ */
+final class DigestChunks {
+
+    private DigestChunks() {
+    }
+
+    /**
+     * @param digest serialized digest, it is not modified
+     * @param chunkBytes maximum size of each chunk
+     * @return views over consecutive parts of the digest, the last one can be shorter
+     */
+    static List<ByteBuffer> split(ByteBuffer digest, int chunkBytes) {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Invalid digest chunk size " + chunkBytes);
+        }
+        List<ByteBuffer> chunks = new ArrayList<>();
+        ByteBuffer remaining = digest.duplicate();
+        while (remaining.hasRemaining()) {
+            ByteBuffer chunk = remaining.slice();
+            chunk.limit(Math.min(chunkBytes, remaining.remaining()));
+            remaining.position(remaining.position() + chunk.remaining());
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static long checksum(ByteBuffer chunk) {
+        CRC32 crc = new CRC32();
+        crc.update(chunk.duplicate());
+        return crc.getValue();
+    }
+
+    static List<Long> checksums(List<ByteBuffer> chunks) {
+        List<Long> checksums = new ArrayList<>(chunks.size());
+        for (ByteBuffer chunk : chunks) {
+            checksums.add(checksum(chunk));
+        }
+        return checksums;
+    }
+
+    /**
+     * @param chunks chunks of the digest in order, null for the ones that were not found
+     * @param checksums checksums of the chunks stored in the header of the digest
+     * @return the serialized digest
+     * @throws MDBCServiceException if a chunk is missing or doesn't match its checksum
+     */
+    static ByteBuffer join(List<ByteBuffer> chunks, List<Long> checksums) throws MDBCServiceException {
+        if (chunks.size() != checksums.size()) {
+            throw new MDBCServiceException("Digest has " + chunks.size() + " chunks, but the header lists "
+                + checksums.size());
+        }
+        int size = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            ByteBuffer chunk = chunks.get(i);
+            if (chunk == null) {
+                throw new MDBCServiceException("Chunk " + i + " of the digest is missing");
+            }
+            if (checksum(chunk) != checksums.get(i)) {
+                throw new MDBCServiceException("Chunk " + i + " of the digest doesn't match its checksum");
+            }
+            size += chunk.remaining();
+        }
+        ByteBuffer digest = ByteBuffer.allocate(size);
+        for (ByteBuffer chunk : chunks) {
+            digest.put(chunk.duplicate());
+        }
+        digest.flip();
+        return digest;
+    }
+}
@@ -259,13 +259,16 @@ public interface MusicInterface {
             throws MDBCServiceException;
 
 	/**
-     * Function used to retrieve a given eventual transaction digest for the current node and deserialize it
+     * Function used to retrieve the next eventual transaction digests for the current node and deserialize them.
+     * Digests are read in time order, starting after the last one applied by the node. Each call reads a bounded
+     * number of time buckets, so the next call may return digests even when this one returned none
      * @param nodeName that identifies a node
-     * @return the deserialize transaction digest that can be applied to the local SQL database
+     * @param limit maximum number of digests to return
+     * @return the deserialize transaction digests, in time order, that can be applied to the local SQL database
      * @throws MDBCServiceException
      */
 	
-	LinkedHashMap<UUID, StagingTable> getEveTxDigest(String nodeName) throws MDBCServiceException;
+	LinkedHashMap<UUID, StagingTable> getEveTxDigest(String nodeName, int limit) throws MDBCServiceException;
     /**
      * Function used to retrieve a given transaction digest and deserialize it
      * @param id of the transaction digest to be retrieved
@@ -281,6 +284,13 @@ public interface MusicInterface {
      */
 	void relinquishIfRequired(DatabasePartition partition) throws MDBCServiceException;
 
+    /**
+     * @param mriIndex index of an mri row
+     * @return number of lock requests, granted or waiting, in the lock queue of the row
+     * @throws MDBCServiceException
+     */
+	long getLockQueueSize(UUID mriIndex) throws MDBCServiceException;
+
 	/**
      * This functions relinquishes a range
      * @param partition db partition to be relinquished
@@ -305,6 +315,14 @@ public interface MusicInterface {
      */
 	List<UUID> getPartitionIndexes() throws MDBCServiceException;
 
+    /**
+     * Cheap probe of a set of rows in MRI, used to detect changes without reading the whole table
+     * @param rows ids of rows in MRI
+     * @return version of each row that still exists, the size of its redo log, or -1 if it is no longer latest
+     * @throws MDBCServiceException
+     */
+    Map<UUID, Integer> getMriRowVersions(Collection<UUID> rows) throws MDBCServiceException;
+
     /**
      * This function is in charge of applying the transaction digests to the MUSIC tables.
      * @param digest this contain all the changes that were perfomed in this digest
@@ -372,9 +390,51 @@ public interface MusicInterface {
      * This is an eventual operation for minimal performance hits
      * @param r
      * @param playbackPointer
+     * @return true if the location was persisted
+     */
+    public boolean updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer);
+
+    /**
+     * Store a compacted image of a range, tagged with the redo position it reflects
+     * @param range range whose contents were captured
+     * @param position last mri row and transaction digest that are included in the snapshot
+     * @param snapshot staging table with one insert per row of the range
+     * @throws MDBCServiceException
+     */
+    void addRangeSnapshot(Range range, Pair<MriReference, MusicTxDigestId> position, StagingTable snapshot)
+        throws MDBCServiceException;
+
+    /**
+     * Function used to retrieve the most recent snapshot of a range and deserialize it
+     * @param range range of interest
+     * @return the latest snapshot, or null if the range was never compacted
+     * @throws MDBCServiceException
+     */
+    RangeSnapshot getLatestRangeSnapshot(Range range) throws MDBCServiceException;
+
+    /**
+     * Get the position of the most recent snapshot of a range, without reading its contents
+     * @param range range of interest
+     * @return the position of the latest snapshot, or null if the range was never compacted
+     * @throws MDBCServiceException
+     */
+    Pair<MriReference, MusicTxDigestId> getLatestRangeSnapshotPosition(Range range) throws MDBCServiceException;
+
+    /**
+     * Get the checkpoint locations that every mdbc server has stored with
+     * {@link #updateCheckpointLocations(Range, Pair)}
+     * @return map from mdbc server name to its applied position per range
+     * @throws MDBCServiceException
+     */
+    Map<String, Map<Range, Pair<MriReference, MusicTxDigestId>>> getAllCheckpointLocations()
+        throws MDBCServiceException;
+
+    /**
+     * Delete transaction digests that are not longer required by any mdbc server
+     * @param digests ids of the digests to delete
      * @throws MDBCServiceException
      */
-    public void updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer);
+    void deleteTxDigests(List<MusicTxDigestId> digests) throws MDBCServiceException;
 
 }
 
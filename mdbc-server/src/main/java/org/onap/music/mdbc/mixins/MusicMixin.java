@@ -25,6 +25,7 @@ import java.nio.ByteBuffer;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -41,6 +42,7 @@ import java.util.UUID;
 import java.util.concurrent.*;
 
 import com.datastax.driver.core.*;
+import com.datastax.driver.core.utils.UUIDs;
 import org.apache.commons.lang3.tuple.Pair;
 import org.json.JSONObject;
 import org.onap.music.datastore.Condition;
@@ -57,19 +59,25 @@ import org.onap.music.main.MusicCore;
 import org.onap.music.main.CorePropertiesLoader;
 import org.onap.music.main.ResultType;
 import org.onap.music.main.ReturnType;
+import org.onap.music.mdbc.Configuration;
 import org.onap.music.mdbc.DatabasePartition;
 import org.onap.music.mdbc.MDBCUtils;
 import org.onap.music.mdbc.MdbcConnection;
 import org.onap.music.mdbc.Range;
 import org.onap.music.mdbc.StateManager;
 import org.onap.music.mdbc.TableInfo;
+import org.onap.music.mdbc.metrics.CommitPhase;
+import org.onap.music.mdbc.metrics.OwnershipMetrics;
+import org.onap.music.mdbc.metrics.jfr.MdbcEvents;
 import org.onap.music.mdbc.ownership.Dag;
 import org.onap.music.mdbc.ownership.DagNode;
 import org.onap.music.mdbc.query.SQLOperationType;
+import org.onap.music.mdbc.tables.DigestCodec;
 import org.onap.music.mdbc.tables.MriReference;
 import org.onap.music.mdbc.tables.MusicRangeInformationRow;
 import org.onap.music.mdbc.tables.MusicTxDigestId;
 import org.onap.music.mdbc.tables.RangeDependency;
+import org.onap.music.mdbc.tables.RangeSnapshot;
 import org.onap.music.mdbc.tables.StagingTable;
 import org.onap.music.mdbc.tables.TxCommitProgress;
 import org.onap.music.service.impl.MusicCassaCore;
@@ -123,17 +131,35 @@ public class MusicMixin implements MusicInterface {
     /** Type of the primary key, if none is defined by the user */
     public static final String MDBC_PRIMARYKEY_TYPE = "uuid";
     public static final boolean DEFAULT_COMPRESSION = true;
+    /** Number of threads used to write and read the chunks of large digests */
+    public static final int DIGEST_CHUNK_THREADS = 8;
+    /** maximum number of digests deleted by a single query, each one is a partition of the IN restriction */
+    private static final int DELETE_DIGESTS_PER_QUERY = 50;
     //TODO: Control network topology strategy with a configuration file entry
     public static final boolean ENABLE_NETWORK_TOPOLOGY_STRATEGY = false;
 
     //\TODO Add logic to change the names when required and create the tables when necessary
     private String musicTxDigestTableName = "musictxdigest";
-    private String musicEventualTxDigestTableName = "musicevetxdigest";
+    private String musicTxDigestChunksTableName = "musictxdigestchunks";
+    private String musicEventualTxDigestTableName = "musicevetxdigestbucket";
+    /** Eventual digest table of previous versions, partitioned by year, see {@link #migrateLegacyEventualTxDigests()} */
+    private static final String LEGACY_EVENTUAL_TX_DIGEST_TABLE = "musicevetxdigest";
+    /** Time covered by each partition of the eventual digest table */
+    public static final long EVENTUAL_DIGEST_BUCKET_MS = TimeUnit.HOURS.toMillis(1);
+    /** Default number of eventual digests returned by each call to getEveTxDigest */
+    public static final int EVENTUAL_DIGEST_PAGE_SIZE = 1000;
+    /** Maximum number of buckets of the eventual digest table read by each call to getEveTxDigest */
+    public static final int EVENTUAL_DIGEST_BUCKETS_PER_CALL = 24;
     public static final String musicRangeInformationTableName = "musicrangeinformation";
     private String musicRangeDependencyTableName = "musicrangedependency";
     private String musicNodeInfoTableName = "musicnodeinfo";
     /** Table mapping mdbc nodes to their current checkpoint status */
     private String musicMdbcCheckpointsTableName = "musicmdbccheckpoints";
+    private String musicRangeSnapshotTableName = "musicrangesnapshot";
+    /** Chunks of the range snapshots, with the layout of the digest chunks table */
+    private String musicRangeSnapshotChunksTableName = "musicrangesnapshotchunks";
+    /** First bucket of the eventual digest table that may still have digests to read, by node name */
+    private final Map<String, Long> eventualDigestCursors = new ConcurrentHashMap<>();
 
     private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(MusicMixin.class);
 
@@ -193,6 +219,8 @@ public class MusicMixin implements MusicInterface {
     protected final String myId;
     protected final String[] allReplicaIds;
     protected ExecutorService commitExecutorThreads;
+    /** separate from the commit threads, which wait for the chunks while writing a digest */
+    protected ExecutorService digestChunkThreads;
 
     private final String musicAddress;
     private final int    music_rfactor;
@@ -204,6 +232,7 @@ public class MusicMixin implements MusicInterface {
     private StateManager stateManager;
     private boolean useCompression;
     private boolean splitAllowed;
+    private int digestChunkBytes;
 
     public MusicMixin() {
         //this.logger         = null;
@@ -247,9 +276,13 @@ public class MusicMixin implements MusicInterface {
 
         String split = info.getProperty(KEY_SPLIT);
         this.splitAllowed = (split == null) ? true: Boolean.parseBoolean(split);
+
+        this.digestChunkBytes = Integer.parseInt(info.getProperty(Configuration.KEY_DIGEST_CHUNK_BYTES,
+            Configuration.DIGEST_CHUNK_BYTES_DEFAULT));
         
         initializeMetricTables();
         commitExecutorThreads = Executors.newFixedThreadPool(4);
+        digestChunkThreads = Executors.newFixedThreadPool(DIGEST_CHUNK_THREADS);
     }
 
     public String getMusicTxDigestTableName(){
@@ -351,11 +384,14 @@ public class MusicMixin implements MusicInterface {
         createKeyspace();
         try {
             createMusicTxDigest();//\TODO If we start partitioning the data base, we would need to use the redotable number
+            createMusicTxDigestChunksTable(this.music_ns, this.musicTxDigestChunksTableName);
             createMusicEventualTxDigest();
             createMusicNodeInfoTable();
             createMusicRangeInformationTable(this.music_ns,this.musicRangeInformationTableName);
             createMusicRangeDependencyTable(this.music_ns,this.musicRangeDependencyTableName);
             createMusicMdbcCheckpointTable();
+            createMusicRangeSnapshotTable(this.music_ns, this.musicRangeSnapshotTableName);
+            createMusicTxDigestChunksTable(this.music_ns, this.musicRangeSnapshotChunksTableName);
         }
         catch(MDBCServiceException e){
             logger.error(EELFLoggerDelegate.errorLogger,"Error creating tables in MUSIC: " + e.getErrorMessage());
@@ -1266,12 +1302,27 @@ public class MusicMixin implements MusicInterface {
 
     public void createAndAddTxDigest(final StagingTable transactionDigest, UUID digestId)
         throws MDBCServiceException {
-        ByteBuffer serializedTransactionDigest;
-        serializedTransactionDigest = transactionDigest.getSerializedStagingAndClean();
-        if(useCompression){
-            serializedTransactionDigest = StagingTable.Compress(serializedTransactionDigest);
+        //the rows are serialized straight into the compressor of this thread, spilled rows are streamed from
+        //their file. The buffer is reused by the next commit of the thread, so it is written before returning
+        MdbcEvents.DigestWrite event = MdbcEvents.digestWrite();
+        final long serializeStart = System.nanoTime();
+        if (digestChunkBytes > 0 && transactionDigest.isSpilled()) {
+            //serialization and writes overlap, there is no separate serialize phase
+            long size = addStreamedTxDigest(digestId, transactionDigest);
+            long start = CommitPhase.DIGEST_PUT.record(serializeStart);
+            event.finish(digestId, size, useCompression, start - serializeStart);
+            return;
+        }
+        ByteBuffer serializedTransactionDigest = transactionDigest.getSerializedStagingAndClean(useCompression);
+        try {
+            long start = CommitPhase.SERIALIZE.record(serializeStart);
+            addTxDigest(digestId, serializedTransactionDigest);
+            CommitPhase.DIGEST_PUT.record(start);
+            event.finish(digestId, serializedTransactionDigest.remaining(), useCompression, start - serializeStart);
+        } finally {
+            //the digest was written, a buffer that grew for it is not kept by the thread
+            DigestCodec.get().trim();
         }
-        addTxDigest(digestId, serializedTransactionDigest);
     }
 
     @Override
@@ -1279,7 +1330,11 @@ public class MusicMixin implements MusicInterface {
                           String txId ,TxCommitProgress progressKeeper) throws MDBCServiceException {
         
         // first deal with commit for eventually consistent tables
+        long eventualStart = System.nanoTime();
         filterAndAddEventualTxDigest(eventualRanges, transactionDigest, txId, progressKeeper);
+        if(eventualRanges != null && !eventualRanges.isEmpty()) {
+            CommitPhase.EVENTUAL_DIGEST.record(eventualStart);
+        }
         
         if(partition==null){
             logger.warn("Trying tcommit log with null partition");
@@ -1307,6 +1362,7 @@ public class MusicMixin implements MusicInterface {
 
 
         final MusicTxDigestId digestId = new MusicTxDigestId(mriIndex, MDBCUtils.generateUniqueKey(), -1);
+        MdbcEvents.CommitLog commitEvent = MdbcEvents.commitLog();
         Callable<Boolean> insertDigestCallable =()-> {
             try {
                 createAndAddTxDigest(transactionDigest,digestId.transactionId);
@@ -1318,7 +1374,11 @@ public class MusicMixin implements MusicInterface {
         };
         Callable<Boolean> appendCallable=()-> {
             try {
+                MdbcEvents.RedoAppend event = MdbcEvents.redoAppend();
+                long start = System.nanoTime();
                 appendToRedoLog(music_ns, mriIndex, digestId.transactionId, lockId, musicRangeInformationTableName);
+                CommitPhase.REDO_APPEND.record(start);
+                event.finish(mriIndex, digestId.transactionId);
                 return true;
             } catch (MDBCServiceException e) {
                 logger.error(EELFLoggerDelegate.errorLogger, "Error creating and pushing tx digest to music",e);
@@ -1338,6 +1398,9 @@ public class MusicMixin implements MusicInterface {
                 "digest to music",e);
             throw new MDBCServiceException("Failure when retrieving futures for execution of digestion creation and append", e);
         }
+        finally {
+            commitEvent.finish(mriIndex, snapshot, digestId.transactionId);
+        }
 
         if (progressKeeper != null) {
             progressKeeper.setRecordId(txId, digestId);
@@ -1362,12 +1425,17 @@ public class MusicMixin implements MusicInterface {
             ByteBuffer serialized = transactionDigest.getSerializedEventuallyStagingAndClean();
 
             if (serialized!=null && useCompression) {
-                serialized = StagingTable.Compress(serialized);
+                //only valid until this thread compresses again, it is written below
+                serialized = DigestCodec.get().compress(serialized);
             }
 
             if (serialized != null) {
                 MusicTxDigestId digestId = new MusicTxDigestId(MDBCUtils.generateUniqueKey(), -1);
-                addEventualTxDigest(digestId, serialized);
+                try {
+                    addEventualTxDigest(digestId, serialized);
+                } finally {
+                    DigestCodec.get().trim();
+                }
             }
         }
         
@@ -1431,6 +1499,30 @@ public class MusicMixin implements MusicInterface {
     }
 
 
+    @Override
+    public Map<UUID, Integer> getMriRowVersions(Collection<UUID> rows) throws MDBCServiceException {
+        Map<UUID, Integer> versions = new HashMap<>();
+        if (rows.isEmpty()) {
+            return versions;
+        }
+        PreparedQueryObject pQueryObject = new PreparedQueryObject();
+        StringBuilder cql = new StringBuilder(String.format("SELECT rangeid, islatest, txredolog FROM %s.%s WHERE rangeid IN (",
+            music_ns, musicRangeInformationTableName));
+        String sep = "";
+        for (UUID row : rows) {
+            cql.append(sep).append("?");
+            pQueryObject.addValue(row);
+            sep = ",";
+        }
+        cql.append(");");
+        pQueryObject.appendQueryString(cql.toString());
+        for (Row r : executeMusicRead(pQueryObject)) {
+            versions.put(r.getUUID("rangeid"),
+                r.getBool("islatest") ? r.getList("txredolog", UUID.class).size() : -1);
+        }
+        return versions;
+    }
+
     public List<Range> getRanges(Row newRow){
         List<Range> partitions = new ArrayList<>();
         Set<String> tables = newRow.getSet("keys",String.class);
@@ -1683,13 +1775,62 @@ public class MusicMixin implements MusicInterface {
     
     public void createMusicEventualTxDigest() throws MDBCServiceException {
         createMusicEventualTxDigest(musicEventualTxDigestTableName,music_ns,-1);
+        migrateLegacyEventualTxDigests();
+    }
+
+    /**
+     * Copies the digests of the eventual digest table of previous versions, which had a different primary key,
+     * into the bucketed table. Digests keep their time id, so the pointers in the node info table stay valid.
+     * The copy is idempotent, the old table is left in place and can be dropped once every server was upgraded
+     */
+    private void migrateLegacyEventualTxDigests() throws MDBCServiceException {
+        PreparedQueryObject columns = new PreparedQueryObject();
+        columns.appendQueryString("SELECT column_name FROM system_schema.columns WHERE keyspace_name = ? AND "
+            + "table_name = ?;");
+        columns.addValue(music_ns.toLowerCase());
+        columns.addValue(LEGACY_EVENTUAL_TX_DIGEST_TABLE);
+        boolean legacy = false;
+        ResultSet rs = MusicCore.quorumGet(columns);
+        if (rs != null) {
+            for (Row row : rs) {
+                legacy |= "year".equals(row.getString("column_name"));
+            }
+        }
+        if (!legacy) {
+            return;
+        }
+        PreparedQueryObject select = new PreparedQueryObject();
+        select.appendQueryString(String.format("SELECT txid, transactiondigest, compressed, txtimeid FROM %s.%s;",
+            music_ns, LEGACY_EVENTUAL_TX_DIGEST_TABLE));
+        int copied = 0;
+        for (Row row : MusicCore.quorumGet(select)) {
+            UUID txTimeId = row.getUUID("txtimeid");
+            PreparedQueryObject insert = new PreparedQueryObject();
+            insert.appendQueryString(String.format("INSERT INTO %s.%s (bucket,txtimeid,txid,transactiondigest,"
+                + "compressed) VALUES (?,?,?,?,?);", music_ns, musicEventualTxDigestTableName));
+            insert.addValue(getEventualDigestBucket(txTimeId));
+            insert.addValue(txTimeId);
+            insert.addValue(row.getUUID("txid"));
+            insert.addValue(row.getBytes("transactiondigest"));
+            insert.addValue(row.getBool("compressed"));
+            try {
+                MusicCore.nonKeyRelatedPut(insert,"critical");
+            } catch (MusicServiceException|MusicQueryException e) {
+                throw new MDBCServiceException("Error migrating eventual digest "+txTimeId+" from "
+                    +LEGACY_EVENTUAL_TX_DIGEST_TABLE, e);
+            }
+            copied++;
+        }
+        logger.info(EELFLoggerDelegate.applicationLogger, "Copied "+copied+" eventual digests from "
+            +LEGACY_EVENTUAL_TX_DIGEST_TABLE+" into "+musicEventualTxDigestTableName+", the old table can be "
+            +"dropped once every server was upgraded");
     }
 
 
     /**
      * This function creates the MusicEveTxDigest table. It contain information related to each eventual transaction committed
-     *  * LeaseId: id associated with the lease, text
-     *  * LeaseCounter: transaction number under this lease, bigint \TODO this may need to be a varint later
+     *  * Bucket: time bucket of the transaction, see {@link #EVENTUAL_DIGEST_BUCKET_MS}, bigint
+     *  * TxTimeId: time based id of the transaction, used to order the digests inside a bucket, timeuuid
      *  * TransactionDigest: text that contains all the changes in the transaction
      */
     public static void createMusicEventualTxDigest(String musicEventualTxDigestTableName, String musicNamespace, int musicTxDigestTableNumber) throws MDBCServiceException {
@@ -1699,14 +1840,15 @@ public class MusicMixin implements MusicInterface {
                 "-" +
                 Integer.toString(musicTxDigestTableNumber);
         }
-        String priKey = "txTimeId, year";
+        String priKey = "(bucket), txtimeid";
         StringBuilder fields = new StringBuilder();
+        fields.append("bucket bigint, ");
+        fields.append("txtimeid timeuuid, ");
         fields.append("txid uuid, ");
         fields.append("transactiondigest blob, ");
-        fields.append("compressed boolean, ");
-        fields.append("year int, ");
-        fields.append("txTimeId TIMEUUID ");//notice lack of ','
-        String cql = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s, PRIMARY KEY (%s));", musicNamespace, tableName, fields, priKey);
+        fields.append("compressed boolean ");//notice lack of ','
+        String cql = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s, PRIMARY KEY (%s)) "
+            + "WITH CLUSTERING ORDER BY (txtimeid ASC);", musicNamespace, tableName, fields, priKey);
         try {
             executeMusicWriteQuery(musicNamespace,tableName,cql);
         } catch (MDBCServiceException e) {
@@ -1714,6 +1856,14 @@ public class MusicMixin implements MusicInterface {
             throw(e);
         }
     }
+
+    /**
+     * @param txTimeId time based id of an eventual transaction
+     * @return the partition of the eventual digest table where the transaction is stored
+     */
+    public static long getEventualDigestBucket(UUID txTimeId) {
+        return UUIDs.unixTimestamp(txTimeId) / EVENTUAL_DIGEST_BUCKET_MS;
+    }
     
     
     /**
@@ -1721,6 +1871,8 @@ public class MusicMixin implements MusicInterface {
      *  * LeaseId: id associated with the lease, text
      *  * LeaseCounter: transaction number under this lease, bigint \TODO this may need to be a varint later
      *  * TransactionDigest: text that contains all the changes in the transaction
+     *  * Chunks/Checksums: for digests written in chunks, the number of chunks and the CRC32 of each one,
+     *  the TransactionDigest is null and the chunks are in the MusicTxDigestChunks table
      */
     public static void createMusicTxDigest(String musicTxDigestTableName, String musicNamespace, int musicTxDigestTableNumber) throws MDBCServiceException {
         String tableName = musicTxDigestTableName;
@@ -1733,17 +1885,68 @@ public class MusicMixin implements MusicInterface {
         StringBuilder fields = new StringBuilder();
         fields.append("txid uuid, ");
         fields.append("compressed boolean, ");
-        fields.append("transactiondigest blob ");//notice lack of ','
+        fields.append("transactiondigest blob, ");
+        fields.append("chunks int, ");
+        fields.append("checksums list<bigint> ");//notice lack of ','
         String cql = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s, PRIMARY KEY (%s));", musicNamespace,
             tableName, fields, priKey);
         try {
             executeMusicWriteQuery(musicNamespace,tableName,cql);
+            //tables created before chunked digests were introduced
+            addMissingColumns(musicNamespace, tableName, "chunks int", "checksums list<bigint>");
         } catch (MDBCServiceException e) {
             logger.error("Initialization error: Failure to create redo records table");
             throw(e);
         }
     }
 
+    /**
+     * Adds the columns that a table created by a previous version doesn't have, CREATE TABLE IF NOT EXISTS
+     * leaves an existing table unchanged
+     * @param columns definitions of the columns, name and type
+     */
+    private static void addMissingColumns(String namespace, String table, String... columns)
+        throws MDBCServiceException {
+        PreparedQueryObject query = new PreparedQueryObject();
+        query.appendQueryString("SELECT column_name FROM system_schema.columns WHERE keyspace_name = ? AND "
+            + "table_name = ?;");
+        query.addValue(namespace.toLowerCase());
+        query.addValue(table.toLowerCase());
+        Set<String> existing = new HashSet<>();
+        ResultSet rs = MusicCore.quorumGet(query);
+        if (rs != null) {
+            for (Row row : rs) {
+                existing.add(row.getString("column_name"));
+            }
+        }
+        for (String column : columns) {
+            if (!existing.contains(column.split(" ")[0])) {
+                logger.info(EELFLoggerDelegate.applicationLogger, "Adding column "+column+" to "+namespace+"."+table);
+                executeMusicWriteQuery(namespace, table, String.format("ALTER TABLE %s.%s ADD %s;", namespace, table,
+                    column));
+            }
+        }
+    }
+
+    /**
+     * This function creates the MusicTxDigestChunks table. It contains the parts of the digests that are too
+     * large to be written as a single blob, see {@link Configuration#KEY_DIGEST_CHUNK_BYTES}
+     *  * txid: id of the digest, partition key
+     *  * chunk: position of the chunk in the serialized digest, clustering key
+     *  * data: bytes of the chunk
+     */
+    public static void createMusicTxDigestChunksTable(String musicNamespace, String chunksTableName)
+        throws MDBCServiceException {
+        String cql = String.format("CREATE TABLE IF NOT EXISTS %s.%s (txid uuid, chunk int, data blob, "
+            + "PRIMARY KEY (txid, chunk));", musicNamespace, chunksTableName);
+        try {
+            executeMusicWriteQuery(musicNamespace,chunksTableName,cql);
+        } catch (MDBCServiceException e) {
+            logger.error("Initialization error: Failure to create digest chunks table");
+            throw(e);
+        }
+    }
+
     public static void createMusicRangeDependencyTable(String musicNamespace,String musicRangeDependencyTableName)
         throws MDBCServiceException {
         String tableName = musicRangeDependencyTableName;
@@ -1778,6 +1981,36 @@ public class MusicMixin implements MusicInterface {
         }
     }
 
+    /**
+     * This function creates the MusicRangeSnapshot table. Each row is a compacted image of a range
+     *  * range: name of the range (upper case), partition key
+     *  * snapshotid: time uuid of the snapshot, clustering key, newest first
+     *  * mrirow/digestid: position in the redo history that is reflected in the snapshot
+     *  * snapshot: serialized staging table with an insert per row, null when it is written in chunks
+     *  * chunks/checksums: number of chunks of the snapshot and their checksums, null when it is a single blob
+     */
+    public static void createMusicRangeSnapshotTable(String namespace, String snapshotTable) throws MDBCServiceException {
+        StringBuilder fields = new StringBuilder();
+        fields.append("range text, ");
+        fields.append("snapshotid timeuuid, ");
+        fields.append("mrirow uuid, ");
+        fields.append("digestid uuid, ");
+        fields.append("compressed boolean, ");
+        fields.append("snapshot blob, ");
+        fields.append("chunks int, ");
+        fields.append("checksums list<bigint> ");//notice lack of ','
+        String cql = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s, PRIMARY KEY (range, snapshotid)) "
+            + "WITH CLUSTERING ORDER BY (snapshotid DESC);", namespace, snapshotTable, fields);
+        try {
+            executeMusicWriteQuery(namespace,snapshotTable,cql);
+            //tables created before chunked snapshots were introduced
+            addMissingColumns(namespace, snapshotTable, "chunks int", "checksums list<bigint>");
+        } catch (MDBCServiceException e) {
+            logger.error("Initialization error: Failure to create range snapshot table");
+            throw(e);
+        }
+    }
+
     /**
      * Writes the transaction history to the txDigest
      */
@@ -1788,6 +2021,10 @@ public class MusicMixin implements MusicInterface {
     }
 
     private void addTxDigest(UUID digestId, ByteBuffer transactionDigest) throws MDBCServiceException{
+        if (digestChunkBytes > 0 && transactionDigest.remaining() > digestChunkBytes) {
+            addChunkedTxDigest(digestId, transactionDigest);
+            return;
+        }
         PreparedQueryObject query = new PreparedQueryObject();
         String cql = String.format("INSERT INTO %s.%s (txid,transactiondigest,compressed ) VALUES (?,?,?);",this.music_ns,
             this.musicTxDigestTableName);
@@ -1806,24 +2043,205 @@ public class MusicMixin implements MusicInterface {
         }
     }
     
+    /**
+     * Writes a large digest as chunks in parallel, each one in its own mutation, and then the header row
+     * with their checksums. Readers only find the digest once the header is written, so it is never seen
+     * partially written.
+     */
+    private void addChunkedTxDigest(UUID digestId, ByteBuffer transactionDigest) throws MDBCServiceException {
+        List<ByteBuffer> chunks = DigestChunks.split(transactionDigest, digestChunkBytes);
+        List<Future<?>> writes = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            final int chunk = i;
+            writes.add(digestChunkThreads.submit(() -> {
+                addChunk(musicTxDigestChunksTableName, digestId, chunk, chunks.get(chunk));
+                return null;
+            }));
+        }
+        try {
+            waitForChunks(digestId, writes);
+            addTxDigestHeader(digestId, DigestChunks.checksums(chunks));
+        } catch (MDBCServiceException e) {
+            deleteChunks(musicTxDigestChunksTableName, digestId);
+            throw e;
+        }
+        logger.debug(EELFLoggerDelegate.applicationLogger, "Digest "+digestId+" written in "+chunks.size()
+            +" chunks of "+digestChunkBytes+" bytes");
+    }
+
+    /**
+     * Writes a digest whose rows were spilled to a file as chunks while it is serialized, instead of serializing
+     * it in memory first. The digest is written in chunks even if it is smaller than a chunk
+     * @return size of the serialized digest
+     */
+    private long addStreamedTxDigest(UUID digestId, StagingTable transactionDigest) throws MDBCServiceException {
+        DigestChunkWriter writer = new DigestChunkWriter(digestChunkThreads, digestChunkBytes,
+            2 * DIGEST_CHUNK_THREADS, (chunk, data) -> addChunk(musicTxDigestChunksTableName, digestId, chunk, data));
+        try {
+            transactionDigest.writeStagingAndClean(writer, useCompression);
+            List<Long> checksums = writer.finish();
+            waitForChunks(digestId, writer.getWrites());
+            addTxDigestHeader(digestId, checksums);
+        } catch (IOException | MDBCServiceException e) {
+            finishQuietly(writer.getWrites());
+            deleteChunks(musicTxDigestChunksTableName, digestId);
+            if (e instanceof MDBCServiceException) {
+                throw (MDBCServiceException) e;
+            }
+            throw new MDBCServiceException("Failure streaming the chunks of digest "+digestId, e);
+        }
+        logger.debug(EELFLoggerDelegate.applicationLogger, "Digest "+digestId+" streamed in "
+            +writer.getWrites().size()+" chunks of "+digestChunkBytes+" bytes");
+        return writer.size();
+    }
+
+    private void addTxDigestHeader(UUID digestId, List<Long> checksums) throws MDBCServiceException {
+        PreparedQueryObject query = new PreparedQueryObject();
+        String cql = String.format("INSERT INTO %s.%s (txid,compressed,chunks,checksums) VALUES (?,?,?,?);",
+            this.music_ns, this.musicTxDigestTableName);
+        query.appendQueryString(cql);
+        query.addValue(digestId);
+        query.addValue(useCompression);
+        query.addValue(checksums.size());
+        query.addValue(checksums);
+        try {
+            MusicCore.nonKeyRelatedPut(query,"critical");
+        } catch (MusicServiceException|MusicQueryException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "Failure when writing the header of digest "+digestId);
+            throw new MDBCServiceException("Transaction Digest header for digest id "+digestId.toString(), e);
+        }
+    }
+
+    /**
+     * Removes the chunks of a digest or snapshot whose header was not written, readers never see them
+     * @param chunksTable table of the chunks, with the layout of {@link #createMusicTxDigestChunksTable}
+     */
+    private void deleteChunks(String chunksTable, UUID digestId) {
+        PreparedQueryObject query = new PreparedQueryObject();
+        query.appendQueryString(String.format("DELETE FROM %s.%s WHERE txid = ?;", this.music_ns, chunksTable));
+        query.addValue(digestId);
+        try {
+            MusicCore.nonKeyRelatedPut(query,"eventual");
+        } catch (MusicServiceException|MusicQueryException e) {
+            logger.warn(EELFLoggerDelegate.applicationLogger, "Unable to delete the chunks of "+digestId+" in "
+                +chunksTable+", they are not referenced by any header");
+        }
+    }
+
+    private void addChunk(String chunksTable, UUID digestId, int chunk, ByteBuffer data)
+        throws MDBCServiceException {
+        PreparedQueryObject query = new PreparedQueryObject();
+        String cql = String.format("INSERT INTO %s.%s (txid,chunk,data) VALUES (?,?,?);", this.music_ns,
+            chunksTable);
+        query.appendQueryString(cql);
+        query.addValue(digestId);
+        query.addValue(chunk);
+        query.addValue(data);
+        try {
+            MusicCore.nonKeyRelatedPut(query,"critical");
+        } catch (MusicServiceException|MusicQueryException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "Failure when writing chunk "+chunk+" of "+digestId+" in "
+                +chunksTable);
+            throw new MDBCServiceException("Chunk "+chunk+" of "+digestId.toString()+" in "+chunksTable, e);
+        }
+    }
+
+    private ByteBuffer getChunk(String chunksTable, UUID digestId, int chunk) throws MDBCServiceException {
+        String cql = String.format("SELECT data FROM %s.%s WHERE txid = ? AND chunk = ?;", music_ns,
+            chunksTable);
+        PreparedQueryObject pQueryObject = new PreparedQueryObject();
+        pQueryObject.appendQueryString(cql);
+        pQueryObject.addValue(digestId);
+        pQueryObject.addValue(chunk);
+        ResultSet result = MusicCore.quorumGet(pQueryObject);
+        if (result == null || result.isExhausted()) {
+            return null;
+        }
+        return result.one().getBytes("data");
+    }
+
+    /**
+     * Reads the chunks of a digest or snapshot in parallel and joins them, after checking them against the header
+     */
+    private ByteBuffer getChunked(String chunksTable, UUID digestId, int chunks, List<Long> checksums)
+        throws MDBCServiceException {
+        List<Future<ByteBuffer>> reads = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int chunk = i;
+            reads.add(digestChunkThreads.submit(() -> getChunk(chunksTable, digestId, chunk)));
+        }
+        waitForChunks(digestId, reads);
+        List<ByteBuffer> data = new ArrayList<>(chunks);
+        for (Future<ByteBuffer> read : reads) {
+            try {
+                data.add(read.get());
+            } catch (InterruptedException|ExecutionException e) {
+                throw new MDBCServiceException("Failure reading the chunks of digest "+digestId, e);
+            }
+        }
+        return DigestChunks.join(data, checksums);
+    }
+
+    /**
+     * Cancels the operations that didn't start and waits for the running ones, they read the buffer of the caller,
+     * which can be reused once the caller returns
+     */
+    private static void finishQuietly(List<? extends Future<?>> operations) {
+        boolean interrupted = Thread.interrupted();
+        for (Future<?> operation : operations) {
+            if (operation.cancel(false)) {
+                continue;
+            }
+            while (true) {
+                try {
+                    operation.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    //only the first failure is reported
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitForChunks(UUID digestId, List<? extends Future<?>> operations) throws MDBCServiceException {
+        try {
+            for (Future<?> operation : operations) {
+                operation.get();
+            }
+        } catch (InterruptedException e) {
+            finishQuietly(operations);
+            Thread.currentThread().interrupt();
+            throw new MDBCServiceException("Interrupted while transferring the chunks of digest "+digestId, e);
+        } catch (ExecutionException e) {
+            finishQuietly(operations);
+            logger.error(EELFLoggerDelegate.errorLogger, "Failure transferring the chunks of digest "+digestId,
+                e.getCause());
+            throw new MDBCServiceException("Failure transferring the chunks of digest "+digestId, e.getCause());
+        }
+    }
+    
     /**
      * Writes the Eventual transaction history to the evetxDigest
      */
     @Override
     public void addEventualTxDigest(MusicTxDigestId newId, ByteBuffer transactionDigest) throws MDBCServiceException {
-        //createTxDigestRow(music_ns,musicTxDigestTable,newId,transactionDigest);
+        //the time id is generated here, so the bucket is consistent with it
+        UUID txTimeId = MDBCUtils.generateTimebasedUniqueKey();
         PreparedQueryObject query = new PreparedQueryObject();
-        int year = java.util.Calendar.getInstance().get(java.util.Calendar.YEAR);
-        
-        String cql = String.format("INSERT INTO %s.%s (txid,transactiondigest,compressed,year,txTimeId ) VALUES (?,?,?,?,now());",this.music_ns,
-                this.musicEventualTxDigestTableName);
-            query.appendQueryString(cql);
-            query.addValue( newId.transactionId);
-            query.addValue(transactionDigest);
-            query.addValue(useCompression);
-            query.addValue(year);
-           // query.appendQueryString(cqlQuery);
-        //\TODO check if I am not shooting on my own foot
+        String cql = String.format("INSERT INTO %s.%s (bucket,txtimeid,txid,transactiondigest,compressed) VALUES (?,?,?,?,?);",
+            this.music_ns, this.musicEventualTxDigestTableName);
+        query.appendQueryString(cql);
+        query.addValue(getEventualDigestBucket(txTimeId));
+        query.addValue(txTimeId);
+        query.addValue(newId.transactionId);
+        query.addValue(transactionDigest);
+        query.addValue(useCompression);
         try {
             MusicCore.nonKeyRelatedPut(query,"critical");
         } catch (MusicServiceException e) {
@@ -1837,6 +2255,7 @@ public class MusicMixin implements MusicInterface {
 
     @Override
     public StagingTable getTxDigest(MusicTxDigestId id) throws MDBCServiceException {
+        MdbcEvents.DigestRead event = MdbcEvents.digestRead();
         String cql = String.format("SELECT * FROM %s.%s WHERE txid = ?;", music_ns, musicTxDigestTableName);
         PreparedQueryObject pQueryObject = new PreparedQueryObject();
         pQueryObject.appendQueryString(cql);
@@ -1848,70 +2267,265 @@ public class MusicMixin implements MusicInterface {
             logger.error("Get operation error: Failure to get row from txdigesttable with id:"+id.transactionId);
             throw new MDBCServiceException("Initialization error:Failure to add new row to transaction information", e);
         }
-        ByteBuffer digest = newRow.getBytes("transactiondigest");
+        ByteBuffer digest;
+        int chunks = 0;
+        //tables created before chunked digests were introduced don't have the header columns
+        if (newRow.getColumnDefinitions().contains("chunks") && !newRow.isNull("chunks")) {
+            chunks = newRow.getInt("chunks");
+            digest = getChunked(musicTxDigestChunksTableName, id.transactionId, chunks,
+                newRow.getList("checksums", Long.class));
+        }
+        else {
+            digest = newRow.getBytes("transactiondigest");
+        }
         Boolean compressed = newRow.getBool("compressed");
-        StagingTable changes;
+        event.finish(id.mriId, id.transactionId, (digest == null) ? 0 : digest.remaining(), chunks,
+            Boolean.TRUE.equals(compressed));
+        //decoded while it is replayed, see StagingTable#readOperations
+        return new StagingTable(digest, compressed);
+    }
+
+    public LinkedHashMap<UUID, StagingTable> getEveTxDigest(String nodeName) throws MDBCServiceException {
+        return getEveTxDigest(nodeName, EVENTUAL_DIGEST_PAGE_SIZE);
+    }
+
+    @Override
+    public LinkedHashMap<UUID, StagingTable> getEveTxDigest(String nodeName, int limit) throws MDBCServiceException {
+        LinkedHashMap<UUID, StagingTable> ecDigestInformation = new LinkedHashMap<>();
+        UUID musicevetxdigestNodeinfoTimeID = getTxTimeIdFromNodeInfo(nodeName);
+        long currentBucket = System.currentTimeMillis() / EVENTUAL_DIGEST_BUCKET_MS;
+        Long firstBucket = eventualDigestCursors.get(nodeName);
+        if (musicevetxdigestNodeinfoTimeID != null) {
+            long nodeInfoBucket = getEventualDigestBucket(musicevetxdigestNodeinfoTimeID);
+            firstBucket = (firstBucket == null) ? nodeInfoBucket : Math.max(firstBucket, nodeInfoBucket);
+        }
+        else if (firstBucket == null) {
+            //only scanned once, digests written later go to the current buckets
+            firstBucket = getFirstEventualDigestBucket();
+            if (firstBucket == null) {
+                firstBucket = currentBucket - 1;
+            }
+            eventualDigestCursors.put(nodeName, firstBucket);
+        }
+        //one extra bucket, to tolerate writers with their clock slightly ahead
+        long lastBucket = Math.min(currentBucket + 1, firstBucket + EVENTUAL_DIGEST_BUCKETS_PER_CALL - 1);
+        boolean skipping = true;
+        for (long bucket = firstBucket; bucket <= lastBucket && ecDigestInformation.size() < limit; bucket++) {
+            int read = ecDigestInformation.size();
+            PreparedQueryObject pQueryObject = new PreparedQueryObject();
+            StringBuilder cql = new StringBuilder(String.format("SELECT txtimeid, transactiondigest, compressed FROM %s.%s WHERE bucket = ?",
+                music_ns, this.musicEventualTxDigestTableName));
+            pQueryObject.addValue(bucket);
+            if (musicevetxdigestNodeinfoTimeID != null) {
+                cql.append(" AND txtimeid > ?");
+                pQueryObject.addValue(musicevetxdigestNodeinfoTimeID);
+            }
+            cql.append(" LIMIT ").append(limit - ecDigestInformation.size()).append(";");
+            pQueryObject.appendQueryString(cql.toString());
+            //the driver fetches the rows of the bucket in pages while iterating
+            ResultSet rs = executeMusicRead(pQueryObject);
+            for (Row row : rs) {
+                ByteBuffer digest = row.getBytes("transactiondigest");
+                Boolean compressed = row.getBool("compressed");
+                UUID txTimeId = row.getUUID("txtimeid");
+                StagingTable changes;
+                try {
+                    if(compressed){
+                        digest=StagingTable.Decompress(digest);
+                    }
+                    changes = new StagingTable(digest);
+                } catch (MDBCServiceException e) {
+                    logger.error("Deserializng digest failed: "+e.getErrorMessage());
+                    throw e;
+                }
+                ecDigestInformation.put(txTimeId, changes);
+            }
+            //empty buckets before the last one are not written anymore, they are not read again
+            skipping = skipping && ecDigestInformation.size() == read && bucket < currentBucket - 1;
+            if (skipping) {
+                eventualDigestCursors.put(nodeName, bucket + 1);
+            }
+        }
+        return ecDigestInformation;
+    }
+
+    /**
+     * @return the oldest bucket of the eventual digest table, null if the table is empty
+     */
+    private Long getFirstEventualDigestBucket() throws MDBCServiceException {
+        PreparedQueryObject pQueryObject = new PreparedQueryObject();
+        pQueryObject.appendQueryString(String.format("SELECT DISTINCT bucket FROM %s.%s;", music_ns,
+            this.musicEventualTxDigestTableName));
+        Long first = null;
+        for (Row row : executeMusicRead(pQueryObject)) {
+            long bucket = row.getLong("bucket");
+            if (first == null || bucket < first) {
+                first = bucket;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * With digest chunks enabled the snapshot is streamed from its spill file into chunks, otherwise it is
+     * serialized in memory and written as a single blob
+     */
+    @Override
+    public void addRangeSnapshot(Range range, Pair<MriReference, MusicTxDigestId> position, StagingTable snapshot)
+        throws MDBCServiceException {
+        UUID snapshotId = MDBCUtils.generateTimebasedUniqueKey();
+        PreparedQueryObject query = new PreparedQueryObject();
+        query.addValue(range.getTable().toUpperCase());
+        query.addValue(snapshotId);
+        query.addValue(position.getLeft().getIndex());
+        query.addValue(position.getRight().transactionId);
+        query.addValue(useCompression);
+        if (digestChunkBytes > 0) {
+            List<Long> checksums = addStreamedRangeSnapshot(snapshotId, snapshot);
+            query.appendQueryString(String.format("INSERT INTO %s.%s (range,snapshotid,mrirow,digestid,compressed,"
+                + "chunks,checksums) VALUES (?,?,?,?,?,?,?);", this.music_ns, this.musicRangeSnapshotTableName));
+            query.addValue(checksums.size());
+            query.addValue(checksums);
+        }
+        else {
+            //serialized and compressed by the codec of this thread, only valid until it is used again
+            query.appendQueryString(String.format("INSERT INTO %s.%s (range,snapshotid,mrirow,digestid,compressed,"
+                + "snapshot) VALUES (?,?,?,?,?,?);", this.music_ns, this.musicRangeSnapshotTableName));
+            query.addValue(snapshot.getSerializedStagingAndClean(useCompression));
+        }
         try {
-            if(compressed){
-                digest = StagingTable.Decompress(digest);
+            MusicCore.nonKeyRelatedPut(query,"critical");
+        } catch (MusicServiceException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "Snapshot for range "+range+" could not be stored with error "
+                +e.getErrorMessage());
+            deleteChunks(musicRangeSnapshotChunksTableName, snapshotId);
+            throw new MDBCServiceException("Snapshot for range "+range, e);
+        } catch (MusicQueryException e) {
+            deleteChunks(musicRangeSnapshotChunksTableName, snapshotId);
+            throw new MDBCServiceException(e);
+        } finally {
+            DigestCodec.get().trim();
+        }
+    }
+
+    /**
+     * Streams the rows of a snapshot into chunks, the header row is written by the caller
+     * @return checksums of the chunks
+     */
+    private List<Long> addStreamedRangeSnapshot(UUID snapshotId, StagingTable snapshot) throws MDBCServiceException {
+        DigestChunkWriter writer = new DigestChunkWriter(digestChunkThreads, digestChunkBytes,
+            2 * DIGEST_CHUNK_THREADS, (chunk, data) -> addChunk(musicRangeSnapshotChunksTableName, snapshotId,
+            chunk, data));
+        try {
+            snapshot.writeStagingAndClean(writer, useCompression);
+            List<Long> checksums = writer.finish();
+            waitForChunks(snapshotId, writer.getWrites());
+            return checksums;
+        } catch (IOException | MDBCServiceException e) {
+            finishQuietly(writer.getWrites());
+            deleteChunks(musicRangeSnapshotChunksTableName, snapshotId);
+            if (e instanceof MDBCServiceException) {
+                throw (MDBCServiceException) e;
             }
-            changes = new StagingTable(digest);
-        } catch (MDBCServiceException e) {
-            logger.error("Deserializng digest failed with an exception:"+e.getErrorMessage());
-            throw e;
+            throw new MDBCServiceException("Failure streaming the chunks of snapshot "+snapshotId, e);
         }
-        return changes;
     }
 
     @Override
-    public LinkedHashMap<UUID, StagingTable> getEveTxDigest(String nodeName) throws MDBCServiceException {
-        int year = java.util.Calendar.getInstance().get(java.util.Calendar.YEAR);
-        StringBuffer yearSb = new StringBuffer();
-        String sep = "";
-        for (int y=2019; y<=year; y++) {
-            yearSb.append(sep);
-            yearSb.append(y);
-            sep = ",";
+    public RangeSnapshot getLatestRangeSnapshot(Range range) throws MDBCServiceException {
+        String cql = String.format("SELECT * FROM %s.%s WHERE range = ? LIMIT 1;", music_ns,
+            musicRangeSnapshotTableName);
+        PreparedQueryObject pQueryObject = new PreparedQueryObject();
+        pQueryObject.appendQueryString(cql);
+        pQueryObject.addValue(range.getTable().toUpperCase());
+        ResultSet rs = MusicCore.quorumGet(pQueryObject);
+        if(rs == null || rs.isExhausted()){
+            return null;
+        }
+        Row row = rs.one();
+        ByteBuffer serialized;
+        if (!row.isNull("chunks")) {
+            serialized = getChunked(musicRangeSnapshotChunksTableName, row.getUUID("snapshotid"), row.getInt("chunks"),
+                row.getList("checksums", Long.class));
+        }
+        else {
+            serialized = row.getBytes("snapshot");
         }
+        UUID mriRow = row.getUUID("mrirow");
+        //decoded while it is read, see StagingTable#readOperations
+        return new RangeSnapshot(row.getUUID("snapshotid"), range, new MriReference(mriRow),
+            new MusicTxDigestId(mriRow, row.getUUID("digestid"), -1),
+            new StagingTable(serialized, row.getBool("compressed")));
+    }
 
-        StagingTable changes;
-        String cql;
-        LinkedHashMap<UUID, StagingTable> ecDigestInformation = new LinkedHashMap<>();
-        UUID musicevetxdigestNodeinfoTimeID = getTxTimeIdFromNodeInfo(nodeName);
+    @Override
+    public Pair<MriReference, MusicTxDigestId> getLatestRangeSnapshotPosition(Range range) throws MDBCServiceException {
+        String cql = String.format("SELECT mrirow, digestid FROM %s.%s WHERE range = ? LIMIT 1;", music_ns,
+            musicRangeSnapshotTableName);
         PreparedQueryObject pQueryObject = new PreparedQueryObject();
+        pQueryObject.appendQueryString(cql);
+        pQueryObject.addValue(range.getTable().toUpperCase());
+        ResultSet rs = MusicCore.quorumGet(pQueryObject);
+        if(rs == null || rs.isExhausted()){
+            return null;
+        }
+        Row row = rs.one();
+        UUID mriRow = row.getUUID("mrirow");
+        return Pair.of(new MriReference(mriRow), new MusicTxDigestId(mriRow, row.getUUID("digestid"), -1));
+    }
 
-        if (musicevetxdigestNodeinfoTimeID != null) {
-            // this will fetch only few records based on the time-stamp condition.
-            cql = String.format("SELECT * FROM %s.%s WHERE year in (%s) AND txtimeid > ? LIMIT 10 ALLOW FILTERING;", music_ns, this.musicEventualTxDigestTableName, yearSb.toString());
-            pQueryObject.appendQueryString(cql);
-            pQueryObject.addValue(musicevetxdigestNodeinfoTimeID);
-        } else {
-            // This is going to Fetch all the Transactiondigest records from the musicevetxdigest table.
-            cql = String.format("SELECT * FROM %s.%s WHERE year in (%s) LIMIT 10 ALLOW FILTERING;", music_ns, this.musicEventualTxDigestTableName, yearSb.toString());
-            pQueryObject.appendQueryString(cql);
+    @Override
+    public Map<String, Map<Range, Pair<MriReference, MusicTxDigestId>>> getAllCheckpointLocations()
+        throws MDBCServiceException {
+        String cql = String.format("SELECT * FROM %s.%s;", music_ns, musicMdbcCheckpointsTableName);
+        Map<String, Map<Range, Pair<MriReference, MusicTxDigestId>>> checkpoints = new HashMap<>();
+        ResultSet rs = executeMusicRead(cql);
+        for (Row row : rs) {
+            UUID mriRow = row.getUUID("mridigest");
+            UUID digestId = row.getUUID("digestid");
+            if (mriRow == null || digestId == null) {
+                continue;
+            }
+            checkpoints.computeIfAbsent(row.getString("mdbcnode"), k -> new HashMap<>())
+                .put(new Range(row.getString("range")),
+                    Pair.of(new MriReference(mriRow), new MusicTxDigestId(mriRow, digestId, -1)));
         }
+        return checkpoints;
+    }
 
-        // I need to get a ResultSet of all the records and give each row to the below HashMap.
-        ResultSet rs = executeMusicRead(pQueryObject);
-        while (!rs.isExhausted()) {
-            Row row = rs.one();
-            ByteBuffer digest = row.getBytes("transactiondigest");
-            Boolean compressed = row.getBool("compressed");
-            //String txTimeId = row.getString("txtimeid"); //???
-            UUID txTimeId = row.getUUID("txtimeid");
+    /**
+     * The digests are deleted in batches of {@link #DELETE_DIGESTS_PER_QUERY}, the redo log of a row can be
+     * too long for a single IN restriction
+     */
+    @Override
+    public void deleteTxDigests(List<MusicTxDigestId> digests) throws MDBCServiceException {
+        for (int begin = 0; begin < digests.size(); begin += DELETE_DIGESTS_PER_QUERY) {
+            deleteTxDigestBatch(digests.subList(begin, Math.min(begin + DELETE_DIGESTS_PER_QUERY, digests.size())));
+        }
+    }
 
-            try {
-                if(compressed){
-                    digest=StagingTable.Decompress(digest);
-                }
-                changes = new StagingTable(digest);
-            } catch (MDBCServiceException e) {
-                logger.error("Deserializng digest failed: "+e.getErrorMessage());
-                throw e;
-            }
-            ecDigestInformation.put(txTimeId, changes);
+    private void deleteTxDigestBatch(List<MusicTxDigestId> digests) throws MDBCServiceException {
+        StringBuilder markers = new StringBuilder();
+        PreparedQueryObject query = new PreparedQueryObject();
+        for (MusicTxDigestId digest : digests) {
+            markers.append(markers.length() == 0 ? "?" : ",?");
+            query.addValue(digest.transactionId);
+        }
+        query.appendQueryString(String.format("DELETE FROM %s.%s WHERE txid IN (%s);", music_ns,
+            musicTxDigestTableName, markers));
+        PreparedQueryObject chunksQuery = new PreparedQueryObject();
+        chunksQuery.appendQueryString(String.format("DELETE FROM %s.%s WHERE txid IN (%s);", music_ns,
+            musicTxDigestChunksTableName, markers));
+        for (MusicTxDigestId digest : digests) {
+            chunksQuery.addValue(digest.transactionId);
+        }
+        try {
+            MusicCore.nonKeyRelatedPut(query,"eventual");
+            MusicCore.nonKeyRelatedPut(chunksQuery,"eventual");
+        } catch (MusicServiceException|MusicQueryException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "Failure when deleting transaction digests");
+            throw new MDBCServiceException("Error deleting transaction digests", e);
         }
-        return ecDigestInformation;
     }
 
     ResultSet getAllMriCassandraRows() throws MDBCServiceException {
@@ -2159,6 +2773,7 @@ public class MusicMixin implements MusicInterface {
         }
         
         //merge is necessary
+        OwnershipMetrics.MERGES.increment();
         List<MusicRangeInformationRow> changed = setReadOnlyAnyDoubleRow(currentlyOwned, locksForOwnership);
         releaseLocks(changed, locksForOwnership);
         
@@ -2193,6 +2808,7 @@ public class MusicMixin implements MusicInterface {
         }
 
         //split partition
+        OwnershipMetrics.SPLITS.increment();
         logger.info(EELFLoggerDelegate.applicationLogger, "Full partition not being used need (" + rangesUsed
                 +") and own (" + rangesOwned + ", splitting the partition");
         Set<UUID> prevPartitions = new HashSet<>();
@@ -2287,18 +2903,22 @@ public class MusicMixin implements MusicInterface {
     }
 
     @Override
-    public void relinquishIfRequired(DatabasePartition partition) throws MDBCServiceException {
-        if(!canTryRelinquishing() || !partition.isLocked()){
-            return;
-        }
-        long lockQueueSize;
+    public long getLockQueueSize(UUID mriIndex) throws MDBCServiceException {
         try {
-            String fullyQualifiedKey= music_ns+"."+ this.musicRangeInformationTableName+"."+partition.getMRIIndex().toString();
-            lockQueueSize = MusicCore.getLockQueueSize(fullyQualifiedKey);
+            String fullyQualifiedKey= music_ns+"."+ this.musicRangeInformationTableName+"."+mriIndex.toString();
+            return MusicCore.getLockQueueSize(fullyQualifiedKey);
         } catch (MusicServiceException|MusicQueryException|MusicLockingException e) {
             logger.error("Error obtaining the lock queue size");
             throw new MDBCServiceException("Error obtaining lock queue size: " + e.getMessage(), e);
         }
+    }
+
+    @Override
+    public void relinquishIfRequired(DatabasePartition partition) throws MDBCServiceException {
+        if(!canTryRelinquishing() || !partition.isLocked()){
+            return;
+        }
+        long lockQueueSize = getLockQueueSize(partition.getMRIIndex());
         if(lockQueueSize> 1){
             //If there is any other node waiting, we just relinquish ownership
             try {
@@ -2526,7 +3146,7 @@ public class MusicMixin implements MusicInterface {
                 pQueryObject, null);
         } catch (MusicLockingException|MusicQueryException|MusicServiceException e) {
             logger.error("Failure when deleting mri row");
-            new MDBCServiceException("Error deleting mri row",e);
+            throw new MDBCServiceException("Error deleting mri row",e);
         }
     }
 
@@ -2553,7 +3173,7 @@ public class MusicMixin implements MusicInterface {
     }
 
     @Override
-    public void updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer) {
+    public boolean updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer) {
         String cql = String.format("INSERT INTO %s.%s (mdbcnode, range, mridigest, digestid) VALUES ('%s', '%s', %s, %s);",
                 music_ns, this.musicMdbcCheckpointsTableName, this.stateManager.getMdbcServerName(), r.getTable(),
                 playbackPointer.getLeft().getIndex(), playbackPointer.getRight().transactionId);
@@ -2561,11 +3181,13 @@ public class MusicMixin implements MusicInterface {
         pQueryObject.appendQueryString(cql);
         try {
             MusicCore.nonKeyRelatedPut(pQueryObject,"eventual");
+            return true;
         } catch (MusicServiceException e) {
             logger.warn(EELFLoggerDelegate.applicationLogger, "Unable to update the checkpoint location", e);
         } catch (MusicQueryException e) {
             logger.warn(EELFLoggerDelegate.applicationLogger, "Unable to update the checkpoint location with query", e); 
         }
+        return false;
     }
 
     
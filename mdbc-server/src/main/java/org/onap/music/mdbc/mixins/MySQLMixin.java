@@ -19,6 +19,11 @@
  */
 package org.onap.music.mdbc.mixins;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -26,6 +31,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -44,10 +50,13 @@ import org.onap.music.mdbc.Configuration;
 import org.onap.music.mdbc.MDBCUtils;
 import org.onap.music.mdbc.Range;
 import org.onap.music.mdbc.TableInfo;
+import org.onap.music.mdbc.metrics.jfr.MdbcEvents;
 import org.onap.music.mdbc.query.SQLOperation;
+import org.onap.music.mdbc.tables.DigestReader;
 import org.onap.music.mdbc.tables.MriReference;
 import org.onap.music.mdbc.tables.MusicTxDigestId;
 import org.onap.music.mdbc.tables.Operation;
+import org.onap.music.mdbc.tables.RangeSnapshotFile;
 import org.onap.music.mdbc.tables.StagingTable;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
@@ -89,6 +98,12 @@ public class MySQLMixin implements DBInterface {
     private static final String CKPT_TBL = "MDBC_CHECKPOINT";
     private static final String CREATE_CKPT_SQL =
             "CREATE TABLE IF NOT EXISTS " + CKPT_TBL + " (RANGENAME VARCHAR(64) PRIMARY KEY, MRIROW VARCHAR(36), DIGESTID VARCHAR(36));";
+    /** maximum number of parameters of a multi-row statement used by the bulk replay */
+    private static final int BULK_REPLAY_MAX_PARAMETERS = 10000;
+    /** rows fetched from the server at a time while a range snapshot is read */
+    private static final int SNAPSHOT_FETCH_ROWS = 1000;
+    /** session variable that stops the triggers from recording the changes, while it is not null */
+    private static final String SUPPRESS_CAPTURE_VAR = "@MDBC_SUPPRESS_CAPTURE";
 
     private final MusicInterface mi;
     private final int connId;
@@ -100,6 +115,8 @@ public class MySQLMixin implements DBInterface {
     private Object stagingHandlerLock = new Object();
     private AsyncUpdateHandler stagingHandler = null;
     private StagingTable currentStaging = null;
+    /** digests with at least this number of operations are replayed in bulk, non positive disables it */
+    private int bulkReplayRows = 0;
 
     public MySQLMixin() {
         this.mi = null;
@@ -118,6 +135,8 @@ public class MySQLMixin implements DBInterface {
         this.tables = new HashMap<String, TableInfo>();
         useAsyncStagingUpdate = Boolean.parseBoolean(info.getProperty(Configuration.KEY_ASYNC_STAGING_TABLE_UPDATE,
                 Configuration.ASYNC_STAGING_TABLE_UPDATE));
+        bulkReplayRows = Integer.parseInt(info.getProperty(Configuration.KEY_BULK_REPLAY_ROWS,
+                Configuration.BULK_REPLAY_ROWS_DEFAULT));
         this.deleteStagingStatement = getStagingDeletePreparedStatement();
     }
 
@@ -428,11 +447,12 @@ public class MySQLMixin implements DBInterface {
         StringBuilder sb = new StringBuilder().append("CREATE TRIGGER ") // IF NOT EXISTS not supported by MySQL!
                 .append(String.format("%s_%s", op.substring(0, 1), tableName)).append(" AFTER ").append(op)
                 .append(" ON ").append(tableName).append(" FOR EACH ROW INSERT INTO ").append(TRANS_TBL)
-                .append(" (SCHEMANAME, TABLENAME, OP, KEYDATA, ROWDATA, CONNECTION_ID) VALUES('")
+                .append(" (SCHEMANAME, TABLENAME, OP, KEYDATA, ROWDATA, CONNECTION_ID) SELECT '")
                 .append((schema == null) ? this.getSchema() : schema).append("', '").append(tableName).append("', ")
                 .append(isdelete ? "'D'" : (op.equals("INSERT") ? "'I'" : "'U'")).append(", ")
                 .append((keyJson.length() > "JSON_OBJECT()".length()) ? keyJson.toString() : "NULL").append(", ")
-                .append(newJson.toString()).append(", ").append("CONNECTION_ID()").append(")");
+                .append(newJson.toString()).append(", ").append("CONNECTION_ID()")
+                .append(" FROM DUAL WHERE ").append(SUPPRESS_CAPTURE_VAR).append(" IS NULL");
         return sb.toString();
     }
 
@@ -669,6 +689,7 @@ public class MySQLMixin implements DBInterface {
     private void updateStagingTable(StagingTable transactionDigests) throws NoSuchFieldException, MDBCServiceException {
         // copy from DB.MDBC_TRANSLOG where connid == myconnid
         // then delete from MDBC_TRANSLOG
+        MdbcEvents.Harvest event = MdbcEvents.harvest();
         String sql2 = "SELECT IX, SCHEMANAME, TABLENAME, OP, ROWDATA, KEYDATA FROM " + TRANS_TBL
                 + " WHERE CONNECTION_ID = " + this.connId;
         Integer biggestIx = Integer.MIN_VALUE;
@@ -700,6 +721,7 @@ public class MySQLMixin implements DBInterface {
                         + "]");
                 this.deleteStagingStatement.execute();
             }
+            event.finish(String.valueOf(this.connId), rows.size());
         } catch (SQLException e) {
             logger.warn("Exception in postStatementHook: " + e);
             e.printStackTrace();
@@ -899,28 +921,80 @@ public class MySQLMixin implements DBInterface {
      */
     public void replayTransaction(StagingTable transaction)
             throws SQLException, MDBCServiceException {
+        replayTransactions(Collections.singletonList(transaction));
+    }
+
+    /**
+     * Replay several digests as a single local transaction, rolling back all of them if any operation fails
+     * @param transactions digests, in the order they should be applied
+     */
+    private void replayTransactions(List<StagingTable> transactions)
+            throws SQLException, MDBCServiceException {
         boolean autocommit = jdbcConn.getAutoCommit();
         jdbcConn.setAutoCommit(false);
-        Statement jdbcStmt = jdbcConn.createStatement();
-        ArrayList<Operation> opList = transaction.getOperationList();
-
-        for (Operation op : opList) {
-                try {
-                    replayOperationIntoDB(jdbcStmt, op);
-                } catch (SQLException | MDBCServiceException e) {
-                    // rollback transaction
-                    logger.error("Unable to replay: " + op.getOperationType() + "->" + op.getVal() + "."
-                            + "Rolling back the entire digest replay.");
-                    jdbcConn.rollback();
-                    throw e;
+        try (Statement jdbcStmt = jdbcConn.createStatement()) {
+            for (StagingTable transaction : transactions) {
+                try (DigestReader reader = transaction.readOperations()) {
+                    replayOperations(jdbcStmt, reader);
                 }
+            }
+            clearReplayedOperations(jdbcStmt);
+            jdbcConn.commit();
+        } catch (SQLException | MDBCServiceException | RuntimeException e) {
+            // rollback transaction
+            logger.error("Unable to replay a digest. Rolling back the replay of " + transactions.size()
+                    + " digests.");
+            try {
+                jdbcConn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            //restored after the rollback, so the failed replay is not committed
+            jdbcConn.setAutoCommit(autocommit);
         }
+    }
 
-        clearReplayedOperations(jdbcStmt);
-        jdbcConn.commit();
-        jdbcStmt.close();
+    /**
+     * Replays the operations of a digest while they are decoded. Digests with at least bulkReplayRows operations
+     * are replayed in bulk, in chunks of that size, so at most one chunk of decoded operations is kept in memory
+     * @param jdbcStmt
+     * @param reader operations of the digest
+     */
+    private void replayOperations(Statement jdbcStmt, DigestReader reader) throws SQLException, MDBCServiceException {
+        if (bulkReplayRows <= 0) {
+            while (reader.hasNext()) {
+                replayOperation(jdbcStmt, reader.next());
+            }
+            return;
+        }
+        List<Operation> chunk = new ArrayList<>();
+        boolean bulk = false;
+        while (reader.hasNext()) {
+            chunk.add(reader.next());
+            if (chunk.size() >= bulkReplayRows) {
+                replayBulk(jdbcStmt, chunk);
+                chunk.clear();
+                bulk = true;
+            }
+        }
+        if (bulk) {
+            replayBulk(jdbcStmt, chunk);
+            return;
+        }
+        for (Operation op : chunk) {
+            replayOperation(jdbcStmt, op);
+        }
+    }
 
-        jdbcConn.setAutoCommit(autocommit);
+    private void replayOperation(Statement jdbcStmt, Operation op) throws SQLException, MDBCServiceException {
+        try {
+            replayOperationIntoDB(jdbcStmt, op);
+        } catch (SQLException | MDBCServiceException e) {
+            logger.error("Unable to replay: " + op.getOperationType() + "->" + op.getVal() + ".");
+            throw e;
+        }
     }
 
     @Override
@@ -942,6 +1016,89 @@ public class MySQLMixin implements DBInterface {
         replayTransaction(txDigest);
     }
 
+    @Override
+    public void applyTxDigests(List<StagingTable> txDigests) throws SQLException, MDBCServiceException {
+        replayTransactions(txDigests);
+    }
+
+    /**
+     * Replays a large digest with a multi-row statement per run of operations over the same table: inserts and
+     * updates are merged with INSERT ... ON DUPLICATE KEY UPDATE, deletes with a single DELETE by key.
+     * Operations that can't be merged are replayed row by row, see {@link ReplayRun}
+     *
+     * @param jdbcStmt
+     * @param opList operations of the digest
+     * @throws SQLException
+     * @throws MDBCServiceException
+     */
+    private void replayBulk(Statement jdbcStmt, List<Operation> opList) throws SQLException, MDBCServiceException {
+        List<ReplayRun> runs = ReplayRun.plan(opList, this::getReplayKeyColumns, MusicMixin.MDBC_PRIMARYKEY_NAME);
+        logger.debug("Bulk replay of " + opList.size() + " operations in " + runs.size() + " statements");
+        for (ReplayRun run : runs) {
+            if (run.type == null) {
+                replayOperationIntoDB(jdbcStmt, run.operation);
+                continue;
+            }
+            String row = "(" + String.join(",", Collections.nCopies(run.columns.size(), "?")) + ")";
+            if (run.type == SQLOperation.DELETE) {
+                executeBulk(run, "DELETE FROM " + run.table + " WHERE (" + String.join(",", run.keyColumns)
+                        + ") IN (", row, ");");
+            } else {
+                StringBuilder update = new StringBuilder();
+                String sep = "";
+                for (String col : run.columns) {
+                    update.append(sep).append(col).append("=VALUES(").append(col).append(")");
+                    sep = ", ";
+                }
+                executeBulk(run, "INSERT INTO " + run.table + " (" + String.join(",", run.columns) + ") VALUES ",
+                        row, " ON DUPLICATE KEY UPDATE " + update + ";");
+            }
+        }
+    }
+
+    /**
+     * Executes the statement for the rows of the run, split in chunks of at most {@link #BULK_REPLAY_MAX_PARAMETERS}
+     * parameters
+     */
+    private void executeBulk(ReplayRun run, String prefix, String row, String suffix) throws SQLException {
+        int rowsPerStatement = Math.max(1, BULK_REPLAY_MAX_PARAMETERS / run.columns.size());
+        Iterator<List<Object>> rows = run.rows.values().iterator();
+        List<List<Object>> chunk = new ArrayList<>(Math.min(rowsPerStatement, run.rows.size()));
+        while (rows.hasNext()) {
+            chunk.clear();
+            while (rows.hasNext() && chunk.size() < rowsPerStatement) {
+                chunk.add(rows.next());
+            }
+            StringBuilder sql = new StringBuilder(prefix);
+            sql.append(String.join(",", Collections.nCopies(chunk.size(), row)));
+            sql.append(suffix);
+            try (PreparedStatement stmt = jdbcConn.prepareStatement(sql.toString())) {
+                int index = 1;
+                for (List<Object> values : chunk) {
+                    for (Object val : values) {
+                        stmt.setObject(index++, val);
+                    }
+                }
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return the key columns of the table of the operation, as recorded by the triggers, or null if unknown
+     */
+    private List<String> getReplayKeyColumns(Operation op) {
+        JSONObject key;
+        try {
+            key = op.getKey();
+        } catch (MDBCServiceException e) {
+            return null;
+        }
+        TreeSet<String> keyColumns = new TreeSet<>(key.keySet());
+        keyColumns.remove(MusicMixin.MDBC_PRIMARYKEY_NAME);
+        return new ArrayList<>(keyColumns);
+    }
+
     /**
      * Replays operation into database, usually from txDigest
      * 
@@ -952,8 +1109,8 @@ public class MySQLMixin implements DBInterface {
      * @throws MDBCServiceException
      */
     private void replayOperationIntoDB(Statement jdbcStmt, Operation op) throws SQLException, MDBCServiceException {
-        logger.info("Replaying Operation: " + op.getOperationType() + "->" + op.getVal());
         JSONObject jsonOp = op.getVal();
+        logger.info("Replaying Operation: " + op.getOperationType() + "->" + jsonOp);
 
         ArrayList<String> cols = new ArrayList<String>();
         ArrayList<Object> vals = new ArrayList<Object>();
@@ -1148,7 +1305,7 @@ public class MySQLMixin implements DBInterface {
     }
 
     @Override
-    public void updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer) {
+    public boolean updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer) {
         String query = "UPDATE " + CKPT_TBL + " SET MRIROW=?, DIGESTID=? where RANGENAME=?;";
         try {
             PreparedStatement stmt = jdbcConn.prepareStatement(query);
@@ -1157,8 +1314,10 @@ public class MySQLMixin implements DBInterface {
             stmt.setString(3, r.getTable());
             stmt.execute();
             stmt.close();
+            return true;
         } catch (SQLException e) {
-            logger.error(EELFLoggerDelegate.errorLogger, "Unable to update replay checkpoint location");
+            logger.error(EELFLoggerDelegate.errorLogger, "Unable to update replay checkpoint location: " + e.getMessage());
+            return false;
         }
     }
 
@@ -1186,6 +1345,166 @@ public class MySQLMixin implements DBInterface {
         return alreadyApplied;
     }
     
+    /**
+     * The rows are streamed from the server, and the snapshot spills them to a file, so a large range is not
+     * held in the heap
+     */
+    @Override
+    public StagingTable getRangeSnapshot(Set<Range> ranges) throws SQLException, MDBCServiceException {
+        StagingTable snapshot = StagingTable.forSnapshot();
+        Statement stmt = jdbcConn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(SNAPSHOT_FETCH_ROWS);
+        try {
+            for (Range range : ranges) {
+                TableInfo ti = getTableInfo(range.getTable());
+                if (ti == null) {
+                    throw new MDBCServiceException("Unable to snapshot unknown table " + range.getTable());
+                }
+                ResultSet rs = stmt.executeQuery("SELECT * FROM " + range.getTable() + ";");
+                while (rs.next()) {
+                    JSONObject row = new JSONObject();
+                    JSONObject key = new JSONObject();
+                    for (String col : ti.columns) {
+                        String val = rs.getString(col);
+                        row.put(col, (val == null) ? JSONObject.NULL : val);
+                        if (ti.iskey(col)) {
+                            key.put(col, (val == null) ? JSONObject.NULL : val);
+                        }
+                    }
+                    snapshot.addOperation(range, SQLOperation.INSERT, row.toString(), key.toString());
+                }
+                rs.close();
+            }
+        } catch (SQLException | MDBCServiceException | RuntimeException e) {
+            snapshot.clear();
+            throw e;
+        } finally {
+            stmt.close();
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void applyRangeSnapshot(StagingTable snapshot, Set<Range> ranges)
+            throws SQLException, MDBCServiceException {
+        boolean autocommit = jdbcConn.getAutoCommit();
+        jdbcConn.setAutoCommit(false);
+        Statement jdbcStmt = jdbcConn.createStatement();
+        try {
+            for (Range range : ranges) {
+                jdbcStmt.executeUpdate("DELETE FROM " + range.getTable() + ";");
+            }
+            for (Operation op : snapshot.getOperationList()) {
+                replayOperationIntoDB(jdbcStmt, op);
+            }
+            clearReplayedOperations(jdbcStmt);
+            jdbcConn.commit();
+        } catch (SQLException | MDBCServiceException e) {
+            logger.error("Unable to apply snapshot for " + ranges + ". Rolling back.");
+            jdbcConn.rollback();
+            throw e;
+        } finally {
+            jdbcStmt.close();
+            jdbcConn.setAutoCommit(autocommit);
+        }
+    }
+
+    /**
+     * Streams the rows with multi-row INSERT statements. The foreign key checks and the mdbc triggers are disabled
+     * in the session during the load, triggers created before they could be disabled still record the rows, which
+     * are removed before committing.
+     */
+    @Override
+    public void bulkLoadRange(Range range, List<String> columns, InputStream rows)
+            throws SQLException, MDBCServiceException {
+        boolean autocommit = jdbcConn.getAutoCommit();
+        jdbcConn.setAutoCommit(false);
+        Statement jdbcStmt = jdbcConn.createStatement();
+        try {
+            jdbcStmt.execute("SET FOREIGN_KEY_CHECKS=0");
+            jdbcStmt.execute("SET " + SUPPRESS_CAPTURE_VAR + "=1");
+            jdbcStmt.executeUpdate("DELETE FROM " + range.getTable() + ";");
+            if (!columns.isEmpty()) {
+                insertRows(range, columns, rows);
+            }
+            clearReplayedOperations(jdbcStmt);
+            jdbcConn.commit();
+        } catch (SQLException | IOException | RuntimeException | Error e) {
+            //restoring the autocommit below would otherwise commit the partial load
+            logger.error("Unable to bulk load " + range + ". Rolling back.");
+            try {
+                jdbcConn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            if (e instanceof SQLException) {
+                throw (SQLException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw new MDBCServiceException("Error reading rows to bulk load into " + range, e);
+        } finally {
+            try {
+                jdbcStmt.execute("SET " + SUPPRESS_CAPTURE_VAR + "=NULL");
+                jdbcStmt.execute("SET FOREIGN_KEY_CHECKS=1");
+            } finally {
+                jdbcStmt.close();
+                jdbcConn.setAutoCommit(autocommit);
+            }
+        }
+    }
+
+    /**
+     * Inserts the rows, in the text format of {@link RangeSnapshotFile}, with statements of at most
+     * {@link #BULK_REPLAY_MAX_PARAMETERS} parameters
+     */
+    private void insertRows(Range range, List<String> columns, InputStream rows) throws SQLException, IOException {
+        int rowsPerStatement = Math.max(1, BULK_REPLAY_MAX_PARAMETERS / columns.size());
+        String prefix = "INSERT INTO " + range.getTable() + " (" + String.join(",", columns) + ") VALUES ";
+        String row = "(" + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+        String fullSql = prefix + String.join(",", Collections.nCopies(rowsPerStatement, row)) + ";";
+        BufferedReader reader = new BufferedReader(new InputStreamReader(rows, StandardCharsets.UTF_8));
+        List<List<String>> chunk = new ArrayList<>(rowsPerStatement);
+        try (PreparedStatement full = jdbcConn.prepareStatement(fullSql)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> fields = RangeSnapshotFile.parseRow(line);
+                if (fields.size() != columns.size()) {
+                    throw new IOException("Row with " + fields.size() + " fields, expected " + columns.size());
+                }
+                chunk.add(fields);
+                if (chunk.size() == rowsPerStatement) {
+                    insertChunk(full, chunk);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            try (PreparedStatement last = jdbcConn.prepareStatement(
+                    prefix + String.join(",", Collections.nCopies(chunk.size(), row)) + ";")) {
+                insertChunk(last, chunk);
+            }
+        }
+    }
+
+    private static void insertChunk(PreparedStatement stmt, List<List<String>> chunk) throws SQLException {
+        int index = 1;
+        for (List<String> fields : chunk) {
+            for (String field : fields) {
+                if (field == null) {
+                    stmt.setNull(index++, Types.VARCHAR);
+                } else {
+                    stmt.setString(index++, field);
+                }
+            }
+        }
+        stmt.executeUpdate();
+        chunk.clear();
+    }
+
     @Override
     public void initTables() {
         try {
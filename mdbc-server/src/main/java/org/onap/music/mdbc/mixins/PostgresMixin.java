@@ -19,6 +19,9 @@
  */
 package org.onap.music.mdbc.mixins;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -27,6 +30,7 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.delete.Delete;
@@ -41,12 +45,18 @@ import org.onap.music.mdbc.Configuration;
 import org.onap.music.mdbc.MDBCUtils;
 import org.onap.music.mdbc.Range;
 import org.onap.music.mdbc.TableInfo;
+import org.onap.music.mdbc.metrics.jfr.MdbcEvents;
 import org.onap.music.mdbc.mixins.MySQLMixin.StagingTableUpdateRunnable;
+import org.onap.music.mdbc.tables.DigestReader;
 import org.onap.music.mdbc.tables.MriReference;
 import org.onap.music.mdbc.tables.MusicTxDigestId;
 import org.onap.music.mdbc.tables.Operation;
+import org.onap.music.mdbc.tables.RangeSnapshotFile;
 import org.onap.music.mdbc.query.SQLOperation;
 import org.onap.music.mdbc.tables.StagingTable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 import org.postgresql.util.PGInterval;
 import org.postgresql.util.PGobject;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
@@ -80,6 +90,15 @@ public class PostgresMixin implements DBInterface {
     public static final String MIXIN_NAME = "postgres";
     public static final String TRANS_TBL_SCHEMA = "audit";
     public static final String TRANS_TBL = "mdbc_translog";
+    private static final String CKPT_TBL = "mdbc_checkpoint";
+    private static final String CREATE_CKPT_SQL = "CREATE TABLE IF NOT EXISTS " + TRANS_TBL_SCHEMA + "." + CKPT_TBL
+            + " (rangename VARCHAR(64) PRIMARY KEY, mrirow VARCHAR(36), digestid VARCHAR(36));";
+    /** temporary table that receives the rows of a bulk replay before merging them */
+    private static final String BULK_REPLAY_TBL = "mdbc_bulk_replay";
+    /** rows fetched from the server at a time while a range snapshot is read */
+    private static final int SNAPSHOT_FETCH_ROWS = 1000;
+    /** SQL state of the errors caused by a missing privilege */
+    private static final String INSUFFICIENT_PRIVILEGE = "42501";
 
     private final MusicInterface mi;
     private final String connId;
@@ -92,6 +111,8 @@ public class PostgresMixin implements DBInterface {
     private Object stagingHandlerLock = new Object();
     private AsyncUpdateHandler stagingHandler = null;
     private StagingTable currentStaging = null;
+    /** digests with at least this number of operations are replayed in bulk, non positive disables it */
+    private int bulkReplayRows = 0;
 
     public PostgresMixin() {
         this.mi = null;
@@ -117,6 +138,8 @@ public class PostgresMixin implements DBInterface {
         this.tables = new HashMap<>();
         useAsyncStagingUpdate = Boolean.parseBoolean(info.getProperty(Configuration.KEY_ASYNC_STAGING_TABLE_UPDATE,
                 Configuration.ASYNC_STAGING_TABLE_UPDATE));
+        bulkReplayRows = Integer.parseInt(info.getProperty(Configuration.KEY_BULK_REPLAY_ROWS,
+                Configuration.BULK_REPLAY_ROWS_DEFAULT));
         initializePostgresTriggersStructures();
         initializeDeleteStatement();
     }
@@ -750,6 +773,7 @@ public class PostgresMixin implements DBInterface {
      * @throws NoSuchFieldException
      */
     private void updateStagingTable(StagingTable transactionDigests) throws NoSuchFieldException, MDBCServiceException {
+        MdbcEvents.Harvest event = MdbcEvents.harvest();
         String selectSql = "select ix, op, schema_name, table_name, original_data,new_data FROM " + TRANS_TBL_SCHEMA
                 + "." + TRANS_TBL + " where connection_id = '" + this.connId + "';";
         Integer biggestIx = Integer.MIN_VALUE;
@@ -780,6 +804,7 @@ public class PostgresMixin implements DBInterface {
                 this.deleteStagingStatement.setString(3, this.connId);
                 this.deleteStagingStatement.execute();
             }
+            event.finish(String.valueOf(this.connId), rows.size());
         } catch (SQLException e) {
             logger.warn("Exception in postStatementHook: " + e);
             e.printStackTrace();
@@ -821,34 +846,109 @@ public class PostgresMixin implements DBInterface {
     @Override
     public void replayTransaction(StagingTable transaction)
             throws SQLException, MDBCServiceException {
+        replayTransactions(Collections.singletonList(transaction));
+    }
+
+    /**
+     * Replay several digests as a single local transaction, rolling back all of them if any operation fails
+     * @param transactions digests, in the order they should be applied
+     */
+    private void replayTransactions(List<StagingTable> transactions)
+            throws SQLException, MDBCServiceException {
         boolean autocommit = jdbcConn.getAutoCommit();
         jdbcConn.setAutoCommit(false);
-        Statement jdbcStmt = jdbcConn.createStatement();
-        final ArrayList<Operation> opList = transaction.getOperationList();
-
-        for (Operation op : opList) {
-                try {
-                    replayOperationIntoDB(jdbcStmt, op);
-                } catch (SQLException | MDBCServiceException e) {
-                    // rollback transaction
-                    logger.error("Unable to replay: " + op.getOperationType() + "->" + op.getVal() + "."
-                            + "Rolling back the entire digest replay.");
-                    jdbcConn.rollback();
-                    throw e;
+        try (Statement jdbcStmt = jdbcConn.createStatement()) {
+            for (StagingTable transaction : transactions) {
+                try (DigestReader reader = transaction.readOperations()) {
+                    replayOperations(jdbcStmt, reader);
                 }
+            }
+            clearReplayedOperations(jdbcStmt);
+            jdbcConn.commit();
+        } catch (SQLException | MDBCServiceException | RuntimeException e) {
+            // rollback transaction
+            logger.error("Unable to replay a digest. Rolling back the replay of " + transactions.size()
+                    + " digests.");
+            try {
+                jdbcConn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            //restored after the rollback, so the failed replay is not committed
+            jdbcConn.setAutoCommit(autocommit);
+        }
+    }
+
+    /**
+     * Replays the operations of a digest while they are decoded. Digests with at least bulkReplayRows operations
+     * are replayed in bulk, in chunks of that size, so at most one chunk of decoded operations is kept in memory
+     * @param jdbcStmt
+     * @param reader operations of the digest
+     */
+    private void replayOperations(Statement jdbcStmt, DigestReader reader) throws SQLException, MDBCServiceException {
+        if (bulkReplayRows <= 0) {
+            while (reader.hasNext()) {
+                replayOperation(jdbcStmt, reader.next());
+            }
+            return;
+        }
+        List<Operation> chunk = new ArrayList<>();
+        boolean bulk = false;
+        while (reader.hasNext()) {
+            chunk.add(reader.next());
+            if (chunk.size() >= bulkReplayRows) {
+                replayBulk(jdbcStmt, chunk);
+                chunk.clear();
+                bulk = true;
+            }
         }
+        if (bulk) {
+            replayBulk(jdbcStmt, chunk);
+            return;
+        }
+        for (Operation op : chunk) {
+            replayOperation(jdbcStmt, op);
+        }
+    }
 
-        clearReplayedOperations(jdbcStmt);
-        jdbcConn.commit();
-        jdbcStmt.close();
-        jdbcConn.setAutoCommit(autocommit);
+    private void replayOperation(Statement jdbcStmt, Operation op) throws SQLException, MDBCServiceException {
+        try {
+            replayOperationIntoDB(jdbcStmt, op);
+        } catch (SQLException | MDBCServiceException e) {
+            logger.error("Unable to replay: " + op.getOperationType() + "->" + op.getVal() + ".");
+            throw e;
+        }
     }
 
+    /**
+     * Runs the session as a replica, which also disables the mdbc triggers. It requires the database user of mdbc
+     * to be a superuser (or, from Postgres 15, to be granted SET on session_replication_role)
+     */
     @Override
     public void disableForeignKeyChecks() throws SQLException {
         Statement disable = jdbcConn.createStatement();
-        disable.execute("SET session_replication_role = 'replica';");
-        disable.closeOnCompletion();
+        try {
+            setReplicationRole(disable, "SET session_replication_role = 'replica';");
+        } finally {
+            disable.close();
+        }
+    }
+
+    /**
+     * @throws SQLException with the missing privilege in the message when the user can't change the role
+     */
+    private void setReplicationRole(Statement stmt, String sql) throws SQLException {
+        try {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            if (INSUFFICIENT_PRIVILEGE.equals(e.getSQLState())) {
+                throw new SQLException("The database user of mdbc can't change session_replication_role, it should "
+                    + "be a superuser or be granted SET on the parameter", e.getSQLState(), e);
+            }
+            throw e;
+        }
     }
 
     @Override
@@ -863,6 +963,100 @@ public class PostgresMixin implements DBInterface {
         replayTransaction(txDigest);
     }
 
+    @Override
+    public void applyTxDigests(List<StagingTable> txDigests) throws SQLException, MDBCServiceException {
+        replayTransactions(txDigests);
+    }
+
+    /**
+     * Replays a large digest run by run (see {@link ReplayRun}). The rows of each run are streamed with COPY into
+     * a temporary table, and merged into the table with a single INSERT ... ON CONFLICT or DELETE ... USING.
+     * Operations that can't be merged are replayed row by row
+     *
+     * @param jdbcStmt: Connection used to perform the replay
+     * @param opList: operations of the digest
+     * @throws SQLException
+     * @throws MDBCServiceException
+     */
+    private void replayBulk(Statement jdbcStmt, List<Operation> opList) throws SQLException, MDBCServiceException {
+        List<ReplayRun> runs = ReplayRun.plan(opList, this::getReplayKeyColumns, MusicMixin.MDBC_PRIMARYKEY_NAME);
+        logger.debug("Bulk replay of " + opList.size() + " operations in " + runs.size() + " statements");
+        for (ReplayRun run : runs) {
+            if (run.type == null) {
+                replayOperationIntoDB(jdbcStmt, run.operation);
+                continue;
+            }
+            String columns = String.join(",", run.columns);
+            jdbcStmt.execute("CREATE TEMP TABLE " + BULK_REPLAY_TBL + " ON COMMIT DROP AS SELECT " + columns
+                    + " FROM " + run.table + " WITH NO DATA;");
+            copyRows(run, BULK_REPLAY_TBL);
+            if (run.type == SQLOperation.DELETE) {
+                StringBuilder join = new StringBuilder();
+                String and = "";
+                for (String col : run.keyColumns) {
+                    join.append(and).append("t.").append(col).append("=s.").append(col);
+                    and = " AND ";
+                }
+                jdbcStmt.executeUpdate("DELETE FROM " + run.table + " t USING " + BULK_REPLAY_TBL + " s WHERE "
+                        + join + ";");
+            } else {
+                StringBuilder update = new StringBuilder();
+                String sep = "";
+                for (String col : run.columns) {
+                    if (!run.keyColumns.contains(col)) {
+                        update.append(sep).append(col).append("=EXCLUDED.").append(col);
+                        sep = ", ";
+                    }
+                }
+                jdbcStmt.executeUpdate("INSERT INTO " + run.table + " (" + columns + ") SELECT " + columns + " FROM "
+                        + BULK_REPLAY_TBL + " ON CONFLICT (" + String.join(",", run.keyColumns) + ") DO "
+                        + ((update.length() == 0) ? "NOTHING;" : "UPDATE SET " + update + ";"));
+            }
+            jdbcStmt.execute("DROP TABLE " + BULK_REPLAY_TBL + ";");
+        }
+    }
+
+    /**
+     * Streams the rows of the run into the table with COPY FROM STDIN, in text format
+     */
+    private void copyRows(ReplayRun run, String tableName) throws SQLException {
+        CopyManager copyManager = jdbcConn.unwrap(PGConnection.class).getCopyAPI();
+        CopyIn copyIn = copyManager.copyIn("COPY " + tableName + " (" + String.join(",", run.columns)
+                + ") FROM STDIN");
+        try {
+            StringBuilder line = new StringBuilder();
+            for (List<Object> values : run.rows.values()) {
+                line.setLength(0);
+                String sep = "";
+                for (Object val : values) {
+                    line.append(sep).append((val == null) ? "\\N" : RangeSnapshotFile.escape(val.toString()));
+                    sep = "\t";
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            }
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * @return the key columns of the table of the operation, or null if unknown
+     */
+    private List<String> getReplayKeyColumns(Operation op) {
+        TableInfo ti = getTableInfo(op.getTable());
+        if (ti == null) {
+            return null;
+        }
+        List<String> keyColumns = new ArrayList<>(ti.getKeyColumns());
+        keyColumns.remove(MusicMixin.MDBC_PRIMARYKEY_NAME);
+        return keyColumns;
+    }
+
     /**
      * Replays operation into database, usually from txDigest
      * 
@@ -872,8 +1066,8 @@ public class PostgresMixin implements DBInterface {
      * @throws MDBCServiceException
      */
     private void replayOperationIntoDB(Statement jdbcStmt, Operation op) throws SQLException, MDBCServiceException {
-        logger.debug("Replaying Operation: " + op.getOperationType() + "->" + op.getVal());
         JSONObject newVal = op.getVal();
+        logger.debug("Replaying Operation: " + op.getOperationType() + "->" + newVal);
         JSONObject oldVal = null;
         try {
             oldVal = op.getKey();
@@ -1067,18 +1261,179 @@ public class PostgresMixin implements DBInterface {
     }
 
     @Override
-    public void updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer) {
-        throw new org.apache.commons.lang.NotImplementedException();
+    public boolean updateCheckpointLocations(Range r, Pair<MriReference, MusicTxDigestId> playbackPointer) {
+        String query = "UPDATE " + TRANS_TBL_SCHEMA + "." + CKPT_TBL + " SET mrirow=?, digestid=? where rangename=?;";
+        try {
+            PreparedStatement stmt = jdbcConn.prepareStatement(query);
+            stmt.setString(1, playbackPointer.getLeft().getIndex().toString());
+            stmt.setString(2, playbackPointer.getRight().transactionId.toString());
+            stmt.setString(3, r.getTable());
+            stmt.execute();
+            stmt.close();
+            return true;
+        } catch (SQLException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "Unable to update replay checkpoint location: " + e.getMessage());
+            return false;
+        }
     }
 
     @Override
     public Map<Range, Pair<MriReference, MusicTxDigestId>> getCheckpointLocations() {
-        throw new org.apache.commons.lang.NotImplementedException();
+        Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied = new ConcurrentHashMap<>();
+        try {
+            Statement stmt = jdbcConn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT * FROM " + TRANS_TBL_SCHEMA + "." + CKPT_TBL + ";");
+            while (rs.next()) {
+                Range r = new Range(rs.getString("rangename"));
+                String mrirow = rs.getString("mrirow");
+                String txId = rs.getString("digestid");
+                if (mrirow != null) {
+                    logger.info(EELFLoggerDelegate.applicationLogger,
+                            "Previously checkpointed: " + r.getTable() + " at (" + mrirow + ", " + txId + ")");
+                    alreadyApplied.put(r, Pair.of(new MriReference(mrirow), new MusicTxDigestId(mrirow, txId, -1)));
+                }
+            }
+            stmt.close();
+        } catch (SQLException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "Unable to get replay checkpoint location", e);
+        }
+        return alreadyApplied;
     }
 
     @Override
     public void initTables() {
-        throw new org.apache.commons.lang.NotImplementedException();
+        try {
+            Statement stmt = jdbcConn.createStatement();
+            stmt.execute(CREATE_CKPT_SQL);
+            stmt.close();
+
+            //prepare checkpoint table
+            String query = "INSERT INTO " + TRANS_TBL_SCHEMA + "." + CKPT_TBL
+                    + " (rangename) VALUES (?) ON CONFLICT DO NOTHING;";
+            PreparedStatement prepstmt = jdbcConn.prepareStatement(query);
+            for (Range range : getSQLRangeSet()) {
+                prepstmt.setString(1, range.getTable());
+                prepstmt.execute();
+            }
+            prepstmt.close();
+            if (!jdbcConn.getAutoCommit()) {
+                jdbcConn.commit();
+            }
+            logger.info(EELFLoggerDelegate.applicationLogger, "initTables: Server side checkpoint table created.");
+        } catch (SQLException e) {
+            logger.error(EELFLoggerDelegate.errorLogger, "initTables: problem creating the mdbc tables!", e);
+        }
+    }
+
+    /**
+     * The rows are read with a cursor, which postgres only uses inside a transaction, and the snapshot spills
+     * them to a file, so a large range is not held in the heap
+     */
+    @Override
+    public StagingTable getRangeSnapshot(Set<Range> ranges) throws SQLException, MDBCServiceException {
+        StagingTable snapshot = StagingTable.forSnapshot();
+        boolean autocommit = jdbcConn.getAutoCommit();
+        jdbcConn.setAutoCommit(false);
+        Statement stmt = jdbcConn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(SNAPSHOT_FETCH_ROWS);
+        try {
+            for (Range range : ranges) {
+                TableInfo ti = getTableInfo(range.getTable());
+                if (ti == null) {
+                    throw new MDBCServiceException("Unable to snapshot unknown table " + range.getTable());
+                }
+                ResultSet rs = stmt.executeQuery("SELECT row_to_json(t) AS row FROM " + range.getTable() + " t;");
+                while (rs.next()) {
+                    JSONObject row = new JSONObject(rs.getString("row"));
+                    JSONObject key = new JSONObject();
+                    for (String col : ti.getKeyColumns()) {
+                        key.put(col, row.opt(col) == null ? JSONObject.NULL : row.get(col));
+                    }
+                    snapshot.addOperation(range, SQLOperation.INSERT, row.toString(), key.toString());
+                }
+                rs.close();
+            }
+        } catch (SQLException | MDBCServiceException | RuntimeException e) {
+            snapshot.clear();
+            throw e;
+        } finally {
+            try {
+                stmt.close();
+                jdbcConn.commit();
+            } finally {
+                jdbcConn.setAutoCommit(autocommit);
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void applyRangeSnapshot(StagingTable snapshot, Set<Range> ranges)
+            throws SQLException, MDBCServiceException {
+        boolean autocommit = jdbcConn.getAutoCommit();
+        jdbcConn.setAutoCommit(false);
+        Statement jdbcStmt = jdbcConn.createStatement();
+        try {
+            for (Range range : ranges) {
+                jdbcStmt.executeUpdate("DELETE FROM " + range.getTable() + ";");
+            }
+            for (Operation op : snapshot.getOperationList()) {
+                replayOperationIntoDB(jdbcStmt, op);
+            }
+            clearReplayedOperations(jdbcStmt);
+            jdbcConn.commit();
+        } catch (SQLException | MDBCServiceException e) {
+            logger.error("Unable to apply snapshot for " + ranges + ". Rolling back.");
+            jdbcConn.rollback();
+            throw e;
+        } finally {
+            jdbcStmt.close();
+            jdbcConn.setAutoCommit(autocommit);
+        }
+    }
+
+    /**
+     * Streams the rows with COPY FROM STDIN. The session runs as a replica during the load, so neither the
+     * mdbc triggers nor the foreign key checks are executed. Changing session_replication_role requires the
+     * database user of mdbc to be a superuser (or, from Postgres 15, to be granted SET on the parameter).
+     */
+    @Override
+    public void bulkLoadRange(Range range, List<String> columns, InputStream rows)
+            throws SQLException, MDBCServiceException {
+        boolean autocommit = jdbcConn.getAutoCommit();
+        jdbcConn.setAutoCommit(false);
+        Statement jdbcStmt = jdbcConn.createStatement();
+        try {
+            setReplicationRole(jdbcStmt, "SET LOCAL session_replication_role = 'replica';");
+            jdbcStmt.executeUpdate("DELETE FROM " + range.getTable() + ";");
+            if (!columns.isEmpty()) {
+                CopyManager copyManager = jdbcConn.unwrap(PGConnection.class).getCopyAPI();
+                copyManager.copyIn("COPY " + range.getTable() + " (" + String.join(",", columns) + ") FROM STDIN",
+                        rows);
+            }
+            jdbcConn.commit();
+        } catch (SQLException | IOException | RuntimeException | Error e) {
+            //restoring the autocommit below would otherwise commit the partial load
+            logger.error("Unable to bulk load " + range + ". Rolling back.");
+            try {
+                jdbcConn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            if (e instanceof SQLException) {
+                throw (SQLException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw new MDBCServiceException("Error reading rows to bulk load into " + range, e);
+        } finally {
+            jdbcStmt.close();
+            jdbcConn.setAutoCommit(autocommit);
+        }
     }
 
 }
@@ -0,0 +1,162 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.mixins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+import org.json.JSONObject;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.query.SQLOperation;
+import org.onap.music.mdbc.tables.Operation;
+
+/**
+ * Consecutive operations of a digest over the same table that are replayed with a single bulk statement.
+ * <p>
+ * Inserts and updates are merged into upserts, keeping the last image of each key, and deletes into a
+ * single delete by key. Operations that can't be merged (unknown key, update of the key itself) are kept
+ * on their own and replayed row by row, in their original position.
+ * </p>
+ */
+final class ReplayRun {
+
+    /** table of the operations */
+    final String table;
+    /** INSERT for a run of upserts, DELETE for a run of deletes, null for an operation replayed on its own */
+    final SQLOperation type;
+    final List<String> keyColumns;
+    /** columns of the rows, only the key columns for deletes */
+    final List<String> columns;
+    /** values of each row in column order, by the values of its key */
+    final Map<List<String>, List<Object>> rows = new LinkedHashMap<>();
+    /** operation replayed on its own, when type is null */
+    final Operation operation;
+
+    private ReplayRun(String table, SQLOperation type, List<String> keyColumns, List<String> columns,
+            Operation operation) {
+        this.table = table;
+        this.type = type;
+        this.keyColumns = keyColumns;
+        this.columns = columns;
+        this.operation = operation;
+    }
+
+    private boolean accepts(String table, SQLOperation type, List<String> keyColumns, List<String> columns) {
+        return this.type == type && this.table.equalsIgnoreCase(table) && this.keyColumns.equals(keyColumns)
+                && this.columns.equals(columns);
+    }
+
+    /**
+     * Group the operations of a digest in runs, keeping their order
+     * @param ops operations of the digest
+     * @param keyColumnsOf key columns of the table of an operation, null or empty if unknown
+     * @param reservedColumn column added by mdbc that is not part of the local table
+     * @return runs to replay, in order
+     */
+    static List<ReplayRun> plan(List<Operation> ops, Function<Operation, List<String>> keyColumnsOf,
+            String reservedColumn) {
+        List<ReplayRun> runs = new ArrayList<>();
+        ReplayRun current = null;
+        for (Operation op : ops) {
+            SQLOperation type = op.getOperationType();
+            if (type == SQLOperation.SELECT) {
+                continue;
+            }
+            List<String> keyColumns = keyColumnsOf.apply(op);
+            JSONObject row = mergeableRow(op, keyColumns);
+            if (row == null) {
+                runs.add(new ReplayRun(op.getTable(), null, null, null, op));
+                current = null;
+                continue;
+            }
+            SQLOperation runType = (type == SQLOperation.DELETE) ? SQLOperation.DELETE : SQLOperation.INSERT;
+            List<String> columns = (runType == SQLOperation.DELETE) ? keyColumns : columnsOf(row, reservedColumn);
+            if (current == null || !current.accepts(op.getTable(), runType, keyColumns, columns)) {
+                current = new ReplayRun(op.getTable(), runType, keyColumns, columns, null);
+                runs.add(current);
+            }
+            List<Object> values = new ArrayList<>(columns.size());
+            for (String col : columns) {
+                Object val = row.get(col);
+                values.add(val == JSONObject.NULL ? null : val);
+            }
+            current.rows.put(keyOf(row, keyColumns), values);
+        }
+        return runs;
+    }
+
+    /**
+     * @return the image used to merge the operation (the key for deletes, the new row otherwise), or null if
+     * the operation has to be replayed on its own
+     */
+    private static JSONObject mergeableRow(Operation op, List<String> keyColumns) {
+        if (keyColumns == null || keyColumns.isEmpty()) {
+            return null;
+        }
+        JSONObject key;
+        try {
+            key = (op.getOperationType() == SQLOperation.INSERT) ? null : op.getKey();
+        } catch (MDBCServiceException e) {
+            return null;
+        }
+        JSONObject row = (op.getOperationType() == SQLOperation.DELETE) ? key : op.getVal();
+        for (String col : keyColumns) {
+            if (!row.has(col)) {
+                return null;
+            }
+        }
+        if (op.getOperationType() == SQLOperation.UPDATE) {
+            for (String col : keyColumns) {
+                if (!key.has(col) || !String.valueOf(key.get(col)).equals(String.valueOf(row.get(col)))) {
+                    return null;
+                }
+            }
+        }
+        return row;
+    }
+
+    private static List<String> columnsOf(JSONObject row, String reservedColumn) {
+        TreeSet<String> columns = new TreeSet<>(row.keySet());
+        columns.remove(reservedColumn);
+        return new ArrayList<>(columns);
+    }
+
+    private static List<String> keyOf(JSONObject row, List<String> keyColumns) {
+        if (keyColumns.size() == 1) {
+            return Collections.singletonList(String.valueOf(row.get(keyColumns.get(0))));
+        }
+        List<String> key = new ArrayList<>(keyColumns.size());
+        for (String col : keyColumns) {
+            key.add(String.valueOf(row.get(col)));
+        }
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return (type == null) ? "ReplayRun[" + operation.getOperationType() + " " + table + "]"
+                : "ReplayRun[" + type + " " + table + ", " + rows.size() + " rows]";
+    }
+}
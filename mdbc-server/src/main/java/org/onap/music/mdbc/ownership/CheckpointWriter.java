@@ -0,0 +1,182 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.ownership;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.tuple.Pair;
+import org.onap.music.logging.EELFLoggerDelegate;
+import org.onap.music.mdbc.MdbcConnection;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.StateManager;
+import org.onap.music.mdbc.mixins.DBInterface;
+import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+
+/**
+ * Background writer of the checkpoint locations (MDBC_CHECKPOINT in the local database and musicmdbccheckpoints
+ * in music). Only the latest location of each range is kept in memory, and it is persisted periodically and
+ * on shutdown.
+ * <p>
+ * A persisted location that is behind the data in the local database is safe, after a restart the digests
+ * between them are detected as already replayed, or replayed again on top of their own changes.
+ * </p>
+ */
+public class CheckpointWriter implements Runnable {
+
+	private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(CheckpointWriter.class);
+	private static final String CONNECTION_ID = "checkpoint";
+	private static final int CONNECTION_VALID_TIMEOUT_S = 5;
+
+	private final StateManager stateManager;
+	private final long flushPeriodMs;
+	private final Map<Range, Pair<MriReference, MusicTxDigestId>> pending = new ConcurrentHashMap<>();
+	private MdbcConnection conn;
+
+	public CheckpointWriter(long flushPeriodMs, StateManager stateManager) {
+		this.stateManager = stateManager;
+		this.flushPeriodMs = flushPeriodMs;
+	}
+
+	/**
+	 * Record the new checkpoint location of a range, replacing any location that was not persisted yet
+	 */
+	public void record(Range range, Pair<MriReference, MusicTxDigestId> location) {
+		pending.put(range, location);
+	}
+
+	/**
+	 * @return number of locations that were recorded and not persisted yet
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Persist the latest location of every range with pending changes. A location stays pending until both the
+	 * local database and music accepted it
+	 */
+	public synchronized void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		MdbcConnection connection = openConnection();
+		if (connection == null) {
+			return;
+		}
+		DBInterface dbi = connection.getDBInterface();
+		MusicInterface mi = stateManager.getMusicInterface();
+		int written = 0;
+		boolean failed = false;
+		for (Map.Entry<Range, Pair<MriReference, MusicTxDigestId>> entry : pending.entrySet()) {
+			Range range = entry.getKey();
+			Pair<MriReference, MusicTxDigestId> location = entry.getValue();
+			if (!dbi.updateCheckpointLocations(range, location)) {
+				//the connection may be broken, open a new one next iteration
+				discardConnection();
+				failed = true;
+				break;
+			}
+			if (!mi.updateCheckpointLocations(range, location)) {
+				failed = true;
+				continue;
+			}
+			//a newer location recorded in the meantime stays pending
+			pending.remove(range, location);
+			written++;
+		}
+		logger.debug("Checkpoint writer persisted " + written + " locations");
+		if (failed) {
+			logger.warn("Checkpoint writer could not persist " + pending.size() + " locations, they are kept for the "
+				+ "next iteration");
+		}
+	}
+
+	/**
+	 * Get the connection used to write the local checkpoint table, replacing it when it is not valid anymore
+	 * @return the connection, or null if it could not be opened
+	 */
+	private MdbcConnection openConnection() {
+		if (conn != null) {
+			try {
+				if (conn.isValid(CONNECTION_VALID_TIMEOUT_S)) {
+					return conn;
+				}
+				logger.warn("Checkpoint writer connection is not valid anymore, opening a new one");
+			} catch (SQLException e) {
+				logger.warn("Checkpoint writer unable to validate connection " + e.getMessage(), e);
+			}
+			discardConnection();
+		}
+		conn = (MdbcConnection) stateManager.getConnection(CONNECTION_ID);
+		if (conn == null) {
+			logger.error("Connection created is null in checkpoint writer, locations will be written next iteration");
+		}
+		return conn;
+	}
+
+	/**
+	 * Close the connection, removing it from the state manager even if closing it fails, so the next flush opens
+	 * a new one
+	 */
+	private void discardConnection() {
+		if (conn == null) {
+			return;
+		}
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			logger.error("Checkpoint writer error closing connection " + e.getMessage(), e);
+		} finally {
+			conn = null;
+			stateManager.closeConnection(CONNECTION_ID);
+		}
+	}
+
+	@Override
+	public void run() {
+		logger.info("Checkpoint writer started");
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				Thread.sleep(flushPeriodMs);
+			} catch (InterruptedException e) {
+				logger.error("Checkpoint writer stopped " + e.getMessage(), e);
+				Thread.currentThread().interrupt();
+			}
+			tryFlush();
+		}
+	}
+
+	/**
+	 * Flush without stopping the writer on failures, the locations that were not written stay pending
+	 * for the next iteration
+	 */
+	private void tryFlush() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			logger.error("Checkpoint writer could not persist " + pending.size() + " locations, they are kept for "
+				+ "the next iteration: " + e.getMessage(), e);
+		}
+	}
+}
@@ -20,11 +20,11 @@
 
 package org.onap.music.mdbc.ownership;
 
+import com.google.common.util.concurrent.RateLimiter;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.tuple.Pair;
 import org.onap.music.exceptions.MDBCServiceException;
 import org.onap.music.exceptions.MusicDeadlockException;
@@ -32,6 +32,10 @@ import org.onap.music.logging.EELFLoggerDelegate;
 import org.onap.music.mdbc.DatabasePartition;
 import org.onap.music.mdbc.Range;
 import org.onap.music.mdbc.Utils;
+import org.onap.music.mdbc.metrics.LockHeatmap;
+import org.onap.music.mdbc.metrics.OwnershipMetrics;
+import org.onap.music.mdbc.metrics.ReplicationLag;
+import org.onap.music.mdbc.metrics.jfr.MdbcEvents;
 import org.onap.music.mdbc.mixins.DBInterface;
 import org.onap.music.mdbc.mixins.LockRequest;
 import org.onap.music.mdbc.mixins.LockResult;
@@ -41,24 +45,49 @@ import org.onap.music.mdbc.query.SQLOperationType;
 import org.onap.music.mdbc.tables.MriReference;
 import org.onap.music.mdbc.tables.MusicRangeInformationRow;
 import org.onap.music.mdbc.tables.MusicTxDigestId;
+import org.onap.music.mdbc.tables.RangeSnapshot;
 import org.onap.music.mdbc.tables.StagingTable;
 
 public class OwnershipAndCheckpoint{
 
     private EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(OwnershipAndCheckpoint.class);
-    private Lock checkpointLock;
+    /** local locks per range, held while changes are applied to the local database */
+    private final RangeLocks rangeLocks = new RangeLocks();
+    /** bounds the ownership requests queued for each range */
+    private final RangeAdmission rangeAdmission = new RangeAdmission();
     private Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied;
-    private Map<UUID,Long> ownershipBeginTime;
+    /** time, in ms, until which a range without local state is known to have no snapshot in music */
+    private final Map<Range, Long> noSnapshotUntil = new ConcurrentHashMap<>();
+    /** time, in ms, during which a range without a snapshot is not looked up again */
+    static final long NO_SNAPSHOT_RECHECK_MS = 60000;
+    /** start time of each ownership request, requests of different connections run concurrently */
+    private final Map<UUID,Long> ownershipBeginTime = new ConcurrentHashMap<>();
     private long timeoutInMs;
+    /** limits the digests read by background warmup, null if unlimited */
+    private volatile RateLimiter warmupRateLimiter;
+    /** persists the checkpoint locations in the background, null if they are written synchronously */
+    private volatile CheckpointWriter checkpointWriter;
+    /** maximum number of digests of a dag node applied in a single local transaction */
+    private volatile int replayBatchDigests = 1;
+    /** maximum time, in ms, spent reading the digests applied in a single local transaction */
+    private volatile long replayBatchMs = 0;
+
+    /**
+     * Consecutive digests of a dag node that are applied in a single local transaction
+     */
+    private static class DigestBatch {
+        private final List<Pair<MusicTxDigestId, Set<Range>>> ids = new ArrayList<>();
+        private final List<StagingTable> digests = new ArrayList<>();
+        /** next digest of the node after the batch, null if the node is done */
+        private Pair<MusicTxDigestId, Set<Range>> next;
+    }
 
     public OwnershipAndCheckpoint(){
-      this(new HashMap<>(),Long.MAX_VALUE);
+      this(new ConcurrentHashMap<>(),Long.MAX_VALUE);
     }
 
     public OwnershipAndCheckpoint(Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied, long timeoutInMs){
-        checkpointLock = new ReentrantLock();
         this.alreadyApplied = alreadyApplied;
-        ownershipBeginTime = new HashMap<>();
         this.timeoutInMs =  timeoutInMs;
     }
 
@@ -67,20 +96,17 @@ public class OwnershipAndCheckpoint{
     }
 
     public void stopOwnershipTimeoutClock(UUID id){
-        if(ownershipBeginTime.containsKey(id)) {
-            ownershipBeginTime.remove(id);
-        }
-        else{
+        if(ownershipBeginTime.remove(id)==null){
             logger.warn("clock was deleted with an invalid/stale id "+id);
         }
     }
 
     public boolean timeout(UUID id) throws MDBCServiceException {
         long current = System.currentTimeMillis();
-        if(!ownershipBeginTime.containsKey(id)){
+        Long beginTime = ownershipBeginTime.get(id);
+        if(beginTime==null){
             throw new MDBCServiceException("timeout was call with an invalid id");
         }
-        Long beginTime = ownershipBeginTime.get(id);
         if(current-beginTime > timeoutInMs){
             return true;
         }
@@ -138,8 +164,12 @@ public class OwnershipAndCheckpoint{
         if(ranges.isEmpty()){
             return;
         }
-        try {
-            checkpointLock.lock();
+        //digests of the rows in the dag can also contain changes for the other ranges of the row
+        Set<Range> lockedRanges = new HashSet<>(ranges);
+        lockedRanges.addAll(extendedDag.getAllRanges());
+        MdbcEvents.Checkpoint event = MdbcEvents.checkpoint();
+        try (RangeLocks.Held held = rangeLocks.lockForeground(lockedRanges)) {
+            applySnapshotsIfRequired(mi, di, ranges);
             extendedDag.setAlreadyApplied(alreadyApplied, ranges);
             applyRequiredChanges(mi, di, extendedDag, ranges, ownOpId);
         }
@@ -148,7 +178,7 @@ public class OwnershipAndCheckpoint{
             throw e;
         }
         finally {
-            checkpointLock.unlock();
+            event.finish(ranges, lockedRanges);
         }
     }
 
@@ -168,12 +198,12 @@ public class OwnershipAndCheckpoint{
         }
     }
 
-    private void applyTxDigest(DBInterface dbi, StagingTable txDigest)
+    private void applyTxDigests(DBInterface dbi, List<StagingTable> txDigests)
         throws MDBCServiceException {
         try {
-            dbi.applyTxDigest(txDigest);
+            dbi.applyTxDigests(txDigests);
         } catch (SQLException e) {
-            throw new MDBCServiceException("Error applying tx digest in local SQL",e);
+            throw new MDBCServiceException("Error applying tx digests in local SQL",e);
         }
     }
     
@@ -188,57 +218,279 @@ public class OwnershipAndCheckpoint{
         if(rangesToWarmup.isEmpty()){
             return;
         }
-        Dag dag = new Dag(false);
-        final List<MusicRangeInformationRow> rows = extractRowsForRange(mi, rangesToWarmup,false);
-        dag = Dag.getDag(rows,rangesToWarmup);
+        warmup(mi, di, rangesToWarmup, extractRowsForRange(mi, rangesToWarmup,false));
+    }
+
+    /**
+     * Replay the updates for the partitions containing ranges to the local database
+     * @param mi
+     * @param di
+     * @param rangesToWarmup
+     * @param rows mri rows related to the ranges, as returned by {@link #extractRowsForRange(MusicInterface, Set, boolean)}
+     * @throws MDBCServiceException
+     */
+    public void warmup(MusicInterface mi, DBInterface di, Set<Range> rangesToWarmup,
+                       List<MusicRangeInformationRow> rows) throws MDBCServiceException {
+        if(rangesToWarmup.isEmpty()){
+            return;
+        }
+        Dag dag = Dag.getDag(rows,rangesToWarmup);
+        yieldToForeground(rangesToWarmup);
+        try (RangeLocks.Held held = rangeLocks.lock(rangesToWarmup)) {
+            applySnapshotsIfRequired(mi, di, rangesToWarmup);
+        }
         dag.setAlreadyApplied(alreadyApplied, rangesToWarmup);
         while(!dag.applied()){
             DagNode node = dag.nextToApply(rangesToWarmup);
             if(node!=null) {
                 Pair<MusicTxDigestId, Set<Range>> pair = node.nextNotAppliedTransaction(rangesToWarmup);
                 while (pair != null) {
-                    checkpointLock.lock();
-                    try {
-                        disableForeignKeys(di);
-                        applyDigestAndUpdateDataStructures(mi, di, node, pair.getLeft(), pair.getRight());
-                        pair = node.nextNotAppliedTransaction(rangesToWarmup);
-                        enableForeignKeys(di);
-                    } catch (MDBCServiceException e) {
-                        checkpointLock.unlock();
-                        throw e;
+                    //the digests are read without holding the lock, so other warmups and checkpoints can proceed
+                    DigestBatch batch = readDigestBatch(mi, node, pair, rangesToWarmup, warmupRateLimiter);
+                    Set<Range> rowRanges = node.getRangeSet();
+                    yieldToForeground(rowRanges);
+                    try (RangeLocks.Held held = rangeLocks.lock(rowRanges)) {
+                        applyDigestBatch(mi, di, node, batch);
                     }
-                    checkpointLock.unlock();
+                    pair = batch.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until there are no foreground checkpoints waiting for any of the ranges
+     * @throws MDBCServiceException if the thread is interrupted
+     */
+    private void yieldToForeground(Set<Range> ranges) throws MDBCServiceException {
+        try {
+            rangeLocks.awaitNoForeground(ranges);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MDBCServiceException("Warmup interrupted", e);
+        }
+    }
+
+    /**
+     * Bound the number of digests of a dag node that are applied in a single local transaction while catching up
+     * @param maxDigests maximum digests per local transaction, non positive applies each digest on its own
+     * @param maxMs maximum time, in ms, spent reading the digests of a local transaction
+     */
+    public void setReplayBatch(int maxDigests, long maxMs) {
+        replayBatchDigests = Math.max(1, maxDigests);
+        replayBatchMs = maxMs;
+    }
+
+    /**
+     * Bound the ownership requests that can be queued for each range, the ones above the bound are rejected
+     * @param maxPerRange maximum concurrent ownership requests per range, non positive is unlimited
+     */
+    public void setMaxOwnershipRequestsPerRange(int maxPerRange) {
+        rangeAdmission.setMaxPerRange(maxPerRange);
+    }
+
+    /**
+     * Limit the rate at which background warmup reads digests from music
+     * @param maxDigestsPerS maximum digests per second, non positive means unlimited
+     */
+    public void setWarmupRateLimit(double maxDigestsPerS) {
+        warmupRateLimiter = (maxDigestsPerS > 0) ? RateLimiter.create(maxDigestsPerS) : null;
+    }
+
+    /**
+     * Split the ranges in groups that can be warmed up independently, two ranges are in the same group if
+     * they are part of the same mri row, directly or through other ranges
+     * @param ranges ranges to warmup
+     * @param rows mri rows related to the ranges
+     * @return independent groups of ranges
+     */
+    public static List<Set<Range>> splitIndependentRanges(Set<Range> ranges, List<MusicRangeInformationRow> rows) {
+        Map<Range, Set<Range>> groups = new HashMap<>();
+        for (Range range : ranges) {
+            groups.put(range, new HashSet<>(Collections.singleton(range)));
+        }
+        for (MusicRangeInformationRow row : rows) {
+            Set<Range> merged = null;
+            for (Range range : row.getDBPartition().getSnapshot()) {
+                Set<Range> group = groups.get(range);
+                if (group == null || group == merged) {
+                    continue;
                 }
+                if (merged == null) {
+                    merged = group;
+                    continue;
+                }
+                merged.addAll(group);
+                for (Range moved : group) {
+                    groups.put(moved, merged);
+                }
+            }
+        }
+        List<Set<Range>> result = new ArrayList<>();
+        Set<Set<Range>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Set<Range> group : groups.values()) {
+            if (seen.add(group)) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ranges that were never applied locally (new node, or a node that lost its database) are loaded
+     * from the latest snapshot in music, so the dag walk only needs to replay the redo log after it.
+     * The position of the snapshot is looked up first, so the contents are only read when there is one,
+     * and a range without a snapshot is not looked up again for {@link #NO_SNAPSHOT_RECHECK_MS}.
+     * Should be called while holding the range locks
+     * @param mi
+     * @param di
+     * @param ranges
+     * @throws MDBCServiceException
+     */
+    private void applySnapshotsIfRequired(MusicInterface mi, DBInterface di, Set<Range> ranges)
+        throws MDBCServiceException {
+        for (Range range : ranges) {
+            if (alreadyApplied.containsKey(range)) {
+                continue;
+            }
+            Long until = noSnapshotUntil.get(range);
+            if (until != null && System.currentTimeMillis() < until) {
+                continue;
             }
+            RangeSnapshot snapshot = null;
+            if (mi.getLatestRangeSnapshotPosition(range) != null) {
+                snapshot = mi.getLatestRangeSnapshot(range);
+            }
+            if (snapshot == null) {
+                noSnapshotUntil.put(range, System.currentTimeMillis() + NO_SNAPSHOT_RECHECK_MS);
+                continue;
+            }
+            noSnapshotUntil.remove(range);
+            logger.info("Loading " + snapshot + " into local database");
+            disableForeignKeys(di);
+            try {
+                di.applyRangeSnapshot(snapshot.getContents(), Collections.singleton(range));
+            } catch (SQLException e) {
+                throw new MDBCServiceException("Error applying snapshot in local SQL", e);
+            } finally {
+                enableForeignKeys(di);
+            }
+            Pair<MriReference, MusicTxDigestId> position = snapshot.getPosition();
+            updateAlreadyApplied(mi, di, range, position.getLeft().getIndex(), position.getRight());
         }
     }
 
     /**
-     * Apply tx digest for dagnode update checkpoint location (alreadyApplied)
+     * Capture the local contents of a range and store them in music as a snapshot, tagged
+     * with the position of the redo history that was already applied for the range
      * @param mi
      * @param di
+     * @param range range to snapshot, it should not be owned by this server
+     * @return the position of the snapshot, or null if the range was never applied locally
+     * @throws MDBCServiceException
+     */
+    public Pair<MriReference, MusicTxDigestId> snapshot(MusicInterface mi, DBInterface di, Range range)
+        throws MDBCServiceException {
+        try (RangeLocks.Held held = rangeLocks.lock(Collections.singleton(range))) {
+            Pair<MriReference, MusicTxDigestId> position = alreadyApplied.get(range);
+            if (position == null) {
+                return null;
+            }
+            StagingTable contents;
+            try {
+                contents = di.getRangeSnapshot(Collections.singleton(range));
+            } catch (SQLException e) {
+                throw new MDBCServiceException("Error reading snapshot from local SQL", e);
+            }
+            mi.addRangeSnapshot(range, position, contents);
+            return position;
+        }
+    }
+
+    /**
+     * Read the next consecutive digests of a dag node that were not applied yet, until the batch is full
+     * or its reading time is exhausted
+     * @param mi
+     * @param node
+     * @param first first digest of the batch, as returned by {@link DagNode#nextNotAppliedTransaction(Set)}
+     * @param ranges
+     * @param limiter rate limit for the reads from music, null if unlimited
+     * @return the digests of the batch and the next digest of the node
+     */
+    private DigestBatch readDigestBatch(MusicInterface mi, DagNode node, Pair<MusicTxDigestId, Set<Range>> first,
+            Set<Range> ranges, RateLimiter limiter) {
+        DigestBatch batch = new DigestBatch();
+        long deadline = System.currentTimeMillis() + replayBatchMs;
+        Pair<MusicTxDigestId, Set<Range>> pair = first;
+        while (pair != null) {
+            if (!alreadyReplayed(node, pair.getLeft())) {
+                if (limiter != null) {
+                    limiter.acquire();
+                }
+                StagingTable txDigest = readTxDigest(mi, pair.getLeft());
+                if (txDigest != null) {
+                    batch.ids.add(pair);
+                    batch.digests.add(txDigest);
+                }
+            }
+            pair = node.nextNotAppliedTransaction(ranges);
+            if (batch.digests.size() >= replayBatchDigests || System.currentTimeMillis() >= deadline) {
+                break;
+            }
+        }
+        batch.next = pair;
+        return batch;
+    }
+
+    /**
+     * Apply a batch of tx digests for dagnode in a single local transaction and update checkpoint
+     * location (alreadyApplied). Should be called while holding the range locks of the node
+     * @param mi
+     * @param dbi
      * @param node
-     * @param pair
+     * @param batch
      * @throws MDBCServiceException
      */
-    private void applyDigestAndUpdateDataStructures(MusicInterface mi, DBInterface dbi, DagNode node,
-            MusicTxDigestId digestId, Set<Range> ranges) throws MDBCServiceException {
-        if (alreadyReplayed(node, digestId)) {
+    private void applyDigestBatch(MusicInterface mi, DBInterface dbi, DagNode node, DigestBatch batch)
+            throws MDBCServiceException {
+        List<Pair<MusicTxDigestId, Set<Range>>> ids = new ArrayList<>();
+        List<StagingTable> digests = new ArrayList<>();
+        for (int i = 0; i < batch.ids.size(); i++) {
+            //a foreground checkpoint could have applied it while the lock was released
+            if (!alreadyReplayed(node, batch.ids.get(i).getLeft())) {
+                ids.add(batch.ids.get(i));
+                digests.add(batch.digests.get(i));
+            }
+        }
+        if (digests.isEmpty()) {
             return;
         }
+        UUID mriIndex = node.getRow().getPartitionIndex();
+        MdbcEvents.ApplyDigest event = MdbcEvents.applyDigest();
+        disableForeignKeys(dbi);
+        try {
+            applyTxDigests(dbi, digests);
+        } finally {
+            enableForeignKeys(dbi);
+            event.finish(mriIndex, node.getRangeSet(), digests.size());
+        }
+        for (Pair<MusicTxDigestId, Set<Range>> id : ids) {
+            updateAlreadyApplied(mi, dbi, id.getRight(), mriIndex, id.getLeft());
+        }
+    }
 
-        final StagingTable txDigest;
+    /**
+     * @return the digest, or null if it can't be found in music
+     */
+    private StagingTable readTxDigest(MusicInterface mi, MusicTxDigestId digestId) {
         try {
-            txDigest = mi.getTxDigest(digestId);
+            return mi.getTxDigest(digestId);
         } catch (MDBCServiceException e) {
             logger.warn("Transaction digest was not found, this could be caused by a failure of the previous owner"
                 +"And would normally only happen as the last ID of the corresponding redo log. Please check that this is the"
                 +" case for txID "+digestId.transactionId.toString());
-            return;
+            return null;
         }
-        applyTxDigest(dbi, txDigest);
-        MusicRangeInformationRow row = node.getRow();
-        updateAlreadyApplied(mi, dbi, ranges, row.getPartitionIndex(), digestId);
     }
     
     /**
@@ -255,11 +507,11 @@ public class OwnershipAndCheckpoint{
                 return false;
             }
             MriReference appliedMriRef = applied.getLeft();
-            MusicTxDigestId appliedDigest = applied.getRight();
-            appliedDigest.index = node.getRow().getRedoLog().indexOf(appliedDigest);
+            //computed locally, the applied digest is shared with threads working on other ranges
+            int appliedIndex = node.getRow().getRedoLog().indexOf(applied.getRight());
             if (appliedMriRef==null || appliedMriRef.getTimestamp() < node.getTimestamp()
                     || (appliedMriRef.getTimestamp() == node.getTimestamp()
-                            && appliedDigest.index < index)) {
+                            && appliedIndex < index)) {
                 return false;
             }
         }
@@ -276,10 +528,23 @@ public class OwnershipAndCheckpoint{
      * @throws MDBCServiceException 
      */
     private void updateCheckpointLocations(MusicInterface mi, DBInterface dbi, Range r, MriReference mriRef, MusicTxDigestId txdigest) {
+        CheckpointWriter writer = checkpointWriter;
+        if (writer != null) {
+            writer.record(r, Pair.of(mriRef, txdigest));
+            return;
+        }
         dbi.updateCheckpointLocations(r, Pair.of(mriRef, txdigest));
         mi.updateCheckpointLocations(r, Pair.of(mriRef, txdigest));
     }
 
+    /**
+     * Persist the checkpoint locations in the background, instead of in the commit and replay paths
+     * @param checkpointWriter writer, or null to write the locations synchronously
+     */
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter) {
+        this.checkpointWriter = checkpointWriter;
+    }
+
     /**
      * Forceably apply changes in tx digest for ranges
      * @param mi
@@ -291,23 +556,20 @@ public class OwnershipAndCheckpoint{
      */
     private void applyRequiredChanges(MusicInterface mi, DBInterface db, Dag extendedDag, Set<Range> ranges, UUID ownOpId)
         throws MDBCServiceException {
-        disableForeignKeys(db);
         while(!extendedDag.applied()){
             DagNode node = extendedDag.nextToApply(ranges);
             if(node!=null) {
                 Pair<MusicTxDigestId, Set<Range>> pair = node.nextNotAppliedTransaction(ranges);
                 while (pair != null) {
-                    applyDigestAndUpdateDataStructures(mi, db, node, pair.getLeft(), pair.getRight());
-                    pair = node.nextNotAppliedTransaction(ranges);
+                    DigestBatch batch = readDigestBatch(mi, node, pair, ranges, null);
+                    applyDigestBatch(mi, db, node, batch);
+                    pair = batch.next;
                     if (timeout(ownOpId)) {
-                        enableForeignKeys(db);
                         throw new MDBCServiceException("Timeout apply changes to local dbi");
                     }
                 }
             }
         }
-        enableForeignKeys(db);
-
     }
 
     /**
@@ -336,10 +598,25 @@ public class OwnershipAndCheckpoint{
             return new OwnershipReturn(opId,currPartition.getLockId(),currPartition.getMRIIndex(),
                     currPartition.getSnapshot(),null);
         }
+        try (RangeAdmission.Admitted admitted = rangeAdmission.admit(ranges)) {
+            return takeOwnership(mi, ranges, currPartition, opId, lockType, ownerId);
+        }
+    }
+
+    /**
+     * Lock the mri rows of the ranges, merging them if needed, once the request was admitted
+     */
+    private OwnershipReturn takeOwnership(MusicInterface mi, Set<Range> ranges, DatabasePartition currPartition,
+            UUID opId, SQLOperationType lockType, String ownerId) throws MDBCServiceException {
+        OwnershipMetrics.ATTEMPTS.increment();
+        final long ownStart = System.nanoTime();
+        final MdbcEvents.Own ownEvent = MdbcEvents.own();
         //Find
         Map<UUID,LockResult> locksForOwnership = new HashMap<>();
         Set<Range> rangesToOwn = mi.getRangeDependencies(ranges);
         List<MusicRangeInformationRow> rangesToOwnRows = extractRowsForRange(mi,rangesToOwn, false);
+        OwnershipMetrics.DAG_SIZE.record(rangesToOwnRows.size());
+        final int dagRows = rangesToOwnRows.size();
         Dag toOwn =  Dag.getDag(rangesToOwnRows,rangesToOwn);
         Dag currentlyOwn = new Dag();
         while ( (toOwn.isDifferent(currentlyOwn) || !currentlyOwn.isOwned() ) &&
@@ -355,6 +632,7 @@ public class OwnershipAndCheckpoint{
                     stopOwnershipTimeoutClock(opId);
                     logger.error("Error when owning a range: Deadlock detected");
                 }
+                ownEvent.finish(ranges, dagRows, null, false);
                 throw e;
             }
             currentlyOwn=toOwn;
@@ -367,6 +645,8 @@ public class OwnershipAndCheckpoint{
             locksForOwnership.remove(currPartition.getMRIIndex());
             mi.releaseLocks(locksForOwnership);
             stopOwnershipTimeoutClock(opId);
+            OwnershipMetrics.TIMEOUTS.increment();
+            ownEvent.finish(ranges, dagRows, null, false);
             logger.error("Error when owning a range: Timeout");
             throw new MDBCServiceException("Ownership timeout");
         }
@@ -374,7 +654,10 @@ public class OwnershipAndCheckpoint{
         //TODO: we shouldn't need to go back to music at this point
         List<MusicRangeInformationRow> latestRows = extractRowsForRange(mi, allRanges, true);
         currentlyOwn.setRowsPerLatestRange(getIsLatestPerRange(toOwn,latestRows));
-        return mi.mergeLatestRowsIfNecessary(currentlyOwn,locksForOwnership,opId, ownerId);
+        OwnershipReturn ownershipReturn = mi.mergeLatestRowsIfNecessary(currentlyOwn,locksForOwnership,opId, ownerId);
+        OwnershipMetrics.OWN_TIME.recordSince(ownStart);
+        ownEvent.finish(ranges, dagRows, (ownershipReturn == null) ? null : ownershipReturn.getRangeId(), true);
+        return ownershipReturn;
     }
    
     /**
@@ -409,21 +692,33 @@ public class OwnershipAndCheckpoint{
             } else {
                 LockRequest request = new LockRequest(uuidToOwn,
                         new ArrayList<>(node.getRangeSet()), lockType);
+                final long lockStart = System.nanoTime();
+                final MdbcEvents.LockWait lockEvent = MdbcEvents.lockWait();
+                int attempts = 0;
+                long backoffNanos = 0;
                 String lockId = mi.createLock(request, ownerId);
+                LockHeatmap.watch(uuidToOwn, request.getToLockRanges());
                 LockResult result = null;
                 boolean owned = false;
                 while(!owned && !timeout(opId)){
                     try {
+                        OwnershipMetrics.LOCK_ATTEMPTS.increment();
+                        attempts++;
                         result = mi.acquireLock(request, lockId);
                         if (result.wasSuccessful()) {
                             owned = true;
+                            OwnershipMetrics.LOCK_WAIT.recordSince(lockStart);
                             continue;
                         }
                         //backOff
+                        final long sleepStart = System.nanoTime();
                         try {
                             Thread.sleep(result.getBackOffPeriod());
                         } catch (InterruptedException e) {
                             continue;
+                        } finally {
+                            OwnershipMetrics.BACKOFF.recordSince(sleepStart);
+                            backoffNanos += System.nanoTime() - sleepStart;
                         }
                         request.incrementAttempts();
                     }
@@ -431,6 +726,8 @@ public class OwnershipAndCheckpoint{
                         logger.warn("Locking failed, retrying",e);
                     }
                 }
+                lockEvent.finish(uuidToOwn, request.getToLockRanges(), attempts, backoffNanos, owned);
+                LockHeatmap.watch(uuidToOwn, request.getToLockRanges());
                 // TODO look into updating the partition object with the latest lockId; 
                 if(owned){
                     toOwn.setOwn(node);
@@ -526,6 +823,7 @@ public class OwnershipAndCheckpoint{
     public void updateAlreadyApplied(MusicInterface mi, DBInterface dbi, Range r, UUID mriIndex, MusicTxDigestId digestId) {
         MriReference mriRef = new MriReference(mriIndex);
         alreadyApplied.put(r, Pair.of(mriRef, digestId));
+        ReplicationLag.get().applied(r, mriIndex, digestId);
         updateCheckpointLocations(mi, dbi, r, mriRef, digestId);
     }
 
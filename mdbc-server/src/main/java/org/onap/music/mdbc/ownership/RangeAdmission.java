@@ -0,0 +1,109 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.ownership;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.metrics.OwnershipMetrics;
+
+/**
+ * Bounds the number of requests of this server that are taking, or waiting to take, the ownership of each range.
+ * <p>
+ * Taking ownership of a contended range can wait for seconds, backing off between attempts to lock its mri
+ * rows. When too many requests are already queued for a range, new ones are rejected right away instead of
+ * joining the queue, so a hot range can't hold all the request threads of the server, and the clients get an
+ * error instead of a timeout.
+ * </p>
+ */
+public final class RangeAdmission {
+
+    private final Map<String, AtomicInteger> queued = new ConcurrentHashMap<>();
+    private volatile int maxPerRange = 0;
+
+    /**
+     * Admitted request, to be released with {@link #close()} when its ownership request is done
+     */
+    public final class Admitted implements AutoCloseable {
+        private final List<AtomicInteger> counters;
+
+        private Admitted(List<AtomicInteger> counters) {
+            this.counters = counters;
+        }
+
+        @Override
+        public void close() {
+            for (AtomicInteger counter : counters) {
+                counter.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param maxPerRange maximum number of concurrent ownership requests per range, non positive is unlimited
+     */
+    public void setMaxPerRange(int maxPerRange) {
+        this.maxPerRange = maxPerRange;
+    }
+
+    /**
+     * @param ranges ranges of an ownership request
+     * @return the admission of the request, to be closed when it is done
+     * @throws MDBCServiceException if any of the ranges already has the maximum number of requests
+     */
+    public Admitted admit(Collection<Range> ranges) throws MDBCServiceException {
+        int max = maxPerRange;
+        List<AtomicInteger> counters = new ArrayList<>(ranges.size());
+        if (max <= 0) {
+            return new Admitted(counters);
+        }
+        TreeSet<String> tables = new TreeSet<>();
+        for (Range range : ranges) {
+            tables.add(range.getTable().toUpperCase());
+        }
+        for (String table : tables) {
+            AtomicInteger counter = queued.computeIfAbsent(table, t -> new AtomicInteger());
+            counters.add(counter);
+            if (counter.incrementAndGet() > max) {
+                new Admitted(counters).close();
+                OwnershipMetrics.REJECTED.increment();
+                throw new MDBCServiceException("Too many requests waiting for the ownership of range " + table
+                    + ", the request was rejected");
+            }
+        }
+        return new Admitted(counters);
+    }
+
+    /**
+     * @return number of requests taking the ownership of the range
+     */
+    public int getQueued(Range range) {
+        AtomicInteger counter = queued.get(range.getTable().toUpperCase());
+        return (counter == null) ? 0 : counter.get();
+    }
+}
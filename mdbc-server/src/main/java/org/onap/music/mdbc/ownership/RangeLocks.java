@@ -0,0 +1,127 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.ownership;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.onap.music.mdbc.Range;
+
+/**
+ * Local locks used to apply changes into the local database at range granularity.
+ * <p>
+ * A set of ranges is always acquired in the order of the (upper case) table names, so two threads locking
+ * overlapping sets can't deadlock. Foreground lockers are tracked per range, so background work can give
+ * way only to the foreground checkpoints that are waiting for the same ranges.
+ * </p>
+ */
+public final class RangeLocks {
+
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> foregroundWaiting = new ConcurrentHashMap<>();
+
+    /**
+     * Acquired locks, to be released with {@link #close()}
+     */
+    public final class Held implements AutoCloseable {
+        private final List<ReentrantLock> held;
+
+        private Held(List<ReentrantLock> held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+
+    private static TreeMap<String, Range> sorted(Collection<Range> ranges) {
+        TreeMap<String, Range> sorted = new TreeMap<>();
+        for (Range range : ranges) {
+            sorted.put(range.getTable().toUpperCase(), range);
+        }
+        return sorted;
+    }
+
+    private Held acquire(TreeMap<String, Range> ranges) {
+        List<ReentrantLock> held = new ArrayList<>(ranges.size());
+        for (String key : ranges.keySet()) {
+            ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+            lock.lock();
+            held.add(lock);
+        }
+        return new Held(held);
+    }
+
+    /**
+     * Lock a set of ranges for background work
+     * @param ranges ranges to lock
+     * @return the acquired locks
+     */
+    public Held lock(Collection<Range> ranges) {
+        return acquire(sorted(ranges));
+    }
+
+    /**
+     * Lock a set of ranges for a foreground checkpoint, while waiting background work on the same
+     * ranges yields, see {@link #awaitNoForeground(Collection)}
+     * @param ranges ranges to lock
+     * @return the acquired locks
+     */
+    public Held lockForeground(Collection<Range> ranges) {
+        TreeMap<String, Range> sorted = sorted(ranges);
+        List<AtomicInteger> counters = new ArrayList<>(sorted.size());
+        for (String key : sorted.keySet()) {
+            AtomicInteger counter = foregroundWaiting.computeIfAbsent(key, k -> new AtomicInteger());
+            counter.incrementAndGet();
+            counters.add(counter);
+        }
+        try {
+            return acquire(sorted);
+        } finally {
+            for (AtomicInteger counter : counters) {
+                counter.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Wait until there are no foreground checkpoints waiting for any of the ranges
+     * @param ranges ranges that the background work is going to lock
+     * @throws InterruptedException
+     */
+    public void awaitNoForeground(Collection<Range> ranges) throws InterruptedException {
+        for (Range range : ranges) {
+            AtomicInteger counter = foregroundWaiting.get(range.getTable().toUpperCase());
+            while (counter != null && counter.get() > 0) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
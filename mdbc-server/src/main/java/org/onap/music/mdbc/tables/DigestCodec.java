@@ -0,0 +1,323 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.tables;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.logging.EELFLoggerDelegate;
+
+/**
+ * Serializes and compresses digests with buffers and compressors that are reused by each thread, so the
+ * commit path doesn't allocate them for every transaction. Threads that only live for a request, like the
+ * virtual threads of the request executor, give their codec back to a bounded pool with
+ * {@link #releaseThreadCodec()}, so a new thread reuses it instead of allocating another Deflater and Inflater.
+ * <p>
+ * Messages are serialized with a CodedOutputStream that writes straight into the Deflater, and the
+ * compressed bytes are written into a buffer owned by the codec. The buffers returned by the codec are
+ * views over that buffer: they are only valid until the next use of the codec by the same thread, and
+ * should be copied to be kept longer (see {@link #copy(ByteBuffer)}). Buffers that grew for a large digest
+ * are released by {@link #trim()} once the caller is done with the view, instead of being kept by the thread
+ * until its next digest.
+ * </p>
+ */
+public final class DigestCodec {
+
+    private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(DigestCodec.class);
+
+    /** size of the buffer of the CodedOutputStream, which is flushed into the compressor when full */
+    private static final int CODED_BUFFER_BYTES = 8 * 1024;
+    private static final int INITIAL_OUTPUT_BYTES = 64 * 1024;
+    /** output buffers that grew above this size are released after use, instead of being kept by the thread */
+    public static final int MAX_POOLED_OUTPUT_BYTES = 16 * 1024 * 1024;
+    /** maximum number of idle inflaters kept for the digest readers */
+    private static final int MAX_POOLED_INFLATERS = 64;
+    /** maximum number of idle codecs released by short lived threads */
+    private static final int MAX_POOLED_CODECS = 64;
+
+    private static final ThreadLocal<DigestCodec> CODECS = new ThreadLocal<>();
+    private static final Queue<DigestCodec> IDLE_CODECS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledCodecs = new AtomicInteger();
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledInflaters = new AtomicInteger();
+
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+    private final Sink sink = new Sink();
+    private CodedOutputStream coded = CodedOutputStream.newInstance(sink, CODED_BUFFER_BYTES);
+    private byte[] output = new byte[INITIAL_OUTPUT_BYTES];
+    private int outputSize;
+    /** copy of the input when it is not backed by an array, e.g. a direct buffer */
+    private byte[] input;
+
+    private DigestCodec() {
+    }
+
+    /**
+     * @return the codec of the calling thread
+     */
+    public static DigestCodec get() {
+        DigestCodec codec = CODECS.get();
+        if (codec == null) {
+            codec = IDLE_CODECS.poll();
+            if (codec == null) {
+                codec = new DigestCodec();
+            } else {
+                pooledCodecs.decrementAndGet();
+            }
+            CODECS.set(codec);
+        }
+        return codec;
+    }
+
+    /**
+     * Gives the codec of the calling thread back to the pool, the buffers it returned are no longer valid.
+     * Codecs above the size of the pool are closed.
+     */
+    public static void releaseThreadCodec() {
+        DigestCodec codec = CODECS.get();
+        if (codec == null) {
+            return;
+        }
+        CODECS.remove();
+        if (pooledCodecs.incrementAndGet() > MAX_POOLED_CODECS) {
+            pooledCodecs.decrementAndGet();
+            codec.deflater.end();
+            codec.inflater.end();
+            return;
+        }
+        codec.trim();
+        IDLE_CODECS.offer(codec);
+    }
+
+    /**
+     * Releases the buffers that grew above {@link #MAX_POOLED_OUTPUT_BYTES}, called once the caller is done with
+     * the view returned by the codec. The buffers returned by the codec are no longer valid
+     */
+    public void trim() {
+        if (output.length > MAX_POOLED_OUTPUT_BYTES) {
+            output = new byte[INITIAL_OUTPUT_BYTES];
+            outputSize = 0;
+        }
+        trimInput();
+    }
+
+    /**
+     * Releases a large copy of the input as soon as the operation that used it ends, the compressors are reset
+     * so they don't keep a reference to it either
+     */
+    private void trimInput() {
+        if (input != null && input.length > MAX_POOLED_OUTPUT_BYTES) {
+            input = null;
+            deflater.reset();
+            inflater.reset();
+        }
+    }
+
+    /**
+     * Writes into the output buffer, compressing the bytes first when the deflater is enabled
+     */
+    private final class Sink extends OutputStream {
+        private boolean compress;
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (!compress) {
+                ensureOutput(len);
+                System.arraycopy(b, off, output, outputSize, len);
+                outputSize += len;
+                return;
+            }
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+    }
+
+    private void ensureOutput(int bytes) {
+        if (output.length - outputSize < bytes) {
+            long size = Math.max((long) output.length * 2, (long) outputSize + bytes);
+            output = Arrays.copyOf(output, (int) Math.min(size, Integer.MAX_VALUE - 8));
+        }
+    }
+
+    private void deflate() {
+        ensureOutput(1);
+        outputSize += deflater.deflate(output, outputSize, output.length - outputSize);
+        if (outputSize == output.length) {
+            //grow before the next call, deflate stops when the output is full
+            ensureOutput(CODED_BUFFER_BYTES);
+        }
+    }
+
+    /**
+     * Starts writing a digest into the output buffer of the codec, the previous result is no longer valid
+     * @param compress true to compress the bytes while they are written
+     * @return stream that should be completed with {@link #finish()}
+     */
+    public OutputStream begin(boolean compress) {
+        trim();
+        outputSize = 0;
+        deflater.reset();
+        sink.compress = compress;
+        return sink;
+    }
+
+    /**
+     * @return the bytes written since {@link #begin(boolean)}, valid until the next use of the codec
+     */
+    public ByteBuffer finish() {
+        if (sink.compress) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+        }
+        return ByteBuffer.wrap(output, 0, outputSize);
+    }
+
+    /**
+     * Serializes a message directly into the output buffer, compressing it if requested
+     * @return the serialized message, valid until the next use of the codec
+     */
+    public ByteBuffer serialize(MessageLite message, boolean compress) throws MDBCServiceException {
+        begin(compress);
+        try {
+            message.writeTo(coded);
+            coded.flush();
+        } catch (IOException | RuntimeException e) {
+            //the coded stream may keep part of the message, it is not reused
+            coded = CodedOutputStream.newInstance(sink, CODED_BUFFER_BYTES);
+            logger.error("Serializing digest failed with an exception: " + e.getMessage());
+            throw new MDBCServiceException("Error serializing digest", e);
+        }
+        return finish();
+    }
+
+    /**
+     * @param serialized serialized digest, heap or direct, it is not modified
+     * @return the compressed digest, valid until the next use of the codec
+     */
+    public ByteBuffer compress(ByteBuffer serialized) throws MDBCServiceException {
+        OutputStream out = begin(true);
+        try {
+            if (serialized.hasArray()) {
+                out.write(serialized.array(), serialized.arrayOffset() + serialized.position(),
+                    serialized.remaining());
+            } else {
+                byte[] copy = inputOf(serialized);
+                out.write(copy, 0, serialized.remaining());
+            }
+        } catch (IOException e) {
+            throw new MDBCServiceException("Error compressing digest", e);
+        }
+        ByteBuffer compressed = finish();
+        trimInput();
+        return compressed;
+    }
+
+    /**
+     * @param compressed compressed digest, heap or direct, it is not modified
+     * @return the decompressed digest, valid until the next use of the codec
+     */
+    public ByteBuffer decompress(ByteBuffer compressed) throws MDBCServiceException {
+        begin(false);
+        inflater.reset();
+        if (compressed.hasArray()) {
+            inflater.setInput(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                compressed.remaining());
+        } else {
+            inflater.setInput(inputOf(compressed), 0, compressed.remaining());
+        }
+        try {
+            while (!inflater.finished()) {
+                ensureOutput(CODED_BUFFER_BYTES);
+                int inflated = inflater.inflate(output, outputSize, output.length - outputSize);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new MDBCServiceException("Compressed digest is truncated");
+                }
+                outputSize += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new MDBCServiceException("error decompressing input data", e);
+        } finally {
+            trimInput();
+        }
+        return ByteBuffer.wrap(output, 0, outputSize);
+    }
+
+    private byte[] inputOf(ByteBuffer buffer) {
+        if (input == null || input.length < buffer.remaining()) {
+            input = new byte[buffer.remaining()];
+        }
+        buffer.duplicate().get(input, 0, buffer.remaining());
+        return input;
+    }
+
+    /**
+     * @return a copy of a buffer returned by the codec, that can be kept after the codec is used again
+     */
+    public static ByteBuffer copy(ByteBuffer buffer) {
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return ByteBuffer.wrap(copy);
+    }
+
+    /**
+     * @return an inflater from the pool, it should be given back with {@link #releaseInflater(Inflater)}
+     */
+    static Inflater borrowInflater() {
+        Inflater pooled = INFLATERS.poll();
+        if (pooled == null) {
+            return new Inflater();
+        }
+        pooledInflaters.decrementAndGet();
+        return pooled;
+    }
+
+    static void releaseInflater(Inflater released) {
+        if (pooledInflaters.incrementAndGet() > MAX_POOLED_INFLATERS) {
+            pooledInflaters.decrementAndGet();
+            released.end();
+            return;
+        }
+        released.reset();
+        INFLATERS.offer(released);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.tables;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.logging.EELFLoggerDelegate;
+import org.onap.music.mdbc.proto.ProtoDigest.Digest.CompleteDigest;
+import org.onap.music.mdbc.proto.ProtoDigest.Digest.Row;
+import org.onap.music.mdbc.proto.ProtoDigest.Digest.Row.OpType;
+import org.onap.music.mdbc.query.SQLOperation;
+
+/**
+ * Reads the operations of a digest one at a time, in replay order.
+ * <p>
+ * For a serialized digest the rows are decompressed and decoded while they are consumed, so only the
+ * compressed digest and the current row are kept in memory, instead of the whole decoded digest.
+ * </p>
+ */
+public class DigestReader implements AutoCloseable {
+
+    private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(DigestReader.class);
+    private static final int ROWS_TAG =
+        (CompleteDigest.ROWS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+    private final InputStream source;
+    /** inflater borrowed from {@link DigestCodec}, null if the digest is not compressed */
+    private Inflater inflater;
+    private final CodedInputStream in;
+    private final Iterator<Operation> decoded;
+    private Operation next;
+    private boolean done;
+
+    private DigestReader(InputStream source, Inflater inflater, Iterator<Operation> decoded) {
+        this.source = source;
+        this.inflater = inflater;
+        this.decoded = decoded;
+        if (source != null) {
+            in = CodedInputStream.newInstance(source);
+            //the limit applies per row, it is reset after each one
+            in.setSizeLimit(Integer.MAX_VALUE);
+        } else {
+            in = null;
+        }
+    }
+
+    /**
+     * Reader over operations that were already decoded
+     */
+    public static DigestReader of(List<Operation> operations) {
+        return new DigestReader(null, null, operations.iterator());
+    }
+
+    /**
+     * Reader over a serialized CompleteDigest
+     * @param serialized serialized digest, it is not modified
+     * @param compressed true if the digest was compressed with {@link StagingTable#Compress(ByteBuffer)}
+     */
+    public static DigestReader of(ByteBuffer serialized, boolean compressed) {
+        InputStream source;
+        if (serialized.hasArray()) {
+            source = new ByteArrayInputStream(serialized.array(), serialized.arrayOffset() + serialized.position(),
+                serialized.remaining());
+        } else {
+            byte[] copy = new byte[serialized.remaining()];
+            serialized.duplicate().get(copy);
+            source = new ByteArrayInputStream(copy);
+        }
+        return of(source, compressed);
+    }
+
+    /**
+     * Reader over a serialized CompleteDigest
+     * @param serialized stream with the serialized digest, it is closed with the reader
+     * @param compressed true if the digest was compressed with {@link StagingTable#Compress(ByteBuffer)}
+     */
+    public static DigestReader of(InputStream serialized, boolean compressed) {
+        if (!compressed) {
+            return new DigestReader(serialized, null, null);
+        }
+        Inflater inflater = DigestCodec.borrowInflater();
+        return new DigestReader(new InflaterInputStream(serialized, inflater), inflater, null);
+    }
+
+    static Operation toOperation(Row row) {
+        final OpType type = row.getType();
+        SQLOperation newType = (type==OpType.INSERT)?SQLOperation.INSERT:(type==OpType.DELETE)?
+            SQLOperation.DELETE:SQLOperation.UPDATE;
+        return new Operation(row.getTable(),newType,row.getVal(),row.getKey());
+    }
+
+    private Operation readNext() throws MDBCServiceException {
+        if (decoded != null) {
+            return decoded.hasNext() ? decoded.next() : null;
+        }
+        try {
+            while (true) {
+                int tag = in.readTag();
+                if (tag == 0) {
+                    return null;
+                }
+                if (tag == ROWS_TAG) {
+                    Row row = in.readMessage(Row.parser(), ExtensionRegistryLite.getEmptyRegistry());
+                    in.resetSizeCounter();
+                    return toOperation(row);
+                }
+                if (!in.skipField(tag)) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            throw new MDBCServiceException("Invalid serialized input to protobuf deserializer", e);
+        }
+    }
+
+    /**
+     * @return true if there are more operations in the digest
+     * @throws MDBCServiceException if the digest can't be decoded
+     */
+    public boolean hasNext() throws MDBCServiceException {
+        if (next == null && !done) {
+            next = readNext();
+            done = (next == null);
+        }
+        return next != null;
+    }
+
+    /**
+     * @return the next operation of the digest
+     * @throws MDBCServiceException if the digest can't be decoded
+     */
+    public Operation next() throws MDBCServiceException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more operations in the digest");
+        }
+        Operation current = next;
+        next = null;
+        return current;
+    }
+
+    @Override
+    public void close() {
+        if (source == null) {
+            return;
+        }
+        try {
+            source.close();
+        } catch (IOException e) {
+            logger.warn("Error closing digest stream: " + e.getMessage());
+        }
+        if (inflater != null) {
+            DigestCodec.releaseInflater(inflater);
+            inflater = null;
+        }
+    }
+}
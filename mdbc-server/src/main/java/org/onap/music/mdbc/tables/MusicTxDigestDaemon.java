@@ -20,58 +20,275 @@
 package org.onap.music.mdbc.tables;
 
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
 import org.onap.music.exceptions.MDBCServiceException;
 import org.onap.music.logging.EELFLoggerDelegate;
 import org.onap.music.mdbc.DatabasePartition;
 import org.onap.music.mdbc.MdbcConnection;
 import org.onap.music.mdbc.Range;
 import org.onap.music.mdbc.StateManager;
+import org.onap.music.mdbc.metrics.ReplicationLag;
 import org.onap.music.mdbc.mixins.DBInterface;
 import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.ownership.OwnershipAndCheckpoint;
 
 public class MusicTxDigestDaemon implements Runnable {
 
 	private static EELFLoggerDelegate logger = EELFLoggerDelegate.getLogger(MusicTxDigestDaemon.class);
+	/** time, in seconds, to wait for the local database when checking that the daemon connection is usable */
+	private static final int CONNECTION_VALID_TIMEOUT_S = 5;
 
 	private StateManager stateManager;
-	private int daemonSleepTimeS;
+	private long maxSleepMs;
+	private long minSleepMs;
+	private long fullRescanMs;
+	private int eventualPageSize;
+	/** ranges used in the last full scan of the mri table */
+	private Set<Range> scannedRanges;
+	/** version of each latest mri row of the scanned ranges, as found in the last full scan */
+	private Map<UUID, Integer> scannedVersions;
+	private long lastFullScan;
+	private int warmupWorkers;
+	private ExecutorService warmupExecutor;
+	/** connections used by the warmup workers, each worker needs its own connection to the local database */
+	private BlockingQueue<MdbcConnection> warmupConnections;
 
-	public MusicTxDigestDaemon(int daemonSleepTimeS, StateManager stateManager) {
+	/**
+	 * @param daemonSleepTimeS maximum time between iterations, used when there is no work to do
+	 * @param minSleepMs minimum time between iterations, used while there is work pending
+	 * @param fullRescanS maximum time between full scans of the mri table
+	 * @param eventualPageSize number of eventual digests replayed per transaction
+	 * @param warmupWorkers number of independent groups of ranges warmed up in parallel
+	 * @param stateManager
+	 */
+	public MusicTxDigestDaemon(int daemonSleepTimeS, long minSleepMs, int fullRescanS, int eventualPageSize,
+			int warmupWorkers, StateManager stateManager) {
 		this.stateManager = stateManager;
-		this.daemonSleepTimeS = daemonSleepTimeS;
+		this.maxSleepMs = TimeUnit.SECONDS.toMillis(daemonSleepTimeS);
+		this.minSleepMs = Math.max(1, Math.min(minSleepMs, this.maxSleepMs));
+		this.fullRescanMs = TimeUnit.SECONDS.toMillis(fullRescanS);
+		this.eventualPageSize = Math.max(1, eventualPageSize);
+		this.warmupWorkers = Math.max(1, warmupWorkers);
 	}
 
 	/**
-	 * Replay the digest for eventual consistency.
+	 * Bring the warmup ranges up to date. The mri table is only scanned when a probe of the latest rows found
+	 * in the previous scan detects a change, or when the rescan period expires, because new rows for the ranges
+	 * are not visible to the probe.
 	 *
 	 * @param mi music interface
 	 * @param dbi interface to the database that will replay the operations
-	 * @param ranges only these ranges will be applied from the digests
+	 * @param warmupRanges ranges to warmup
+	 * @return true if changes were found in the mri table
 	 */
-	public void replayDigest(MusicInterface mi, DBInterface dbi, Set<Range> ranges) throws MDBCServiceException {
-		StagingTable transaction;
-		String nodeName = stateManager.getMdbcServerName();
+	public boolean warmup(MusicInterface mi, DBInterface dbi, Set<Range> warmupRanges) throws MDBCServiceException {
+		long now = System.currentTimeMillis();
+		if (scannedVersions != null && warmupRanges.equals(scannedRanges) && now - lastFullScan < fullRescanMs
+			&& scannedVersions.equals(mi.getMriRowVersions(scannedVersions.keySet()))) {
+			return false;
+		}
+		OwnershipAndCheckpoint ownAndCheck = stateManager.getOwnAndCheck();
+		List<MusicRangeInformationRow> rows = ownAndCheck.extractRowsForRange(mi, warmupRanges, false);
+		ReplicationLag.get().observe(warmupRanges, rows, ownAndCheck.getAlreadyApplied());
+		Map<UUID, Integer> versions = new HashMap<>();
+		for (MusicRangeInformationRow row : rows) {
+			if (row.getIsLatest()) {
+				versions.put(row.getPartitionIndex(), row.getRedoLog().size());
+			}
+		}
+		List<Set<Range>> groups = OwnershipAndCheckpoint.splitIndependentRanges(warmupRanges, rows);
+		if (warmupWorkers == 1 || groups.size() <= 1) {
+			ownAndCheck.warmup(mi, dbi, warmupRanges, rows);
+		} else {
+			parallelWarmup(mi, ownAndCheck, groups, rows);
+		}
+		boolean changed = !versions.equals(scannedVersions);
+		scannedRanges = warmupRanges;
+		scannedVersions = versions;
+		lastFullScan = now;
+		return changed;
+	}
 
-		LinkedHashMap<UUID, StagingTable> ecDigestInformation = mi.getEveTxDigest(nodeName);
-		Set<UUID> keys = ecDigestInformation.keySet();
-		for (UUID txTimeID : keys) {
-			transaction = ecDigestInformation.get(txTimeID);
+	/**
+	 * Warmup each group of ranges in the worker pool, using a different connection per worker
+	 */
+	private void parallelWarmup(MusicInterface mi, OwnershipAndCheckpoint ownAndCheck, List<Set<Range>> groups,
+			List<MusicRangeInformationRow> rows) throws MDBCServiceException {
+		if (warmupExecutor == null) {
+			warmupExecutor = Executors.newFixedThreadPool(warmupWorkers, r -> {
+				Thread t = new Thread(r, "TxDaemonWarmup");
+				t.setDaemon(true);
+				return t;
+			});
+			warmupConnections = new ArrayBlockingQueue<>(warmupWorkers);
+			for (int i = 0; i < warmupWorkers; i++) {
+				MdbcConnection conn = (MdbcConnection) stateManager.getConnection("warmup-" + i);
+				if (conn == null) {
+					throw new MDBCServiceException("Unable to create connection for warmup worker " + i);
+				}
+				warmupConnections.add(conn);
+			}
+		}
+		List<Future<Void>> results = new ArrayList<>();
+		for (Set<Range> group : groups) {
+			results.add(warmupExecutor.submit(() -> {
+				MdbcConnection conn = warmupConnections.take();
+				try {
+					ownAndCheck.warmup(mi, conn.getDBInterface(), group, rows);
+				} finally {
+					warmupConnections.put(conn);
+				}
+				return null;
+			}));
+		}
+		MDBCServiceException error = null;
+		for (Future<Void> result : results) {
 			try {
-				dbi.replayTransaction(transaction); // I think this Might change if the data is coming from a new table.. ( what is the new table structure??)
-			} catch (SQLException e) {
-				logger.error("EC:Rolling back the entire digest replay.");
-				return;
+				result.get();
+			} catch (ExecutionException e) {
+				logger.error("Warmup worker failed: " + e.getCause().getMessage());
+				error = new MDBCServiceException("Warmup worker failed", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MDBCServiceException("Warmup interrupted", e);
 			}
-			logger.info("EC: Successfully replayed transaction ");
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Close a connection that is not usable, removing it from the state manager even if closing it fails,
+	 * so the next request for the connection opens a new one
+	 */
+	private void discardConnection(MdbcConnection conn) {
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			logger.error("MusicTxDigest background daemon error closing invalid connection " + e.getMessage(), e);
+		} finally {
+			stateManager.closeConnection("daemon");
+		}
+	}
 
+	private void closeWarmupWorkers() {
+		if (warmupExecutor == null) {
+			return;
+		}
+		warmupExecutor.shutdownNow();
+		for (MdbcConnection conn : warmupConnections) {
 			try {
-				mi.updateNodeInfoTableWithTxTimeIDKey(txTimeID, nodeName);
-			} catch (MDBCServiceException e) {
-				logger.error("EC:Rolling back the entire digest replay.");
+				if (!conn.isClosed()) conn.close();
+			} catch (SQLException e) {
+				logger.error("MusicTxDigest background daemon error closing warmup connection" + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Merge eventual digests with last-writer-wins semantics. Only the final image of each (table, key) is kept,
+	 * in the position of its last write. Operations without key can't be merged and are kept as they are.
+	 *
+	 * @param digests digests in txtimeid order
+	 * @return staging table with the merged operations
+	 */
+	public static StagingTable coalesce(Collection<StagingTable> digests) {
+		LinkedHashMap<String, Operation> finalImages = new LinkedHashMap<>();
+		int unkeyed = 0;
+		for (StagingTable digest : digests) {
+			for (Operation op : digest.getOperationList()) {
+				String id = (op.KEY == null || op.KEY.isEmpty()) ? "#" + (unkeyed++)
+					: op.getTable().toUpperCase() + ":" + new TreeMap<>(new JSONObject(op.KEY).toMap());
+				finalImages.remove(id);
+				finalImages.put(id, op);
+			}
+		}
+		return new StagingTable(new ArrayList<>(finalImages.values()));
+	}
+
+	/**
+	 * Replay the next page of digests for eventual consistency. The page is merged and applied as a single
+	 * transaction, and the node info pointer is only moved once for the whole page. The merge reorders the writes
+	 * across tables, so the foreign key checks are disabled during the replay. If the merged page can't be
+	 * replayed, its digests are replayed one at a time, in order, up to the first one that fails.
+	 *
+	 * @param mi music interface
+	 * @param dbi interface to the database that will replay the operations
+	 * @param ranges only these ranges will be applied from the digests
+	 * @return number of digests replayed, a full page means there may be more digests waiting
+	 */
+	public int replayDigest(MusicInterface mi, DBInterface dbi, Set<Range> ranges) throws MDBCServiceException {
+		String nodeName = stateManager.getMdbcServerName();
+
+		LinkedHashMap<UUID, StagingTable> ecDigestInformation = mi.getEveTxDigest(nodeName, eventualPageSize);
+		if (ecDigestInformation.isEmpty()) {
+			return 0;
+		}
+		UUID lastTxTimeID = null;
+		for (UUID txTimeID : ecDigestInformation.keySet()) {
+			lastTxTimeID = txTimeID;
+		}
+		StagingTable transaction = coalesce(ecDigestInformation.values());
+		int replayed = ecDigestInformation.size();
+		try {
+			replayWithoutForeignKeys(dbi, transaction);
+			logger.info("EC: Successfully replayed " + replayed + " transactions as "
+				+ transaction.getOperationList().size() + " operations");
+		} catch (SQLException e) {
+			logger.error("EC:Rolling back the merged digest replay, replaying the digests one at a time: "
+				+ e.getMessage());
+			replayed = 0;
+			lastTxTimeID = null;
+			for (Map.Entry<UUID, StagingTable> digest : ecDigestInformation.entrySet()) {
+				try {
+					replayWithoutForeignKeys(dbi, digest.getValue());
+				} catch (SQLException e1) {
+					logger.error("EC:Unable to replay eventual digest " + digest.getKey() + ": " + e1.getMessage());
+					break;
+				}
+				replayed++;
+				lastTxTimeID = digest.getKey();
 			}
+			if (lastTxTimeID == null) {
+				return 0;
+			}
+		}
+
+		try {
+			mi.updateNodeInfoTableWithTxTimeIDKey(lastTxTimeID, nodeName);
+		} catch (MDBCServiceException e) {
+			logger.error("EC:Unable to move the node info pointer, the page will be replayed again.");
+			return 0;
+		}
+		return replayed;
+	}
+
+	/**
+	 * Poll again soon while there are changes, back off while idle
+	 * @param sleepMs time slept after the previous iteration
+	 * @param busy true if the last iteration found changes
+	 * @return time to sleep after this iteration, between the minimum and the maximum sleep time
+	 */
+	long nextSleepMs(long sleepMs, boolean busy) {
+		return busy ? minSleepMs : Math.min(sleepMs * 2, maxSleepMs);
+	}
+
+	private static void replayWithoutForeignKeys(DBInterface dbi, StagingTable transaction)
+			throws SQLException, MDBCServiceException {
+		dbi.disableForeignKeyChecks();
+		try {
+			dbi.replayTransaction(transaction);
+		} finally {
+			dbi.enableForeignKeyChecks();
 		}
 	}
 
@@ -89,63 +306,69 @@ public class MusicTxDigestDaemon implements Runnable {
 			return;
 		}
 		MdbcConnection conn = null;
-		while (true) {
-			try {
-				conn = (MdbcConnection) stateManager.getConnection("daemon");
-				if (conn == null) {
-					logger.error("Connection created is null in background daemon");
-					return;
-				}
-				DBInterface dbi = (conn).getDBInterface();
-				//update
-				logger.info(String.format("[%s] Background MusicTxDigest daemon updating local db",
-					new Timestamp(System.currentTimeMillis())));
-
-				//1) get all other partitions from musicrangeinformation
-				List<UUID> partitions = null;
+		long sleepMs = minSleepMs;
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
 				try {
-					partitions = mi.getPartitionIndexes();
-				} catch (MDBCServiceException e) {
-					logger.error("Error obtainting partition indexes, trying again next iteration");
+					if (conn != null && !conn.isValid(CONNECTION_VALID_TIMEOUT_S)) {
+						logger.warn("MusicTxDigest background daemon connection is not valid anymore, opening a new one");
+						discardConnection(conn);
+						conn = null;
+					}
+					if (conn == null) {
+						conn = (MdbcConnection) stateManager.getConnection("daemon");
+						if (conn == null) {
+							logger.error("Connection created is null in background daemon");
+							return;
+						}
+					}
+				} catch (SQLException e) {
+					logger.error("MusicTxDigest background daemon unable to open connection " + e.getMessage(), e);
+					conn = null;
+					Thread.sleep(maxSleepMs);
 					continue;
 				}
-				//2) for each partition I don't own
-				final Set<Range> warmupRanges = stateManager.getRangesToWarmup();
-				if (warmupRanges!=null) {
-					final List<DatabasePartition> currentPartitions = stateManager.getPartitions();
-					List<Range> missingRanges = new ArrayList<>();
-					if (currentPartitions.size() != 0) {
-						for (DatabasePartition part : currentPartitions) {
-							Set<Range> partitionRanges = part.getSnapshot();
-							warmupRanges.removeAll(partitionRanges);
-						}
-						try {
-							stateManager.getOwnAndCheck().warmup(mi, dbi, new HashSet<>(warmupRanges));
-						} catch (MDBCServiceException e) {
-							logger.error("Unable to update for partition : " + warmupRanges + ". " + e.getMessage());
-							continue;
-						}
+				DBInterface dbi = conn.getDBInterface();
+				boolean busy = false;
+
+				//1) warmup the ranges that are not owned by this server
+				final Set<Range> rangesToWarmup = stateManager.getRangesToWarmup();
+				final List<DatabasePartition> currentPartitions = stateManager.getPartitions();
+				if (rangesToWarmup != null && currentPartitions.size() != 0) {
+					Set<Range> warmupRanges = new HashSet<>(rangesToWarmup);
+					for (DatabasePartition part : currentPartitions) {
+						warmupRanges.removeAll(part.getSnapshot());
+					}
+					try {
+						busy |= warmup(mi, dbi, warmupRanges);
+					} catch (MDBCServiceException e) {
+						logger.error("Unable to update for partition : " + warmupRanges + ". " + e.getMessage());
 					}
 				}
 
-				//Step 3: ReplayDigest() for E.C conditions
+				//2) ReplayDigest() for E.C conditions, draining the backlog before sleeping
 				try {
-					replayDigest(mi, dbi, stateManager.getEventualRanges());
+					int replayed;
+					do {
+						replayed = replayDigest(mi, dbi, stateManager.getEventualRanges());
+						busy |= replayed > 0;
+					} while (replayed >= eventualPageSize && !Thread.currentThread().isInterrupted());
 				} catch (MDBCServiceException e) {
 					logger.error("Unable to perform Eventual Consistency operations" + e.getMessage());
-					continue;
-				}
-				conn.close();
-				Thread.sleep(TimeUnit.SECONDS.toMillis(this.daemonSleepTimeS));
-			} catch (InterruptedException | SQLException e) {
-				logger.error("MusicTxDigest background daemon stopped " + e.getMessage(), e);
-				Thread.currentThread().interrupt();
-			} finally {
-				try {
-					if (conn!=null && !conn.isClosed()) conn.close();
-				} catch (SQLException e) {
-					logger.error("MusicTxDigest background daemon error closing" + e.getMessage(), e);
 				}
+
+				sleepMs = nextSleepMs(sleepMs, busy);
+				Thread.sleep(sleepMs);
+			}
+		} catch (InterruptedException e) {
+			logger.error("MusicTxDigest background daemon stopped " + e.getMessage(), e);
+			Thread.currentThread().interrupt();
+		} finally {
+			closeWarmupWorkers();
+			try {
+				if (conn!=null && !conn.isClosed()) conn.close();
+			} catch (SQLException e) {
+				logger.error("MusicTxDigest background daemon error closing" + e.getMessage(), e);
 			}
 		}
 	}
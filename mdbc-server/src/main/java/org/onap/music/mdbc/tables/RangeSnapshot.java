@@ -0,0 +1,70 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+package org.onap.music.mdbc.tables;
+
+import java.util.UUID;
+import org.apache.commons.lang3.tuple.Pair;
+import org.onap.music.mdbc.Range;
+
+/**
+ * Materialized contents of a range at a given position of the redo history.
+ * Applying the snapshot is equivalent to replaying every digest up to, and including,
+ * the digest it is tagged with.
+ */
+public final class RangeSnapshot {
+    private final UUID snapshotId;
+    private final Range range;
+    private final MriReference mriReference;
+    private final MusicTxDigestId digestId;
+    private final StagingTable contents;
+
+    public RangeSnapshot(UUID snapshotId, Range range, MriReference mriReference, MusicTxDigestId digestId,
+                         StagingTable contents) {
+        this.snapshotId = snapshotId;
+        this.range = range;
+        this.mriReference = mriReference;
+        this.digestId = digestId;
+        this.contents = contents;
+    }
+
+    public UUID getSnapshotId() {
+        return snapshotId;
+    }
+
+    public Range getRange() {
+        return range;
+    }
+
+    /**
+     * @return the redo position reflected by this snapshot, in the same format used by alreadyApplied
+     */
+    public Pair<MriReference, MusicTxDigestId> getPosition() {
+        return Pair.of(mriReference, digestId);
+    }
+
+    public StagingTable getContents() {
+        return contents;
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot " + snapshotId + " of " + range + " at (" + mriReference + ", " + digestId + ")";
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+package org.onap.music.mdbc.tables;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import org.apache.commons.lang3.tuple.Pair;
+import org.json.JSONObject;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.mixins.DBInterface;
+
+/**
+ * Local file with the contents of a range snapshot, used to bootstrap a new server with the bulk load
+ * paths of the database (multi-row INSERT / COPY) instead of replaying the redo history.
+ * <p>
+ * The first line contains the range and position of the snapshot, the second line the column names and the
+ * rest of the file the rows, in the tab separated text format shared by MySQL LOAD DATA and Postgres COPY
+ * (NULL as \N, backslash escapes for tab, new line, carriage return and backslash).
+ * </p>
+ * The file is read through memory mapped windows, so it does not need to fit in the heap.
+ */
+public class RangeSnapshotFile implements Closeable {
+    public static final String MAGIC = "MDBC-SNAPSHOT";
+    public static final String SUFFIX = ".snapshot";
+    /** Size of each memory mapped window of the file */
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Range range;
+    private final MriReference mriReference;
+    private final MusicTxDigestId digestId;
+    private final List<String> columns;
+    private final long rowsOffset;
+
+    private RangeSnapshotFile(RandomAccessFile file, Range range, MriReference mriReference,
+                              MusicTxDigestId digestId, List<String> columns, long rowsOffset) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.range = range;
+        this.mriReference = mriReference;
+        this.digestId = digestId;
+        this.columns = columns;
+        this.rowsOffset = rowsOffset;
+    }
+
+    /**
+     * Open a snapshot file and parse its header
+     * @param path snapshot file
+     * @return the opened file, it should be closed by the caller
+     * @throws MDBCServiceException if the file is not a valid snapshot file
+     */
+    public static RangeSnapshotFile open(File path) throws MDBCServiceException {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(path, "r");
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(channel.size(), WINDOW_SIZE));
+            String first = readLine(header);
+            String second = readLine(header);
+            if (first == null || second == null) {
+                throw new MDBCServiceException("Truncated snapshot file " + path);
+            }
+            String[] position = first.split("\t");
+            if (position.length != 4 || !MAGIC.equals(position[0])) {
+                throw new MDBCServiceException("Invalid snapshot file header in " + path);
+            }
+            List<String> columns = second.isEmpty() ? Collections.<String>emptyList()
+                : Arrays.asList(second.split("\t"));
+            MriReference mriReference = new MriReference(position[2]);
+            return new RangeSnapshotFile(file, new Range(position[1]), mriReference,
+                new MusicTxDigestId(position[2], position[3], -1), columns, header.position());
+        } catch (IOException | IllegalArgumentException e) {
+            closeQuietly(file);
+            throw new MDBCServiceException("Error opening snapshot file " + path, e);
+        } catch (MDBCServiceException e) {
+            closeQuietly(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Write the contents of a snapshot into a local file. The rows are decoded one at a time, in a first pass
+     * that collects the columns and a second one that writes them
+     * @param path destination file
+     * @param snapshot snapshot to export, usually read from music
+     * @throws MDBCServiceException
+     */
+    public static void write(File path, RangeSnapshot snapshot) throws MDBCServiceException {
+        TreeSet<String> columnSet = new TreeSet<>();
+        try (DigestReader rows = snapshot.getContents().readOperations()) {
+            while (rows.hasNext()) {
+                columnSet.addAll(rows.next().getVal().keySet());
+            }
+        }
+        List<String> columns = new ArrayList<>(columnSet);
+        Pair<MriReference, MusicTxDigestId> position = snapshot.getPosition();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path),
+            StandardCharsets.UTF_8))) {
+            out.write(MAGIC + "\t" + snapshot.getRange().getTable() + "\t" + position.getLeft().getIndex() + "\t"
+                + position.getRight().transactionId + "\n");
+            out.write(String.join("\t", columns) + "\n");
+            try (DigestReader rows = snapshot.getContents().readOperations()) {
+                while (rows.hasNext()) {
+                    writeRow(out, columns, rows.next().getVal());
+                }
+            }
+        } catch (IOException e) {
+            throw new MDBCServiceException("Error writing snapshot file " + path, e);
+        }
+    }
+
+    private static void writeRow(Writer out, List<String> columns, JSONObject val) throws IOException {
+        String sep = "";
+        for (String col : columns) {
+            out.write(sep);
+            Object field = val.opt(col);
+            out.write((field == null || field == JSONObject.NULL) ? "\\N" : escape(field.toString()));
+            sep = "\t";
+        }
+        out.write("\n");
+    }
+
+    /**
+     * @return the field escaped for the text format of COPY and LOAD DATA
+     */
+    public static String escape(String field) {
+        StringBuilder escaped = new StringBuilder(field.length());
+        for (char c : field.toCharArray()) {
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * @param line row in the text format of COPY and LOAD DATA, without the new line
+     * @return the unescaped fields of the row, null for \N
+     */
+    public static List<String> parseRow(String line) {
+        String[] fields = line.split("\t", -1);
+        List<String> row = new ArrayList<>(fields.length);
+        for (String field : fields) {
+            row.add("\\N".equals(field) ? null : unescape(field));
+        }
+        return row;
+    }
+
+    /**
+     * @return the field without the escapes of the text format of COPY and LOAD DATA
+     */
+    public static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder unescaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || i + 1 == field.length()) {
+                unescaped.append(c);
+                continue;
+            }
+            char escaped = field.charAt(++i);
+            switch (escaped) {
+                case 't': unescaped.append('\t'); break;
+                case 'n': unescaped.append('\n'); break;
+                case 'r': unescaped.append('\r'); break;
+                default: unescaped.append(escaped);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private static String readLine(MappedByteBuffer buffer) {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (buffer.get() == '\n') {
+                byte[] line = new byte[buffer.position() - start - 1];
+                for (int i = 0; i < line.length; i++) {
+                    line[i] = buffer.get(start + i);
+                }
+                return new String(line, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                //nothing to do
+            }
+        }
+    }
+
+    public Range getRange() {
+        return range;
+    }
+
+    public Pair<MriReference, MusicTxDigestId> getPosition() {
+        return Pair.of(mriReference, digestId);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return stream over the rows section of the file, backed by memory mapped windows
+     */
+    public InputStream openRows() {
+        return new MappedInputStream(channel, rowsOffset);
+    }
+
+    /**
+     * Replace the local contents of the range with the rows in this file, and move the local checkpoint
+     * to the position of the snapshot, so only the redo log after it needs to be replayed
+     * @param dbi interface to the database where the rows are loaded
+     * @return the position of the snapshot
+     * @throws MDBCServiceException
+     */
+    public Pair<MriReference, MusicTxDigestId> loadInto(DBInterface dbi) throws MDBCServiceException {
+        try (InputStream rows = openRows()) {
+            dbi.bulkLoadRange(range, columns, rows);
+        } catch (SQLException | IOException e) {
+            throw new MDBCServiceException("Error bulk loading snapshot of " + range, e);
+        }
+        Pair<MriReference, MusicTxDigestId> position = getPosition();
+        dbi.updateCheckpointLocations(range, position);
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static class MappedInputStream extends InputStream {
+        private final FileChannel channel;
+        private long offset;
+        private MappedByteBuffer window;
+
+        MappedInputStream(FileChannel channel, long offset) {
+            this.channel = channel;
+            this.offset = offset;
+        }
+
+        private boolean ensureWindow() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            long size = channel.size();
+            if (offset >= size) {
+                return false;
+            }
+            long length = Math.min(WINDOW_SIZE, size - offset);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            offset += length;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureWindow()) {
+                return -1;
+            }
+            return window.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureWindow()) {
+                return -1;
+            }
+            int count = Math.min(len, window.remaining());
+            window.get(b, off, count);
+            return count;
+        }
+    }
+}
@@ -21,13 +21,19 @@ package org.onap.music.mdbc.tables;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
-import java.util.zip.Inflater;
+import java.util.zip.DeflaterOutputStream;
 import javax.validation.constraints.Null;
 import org.onap.music.exceptions.MDBCServiceException;
 import org.onap.music.logging.EELFLoggerDelegate;
@@ -47,6 +53,27 @@ public class StagingTable {
 	Builder digestBuilder;
     Builder eventuallyBuilder;
 	Set<Range> eventuallyConsistentRanges;
+	/** serialized digest decoded on demand, null if the operations are already decoded */
+	private ByteBuffer serialized;
+	private boolean compressed;
+	/** serialized size above which the staged rows are spilled to a file, non positive keeps them in the heap */
+	private static volatile long spillThresholdBytes = 0;
+	/** directory of the spill files, null for the default temporary directory */
+	private static volatile File spillDirectory = null;
+	/** serialized size above which the rows of a range snapshot are spilled, whatever the configured threshold */
+	public static final long SNAPSHOT_SPILL_BYTES = 4 * 1024 * 1024;
+	/** spill threshold of this table, non positive to use the configured one */
+	private long ownSpillThresholdBytes = 0;
+	/** approximate serialized size of the rows in digestBuilder */
+	private long stagedBytes = 0;
+	/** rows added since the table was created, including the eventual ones, never reset */
+	private long addedRows = 0;
+	/** serialized size of the rows added since the table was created, never reset */
+	private long addedBytes = 0;
+	/** rows that were moved from digestBuilder to the spill file */
+	private int spilledRows = 0;
+	private Path spillFile;
+	private OutputStream spillStream;
 
 	public StagingTable(){
         this(new HashSet<>());
@@ -96,6 +123,15 @@ public class StagingTable {
 		eventuallyBuilder = (this.eventuallyConsistentRanges.isEmpty())?null:CompleteDigest.newBuilder();
 	}
 
+	/**
+	 * Unmutable staging table with operations that were already decoded, e.g. the result of merging several digests
+	 * @param operations operations in replay order
+	 */
+	public StagingTable(List<Operation> operations) {
+	    builderInitialized=false;
+	    this.operations = new ArrayList<>(operations);
+	}
+
 	public StagingTable(ByteBuffer serialized) throws MDBCServiceException {
 	    builderInitialized=false;
 	    operations = new ArrayList<>();
@@ -106,72 +142,78 @@ public class StagingTable {
             throw new MDBCServiceException("Invalid serialized input to protobuf deserializer",e);
         }
         for(Row row : completeDigest.getRowsList()){
-            final OpType type = row.getType();
-            SQLOperation newType = (type==OpType.INSERT)?SQLOperation.INSERT:(type==OpType.DELETE)?
-            SQLOperation.DELETE:SQLOperation.UPDATE;
-            operations.add(new Operation(row.getTable(),newType,row.getVal(),row.getKey()));
+            operations.add(DigestReader.toOperation(row));
         }
     }
 
-    public static ByteBuffer Compress(ByteBuffer serializedStaging) throws MDBCServiceException {
-	    if(serializedStaging.hasArray()) {
-	        //\TODO: Use JAVA 11 to simplify this process using ByteBuffer natively
-            Deflater compressor =  new Deflater();
-            final byte[] inputArray = serializedStaging.array();
-            compressor.setInput(inputArray);
-            compressor.finish();
-            ByteArrayOutputStream bos = new ByteArrayOutputStream(serializedStaging.array().length);
-            byte[] buf = new byte[1024];
-            try {
-                while (!compressor.finished()) {
-                    int i = compressor.deflate(buf);
-                    bos.write(buf, 0, i);
-                }
-            } finally {
-                compressor.end();
-                try {
-                    bos.close();
-                } catch (IOException e) {
-                    throw new MDBCServiceException("Error closing ByetArrayOutputStream:",e);
-                }
-            }
-            byte[] output = bos.toByteArray();
-            logger.debug("Staging table compressed from: "+inputArray.length+" to "+output.length);
-            return ByteBuffer.wrap(output);
-        }
-        else{
-            throw new MDBCServiceException("Byte buffer was not created correctly, it should wrap an array");
+	/**
+	 * Unmutable staging table that keeps the serialized digest, and decodes it only when it is read
+	 * @param serialized serialized digest, as stored in music
+	 * @param compressed true if the serialized digest is compressed
+	 */
+	public StagingTable(ByteBuffer serialized, boolean compressed) {
+	    builderInitialized=false;
+	    operations=null;
+	    this.serialized=serialized;
+	    this.compressed=compressed;
+	}
+
+	/**
+	 * Read the operations one at a time, without decoding the whole digest when it is still serialized
+	 * @return reader that should be closed after use
+	 */
+	synchronized public DigestReader readOperations() {
+	    if(operations==null && serialized!=null) {
+	        return DigestReader.of(serialized, compressed);
         }
+	    return DigestReader.of(getOperationList());
+    }
+
+    /**
+     * @param serializedStaging serialized digest, heap or direct, it is not modified
+     * @return the compressed digest, in a buffer owned by the caller
+     */
+    public static ByteBuffer Compress(ByteBuffer serializedStaging) throws MDBCServiceException {
+        DigestCodec codec = DigestCodec.get();
+        ByteBuffer compressed = DigestCodec.copy(codec.compress(serializedStaging));
+        codec.trim();
+        return compressed;
     }
 
+    /**
+     * @param compressedStaging compressed digest, heap or direct, it is not modified
+     * @return the serialized digest, in a buffer owned by the caller
+     */
     public static ByteBuffer Decompress(ByteBuffer compressedStaging) throws MDBCServiceException {
-	    if(compressedStaging.hasArray()) {
-            //\TODO: Use JAVA 11 to simplify this process using ByteBuffer natively
-            Inflater decompressor = new Inflater();
-            byte[] inputArray = compressedStaging.array();
-            decompressor.setInput(inputArray);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(inputArray.length);
-            byte[] buffer = new byte[1024];
-            while (!decompressor.finished()) {
-                int decompressSize = 0;
-                try {
-                    decompressSize = decompressor.inflate(buffer);
-                } catch (DataFormatException e) {
-                    throw new MDBCServiceException("error decompressing input data",e);
-                }
-                outputStream.write(buffer, 0, decompressSize);
-            }
-            try {
-                outputStream.close();
-            } catch (IOException e) {
-                throw new MDBCServiceException("Error closing output byte stream",e);
-            }
-            byte[] output = outputStream.toByteArray();
-            return ByteBuffer.wrap(output);
-        }
-        else{
-            throw new MDBCServiceException("Byte buffer was not created correctly, it should wrap an array");
-        }
+        DigestCodec codec = DigestCodec.get();
+        ByteBuffer serialized = DigestCodec.copy(codec.decompress(compressedStaging));
+        codec.trim();
+        return serialized;
+    }
+
+    /**
+     * Spill the rows of the staging tables that grow above a size to a file, instead of keeping them in the heap
+     * until commit. Only the rows of the strongly consistent ranges are spilled
+     * @param thresholdBytes serialized size of the staged rows that triggers a spill, non positive disables it
+     * @param directory directory of the spill files, null for the default temporary directory
+     */
+    public static void setSpill(long thresholdBytes, File directory) {
+        spillThresholdBytes = thresholdBytes;
+        spillDirectory = directory;
+    }
+
+    /**
+     * @return staging table for the contents of a range snapshot, its rows are spilled to a file above
+     *         {@link #SNAPSHOT_SPILL_BYTES} even if spilling is disabled for transactions
+     */
+    public static StagingTable forSnapshot() {
+        StagingTable snapshot = new StagingTable(new HashSet<>());
+        snapshot.ownSpillThresholdBytes = SNAPSHOT_SPILL_BYTES;
+        return snapshot;
+    }
+
+    private long spillThreshold() {
+        return (ownSpillThresholdBytes > 0) ? ownSpillThresholdBytes : spillThresholdBytes;
     }
 
     synchronized  public boolean isBuilderInitialized(){
@@ -193,25 +235,69 @@ public class StagingTable {
 	    if(keys!=null){
 	        rowBuilder.setKey(keys);
         }
+	    Row row = rowBuilder.build();
+	    //the size is memoized by the row, it is not computed again when the digest is serialized
+	    int rowBytes = row.getSerializedSize();
 	    if(eventuallyConsistentRanges!=null && eventuallyConsistentRanges.contains(range)){
 	        if(eventuallyBuilder==null){
                throw new MDBCServiceException("INCONSISTENCY: trying to add eventual op with no eventual ranges");
             }
-            eventuallyBuilder.addRows(rowBuilder);
+            eventuallyBuilder.addRows(row);
         }
         else {
-            digestBuilder.addRows(rowBuilder);
+            digestBuilder.addRows(row);
+            long threshold = spillThreshold();
+            if(threshold > 0) {
+                //the tag and length of the row take at most 6 bytes
+                stagedBytes += rowBytes + 6;
+                if(stagedBytes >= threshold) {
+                    spill();
+                }
+            }
         }
+		addedRows++;
+		addedBytes += rowBytes;
 		//operations.add(new Operation(table,type,newVal,keys));
 	}
+
+	/**
+	 * @return number of rows added since the table was created, the difference between two calls is the
+	 * number of rows added in between
+	 */
+	synchronized public long getAddedRows() {
+	    return addedRows;
+	}
+
+	/**
+	 * @return serialized size of the rows added since the table was created
+	 */
+	synchronized public long getAddedBytes() {
+	    return addedBytes;
+	}
 	
 	synchronized public ArrayList<Operation> getOperationList() {
 	    if(!builderInitialized) {
+	        if(operations==null && serialized!=null) {
+	            operations = decodeAll();
+            }
             return operations;
         }
         logger.warn("Get operation list with this type of initialization is not suggested for the"
             + "staging table");
         ArrayList<Operation> newOperations = new ArrayList<>();
+        if(spillStream!=null) {
+            try {
+                spillStream.flush();
+                try (DigestReader reader = DigestReader.of(Files.newInputStream(spillFile), false)) {
+                    while (reader.hasNext()) {
+                        newOperations.add(reader.next());
+                    }
+                }
+            } catch (IOException | MDBCServiceException e) {
+                logger.error("Reading spilled rows from "+spillFile+" failed with an exception:"+e.getMessage());
+                throw new IllegalStateException("Invalid spill file "+spillFile, e);
+            }
+        }
         for(Row row : digestBuilder.getRowsList()){
             final OpType type = row.getType();
             SQLOperation newType = (type==OpType.INSERT)?SQLOperation.INSERT:(type==OpType.DELETE)?
@@ -221,17 +307,167 @@ public class StagingTable {
         return newOperations;
     }
 
+	private ArrayList<Operation> decodeAll() {
+	    ArrayList<Operation> decoded = new ArrayList<>();
+	    try (DigestReader reader = DigestReader.of(serialized, compressed)) {
+	        while(reader.hasNext()) {
+	            decoded.add(reader.next());
+            }
+        } catch (MDBCServiceException e) {
+            logger.error("Decoding digest failed with an exception:"+e.getErrorMessage());
+            throw new IllegalStateException("Invalid serialized digest", e);
+        }
+	    //the decoded operations replace the serialized digest
+	    serialized=null;
+	    return decoded;
+    }
+
+	/**
+	 * Serialize the staged rows and clean the staging table
+	 * @return the serialized rows, in a buffer owned by the caller
+	 * @throws MDBCServiceException
+	 */
 	synchronized public ByteBuffer getSerializedStagingAndClean() throws MDBCServiceException {
         if(!builderInitialized){
             throw new MDBCServiceException("This type of staging table is unmutable, please use the constructor"
                 + "with no parameters");
         }
+        if(spillStream!=null) {
+            ByteBuffer serialized = DigestCodec.copy(getSerializedStagingAndClean(false));
+            DigestCodec.get().trim();
+            return serialized;
+        }
         byte[] bytes = digestBuilder.build().toByteArray();
 	    ByteBuffer serialized = ByteBuffer.wrap(bytes);
 	    digestBuilder.clear();
+	    stagedBytes = 0;
 	    return serialized;
     }
 
+    /**
+     * Serialize the staged rows, streaming the spilled ones from their file, and clean the staging table.
+     * The rows are written by the {@link DigestCodec} of the calling thread, without intermediate copies
+     * @param compress true to compress the serialized rows as {@link #Compress(ByteBuffer)} does, while they
+     *                 are streamed
+     * @return the serialized, and optionally compressed, rows. The buffer belongs to the codec and is only
+     *         valid until the thread uses it again, see {@link DigestCodec#copy(ByteBuffer)}
+     * @throws MDBCServiceException
+     */
+    synchronized public ByteBuffer getSerializedStagingAndClean(boolean compress) throws MDBCServiceException {
+        if(!builderInitialized){
+            throw new MDBCServiceException("This type of staging table is unmutable, please use the constructor"
+                + "with no parameters");
+        }
+        DigestCodec codec = DigestCodec.get();
+        ByteBuffer serialized;
+        if(spillStream!=null) {
+            try {
+                OutputStream out = codec.begin(compress);
+                spillStream.flush();
+                Files.copy(spillFile, out);
+                digestBuilder.build().writeTo(out);
+            } catch (IOException e) {
+                throw new MDBCServiceException("Error serializing the staged rows", e);
+            }
+            serialized = codec.finish();
+            logger.debug("Staging table with "+(spilledRows+digestBuilder.getRowsCount())+" rows serialized into "
+                +serialized.remaining()+" bytes");
+        }
+        else {
+            serialized = codec.serialize(digestBuilder.build(), compress);
+        }
+        digestBuilder.clear();
+        stagedBytes = 0;
+        deleteSpill();
+        return serialized;
+    }
+
+    /**
+     * Stream the serialized staged rows, reading the spilled ones from their file, and clean the staging table.
+     * Unlike {@link #getSerializedStagingAndClean(boolean)}, the rows are never held in memory as a whole
+     * @param out destination of the serialized rows, it is not closed
+     * @param compress true to compress the serialized rows as {@link #Compress(ByteBuffer)} does, while they
+     *                 are streamed
+     * @throws MDBCServiceException
+     */
+    synchronized public void writeStagingAndClean(OutputStream out, boolean compress) throws MDBCServiceException {
+        if(!builderInitialized){
+            throw new MDBCServiceException("This type of staging table is unmutable, please use the constructor"
+                + "with no parameters");
+        }
+        Deflater deflater = compress ? new Deflater() : null;
+        try {
+            OutputStream target = compress ? new DeflaterOutputStream(out, deflater, 64 * 1024) : out;
+            if(spillStream!=null) {
+                spillStream.flush();
+                Files.copy(spillFile, target);
+            }
+            digestBuilder.build().writeTo(target);
+            if(compress) {
+                ((DeflaterOutputStream) target).finish();
+            }
+            target.flush();
+        } catch (IOException e) {
+            throw new MDBCServiceException("Error streaming the staged rows", e);
+        } finally {
+            if(deflater!=null) {
+                deflater.end();
+            }
+        }
+        logger.debug("Staging table with "+(spilledRows+digestBuilder.getRowsCount())+" rows streamed");
+        digestBuilder.clear();
+        stagedBytes = 0;
+        deleteSpill();
+    }
+
+    /**
+     * @return true if some of the staged rows were spilled to a file
+     */
+    synchronized public boolean isSpilled() {
+        return spillStream!=null;
+    }
+
+    /**
+     * Move the rows of the digest builder to the end of the spill file. The concatenation of serialized
+     * CompleteDigest messages is the serialized CompleteDigest with all their rows
+     */
+    private void spill() throws MDBCServiceException {
+        try {
+            if(spillStream==null) {
+                spillFile = (spillDirectory==null) ? Files.createTempFile("mdbc-staging-", ".digest")
+                    : Files.createTempFile(spillDirectory.toPath(), "mdbc-staging-", ".digest");
+                spillStream = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(spillFile,
+                    StandardOpenOption.WRITE)), 64 * 1024);
+                logger.info("Staging table above "+spillThreshold()+" bytes, spilling rows to "+spillFile);
+            }
+            digestBuilder.build().writeTo(spillStream);
+        } catch (IOException e) {
+            throw new MDBCServiceException("Error spilling staged rows to "+spillFile, e);
+        }
+        spilledRows += digestBuilder.getRowsCount();
+        digestBuilder.clear();
+        stagedBytes = 0;
+    }
+
+    private void deleteSpill() {
+        if(spillStream==null) {
+            return;
+        }
+        try {
+            spillStream.close();
+        } catch (IOException e) {
+            logger.warn("Error closing spill file "+spillFile+": "+e.getMessage());
+        }
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            logger.warn("Error deleting spill file "+spillFile+": "+e.getMessage());
+        }
+        spillStream = null;
+        spillFile = null;
+        spilledRows = 0;
+    }
+
     synchronized public ByteBuffer getSerializedEventuallyStagingAndClean() throws MDBCServiceException {
         if(!builderInitialized){
             throw new MDBCServiceException("This type of staging table is unmutable, please use the constructor"
@@ -247,11 +483,11 @@ public class StagingTable {
     }
 
     synchronized public boolean isEmpty() {
-	    return (digestBuilder.getRowsCount()==0 && eventuallyBuilder.getRowsCount()==0);
+	    return (digestBuilder.getRowsCount()==0 && spilledRows==0 && eventuallyBuilder.getRowsCount()==0);
     }
     
     synchronized public boolean isStrongEmpty() {
-        return (digestBuilder.getRowsCount()==0);
+        return (digestBuilder.getRowsCount()==0 && spilledRows==0);
     }
     
     synchronized public boolean isEventualEmpty() {
@@ -264,6 +500,8 @@ public class StagingTable {
                 + "with no parameters");
         }
 		digestBuilder.clear();
+		stagedBytes = 0;
+		deleteSpill();
 	}
 
 	synchronized public boolean areEventualContained(Set<Range> ranges){
@@ -0,0 +1,97 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+package org.onap.music.mdbc.tools;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.logging.EELFLoggerDelegate;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.mixins.MusicMixin;
+import org.onap.music.mdbc.tables.RangeSnapshot;
+import org.onap.music.mdbc.tables.RangeSnapshotFile;
+
+/**
+ * Exports the latest snapshot of each range stored in music into a local snapshot file. The files can be
+ * copied into the bootstrapsnapshotdir of a new mdbc server, which bulk loads them on startup.
+ */
+public class SnapshotExport {
+    public static final EELFLoggerDelegate LOG = EELFLoggerDelegate.getLogger(SnapshotExport.class);
+
+    @Parameter(names = { "-r", "--ranges" }, required = true,
+            description = "Comma separated list of ranges to export")
+    private List<String> ranges = new ArrayList<>();
+    @Parameter(names = { "-o", "--output" }, required = true,
+            description = "Output directory for the snapshot files")
+    private String outputDir;
+    @Parameter(names = { "-h", "-help", "--help" }, help = true,
+            description = "Print the help message")
+    private boolean help = false;
+
+    public SnapshotExport(){}
+
+    public void exportAll() throws MDBCServiceException {
+        Properties prop = new Properties();
+        try {
+            prop.load(this.getClass().getClassLoader().getResourceAsStream("music.properties"));
+        } catch (IOException e) {
+            LOG.error("Unable to read music.properties");
+        }
+        MusicMixin mi = new MusicMixin(null, "snapshotexport", prop);
+        File dir = new File(outputDir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new MDBCServiceException("Unable to create output directory " + outputDir);
+        }
+        for (String rangeName : ranges) {
+            Range range = new Range(rangeName.trim());
+            RangeSnapshot snapshot = mi.getLatestRangeSnapshot(range);
+            if (snapshot == null) {
+                LOG.warn("No snapshot available for " + range);
+                continue;
+            }
+            File file = new File(dir, range.getTable() + RangeSnapshotFile.SUFFIX);
+            RangeSnapshotFile.write(file, snapshot);
+            LOG.info("Exported " + snapshot + " into " + file);
+        }
+    }
+
+    public static void main(String[] args) {
+        SnapshotExport export = new SnapshotExport();
+        @SuppressWarnings("deprecation")
+        JCommander jc = new JCommander(export, args);
+        if (export.help) {
+            jc.usage();
+            System.exit(1);
+            return;
+        }
+        try {
+            export.exportAll();
+        } catch (MDBCServiceException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
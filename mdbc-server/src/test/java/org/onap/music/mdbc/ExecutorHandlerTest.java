@@ -0,0 +1,143 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
+import org.apache.calcite.avatica.server.AvaticaHandler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onap.music.mdbc.metrics.MetricsHandler;
+
+public class ExecutorHandlerTest {
+
+    /**
+     * Avatica handler that answers with the name of its thread, once it is released
+     */
+    private static class BlockingAvaticaHandler extends AbstractHandler implements AvaticaHandler {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.getOutputStream().write(Thread.currentThread().getName().getBytes(StandardCharsets.UTF_8));
+            baseRequest.setHandled(true);
+        }
+
+        @Override
+        public void setServerRpcMetadata(RpcMetadataResponse metadata) {
+        }
+    }
+
+    private final BlockingAvaticaHandler avatica = new BlockingAvaticaHandler();
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+    private Server server;
+    private int port;
+
+    @Before
+    public void before() throws Exception {
+        //a single request thread and no queue, so a second request doesn't fit
+        server = new Server(0);
+        server.setHandler(new MetricsHandler(new ExecutorHandler(avatica, ExecutorHandler.Mode.POOL, 1, 0)));
+        server.start();
+        port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    @After
+    public void after() throws Exception {
+        avatica.release.countDown();
+        clients.shutdownNow();
+        server.stop();
+    }
+
+    /**
+     * @return status and body of a GET request
+     */
+    private String[] get(String path) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        int status = conn.getResponseCode();
+        InputStream in = (status < 400) ? conn.getInputStream() : conn.getErrorStream();
+        StringBuilder body = new StringBuilder();
+        if (in != null) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            }
+            in.close();
+        }
+        conn.disconnect();
+        return new String[] { String.valueOf(status), body.toString() };
+    }
+
+    @Test
+    public void requestCompletesOnThePool() throws Exception {
+        Future<String[]> response = clients.submit(() -> get("/"));
+        assertTrue(avatica.entered.await(10, TimeUnit.SECONDS));
+        avatica.release.countDown();
+        String[] result = response.get(10, TimeUnit.SECONDS);
+        assertEquals("200", result[0]);
+        assertTrue(result[1], result[1].startsWith("MdbcRequest-"));
+    }
+
+    @Test
+    public void fullExecutorRejectsAndMetricsAreServed() throws Exception {
+        Future<String[]> blocked = clients.submit(() -> get("/"));
+        assertTrue(avatica.entered.await(10, TimeUnit.SECONDS));
+
+        assertEquals("503", get("/")[0]);
+        //the metrics don't go through the executor, so they are served while it is full
+        String[] metrics = get(MetricsHandler.PATH);
+        assertEquals("200", metrics[0]);
+        assertTrue(metrics[1].contains("mdbc_server_requests_rejected_total"));
+
+        avatica.release.countDown();
+        assertEquals("200", blocked.get(10, TimeUnit.SECONDS)[0]);
+    }
+}
@@ -20,10 +20,140 @@
 
 package org.onap.music.mdbc;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.onap.music.mdbc.MdbcTestUtils.DBType;
+import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.ownership.OwnershipAndCheckpoint;
+import org.onap.music.mdbc.tables.StagingTable;
+import org.onap.music.mdbc.tables.TxCommitProgress;
 
 public class MdbcConnectionTest {
 
+    private MusicInterface mi;
+    private OwnershipAndCheckpoint ownAndCheck;
+    private StateManager stateManager;
+    private MdbcConnection mdbcConn;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        Class.forName("org.mariadb.jdbc.Driver");
+        MdbcTestUtils.startMariaDb();
+    }
+
+    @AfterClass
+    public static void close() {
+        MdbcTestUtils.stopDatabase(DBType.MySQL);
+    }
+
+    @Before
+    public void before() throws Exception {
+        mi = Mockito.mock(MusicInterface.class);
+        Mockito.when(mi.splitPartitionIfNecessary(any(), any(), any()))
+            .thenAnswer(invocation -> invocation.getArgument(0));
+        ownAndCheck = Mockito.mock(OwnershipAndCheckpoint.class);
+        stateManager = Mockito.mock(StateManager.class);
+        executor = Executors.newSingleThreadExecutor();
+        Mockito.when(stateManager.getOwnAndCheck()).thenReturn(ownAndCheck);
+        try (Connection conn = MdbcTestUtils.getConnection(DBType.MySQL); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS PERSONS (ID int PRIMARY KEY, NAME varchar(255));");
+            stmt.execute("CREATE TABLE IF NOT EXISTS CITIES (ID int PRIMARY KEY, NAME varchar(255));");
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        if (mdbcConn != null && !mdbcConn.isClosed()) {
+            mdbcConn.close();
+        }
+        executor.shutdownNow();
+        try (Connection conn = MdbcTestUtils.getConnection(DBType.MySQL); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE PERSONS;");
+            stmt.execute("DROP TABLE CITIES;");
+        }
+    }
+
+    /**
+     * Open an autocommit mdbc connection to the embedded database, with the triggers of its tables
+     */
+    private MdbcConnection connect(String groupMs, String groupStatements) throws Exception {
+        Properties info = new Properties();
+        if (groupMs != null) {
+            info.setProperty(Configuration.KEY_AUTOCOMMIT_GROUP_MS, groupMs);
+        }
+        if (groupStatements != null) {
+            info.setProperty(Configuration.KEY_AUTOCOMMIT_GROUP_STATEMENTS, groupStatements);
+        }
+        mdbcConn = new MdbcConnection("test", MdbcTestUtils.getMariadbUrlWithoutDatabase() + "/"
+            + MdbcTestUtils.getMariaDBDBName(), MdbcTestUtils.getConnection(DBType.MySQL), info, mi,
+            Mockito.mock(TxCommitProgress.class), new DatabasePartition(MDBCUtils.generateUniqueKey()),
+            stateManager);
+        mdbcConn.initDatabase();
+        return mdbcConn;
+    }
+
+    private void insertPersons(MdbcConnection conn, int first, int count) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (int i = first; i < first + count; i++) {
+                stmt.executeUpdate("INSERT INTO PERSONS VALUES (" + i + ", 'person" + i + "');");
+            }
+        }
+    }
+
+    /**
+     * Insert a person from another thread, it returns once the autocommit group of the statement is committed
+     */
+    private Future<?> insertInBackground(MdbcConnection conn, int id) {
+        return executor.submit(() -> {
+            insertPersons(conn, id, 1);
+            return null;
+        });
+    }
+
+    private void awaitGroupSize(MdbcConnection conn, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (conn.getAutocommitGroupSize() < size) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("the statement didn't join the autocommit group");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private void verifyMusicCommits(int commits) throws Exception {
+        verify(mi, times(commits)).commitLog(any(), any(), any(), any(), any());
+    }
+
     @Test
     public void own() {
     }
@@ -31,4 +161,156 @@ public class MdbcConnectionTest {
     @Test
     public void relinquishIfRequired() {
     }
+
+    @Test
+    public void autocommitWritesAreGrouped() throws Exception {
+        MdbcConnection conn = connect("60000", "100");
+        Future<?> insert = insertInBackground(conn, 0);
+        awaitGroupSize(conn, 1);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT * FROM PERSONS;").close();
+        }
+        conn.flushAutocommitGroup();
+        assertFalse(insert.isDone());
+        verifyMusicCommits(0);
+        conn.close();
+        insert.get(5, TimeUnit.SECONDS);
+        verifyMusicCommits(1);
+    }
+
+    @Test
+    public void autocommitGroupIsCommittedWhenFull() throws Exception {
+        MdbcConnection conn = connect("60000", "2");
+        Future<?> insert = insertInBackground(conn, 0);
+        awaitGroupSize(conn, 1);
+        verifyMusicCommits(0);
+        insertPersons(conn, 1, 1);
+        insert.get(5, TimeUnit.SECONDS);
+        verifyMusicCommits(1);
+    }
+
+    @Test
+    public void statementIsAcknowledgedAfterTheGroupCommit() throws Exception {
+        MdbcConnection conn = connect("50", "100");
+        long start = System.nanoTime();
+        insertPersons(conn, 0, 1);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        verifyMusicCommits(1);
+        conn.flushAutocommitGroup();
+        verifyMusicCommits(1);
+    }
+
+    @Test
+    public void commitAndRollbackCommitTheGroup() throws Exception {
+        MdbcConnection conn = connect("60000", "100");
+        Future<?> insert = insertInBackground(conn, 0);
+        awaitGroupSize(conn, 1);
+        conn.commit();
+        insert.get(5, TimeUnit.SECONDS);
+        verifyMusicCommits(1);
+        insert = insertInBackground(conn, 1);
+        awaitGroupSize(conn, 1);
+        conn.rollback();
+        insert.get(5, TimeUnit.SECONDS);
+        verifyMusicCommits(2);
+        conn.close();
+        verifyMusicCommits(2);
+    }
+
+    @Test
+    public void failedStatementDoesNotBlockTheGroupCommit() throws Exception {
+        MdbcConnection conn = connect("100", "100");
+        Future<?> insert = insertInBackground(conn, 0);
+        awaitGroupSize(conn, 1);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO PERSONS VALUES (0, 'duplicate');");
+            fail("the duplicated key should fail");
+        } catch (SQLException e) {
+            //expected
+        }
+        insert.get(5, TimeUnit.SECONDS);
+        verifyMusicCommits(1);
+    }
+
+    /**
+     * @return rows staged by the connection until its last MUSIC commit
+     */
+    private long stagedRows(int commits) throws Exception {
+        ArgumentCaptor<StagingTable> digest = ArgumentCaptor.forClass(StagingTable.class);
+        verify(mi, times(commits)).commitLog(any(), any(), digest.capture(), any(), any());
+        return digest.getValue().getAddedRows();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void verifyOwnedOnce(String... tables) throws Exception {
+        ArgumentCaptor<Set<Range>> ranges = ArgumentCaptor.forClass(Set.class);
+        verify(ownAndCheck, times(1)).own(any(), ranges.capture(), any(), any(), any(), any());
+        Set<Range> expected = new HashSet<>();
+        for (String table : tables) {
+            expected.add(new Range(MdbcTestUtils.getMariaDBDBName() + "." + table));
+        }
+        assertEquals(expected, ranges.getValue());
+    }
+
+    @Test
+    public void statementBatchIsOwnedAndStagedOnce() throws Exception {
+        MdbcConnection conn = connect(null, null);
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.addBatch("INSERT INTO PERSONS VALUES (1, 'first');");
+            stmt.addBatch("INSERT INTO PERSONS VALUES (2, 'second');");
+            stmt.addBatch("INSERT INTO CITIES VALUES (1, 'city');");
+            assertEquals(3, stmt.executeBatch().length);
+        }
+        verifyOwnedOnce("PERSONS", "CITIES");
+        conn.commit();
+        assertEquals(3, stagedRows(2));
+    }
+
+    @Test
+    public void preparedStatementBatchIsStaged() throws Exception {
+        MdbcConnection conn = connect(null, null);
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO PERSONS VALUES (?, ?)")) {
+            for (int i = 0; i < 3; i++) {
+                stmt.setInt(1, i);
+                stmt.setString(2, "person" + i);
+                stmt.addBatch();
+            }
+            assertEquals(3, stmt.executeBatch().length);
+        }
+        verifyOwnedOnce("PERSONS");
+        conn.commit();
+        assertEquals(3, stagedRows(2));
+    }
+
+    @Test
+    public void failedBatchStagesTheExecutedStatements() throws Exception {
+        MdbcConnection conn = connect(null, null);
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.addBatch("INSERT INTO PERSONS VALUES (1, 'first');");
+            stmt.addBatch("INSERT INTO PERSONS VALUES (1, 'duplicate');");
+            stmt.executeBatch();
+            fail("the duplicated key should fail");
+        } catch (BatchUpdateException e) {
+            //expected
+        }
+        conn.commit();
+        long rows;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM PERSONS;")) {
+            rs.next();
+            rows = rs.getLong(1);
+        }
+        assertEquals(rows, stagedRows(2));
+    }
+
+    @Test
+    public void flusherChecksWithTheShortestGroupTime() throws Exception {
+        AutocommitGroupFlusher flusher = new AutocommitGroupFlusher(Collections.<MdbcConnection>emptyList());
+        assertEquals(AutocommitGroupFlusher.IDLE_PERIOD_MS, flusher.nextPeriodMs());
+        MdbcConnection conn = connect("40", "100");
+        flusher = new AutocommitGroupFlusher(Arrays.asList(conn, Mockito.mock(MdbcConnection.class)));
+        assertEquals(20, flusher.nextPeriodMs());
+    }
 }
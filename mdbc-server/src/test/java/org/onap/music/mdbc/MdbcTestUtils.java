@@ -64,7 +64,7 @@ public class MdbcTestUtils {
     final private static String keyspace="metricmusictest";
     final private static String mdbcServerName = "name";
     final private static String mtdTableName = "musictxdigest";
-    final private static String eventualMtxdTableName = "musicevetxdigest";
+    final private static String eventualMtxdTableName = "musicevetxdigestbucket";
     final private static String mriTableName = "musicrangeinformation";
     final private static String rangeDependencyTableName = "musicrangedependency";
     final private static String nodeInfoTableName = "nodeinfo";
@@ -164,7 +164,7 @@ public class MdbcTestUtils {
         }
     }
 
-    static String getMariadbUrlWithoutDatabase(){
+    public static String getMariadbUrlWithoutDatabase(){
         return  "jdbc:mariadb://localhost:"+Integer.toString(mariaDbPort);
     }
 
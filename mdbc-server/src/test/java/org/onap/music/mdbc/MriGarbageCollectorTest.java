@@ -0,0 +1,132 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.MusicRangeInformationRow;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+
+public class MriGarbageCollectorTest {
+
+    private final Range range = new Range("schema.range1");
+    private MusicInterface mi;
+    private List<MusicRangeInformationRow> rows;
+
+    private MusicRangeInformationRow createNewRow(boolean isLatest) {
+        UUID id = MDBCUtils.generateTimebasedUniqueKey();
+        List<MusicTxDigestId> redoLog = new ArrayList<>();
+        redoLog.add(new MusicTxDigestId(id, MDBCUtils.generateUniqueKey(), 0));
+        DatabasePartition dbPartition = new DatabasePartition(new HashSet<>(Arrays.asList(range)), id, "");
+        return new MusicRangeInformationRow(dbPartition, redoLog, isLatest);
+    }
+
+    private Pair<MriReference, MusicTxDigestId> positionAt(MusicRangeInformationRow row) {
+        return Pair.of(new MriReference(row.getPartitionIndex()), row.getRedoLog().get(0));
+    }
+
+    private Map<String, Map<Range, Pair<MriReference, MusicTxDigestId>>> checkpoints(
+        MusicRangeInformationRow... siteRows) {
+        Map<String, Map<Range, Pair<MriReference, MusicTxDigestId>>> checkpoints = new HashMap<>();
+        int site = 0;
+        for (MusicRangeInformationRow row : siteRows) {
+            Map<Range, Pair<MriReference, MusicTxDigestId>> applied = new HashMap<>();
+            applied.put(range, positionAt(row));
+            checkpoints.put("site" + (site++), applied);
+        }
+        return checkpoints;
+    }
+
+    @Before
+    public void init() throws Exception {
+        mi = mock(MusicInterface.class);
+        rows = new ArrayList<>();
+        rows.add(createNewRow(false));
+        MILLISECONDS.sleep(10);
+        rows.add(createNewRow(false));
+        MILLISECONDS.sleep(10);
+        rows.add(createNewRow(true));
+    }
+
+    @Test
+    public void onlyRowsAppliedByEverySite() throws Exception {
+        MriGarbageCollector gc = new MriGarbageCollector(mi, 1, 0, 10, 0, false, false);
+        List<MusicRangeInformationRow> obsolete =
+            gc.findObsoleteRows(rows, checkpoints(rows.get(2), rows.get(1)), System.currentTimeMillis());
+        assertEquals(1, obsolete.size());
+        assertEquals(rows.get(0), obsolete.get(0));
+    }
+
+    @Test
+    public void noCheckpointsNoCollection() throws Exception {
+        MriGarbageCollector gc = new MriGarbageCollector(mi, 1, 0, 10, 0, false, false);
+        assertTrue(gc.findObsoleteRows(rows, new HashMap<>(), System.currentTimeMillis()).isEmpty());
+    }
+
+    @Test
+    public void retentionAndSnapshotAreRespected() throws Exception {
+        Map<String, Map<Range, Pair<MriReference, MusicTxDigestId>>> checkpoints =
+            checkpoints(rows.get(2), rows.get(2));
+        MriGarbageCollector gc = new MriGarbageCollector(mi, 1, 3600, 10, 0, false, false);
+        assertTrue(gc.findObsoleteRows(rows, checkpoints, System.currentTimeMillis()).isEmpty());
+
+        when(mi.getLatestRangeSnapshotPosition(range)).thenReturn(positionAt(rows.get(1)));
+        gc = new MriGarbageCollector(mi, 1, 0, 10, 0, false, true);
+        List<MusicRangeInformationRow> obsolete =
+            gc.findObsoleteRows(rows, checkpoints, System.currentTimeMillis());
+        assertEquals(1, obsolete.size());
+        assertEquals(rows.get(0), obsolete.get(0));
+    }
+
+    @Test
+    public void dryRunDoesNotDelete() throws Exception {
+        when(mi.getAllMriRows()).thenReturn(rows);
+        when(mi.getAllCheckpointLocations()).thenReturn(checkpoints(rows.get(2)));
+        MriGarbageCollector gc = new MriGarbageCollector(mi, 1, 0, 1, 0, true, false);
+        assertEquals(2, gc.collect());
+        verify(mi, never()).deleteMriRow(rows.get(0));
+        verify(mi, never()).deleteTxDigests(rows.get(0).getRedoLog());
+
+        gc = new MriGarbageCollector(mi, 1, 0, 1, 0, false, false);
+        assertEquals(2, gc.collect());
+        verify(mi).deleteTxDigests(rows.get(0).getRedoLog());
+        verify(mi).deleteMriRow(rows.get(0));
+        verify(mi).deleteMriRow(rows.get(1));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.load;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency of each kind of operation of the load harness, recorded in ns with HdrHistogram
+ */
+public class LatencyReport {
+
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+    public static final String COMMIT = "commit";
+    public static final String TRANSACTION = "transaction";
+
+    private static final double NANOS_PER_MS = 1e6;
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final Map<String, Recorder> recorders = new ConcurrentSkipListMap<>();
+    private final LongAdder aborts = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+
+    public void record(String operation, long nanos) {
+        recorders.computeIfAbsent(operation, o -> new Recorder(3)).recordValue(Math.max(0, nanos));
+    }
+
+    public void abort() {
+        aborts.increment();
+    }
+
+    /**
+     * Discard what was recorded until now, e.g. during warmup
+     */
+    public void start() {
+        for (Recorder recorder : recorders.values()) {
+            recorder.reset();
+        }
+        aborts.reset();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Print the throughput and the latency percentiles of each operation since {@link #start()}
+     * @param out where the summary is printed
+     * @param histogramDir directory where the full distribution of each operation is written, null to skip it
+     */
+    public void finish(PrintStream out, File histogramDir) throws FileNotFoundException {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        out.printf("%-12s %10s %10s", "operation", "count", "ops/s");
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9s", "p" + percentile + "ms");
+        }
+        out.printf(" %9s%n", "max ms");
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            Histogram histogram = entry.getValue().getIntervalHistogram();
+            out.printf("%-12s %10d %10.1f", entry.getKey(), histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds);
+            for (double percentile : PERCENTILES) {
+                out.printf(" %9.3f", histogram.getValueAtPercentile(percentile) / NANOS_PER_MS);
+            }
+            out.printf(" %9.3f%n", histogram.getMaxValue() / NANOS_PER_MS);
+            if (histogramDir != null) {
+                histogramDir.mkdirs();
+                try (PrintStream hgrm = new PrintStream(new File(histogramDir, entry.getKey() + ".hgrm"))) {
+                    histogram.outputPercentileDistribution(hgrm, NANOS_PER_MS);
+                }
+            }
+        }
+        out.printf("%-12s %10d %10.1f%n", "aborted", aborts.sum(), aborts.sum() / seconds);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.load;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.onap.music.logging.EELFLoggerDelegate;
+import org.onap.music.mdbc.MdbcTestUtils;
+import org.onap.music.mdbc.load.Site.Backend;
+
+/**
+ * Throughput and latency of transactions through mdbc, with 1..N sites running in process on the embedded
+ * Cassandra and MariaDB (or Postgres) used by the tests.
+ * <p>
+ * Each site runs a number of client threads, each with its own mdbc connection, executing the transactions
+ * of a {@link Workload} back to back. After the warmup, the latency of every read, write, commit and whole
+ * transaction is recorded, and the throughput and percentiles of each are printed when the run ends.
+ * Performance changes should be measured by running the same options before and after the change.
+ * </p>
+ * <p>
+ * Run it from mdbc-server with:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.onap.music.mdbc.load.LoadHarness \
+ *     -Dexec.args="--sites 2 --threads 4 --duration 60"
+ * </pre>
+ */
+public class LoadHarness {
+    public static final EELFLoggerDelegate LOG = EELFLoggerDelegate.getLogger(LoadHarness.class);
+
+    @Parameter(names = { "-s", "--sites" }, description = "Number of mdbc servers running in process")
+    private int sites = 1;
+    @Parameter(names = { "-t", "--threads" }, description = "Client threads per site, each with its own connection")
+    private int threads = 4;
+    @Parameter(names = { "-d", "--duration" }, description = "Measured time, in seconds")
+    private int durationS = 60;
+    @Parameter(names = { "-w", "--warmup" }, description = "Time before measuring, in seconds")
+    private int warmupS = 10;
+    @Parameter(names = { "--local-tables" }, description = "Tables used only by each site")
+    private int localTables = 4;
+    @Parameter(names = { "--shared-tables" }, description = "Tables used by all the sites")
+    private int sharedTables = 2;
+    @Parameter(names = { "--rows" }, description = "Rows loaded in each table")
+    private int rows = 1000;
+    @Parameter(names = { "--tx-size" }, description = "Statements per transaction")
+    private int txSize = 4;
+    @Parameter(names = { "--read-ratio" }, description = "Fraction of the statements that are reads, 0..1")
+    private double readRatio = 0.8;
+    @Parameter(names = { "--contention" }, description = "Fraction of the transactions on the shared tables, 0..1")
+    private double contention = 0.1;
+    @Parameter(names = { "--table-skew" }, description = "Zipfian exponent of the choice of tables, 0 is uniform")
+    private double tableSkew = 0.0;
+    @Parameter(names = { "--backend" }, description = "Local database of the sites, MYSQL or POSTGRES")
+    private Backend backend = Backend.MYSQL;
+    @Parameter(names = { "--seed" }, description = "Seed of the random choices of the clients")
+    private long seed = 42;
+    @Parameter(names = { "--histogram-dir" },
+        description = "Directory where the full latency distribution of each operation is written (.hgrm)")
+    private String histogramDir = null;
+    @Parameter(names = { "-h", "-help", "--help" }, help = true,
+            description = "Print the help message")
+    private boolean help = false;
+
+    private final LatencyReport report = new LatencyReport();
+    private volatile boolean running = true;
+
+    public LoadHarness(){}
+
+    private void startBackends() throws Exception {
+        MdbcTestUtils.initCassandra();
+        MdbcTestUtils.initNamespaces();
+        if (backend == Backend.MYSQL) {
+            MdbcTestUtils.startMariaDb();
+        } else {
+            MdbcTestUtils.startPostgres();
+        }
+    }
+
+    /**
+     * Execute transactions on a connection of the site until the run ends
+     */
+    private void client(Site site, Workload workload, String connectionId, Random random) {
+        Connection conn;
+        try {
+            conn = site.connect(connectionId);
+        } catch (SQLException e) {
+            LOG.error("Client " + connectionId + " could not connect: " + e.getMessage());
+            return;
+        }
+        long value = 0;
+        while (running) {
+            long txStart = System.nanoTime();
+            try (Statement stmt = conn.createStatement()) {
+                for (Workload.Op op : workload.next(site.getId(), random)) {
+                    long start = System.nanoTime();
+                    if (op.read) {
+                        try (ResultSet rs = stmt.executeQuery(op.sql(value))) {
+                            while (rs.next()) {
+                                rs.getString(2);
+                            }
+                        }
+                        report.record(LatencyReport.READ, System.nanoTime() - start);
+                    } else {
+                        stmt.executeUpdate(op.sql(value++));
+                        report.record(LatencyReport.WRITE, System.nanoTime() - start);
+                    }
+                }
+                long commitStart = System.nanoTime();
+                conn.commit();
+                long end = System.nanoTime();
+                report.record(LatencyReport.COMMIT, end - commitStart);
+                report.record(LatencyReport.TRANSACTION, end - txStart);
+            } catch (SQLException e) {
+                //e.g. ownership timeouts while other sites hold the shared tables
+                report.abort();
+                LOG.debug("Transaction of " + connectionId + " aborted: " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    LOG.debug("Rollback of " + connectionId + " failed: " + rollbackError.getMessage());
+                }
+            }
+        }
+        site.closeConnection(connectionId);
+    }
+
+    public void run() throws Exception {
+        Workload workload = new Workload(sites, localTables, sharedTables, rows, txSize, readRatio, contention,
+            tableSkew);
+        startBackends();
+        List<Site> started = new ArrayList<>();
+        try {
+            for (int i = 0; i < sites; i++) {
+                Site site = new Site(i, backend, new Properties());
+                site.createDatabase(workload);
+                site.start();
+                started.add(site);
+            }
+            CountDownLatch done = new CountDownLatch(sites * threads);
+            for (Site site : started) {
+                for (int t = 0; t < threads; t++) {
+                    String connectionId = "load-" + site.getId() + "-" + t;
+                    Random random = new Random(seed + site.getId() * 1000L + t);
+                    Thread client = new Thread(() -> {
+                        try {
+                            client(site, workload, connectionId, random);
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                    client.setName(connectionId);
+                    client.start();
+                }
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(warmupS));
+            report.start();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(durationS));
+            running = false;
+            report.finish(System.out, (histogramDir == null) ? null : new File(histogramDir));
+            done.await(1, TimeUnit.MINUTES);
+        } finally {
+            running = false;
+            for (Site site : started) {
+                site.close();
+            }
+            MdbcTestUtils.stopDatabase((backend == Backend.MYSQL) ? MdbcTestUtils.DBType.MySQL
+                : MdbcTestUtils.DBType.POSTGRES);
+            MdbcTestUtils.stopCassandra();
+        }
+    }
+
+    public static void main(String[] args) {
+        LoadHarness harness = new LoadHarness();
+        @SuppressWarnings("deprecation")
+        JCommander jc = new JCommander(harness, args);
+        if (harness.help) {
+            jc.usage();
+            System.exit(1);
+            return;
+        }
+        try {
+            harness.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
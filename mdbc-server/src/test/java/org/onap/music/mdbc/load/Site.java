@@ -0,0 +1,148 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.load;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Configuration;
+import org.onap.music.mdbc.MdbcTestUtils;
+import org.onap.music.mdbc.StateManager;
+import org.onap.music.mdbc.mixins.MusicMixin;
+import org.onap.music.mdbc.mixins.MySQLMixin;
+import org.onap.music.mdbc.mixins.PostgresMixin;
+
+/**
+ * An mdbc server running in process, with its own database in the embedded backend and its own
+ * StateManager, sharing the embedded Cassandra with the other sites
+ */
+public class Site implements AutoCloseable {
+
+    public enum Backend { MYSQL, POSTGRES }
+
+    private static final int PRELOAD_BATCH = 500;
+
+    private final int id;
+    private final String name;
+    private final String dbName;
+    private final Backend backend;
+    private final Properties info;
+    private StateManager stateManager;
+
+    public Site(int id, Backend backend, Properties properties) {
+        this.id = id;
+        this.name = "site" + id;
+        //lower case, postgres folds the unquoted name when the database is created
+        this.dbName = name;
+        this.backend = backend;
+        this.info = new Properties();
+        info.putAll(properties);
+        info.setProperty(MusicMixin.KEY_MY_ID, name);
+        info.setProperty(MusicMixin.KEY_MUSIC_NAMESPACE, MdbcTestUtils.getKeyspace());
+        info.setProperty(MusicMixin.KEY_MUSIC_RFACTOR, "1");
+        info.setProperty(MusicMixin.KEY_MUSIC_ADDRESS, MdbcTestUtils.getCassandraUrl());
+        if (backend == Backend.MYSQL) {
+            info.setProperty(Configuration.KEY_DB_MIXIN_NAME, MySQLMixin.MIXIN_NAME);
+            info.setProperty("user", "root");
+            info.setProperty("password", "");
+        } else {
+            info.setProperty(Configuration.KEY_DB_MIXIN_NAME, PostgresMixin.MIXIN_NAME);
+            info.setProperty("user", "postgres");
+            info.setProperty("password", "postgres");
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    private String serverUrl() {
+        return (backend == Backend.MYSQL) ? MdbcTestUtils.getMariadbUrlWithoutDatabase()
+            : MdbcTestUtils.getPostgresUrlWithoutDb();
+    }
+
+    /**
+     * Create the database of the site with the tables of the workload, and load the same rows in every
+     * site. The rows are loaded before mdbc starts, so they are not written to music.
+     */
+    public void createDatabase(Workload workload) throws SQLException {
+        String adminDb = (backend == Backend.MYSQL) ? "" : "/postgres";
+        try (Connection admin = DriverManager.getConnection(serverUrl() + adminDb, info);
+             Statement stmt = admin.createStatement()) {
+            stmt.execute("DROP DATABASE IF EXISTS " + dbName);
+            stmt.execute("CREATE DATABASE " + dbName);
+        }
+        try (Connection conn = DriverManager.getConnection(serverUrl() + "/" + dbName, info)) {
+            conn.setAutoCommit(false);
+            for (String table : workload.tables()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("CREATE TABLE " + table
+                        + " (ID INT NOT NULL, VAL VARCHAR(255), VERSION INT, PRIMARY KEY (ID))");
+                }
+                try (PreparedStatement insert = conn.prepareStatement(
+                        "INSERT INTO " + table + " (ID, VAL, VERSION) VALUES (?, ?, 0)")) {
+                    for (int key = 0; key < workload.getRows(); key++) {
+                        insert.setInt(1, key);
+                        insert.setString(2, "initial" + key);
+                        insert.addBatch();
+                        if ((key + 1) % PRELOAD_BATCH == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                conn.commit();
+            }
+        }
+    }
+
+    public void start() throws MDBCServiceException {
+        stateManager = new StateManager(serverUrl(), info, name, dbName);
+    }
+
+    /**
+     * @return a new mdbc connection of the site, with auto commit disabled
+     */
+    public Connection connect(String connectionId) throws SQLException {
+        Connection conn = stateManager.getConnection(connectionId);
+        if (conn == null) {
+            throw new SQLException("Site " + name + " could not open connection " + connectionId);
+        }
+        conn.setAutoCommit(false);
+        return conn;
+    }
+
+    public void closeConnection(String connectionId) {
+        stateManager.closeConnection(connectionId);
+    }
+
+    @Override
+    public void close() {
+        if (stateManager != null) {
+            stateManager.releaseAllPartitions();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * OLTP mix executed by the load harness. Each site has its own tables, and all the sites share a set of
+ * tables; the fraction of transactions that use the shared tables sets the contention between sites.
+ * <p>
+ * Tables are chosen with a zipfian skew, a skew of 0 chooses them uniformly. Keys are chosen uniformly
+ * among the rows preloaded in each table.
+ * </p>
+ */
+public class Workload {
+
+    public static final String SHARED_PREFIX = "LOAD_SHARED_";
+    public static final String LOCAL_PREFIX = "LOAD_S";
+
+    /** statement of a transaction */
+    public static final class Op {
+        public final boolean read;
+        public final String table;
+        public final int key;
+
+        Op(boolean read, String table, int key) {
+            this.read = read;
+            this.table = table;
+            this.key = key;
+        }
+
+        public String sql(long value) {
+            if (read) {
+                return "SELECT ID, VAL, VERSION FROM " + table + " WHERE ID = " + key + ";";
+            }
+            return "UPDATE " + table + " SET VAL = 'v" + value + "', VERSION = VERSION + 1 WHERE ID = " + key + ";";
+        }
+    }
+
+    private final int sites;
+    private final int localTables;
+    private final int sharedTables;
+    private final int rows;
+    private final int txSize;
+    private final double readRatio;
+    private final double contention;
+    private final double[] localCdf;
+    private final double[] sharedCdf;
+
+    /**
+     * @param sites number of sites running the workload
+     * @param localTables tables used only by each site
+     * @param sharedTables tables used by all the sites
+     * @param rows rows preloaded in each table
+     * @param txSize statements per transaction
+     * @param readRatio fraction of the statements that are reads
+     * @param contention fraction of the transactions that use the shared tables
+     * @param tableSkew exponent of the zipfian distribution of the tables, 0 for uniform
+     */
+    public Workload(int sites, int localTables, int sharedTables, int rows, int txSize, double readRatio,
+            double contention, double tableSkew) {
+        if (localTables < 1 && contention < 1.0) {
+            throw new IllegalArgumentException("Local tables are required when the contention is below 1");
+        }
+        if (sharedTables < 1 && contention > 0.0) {
+            throw new IllegalArgumentException("Shared tables are required when the contention is above 0");
+        }
+        this.sites = sites;
+        this.localTables = localTables;
+        this.sharedTables = sharedTables;
+        this.rows = Math.max(1, rows);
+        this.txSize = Math.max(1, txSize);
+        this.readRatio = readRatio;
+        this.contention = contention;
+        this.localCdf = zipfCdf(localTables, tableSkew);
+        this.sharedCdf = zipfCdf(sharedTables, tableSkew);
+    }
+
+    static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    static int choose(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        index = (index >= 0) ? index : -index - 1;
+        return Math.min(index, cdf.length - 1);
+    }
+
+    public static String localTable(int site, int index) {
+        return LOCAL_PREFIX + site + "_" + index;
+    }
+
+    public static String sharedTable(int index) {
+        return SHARED_PREFIX + index;
+    }
+
+    /**
+     * @return all the tables of the workload, they are created in the database of every site
+     */
+    public List<String> tables() {
+        List<String> tables = new ArrayList<>();
+        for (int site = 0; site < sites; site++) {
+            for (int i = 0; i < localTables; i++) {
+                tables.add(localTable(site, i));
+            }
+        }
+        for (int i = 0; i < sharedTables; i++) {
+            tables.add(sharedTable(i));
+        }
+        return Collections.unmodifiableList(tables);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the statements of the next transaction of a site
+     */
+    public List<Op> next(int site, Random random) {
+        boolean shared = random.nextDouble() < contention;
+        List<Op> ops = new ArrayList<>(txSize);
+        for (int i = 0; i < txSize; i++) {
+            String table = shared ? sharedTable(choose(sharedCdf, random))
+                : localTable(site, choose(localCdf, random));
+            ops.add(new Op(random.nextDouble() < readRatio, table, random.nextInt(rows)));
+        }
+        return ops;
+    }
+}
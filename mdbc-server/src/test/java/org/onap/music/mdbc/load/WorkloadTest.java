@@ -0,0 +1,69 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class WorkloadTest {
+
+    @Test
+    public void sharedTablesFollowContention() {
+        Workload workload = new Workload(2, 3, 2, 100, 5, 0.5, 0.25, 0.0);
+        assertEquals(8, workload.tables().size());
+        Random random = new Random(1);
+        int shared = 0;
+        int reads = 0;
+        int transactions = 10000;
+        for (int i = 0; i < transactions; i++) {
+            List<Workload.Op> ops = workload.next(1, random);
+            assertEquals(5, ops.size());
+            boolean isShared = ops.get(0).table.startsWith(Workload.SHARED_PREFIX);
+            for (Workload.Op op : ops) {
+                assertEquals(isShared, op.table.startsWith(Workload.SHARED_PREFIX));
+                assertTrue(isShared || op.table.startsWith(Workload.localTable(1, 0).substring(0, 8)));
+                assertTrue(op.key >= 0 && op.key < 100);
+                reads += op.read ? 1 : 0;
+            }
+            shared += isShared ? 1 : 0;
+        }
+        assertEquals(0.25, shared / (double) transactions, 0.02);
+        assertEquals(0.5, reads / (transactions * 5.0), 0.02);
+    }
+
+    @Test
+    public void skewFavorsFirstTables() {
+        double[] cdf = Workload.zipfCdf(10, 1.0);
+        assertEquals(1.0, cdf[9], 1e-9);
+        Random random = new Random(1);
+        int[] counts = new int[10];
+        for (int i = 0; i < 10000; i++) {
+            counts[Workload.choose(cdf, random)]++;
+        }
+        assertTrue(counts[0] > counts[1] && counts[1] > counts[9]);
+        assertEquals(0.1, Workload.zipfCdf(10, 0.0)[0], 1e-9);
+    }
+}
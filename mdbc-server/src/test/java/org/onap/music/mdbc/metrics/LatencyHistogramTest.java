@@ -0,0 +1,70 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverAllValues() {
+        for (long value : new long[] { 0, 1, 7, 8, 15, 16, 1000, 123456789, Long.MAX_VALUE }) {
+            int index = HistogramBuckets.index(value);
+            assertTrue(value <= HistogramBuckets.upperBound(index));
+            assertTrue(index == 0 || value > HistogramBuckets.upperBound(index - 1));
+        }
+    }
+
+    @Test
+    public void quantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMaxMicros());
+        long p50 = histogram.getQuantile(0.5);
+        assertTrue(p50 >= 500000 && p50 <= 500000 * 1.125);
+        long p99 = histogram.getQuantile(0.99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getQuantile(0.5));
+    }
+
+    @Test
+    public void textFormat() {
+        MetricsRegistry registry = MetricsRegistry.get();
+        LatencyHistogram histogram = registry.timer("mdbc_test_seconds", "Test histogram", "phase", "a");
+        assertSame(histogram, registry.timer("mdbc_test_seconds", "Test histogram", "phase", "a"));
+        histogram.record(2000000000L);
+        StringBuilder text = new StringBuilder();
+        registry.writeText(text);
+        assertTrue(text.toString().contains("# TYPE mdbc_test_seconds summary\n"));
+        assertTrue(text.toString().contains("mdbc_test_seconds_count{phase=\"a\"} 1\n"));
+        assertTrue(text.toString().contains("mdbc_test_seconds_sum{phase=\"a\"} 2.0\n"));
+    }
+}
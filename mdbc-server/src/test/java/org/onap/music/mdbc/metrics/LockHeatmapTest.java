@@ -0,0 +1,77 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+import org.onap.music.mdbc.MDBCUtils;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.mixins.MusicInterface;
+
+public class LockHeatmapTest {
+
+    private UUID watch(MusicInterface mi, String table, long queueSize) throws Exception {
+        UUID mriIndex = MDBCUtils.generateTimebasedUniqueKey();
+        LockHeatmap.watch(mriIndex, Collections.singletonList(new Range(table)));
+        when(mi.getLockQueueSize(mriIndex)).thenReturn(queueSize);
+        return mriIndex;
+    }
+
+    @Test
+    public void keepsHottestWatchedRows() throws Exception {
+        MusicInterface mi = mock(MusicInterface.class);
+        LockHeatmap heatmap = new LockHeatmap(mi, 60, 2);
+        watch(mi, "B", 0L);
+        watch(mi, "C", 2L);
+        UUID hot = watch(mi, "D", 5L);
+
+        List<LockHeatmap.Entry> hottest = heatmap.sample();
+        assertEquals(2, hottest.size());
+        assertEquals(hot.toString(), hottest.get(0).getMriIndex());
+        assertEquals("D", hottest.get(0).getRanges());
+        assertEquals(5, hottest.get(0).getQueueSize());
+        assertEquals(2, hottest.get(1).getQueueSize());
+        verify(mi, never()).getAllMriRows();
+    }
+
+    @Test
+    public void idleRowsAreNoLongerSampled() throws Exception {
+        MusicInterface mi = mock(MusicInterface.class);
+        LockHeatmap heatmap = new LockHeatmap(mi, 0, 20);
+        UUID idle = watch(mi, "E", 0L);
+
+        assertTrue(heatmap.sample().stream().noneMatch(e -> e.getMriIndex().equals(idle.toString())));
+        heatmap.sample();
+        verify(mi, times(1)).getLockQueueSize(idle);
+        verify(mi, never()).getAllMriRows();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import org.onap.music.mdbc.DatabasePartition;
+import org.onap.music.mdbc.MDBCUtils;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.MusicRangeInformationRow;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+
+public class ReplicationLagTest {
+
+    private final Range range = new Range("PERSONS");
+
+    private MusicRangeInformationRow row(int entries) {
+        return row(range, entries);
+    }
+
+    private MusicRangeInformationRow row(Range range, int entries) {
+        DatabasePartition partition = new DatabasePartition(new HashSet<>(Arrays.asList(range)),
+            MDBCUtils.generateTimebasedUniqueKey(), "");
+        List<MusicTxDigestId> redoLog = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            redoLog.add(new MusicTxDigestId(partition.getMRIIndex(), MDBCUtils.generateUniqueKey(), i));
+        }
+        return new MusicRangeInformationRow(partition, redoLog, false);
+    }
+
+    @Test
+    public void pendingEntriesFollowTheAppliedPosition() {
+        ReplicationLag lag = new ReplicationLag();
+        MusicRangeInformationRow first = row(3);
+        MusicRangeInformationRow second = row(4);
+        Set<Range> ranges = Collections.singleton(range);
+        lag.observe(ranges, Arrays.asList(second, first));
+        assertEquals(7, lag.getPendingEntries(range));
+        assertTrue(lag.getLagMs(range) >= 0);
+
+        lag.applied(range, first.getPartitionIndex(), first.getRedoLog().get(1));
+        assertEquals(5, lag.getPendingEntries(range));
+        assertEquals(1, lag.getLaggingRanges().length);
+
+        lag.applied(range, second.getPartitionIndex(), second.getRedoLog().get(3));
+        assertEquals(0, lag.getPendingEntries(range));
+        assertEquals(0, lag.getLagMs(range));
+        assertEquals(0, lag.getLaggingRanges().length);
+
+        lag.observe(Collections.<Range>emptySet(), Collections.<MusicRangeInformationRow>emptyList());
+        assertEquals(0, lag.getTotalPendingEntries());
+    }
+
+    @Test
+    public void observeAfterTheCheckpointWasLoaded() {
+        ReplicationLag lag = new ReplicationLag();
+        MusicRangeInformationRow first = row(3);
+        MusicRangeInformationRow second = row(2);
+        Map<Range, Pair<MriReference, MusicTxDigestId>> alreadyApplied = new HashMap<>();
+        alreadyApplied.put(range, Pair.of(new MriReference(second.getPartitionIndex()), second.getRedoLog().get(1)));
+        lag.observe(Collections.singleton(range), Arrays.asList(first, second), alreadyApplied);
+        assertEquals(0, lag.getPendingEntries(range));
+        assertEquals(0, lag.getLagMs(range));
+
+        alreadyApplied.put(range, Pair.of(new MriReference(first.getPartitionIndex()), first.getRedoLog().get(0)));
+        lag.observe(Collections.singleton(range), Arrays.asList(first, second), alreadyApplied);
+        assertEquals("an applied position that is already tracked is kept", 0, lag.getPendingEntries(range));
+    }
+
+    @Test
+    public void rangesAreReplayedInParallel() throws Exception {
+        ReplicationLag lag = new ReplicationLag();
+        List<Range> tracked = new ArrayList<>();
+        List<MusicRangeInformationRow> rows = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Range other = new Range("TABLE" + r);
+            tracked.add(other);
+            for (int i = 0; i < 50; i++) {
+                rows.add(row(other, 20));
+            }
+        }
+        lag.observe(new HashSet<>(tracked), rows);
+        assertEquals(4 * 50 * 20, lag.getTotalPendingEntries());
+
+        ExecutorService executor = Executors.newFixedThreadPool(tracked.size());
+        try {
+            List<Future<?>> replays = new ArrayList<>();
+            for (Range other : tracked) {
+                replays.add(executor.submit(() -> {
+                    long pending = lag.getPendingEntries(other);
+                    for (MusicRangeInformationRow row : rows) {
+                        if (!row.getDBPartition().getSnapshot().contains(other)) {
+                            continue;
+                        }
+                        for (MusicTxDigestId digest : row.getRedoLog()) {
+                            lag.applied(other, row.getPartitionIndex(), digest);
+                            assertEquals(--pending, lag.getPendingEntries(other));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> replay : replays) {
+                replay.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, lag.getTotalPendingEntries());
+        assertEquals(0, lag.getLaggingRanges().length);
+    }
+
+    @Test
+    public void writesOneSamplePerRange() {
+        ReplicationLag lag = new ReplicationLag();
+        lag.observe(Collections.singleton(range), Arrays.asList(row(2)));
+        StringBuilder out = new StringBuilder();
+        lag.writeText(out, ReplicationLag.ENTRIES_METRIC, "");
+        assertEquals(ReplicationLag.ENTRIES_METRIC + "{range=\"PERSONS\"} 2\n", out.toString());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StatementStatsTest {
+
+    @Test
+    public void literalsAreReplaced() {
+        assertEquals("SELECT * FROM PERSONS WHERE ID = ? AND NAME=?",
+            StatementStats.fingerprint("SELECT *  FROM PERSONS\n WHERE ID = 12 AND NAME='O''Brien'"));
+        assertEquals("select * from T1 where x in (?, ...)",
+            StatementStats.fingerprint("select *\n from T1 where x in (1, 2,3 , 4) -- comment\n"));
+        assertEquals("INSERT INTO T (A,B) VALUES (?, ...),(?, ...)",
+            StatementStats.fingerprint("INSERT INTO T (A,B) VALUES (1,'x'),(2,'y')"));
+        assertEquals("UPDATE \"My  Table\" SET V = ? WHERE K=?",
+            StatementStats.fingerprint("UPDATE \"My  Table\" SET V = 3.5 /* note */ WHERE K=7"));
+    }
+
+    @Test
+    public void fingerprintsAreBounded() {
+        StatementStats stats = new StatementStats();
+        stats.setMaxFingerprints(2);
+        StatementStats.Statement first = stats.lookup("SELECT * FROM A WHERE ID=1");
+        assertSame(first, stats.lookup("SELECT * FROM A WHERE ID=2"));
+        stats.lookup("SELECT * FROM B");
+        StatementStats.Statement other = stats.lookup("SELECT * FROM C");
+        assertEquals(StatementStats.OTHER, other.getFingerprint());
+        assertEquals(2, stats.getFingerprints());
+
+        first.record(1000, true, 3, 300);
+        first.record(3000, false, 0, 0);
+        assertEquals(2, first.getCalls());
+        assertEquals(4000, first.getTotalNanos());
+        assertEquals(1, first.getOwnerships());
+        assertEquals(3, first.getStagedRows());
+        assertEquals(300, first.getStagedBytes());
+
+        stats.setMaxFingerprints(0);
+        assertNull(stats.lookup("SELECT * FROM A"));
+    }
+}
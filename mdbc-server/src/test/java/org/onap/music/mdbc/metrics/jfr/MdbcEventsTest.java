@@ -0,0 +1,60 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.metrics.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Test;
+
+public class MdbcEventsTest {
+
+    @Test
+    public void availableMatchesTheJvm() {
+        boolean jfr;
+        try {
+            Class.forName("jdk.jfr.Event");
+            jfr = true;
+        } catch (ClassNotFoundException e) {
+            jfr = false;
+        }
+        assertEquals(jfr, MdbcEvents.AVAILABLE);
+    }
+
+    @Test
+    public void eventsCanBeFinishedWithoutRecording() {
+        UUID id = UUID.randomUUID();
+        MdbcEvents.Own own = MdbcEvents.own();
+        assertNotNull(own);
+        own.finish(Collections.emptySet(), 0, null, false);
+        MdbcEvents.lockWait().finish(id, Collections.emptyList(), 1, 0, true);
+        MdbcEvents.checkpoint().finish(Collections.emptySet(), Collections.emptySet());
+        MdbcEvents.applyDigest().finish(id, Collections.emptySet(), 1);
+        MdbcEvents.commitLog().finish(id, Collections.emptySet(), id);
+        MdbcEvents.digestWrite().finish(id, 10, false, 0);
+        MdbcEvents.redoAppend().finish(id, id);
+        MdbcEvents.digestRead().finish(id, id, 10, 0, false);
+        MdbcEvents.harvest().finish("1", 0);
+    }
+}
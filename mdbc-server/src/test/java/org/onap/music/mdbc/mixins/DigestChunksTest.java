@@ -0,0 +1,135 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.mixins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+import org.onap.music.exceptions.MDBCServiceException;
+
+public class DigestChunksTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ByteBuffer digest(int size) {
+        ByteBuffer digest = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            digest.put((byte) i);
+        }
+        digest.flip();
+        return digest;
+    }
+
+    @Test
+    public void splitAndJoin() throws MDBCServiceException {
+        ByteBuffer digest = digest(2500);
+        List<ByteBuffer> chunks = DigestChunks.split(digest, 1000);
+        assertEquals(3, chunks.size());
+        assertEquals(500, chunks.get(2).remaining());
+        assertEquals(2500, digest.remaining());
+        assertEquals(digest, DigestChunks.join(chunks, DigestChunks.checksums(chunks)));
+    }
+
+    @Test(expected = MDBCServiceException.class)
+    public void corruptChunk() throws MDBCServiceException {
+        List<ByteBuffer> chunks = DigestChunks.split(digest(2500), 1000);
+        List<Long> checksums = DigestChunks.checksums(chunks);
+        List<ByteBuffer> read = new ArrayList<>(chunks);
+        ByteBuffer corrupt = ByteBuffer.allocate(1000);
+        corrupt.put(chunks.get(1).duplicate()).flip();
+        corrupt.put(10, (byte) -1);
+        read.set(1, corrupt);
+        DigestChunks.join(read, checksums);
+    }
+
+    @Test(expected = MDBCServiceException.class)
+    public void missingChunk() throws MDBCServiceException {
+        List<ByteBuffer> chunks = DigestChunks.split(digest(2500), 1000);
+        List<Long> checksums = DigestChunks.checksums(chunks);
+        List<ByteBuffer> read = new ArrayList<>(chunks);
+        read.set(2, null);
+        DigestChunks.join(read, checksums);
+    }
+
+    @Test
+    public void streamedChunksMatchSplit() throws Exception {
+        ByteBuffer digest = digest(2500);
+        Map<Integer, ByteBuffer> stored = new ConcurrentHashMap<>();
+        DigestChunkWriter writer = new DigestChunkWriter(executor, 1000, 1, stored::put);
+        //written in pieces that don't match the chunk boundaries
+        byte[] bytes = digest.duplicate().array();
+        writer.write(bytes, 0, 300);
+        writer.write(bytes[300]);
+        writer.write(bytes, 301, 2199);
+        List<Long> checksums = writer.finish();
+        for (Future<?> write : writer.getWrites()) {
+            write.get();
+        }
+
+        List<ByteBuffer> chunks = DigestChunks.split(digest, 1000);
+        assertEquals(DigestChunks.checksums(chunks), checksums);
+        assertEquals(2500, writer.size());
+        List<ByteBuffer> read = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            read.add(stored.get(i));
+        }
+        assertEquals(digest, DigestChunks.join(read, checksums));
+    }
+
+    @Test
+    public void failedChunkStopsTheStream() throws Exception {
+        DigestChunkWriter writer = new DigestChunkWriter(executor, 100, 1, (chunk, data) -> {
+            throw new MDBCServiceException("chunk " + chunk + " rejected");
+        });
+        byte[] bytes = digest(1000).array();
+        try {
+            writer.write(bytes, 0, bytes.length);
+            writer.finish();
+            fail("The stream should fail after a chunk write failed");
+        } catch (IOException e) {
+            assertEquals(MDBCServiceException.class, e.getCause().getClass());
+        }
+        try {
+            writer.getWrites().get(0).get();
+            fail("The first chunk write should fail");
+        } catch (ExecutionException e) {
+            assertEquals(MDBCServiceException.class, e.getCause().getClass());
+        }
+    }
+}
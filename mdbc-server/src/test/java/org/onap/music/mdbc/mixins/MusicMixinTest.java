@@ -36,16 +36,20 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.*;
 
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.utils.UUIDs;
 
 import java.util.*;
 
 
 import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.powermock.reflect.Whitebox;
 
 import org.onap.music.datastore.MusicDataStore;
 import org.onap.music.datastore.MusicDataStoreHandle;
@@ -65,7 +69,10 @@ import org.onap.music.mdbc.proto.ProtoDigest.Digest.CompleteDigest;
 import org.onap.music.mdbc.query.SQLOperation;
 import org.onap.music.mdbc.query.SQLOperationType;
 import org.onap.music.mdbc.tables.MusicRangeInformationRow;
+import org.onap.music.mdbc.tables.DigestReader;
 import org.onap.music.mdbc.tables.MusicTxDigestId;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.RangeSnapshot;
 import org.onap.music.mdbc.tables.StagingTable;
 import org.onap.music.service.impl.MusicCassaCore;
 
@@ -259,6 +266,150 @@ public class MusicMixinTest {
         digest.entrySet().forEach(e -> assertNotNull(e.getValue()));
     }
 
+    @Test
+    public void legacyEventualTxDigestsAreMigrated() throws Exception {
+        String keyspace = MdbcTestUtils.getKeyspace();
+        //layout of the eventual digest table before it was partitioned by bucket
+        session.execute("CREATE TABLE IF NOT EXISTS " + keyspace + ".musicevetxdigest (txid uuid, "
+            + "transactiondigest blob, compressed boolean, year int, txTimeId timeuuid, PRIMARY KEY (txTimeId, year));");
+        UUID txTimeId = UUIDs.timeBased();
+        session.execute("INSERT INTO " + keyspace + ".musicevetxdigest (txid, transactiondigest, compressed, year, "
+            + "txTimeId) VALUES (?, ?, ?, ?, ?);", UUID.randomUUID(), mockCompressedProtoByteBuff(), true, 2019,
+            txTimeId);
+
+        mixin.createMusicEventualTxDigest();
+        assertFalse(session.execute("SELECT txid FROM " + keyspace + ".musicevetxdigestbucket WHERE bucket = ? "
+            + "AND txtimeid = ?;", MusicMixin.getEventualDigestBucket(txTimeId), txTimeId).isExhausted());
+        session.execute("DROP TABLE " + keyspace + ".musicevetxdigest;");
+    }
+
+    @Test
+    public void getEveTxDigestResumesAfterEmptyBuckets() throws Exception {
+        mixin.createMusicEventualTxDigest();
+        mixin.createMusicNodeInfoTable();
+        //the node applied its last digest two days ago
+        UUID applied = UUIDs.startOf(System.currentTimeMillis() - 2 * 24 * MusicMixin.EVENTUAL_DIGEST_BUCKET_MS);
+        mixin.updateNodeInfoTableWithTxTimeIDKey(applied, "n2");
+        MusicTxDigestId digestId = new MusicTxDigestId(UUID.randomUUID(), 1);
+        mixin.addEventualTxDigest(digestId, mockCompressedProtoByteBuff());
+
+        int calls = 0;
+        LinkedHashMap<UUID, StagingTable> digest;
+        do {
+            digest = mixin.getEveTxDigest("n2");
+            calls++;
+        } while (digest.isEmpty() && calls < 5);
+        assertEquals(1, digest.size());
+        assertEquals(3, calls);
+        //the empty buckets are not read again
+        assertEquals(1, mixin.getEveTxDigest("n2").size());
+    }
+
+    @Test
+    public void txDigestTableOfPreviousVersionIsMigrated() throws Exception {
+        String keyspace = MdbcTestUtils.getKeyspace();
+        session.execute("DROP TABLE " + keyspace + ".musictxdigest;");
+        session.execute("CREATE TABLE " + keyspace + ".musictxdigest (txid uuid, compressed boolean, "
+            + "transactiondigest blob, PRIMARY KEY (txid));");
+        MusicMixin.createMusicTxDigest("musictxdigest", keyspace, -1);
+        TableMetadata table = session.getCluster().getMetadata().getKeyspace(keyspace).getTable("musictxdigest");
+        assertNotNull(table.getColumn("chunks"));
+        assertNotNull(table.getColumn("checksums"));
+        //a second start doesn't add them again
+        MusicMixin.createMusicTxDigest("musictxdigest", keyspace, -1);
+    }
+
+    @Test
+    public void chunkedTxDigestRoundTrip() throws Exception {
+        Whitebox.setInternalState(mixin, "digestChunkBytes", 64);
+        Whitebox.setInternalState(mixin, "useCompression", false);
+        Range range = new Range("PERSONS");
+        StagingTable staged = new StagingTable();
+        for (int i = 0; i < 20; i++) {
+            staged.addOperation(range, SQLOperation.INSERT, "{\"ID\":" + i + "}", "{\"ID\":" + i + "}");
+        }
+        ByteBuffer serialized = staged.getSerializedStagingAndClean();
+        MusicTxDigestId digestId = new MusicTxDigestId(MDBCUtils.generateUniqueKey(), MDBCUtils.generateUniqueKey(), 1);
+        mixin.addTxDigest(digestId, serialized);
+
+        int operations = 0;
+        try (DigestReader reader = mixin.getTxDigest(digestId).readOperations()) {
+            while (reader.hasNext()) {
+                reader.next();
+                operations++;
+            }
+        }
+        assertEquals(20, operations);
+    }
+
+    @Test
+    public void spilledTxDigestIsStreamedInChunks() throws Exception {
+        Whitebox.setInternalState(mixin, "digestChunkBytes", 64);
+        Whitebox.setInternalState(mixin, "useCompression", true);
+        StagingTable.setSpill(256, null);
+        try {
+            Range range = new Range("PERSONS");
+            StagingTable staged = new StagingTable();
+            for (int i = 0; i < 50; i++) {
+                staged.addOperation(range, SQLOperation.INSERT, "{\"ID\":" + i + "}", "{\"ID\":" + i + "}");
+            }
+            assertTrue(staged.isSpilled());
+            UUID digestId = MDBCUtils.generateUniqueKey();
+            mixin.createAndAddTxDigest(staged, digestId);
+            assertTrue(staged.isStrongEmpty());
+
+            List<Integer> values = new ArrayList<>();
+            try (DigestReader reader = mixin.getTxDigest(new MusicTxDigestId(MDBCUtils.generateUniqueKey(),
+                digestId, 1)).readOperations()) {
+                while (reader.hasNext()) {
+                    values.add(reader.next().getVal().getInt("ID"));
+                }
+            }
+            assertEquals(50, values.size());
+            assertEquals(Integer.valueOf(49), values.get(49));
+        } finally {
+            StagingTable.setSpill(0, null);
+        }
+    }
+
+    @Test
+    public void deleteTxDigestsInBatches() throws Exception {
+        Whitebox.setInternalState(mixin, "digestChunkBytes", 0);
+        ByteBuffer digest = mockCompressedProtoByteBuff();
+        List<MusicTxDigestId> digests = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            MusicTxDigestId digestId = new MusicTxDigestId(MDBCUtils.generateUniqueKey(),
+                MDBCUtils.generateUniqueKey(), i);
+            mixin.addTxDigest(digestId, digest.duplicate());
+            digests.add(digestId);
+        }
+        //more digests than a single IN restriction takes
+        mixin.deleteTxDigests(digests);
+        for (MusicTxDigestId digestId : digests) {
+            assertTrue(session.execute("SELECT txid FROM " + MdbcTestUtils.getKeyspace() + ".musictxdigest WHERE "
+                + "txid = ?;", digestId.transactionId).isExhausted());
+        }
+    }
+
+    @Test
+    public void chunkedRangeSnapshotRoundTrip() throws Exception {
+        Whitebox.setInternalState(mixin, "digestChunkBytes", 64);
+        Whitebox.setInternalState(mixin, "useCompression", true);
+        Range range = new Range("SNAPSHOTTED");
+        StagingTable contents = StagingTable.forSnapshot();
+        for (int i = 0; i < 50; i++) {
+            contents.addOperation(range, SQLOperation.INSERT, "{\"ID\":" + i + "}", "{\"ID\":" + i + "}");
+        }
+        UUID mriRow = MDBCUtils.generateTimebasedUniqueKey();
+        MusicTxDigestId digestId = new MusicTxDigestId(mriRow, MDBCUtils.generateUniqueKey(), 1);
+        mixin.addRangeSnapshot(range, Pair.of(new MriReference(mriRow), digestId), contents);
+
+        RangeSnapshot stored = mixin.getLatestRangeSnapshot(range);
+        assertNotNull(stored);
+        assertEquals(digestId.transactionId, stored.getPosition().getRight().transactionId);
+        assertEquals(50, stored.getContents().getOperationList().size());
+    }
+
     protected ByteBuffer mockCompressedProtoByteBuff() throws MDBCServiceException, InvalidProtocolBufferException {
         CompleteDigest instance = CompleteDigest.getDefaultInstance();
         // CompleteDigest instance  = CompleteDigest.parseFrom(ByteBuffer.wrap("Test".getBytes()));
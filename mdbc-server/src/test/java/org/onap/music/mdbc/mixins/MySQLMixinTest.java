@@ -20,6 +20,8 @@
 
 package org.onap.music.mdbc.mixins;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
@@ -30,6 +32,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import org.onap.music.mdbc.MDBCUtils;
@@ -39,6 +42,7 @@ import org.onap.music.mdbc.Range;
 import org.onap.music.mdbc.mixins.MySQLMixin;
 import org.onap.music.mdbc.tables.MriReference;
 import org.onap.music.mdbc.tables.MusicTxDigestId;
+import org.onap.music.mdbc.tables.StagingTable;
 import ch.vorburger.mariadb4j.DB;
 
 public class MySQLMixinTest {
@@ -132,6 +136,31 @@ public class MySQLMixinTest {
         assertEquals(i2.transactionId, ckptmap.get(r2).getRight().transactionId);
     }
 
+    @Test
+    public void testRangeSnapshot() throws Exception {
+        createTables();
+        Range r1 = new Range(MdbcTestUtils.mariaDBDatabaseName + ".RANGER");
+        Statement st = conn.createStatement();
+        st.execute("INSERT INTO RANGER (name) VALUES ('first');");
+        st.execute("INSERT INTO RANGER (name) VALUES ('second');");
+
+        StagingTable snapshot = mysqlMixin.getRangeSnapshot(Collections.singleton(r1));
+        StagingTable serialized = new StagingTable(snapshot.getSerializedStagingAndClean());
+        assertEquals(2, serialized.getOperationList().size());
+
+        st.execute("DELETE FROM RANGER WHERE name='first';");
+        st.execute("INSERT INTO RANGER (name) VALUES ('third');");
+        mysqlMixin.applyRangeSnapshot(serialized, Collections.singleton(r1));
+
+        Set<String> names = new HashSet<>();
+        ResultSet rs = st.executeQuery("SELECT name FROM RANGER;");
+        while (rs.next()) {
+            names.add(rs.getString("name"));
+        }
+        st.close();
+        assertEquals(new HashSet<>(Arrays.asList("first", "second")), names);
+    }
+
     private void createTables() throws SQLException {
         Statement st = conn.createStatement();
         st.execute("CREATE TABLE RANGER (name VARCHAR(20));");
@@ -0,0 +1,72 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.mixins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.onap.music.mdbc.query.SQLOperation;
+import org.onap.music.mdbc.tables.Operation;
+
+public class ReplayRunTest {
+
+    private List<ReplayRun> plan(Operation... ops) {
+        return ReplayRun.plan(Arrays.asList(ops), op -> Collections.singletonList("ID"),
+            MusicMixin.MDBC_PRIMARYKEY_NAME);
+    }
+
+    @Test
+    public void mergesConsecutiveOperations() {
+        Operation insert1 = new Operation("PERSONS", SQLOperation.INSERT, "{\"ID\":1,\"NAME\":\"a\"}", "{\"ID\":1}");
+        Operation insert2 = new Operation("PERSONS", SQLOperation.INSERT, "{\"ID\":2,\"NAME\":\"b\"}", "{\"ID\":2}");
+        Operation update1 = new Operation("PERSONS", SQLOperation.UPDATE,
+            "{\"ID\":1,\"NAME\":\"c\",\"mdbc_cuid\":\"x\"}", "{\"ID\":1}");
+        Operation delete2 = new Operation("PERSONS", SQLOperation.DELETE, "{\"ID\":2,\"NAME\":\"b\"}", "{\"ID\":2}");
+        Operation delete1 = new Operation("PERSONS", SQLOperation.DELETE, "{\"ID\":1,\"NAME\":\"c\"}", "{\"ID\":1}");
+
+        List<ReplayRun> runs = plan(insert1, insert2, update1, delete2, delete1);
+        assertEquals(2, runs.size());
+        assertEquals(SQLOperation.INSERT, runs.get(0).type);
+        assertEquals(Arrays.asList("ID", "NAME"), runs.get(0).columns);
+        assertEquals(Arrays.asList(Arrays.asList(1, "c"), Arrays.asList(2, "b")),
+            Arrays.asList(runs.get(0).rows.values().toArray()));
+        assertEquals(SQLOperation.DELETE, runs.get(1).type);
+        assertEquals(2, runs.get(1).rows.size());
+    }
+
+    @Test
+    public void keyUpdatesAreReplayedOnTheirOwn() {
+        Operation insert1 = new Operation("PERSONS", SQLOperation.INSERT, "{\"ID\":1,\"NAME\":\"a\"}", "{\"ID\":1}");
+        Operation moveKey = new Operation("PERSONS", SQLOperation.UPDATE, "{\"ID\":3,\"NAME\":\"a\"}", "{\"ID\":1}");
+        Operation insert2 = new Operation("PERSONS", SQLOperation.INSERT, "{\"ID\":2,\"NAME\":\"b\"}", "{\"ID\":2}");
+
+        List<ReplayRun> runs = plan(insert1, moveKey, insert2);
+        assertEquals(3, runs.size());
+        assertNull(runs.get(1).type);
+        assertSame(moveKey, runs.get(1).operation);
+        assertEquals(SQLOperation.INSERT, runs.get(2).type);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.ownership;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.onap.music.mdbc.MdbcConnection;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.StateManager;
+import org.onap.music.mdbc.mixins.DBInterface;
+import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.tables.MriReference;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+
+public class CheckpointWriterTest {
+
+    private final Range range1 = new Range("schema.range1");
+    private final Range range2 = new Range("schema.range2");
+
+    private StateManager stateManager;
+    private MdbcConnection conn;
+    private DBInterface dbi;
+    private MusicInterface mi;
+    private CheckpointWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        stateManager = mock(StateManager.class);
+        conn = mock(MdbcConnection.class);
+        dbi = mock(DBInterface.class);
+        mi = mock(MusicInterface.class);
+        when(stateManager.getConnection("checkpoint")).thenReturn(conn);
+        when(stateManager.getMusicInterface()).thenReturn(mi);
+        when(conn.getDBInterface()).thenReturn(dbi);
+        when(conn.isValid(anyInt())).thenReturn(true);
+        when(dbi.updateCheckpointLocations(any(), any())).thenReturn(true);
+        when(mi.updateCheckpointLocations(any(), any())).thenReturn(true);
+        writer = new CheckpointWriter(1000, stateManager);
+    }
+
+    private Pair<MriReference, MusicTxDigestId> location() {
+        return Pair.of(new MriReference(UUID.randomUUID()), new MusicTxDigestId(UUID.randomUUID(), 0));
+    }
+
+    @Test
+    public void onlyLatestLocationIsWritten() {
+        Pair<MriReference, MusicTxDigestId> first = location();
+        Pair<MriReference, MusicTxDigestId> latest = location();
+        writer.record(range1, first);
+        writer.record(range1, latest);
+        assertEquals(1, writer.getPendingCount());
+
+        writer.flush();
+        verify(dbi, never()).updateCheckpointLocations(range1, first);
+        verify(dbi).updateCheckpointLocations(range1, latest);
+        verify(mi).updateCheckpointLocations(range1, latest);
+        assertEquals(0, writer.getPendingCount());
+
+        //nothing pending, nothing written
+        writer.flush();
+        verify(dbi, times(1)).updateCheckpointLocations(any(), any());
+    }
+
+    @Test
+    public void failedMusicWriteStaysPending() {
+        Pair<MriReference, MusicTxDigestId> location1 = location();
+        Pair<MriReference, MusicTxDigestId> location2 = location();
+        when(mi.updateCheckpointLocations(range1, location1)).thenReturn(false);
+        writer.record(range1, location1);
+        writer.record(range2, location2);
+
+        writer.flush();
+        assertEquals(1, writer.getPendingCount());
+        verify(mi).updateCheckpointLocations(range2, location2);
+
+        when(mi.updateCheckpointLocations(range1, location1)).thenReturn(true);
+        writer.flush();
+        assertEquals(0, writer.getPendingCount());
+        verify(mi, times(2)).updateCheckpointLocations(range1, location1);
+        verify(mi, times(1)).updateCheckpointLocations(range2, location2);
+    }
+
+    @Test
+    public void failedLocalWriteReopensConnection() throws Exception {
+        Pair<MriReference, MusicTxDigestId> location = location();
+        when(dbi.updateCheckpointLocations(range1, location)).thenReturn(false);
+        writer.record(range1, location);
+
+        writer.flush();
+        assertEquals(1, writer.getPendingCount());
+        verify(mi, never()).updateCheckpointLocations(any(), any());
+        verify(conn).close();
+        verify(stateManager).closeConnection("checkpoint");
+
+        when(dbi.updateCheckpointLocations(range1, location)).thenReturn(true);
+        writer.flush();
+        assertEquals(0, writer.getPendingCount());
+        verify(stateManager, times(2)).getConnection("checkpoint");
+        verify(mi).updateCheckpointLocations(range1, location);
+    }
+
+    @Test
+    public void invalidConnectionIsReplaced() throws Exception {
+        writer.record(range1, location());
+        writer.flush();
+        verify(stateManager, times(1)).getConnection("checkpoint");
+
+        when(conn.isValid(anyInt())).thenReturn(false);
+        writer.record(range1, location());
+        writer.flush();
+        verify(stateManager).closeConnection("checkpoint");
+        verify(stateManager, times(2)).getConnection("checkpoint");
+        assertEquals(0, writer.getPendingCount());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+package org.onap.music.mdbc.ownership;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.onap.music.mdbc.DatabasePartition;
+import org.onap.music.mdbc.MDBCUtils;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.tables.MusicRangeInformationRow;
+import org.onap.music.mdbc.tables.MusicTxDigestId;
+
+public class IndependentRangesTest {
+
+    private final Range range1 = new Range("schema.range1");
+    private final Range range2 = new Range("schema.range2");
+    private final Range range3 = new Range("schema.range3");
+    private final Range range4 = new Range("schema.range4");
+
+    private MusicRangeInformationRow row(Range... ranges) {
+        DatabasePartition partition = new DatabasePartition(new HashSet<>(Arrays.asList(ranges)),
+            MDBCUtils.generateTimebasedUniqueKey(), "");
+        return new MusicRangeInformationRow(partition, new ArrayList<MusicTxDigestId>(), true);
+    }
+
+    private Set<Set<Range>> split(Set<Range> ranges, MusicRangeInformationRow... rows) {
+        List<Set<Range>> groups = OwnershipAndCheckpoint.splitIndependentRanges(ranges, Arrays.asList(rows));
+        Set<Set<Range>> result = new HashSet<>(groups);
+        assertEquals("each range is in a single group", groups.size(), result.size());
+        return result;
+    }
+
+    private static Set<Range> set(Range... ranges) {
+        return new HashSet<>(Arrays.asList(ranges));
+    }
+
+    @Test
+    public void disjointRangesAreSplit() {
+        assertEquals(set(set(range1), set(range2), set(range3)),
+            split(set(range1, range2, range3), row(range1), row(range2)));
+    }
+
+    @Test
+    public void overlappingRowsAreJoined() {
+        //range1 and range3 only share a row through range2
+        assertEquals(set(set(range1, range2, range3), set(range4)),
+            split(set(range1, range2, range3, range4), row(range1, range2), row(range4), row(range2, range3)));
+    }
+
+    @Test
+    public void rangesOutsideTheSetStillJoinTheirRow() {
+        Range other = new Range("schema.other");
+        assertEquals(set(set(range1, range3), set(range2)),
+            split(set(range1, range2, range3), row(range1, other, range3), row(other), row(range2)));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.ownership;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Range;
+
+public class RangeAdmissionTest {
+
+    private final Range persons = new Range("PERSONS");
+    private final Range orders = new Range("orders");
+
+    @Test
+    public void requestsAboveTheBoundAreRejected() throws Exception {
+        RangeAdmission admission = new RangeAdmission();
+        admission.setMaxPerRange(1);
+        try (RangeAdmission.Admitted first = admission.admit(Collections.singleton(persons))) {
+            try {
+                admission.admit(Arrays.asList(orders, persons));
+                fail("The second request for PERSONS should be rejected");
+            } catch (MDBCServiceException e) {
+                //expected
+            }
+            //the rejected request doesn't keep its place in the other ranges
+            assertEquals(0, admission.getQueued(orders));
+            assertEquals(1, admission.getQueued(persons));
+        }
+        assertEquals(0, admission.getQueued(persons));
+        admission.admit(Collections.singleton(persons)).close();
+    }
+
+    @Test
+    public void unlimitedByDefault() throws Exception {
+        RangeAdmission admission = new RangeAdmission();
+        for (int i = 0; i < 100; i++) {
+            admission.admit(Collections.singleton(persons));
+        }
+        assertEquals(0, admission.getQueued(persons));
+    }
+}
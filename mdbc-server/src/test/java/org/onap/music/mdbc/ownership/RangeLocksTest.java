@@ -0,0 +1,66 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.ownership;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.onap.music.mdbc.Range;
+
+public class RangeLocksTest {
+
+    private final Range range1 = new Range("schema.range1");
+    private final Range range2 = new Range("schema.range2");
+
+    private boolean lockInOtherThread(RangeLocks locks, Range range) throws InterruptedException {
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            try (RangeLocks.Held held = locks.lockForeground(Collections.singleton(range))) {
+                acquired.countDown();
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return acquired.await(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void disjointRangesDoNotBlock() throws Exception {
+        RangeLocks locks = new RangeLocks();
+        try (RangeLocks.Held held = locks.lock(Collections.singleton(range1))) {
+            assertTrue(lockInOtherThread(locks, range2));
+        }
+    }
+
+    @Test
+    public void overlappingRangesBlock() throws Exception {
+        RangeLocks locks = new RangeLocks();
+        RangeLocks.Held held = locks.lock(Arrays.asList(range2, range1));
+        assertFalse(lockInOtherThread(locks, new Range("SCHEMA.RANGE1")));
+        held.close();
+        assertTrue(lockInOtherThread(locks, range1));
+    }
+}
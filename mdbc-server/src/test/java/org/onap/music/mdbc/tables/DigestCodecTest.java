@@ -0,0 +1,111 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+
+package org.onap.music.mdbc.tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.proto.ProtoDigest.Digest.CompleteDigest;
+import org.onap.music.mdbc.proto.ProtoDigest.Digest.Row;
+import org.onap.music.mdbc.proto.ProtoDigest.Digest.Row.OpType;
+import org.powermock.reflect.Whitebox;
+
+public class DigestCodecTest {
+
+    private CompleteDigest digest(int rows) {
+        CompleteDigest.Builder builder = CompleteDigest.newBuilder();
+        for (int i = 0; i < rows; i++) {
+            builder.addRows(Row.newBuilder().setTable("PERSONS").setType(OpType.INSERT)
+                .setVal("{\"ID\":" + i + ",\"NAME\":\"name" + i + "\"}").setKey("{\"ID\":" + i + "}"));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void serializeIntoCompressor() throws MDBCServiceException {
+        //larger than the initial output buffer, so it has to grow
+        CompleteDigest digest = digest(20000);
+        ByteBuffer compressed = DigestCodec.copy(DigestCodec.get().serialize(digest, true));
+        assertEquals(ByteBuffer.wrap(digest.toByteArray()), StagingTable.Decompress(compressed));
+        assertEquals(ByteBuffer.wrap(digest.toByteArray()), DigestCodec.get().serialize(digest, false));
+    }
+
+    @Test
+    public void directAndOffsetBuffers() throws MDBCServiceException {
+        byte[] serialized = digest(100).toByteArray();
+        ByteBuffer direct = ByteBuffer.allocateDirect(serialized.length);
+        direct.put(serialized).flip();
+        ByteBuffer compressed = StagingTable.Compress(direct);
+
+        ByteBuffer padded = ByteBuffer.allocate(compressed.remaining() + 10);
+        padded.position(10);
+        padded.put(compressed.duplicate());
+        padded.position(10);
+        ByteBuffer offset = padded.slice();
+        assertEquals(ByteBuffer.wrap(serialized), StagingTable.Decompress(offset));
+
+        ByteBuffer directCompressed = ByteBuffer.allocateDirect(compressed.remaining());
+        directCompressed.put(compressed.duplicate()).flip();
+        assertEquals(ByteBuffer.wrap(serialized), StagingTable.Decompress(directCompressed));
+    }
+
+    @Test
+    public void releasedCodecIsReusedByAnotherThread() throws Exception {
+        DigestCodec released = DigestCodec.get();
+        DigestCodec.releaseThreadCodec();
+        DigestCodec[] reused = new DigestCodec[1];
+        Thread thread = new Thread(() -> reused[0] = DigestCodec.get());
+        thread.start();
+        thread.join();
+        assertSame(released, reused[0]);
+        CompleteDigest digest = digest(100);
+        assertEquals(ByteBuffer.wrap(digest.toByteArray()),
+            StagingTable.Decompress(DigestCodec.copy(DigestCodec.get().serialize(digest, true))));
+    }
+
+    @Test
+    public void largeBuffersAreReleasedAfterUse() throws MDBCServiceException {
+        int size = DigestCodec.MAX_POOLED_OUTPUT_BYTES + 1024;
+        ByteBuffer direct = ByteBuffer.allocateDirect(size);
+        DigestCodec codec = DigestCodec.get();
+        ByteBuffer compressed = StagingTable.Compress(direct);
+        assertNull("the copy of a large input is released", Whitebox.getInternalState(codec, "input"));
+
+        ByteBuffer serialized = codec.decompress(compressed);
+        assertEquals(size, serialized.remaining());
+        codec.trim();
+        assertTrue(((byte[]) Whitebox.getInternalState(codec, "output")).length
+            <= DigestCodec.MAX_POOLED_OUTPUT_BYTES);
+    }
+
+    @Test(expected = MDBCServiceException.class)
+    public void truncatedInput() throws MDBCServiceException {
+        ByteBuffer compressed = StagingTable.Compress(ByteBuffer.wrap(digest(1000).toByteArray()));
+        compressed.limit(compressed.limit() / 2);
+        StagingTable.Decompress(compressed);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import org.junit.Test;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.query.SQLOperation;
+
+public class DigestReaderTest {
+
+    private ByteBuffer serializedDigest(int rows) throws MDBCServiceException {
+        StagingTable staging = new StagingTable(new HashSet<>());
+        Range range = new Range("PERSONS");
+        for (int i = 0; i < rows; i++) {
+            staging.addOperation(range, (i % 2 == 0) ? SQLOperation.INSERT : SQLOperation.DELETE,
+                "{\"ID\":" + i + "}", "{\"ID\":" + i + "}");
+        }
+        return staging.getSerializedStagingAndClean();
+    }
+
+    private void assertRows(DigestReader reader, int rows) throws MDBCServiceException {
+        for (int i = 0; i < rows; i++) {
+            Operation op = reader.next();
+            assertEquals("PERSONS", op.getTable());
+            assertEquals((i % 2 == 0) ? SQLOperation.INSERT : SQLOperation.DELETE, op.getOperationType());
+            assertEquals(i, op.getKey().getInt("ID"));
+        }
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void readSerialized() throws MDBCServiceException {
+        try (DigestReader reader = DigestReader.of(serializedDigest(100), false)) {
+            assertRows(reader, 100);
+        }
+    }
+
+    @Test
+    public void readCompressed() throws MDBCServiceException {
+        ByteBuffer compressed = StagingTable.Compress(serializedDigest(1000));
+        try (DigestReader reader = new StagingTable(compressed, true).readOperations()) {
+            assertRows(reader, 1000);
+        }
+        assertEquals(1000, new StagingTable(compressed, true).getOperationList().size());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.onap.music.exceptions.MDBCServiceException;
+import org.onap.music.mdbc.DatabasePartition;
+import org.onap.music.mdbc.MDBCUtils;
+import org.onap.music.mdbc.MdbcConnection;
+import org.onap.music.mdbc.MdbcTestUtils;
+import org.onap.music.mdbc.MdbcTestUtils.DBType;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.StateManager;
+import org.onap.music.mdbc.mixins.MusicInterface;
+import org.onap.music.mdbc.mixins.MySQLMixin;
+import org.onap.music.mdbc.ownership.OwnershipAndCheckpoint;
+import org.onap.music.mdbc.query.SQLOperation;
+
+public class MusicTxDigestDaemonTest {
+
+    @BeforeClass
+    public static void init() throws Exception {
+        Class.forName("org.mariadb.jdbc.Driver");
+        MdbcTestUtils.startMariaDb();
+    }
+
+    @AfterClass
+    public static void close() {
+        MdbcTestUtils.stopDatabase(DBType.MySQL);
+    }
+
+    private StagingTable digest(Operation... ops) {
+        return new StagingTable(Arrays.asList(ops));
+    }
+
+    @Test
+    public void coalesceKeepsFinalImage() {
+        Operation insert1 = new Operation("PERSONS", SQLOperation.INSERT, "{\"ID\":1,\"NAME\":\"a\"}", "{\"ID\":1}");
+        Operation insert2 = new Operation("PERSONS", SQLOperation.INSERT, "{\"ID\":2,\"NAME\":\"b\"}", "{\"ID\":2}");
+        Operation update1 = new Operation("persons", SQLOperation.UPDATE, "{\"ID\":1,\"NAME\":\"c\"}", "{\"ID\":1}");
+        Operation delete2 = new Operation("PERSONS", SQLOperation.DELETE, "{\"ID\":2,\"NAME\":\"b\"}", "{\"ID\":2}");
+        Operation other1 = new Operation("ADDRESSES", SQLOperation.INSERT, "{\"ID\":1}", "{\"ID\":1}");
+        Operation unkeyed = new Operation("LOGS", SQLOperation.INSERT, "{\"MSG\":\"x\"}", null);
+
+        List<StagingTable> digests = new ArrayList<>();
+        digests.add(digest(insert1, insert2, unkeyed));
+        digests.add(digest(other1, update1));
+        digests.add(digest(delete2, unkeyed));
+
+        List<Operation> merged = MusicTxDigestDaemon.coalesce(digests).getOperationList();
+        assertEquals(Arrays.asList(unkeyed, other1, update1, delete2, unkeyed), merged);
+    }
+
+    @Test
+    public void pollingBacksOffWhileIdle() {
+        MusicTxDigestDaemon daemon = new MusicTxDigestDaemon(1, 100, 60, 100, 1, mock(StateManager.class));
+        long sleepMs = daemon.nextSleepMs(100, false);
+        assertEquals(200, sleepMs);
+        sleepMs = daemon.nextSleepMs(sleepMs, false);
+        assertEquals(400, sleepMs);
+        sleepMs = daemon.nextSleepMs(daemon.nextSleepMs(sleepMs, false), false);
+        assertEquals("the sleep time is capped by the daemon period", 1000, sleepMs);
+        assertEquals(1000, daemon.nextSleepMs(sleepMs, false));
+        assertEquals("changes reset the sleep time", 100, daemon.nextSleepMs(sleepMs, true));
+    }
+
+    @Test
+    public void sleepTimesAreBounded() {
+        //a minimum above the period is capped by it, and it is at least 1 ms
+        assertEquals(1000, new MusicTxDigestDaemon(1, 5000, 60, 100, 1, mock(StateManager.class))
+            .nextSleepMs(1000, true));
+        MusicTxDigestDaemon daemon = new MusicTxDigestDaemon(1, 0, 60, 100, 1, mock(StateManager.class));
+        assertEquals(1, daemon.nextSleepMs(5, true));
+        assertEquals(2, daemon.nextSleepMs(1, false));
+    }
+
+    @Test
+    public void mergedPageWithChildBeforeParentIsReplayed() throws Exception {
+        Operation parent = new Operation("PARENTS", SQLOperation.INSERT, "{\"ID\":1,\"NAME\":\"a\"}", "{\"ID\":1}");
+        Operation child = new Operation("CHILDREN", SQLOperation.INSERT, "{\"ID\":1,\"PARENT\":1}", "{\"ID\":1}");
+        Operation rename = new Operation("PARENTS", SQLOperation.UPDATE, "{\"ID\":1,\"NAME\":\"b\"}", "{\"ID\":1}");
+        LinkedHashMap<UUID, StagingTable> page = new LinkedHashMap<>();
+        page.put(MDBCUtils.generateTimebasedUniqueKey(), digest(parent));
+        page.put(MDBCUtils.generateTimebasedUniqueKey(), digest(child));
+        UUID last = MDBCUtils.generateTimebasedUniqueKey();
+        page.put(last, digest(rename));
+        //the last write of the parent moves it after the child
+        assertEquals(Arrays.asList(child, rename), MusicTxDigestDaemon.coalesce(page.values()).getOperationList());
+
+        MusicInterface mi = mock(MusicInterface.class);
+        when(mi.getEveTxDigest(eq("node"), anyInt())).thenReturn(page);
+        StateManager stateManager = mock(StateManager.class);
+        when(stateManager.getMdbcServerName()).thenReturn("node");
+        try (Connection conn = MdbcTestUtils.getConnection(DBType.MySQL); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE PARENTS (ID INT PRIMARY KEY, NAME VARCHAR(20)) ENGINE=InnoDB;");
+            st.execute("CREATE TABLE CHILDREN (ID INT PRIMARY KEY, PARENT INT, "
+                + "FOREIGN KEY (PARENT) REFERENCES PARENTS(ID)) ENGINE=InnoDB;");
+            try {
+                MySQLMixin dbi = new MySQLMixin(null, null, conn, new Properties());
+                dbi.initTables();
+                MusicTxDigestDaemon daemon = new MusicTxDigestDaemon(1, 1, 60, 100, 1, stateManager);
+                assertEquals(3, daemon.replayDigest(mi, dbi, Collections.emptySet()));
+                verify(mi).updateNodeInfoTableWithTxTimeIDKey(last, "node");
+                ResultSet rs = st.executeQuery("SELECT NAME FROM PARENTS WHERE ID = 1;");
+                assertTrue(rs.next());
+                assertEquals("b", rs.getString(1));
+                rs = st.executeQuery("SELECT COUNT(*) FROM CHILDREN WHERE PARENT = 1;");
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            } finally {
+                st.execute("DROP TABLE CHILDREN;");
+                st.execute("DROP TABLE PARENTS;");
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void failedWarmupWorkerDoesNotStopTheOthers() throws Exception {
+        Range range1 = new Range("RANGE1");
+        Range range2 = new Range("RANGE2");
+        Range range3 = new Range("RANGE3");
+        List<MusicRangeInformationRow> rows = new ArrayList<>();
+        for (Range range : Arrays.asList(range1, range2, range3)) {
+            rows.add(new MusicRangeInformationRow(new DatabasePartition(Collections.singleton(range),
+                MDBCUtils.generateTimebasedUniqueKey(), ""), new ArrayList<MusicTxDigestId>(), true));
+        }
+        MusicInterface mi = mock(MusicInterface.class);
+        OwnershipAndCheckpoint ownAndCheck = mock(OwnershipAndCheckpoint.class);
+        when(ownAndCheck.extractRowsForRange(eq(mi), anySet(), eq(false))).thenReturn(rows);
+        when(ownAndCheck.getAlreadyApplied()).thenReturn(new HashMap<>());
+        doThrow(new MDBCServiceException("warmup failed"))
+            .when(ownAndCheck).warmup(eq(mi), any(), eq(Collections.singleton(range2)), eq(rows));
+        StateManager stateManager = mock(StateManager.class);
+        when(stateManager.getOwnAndCheck()).thenReturn(ownAndCheck);
+        when(stateManager.getConnection(anyString())).thenAnswer(invocation -> mock(MdbcConnection.class));
+
+        //fewer workers than groups, so the connections have to be given back to warm up all of them
+        MusicTxDigestDaemon daemon = new MusicTxDigestDaemon(1, 1, 0, 100, 2, stateManager);
+        Set<Range> ranges = new HashSet<>(Arrays.asList(range1, range2, range3));
+        try {
+            daemon.warmup(mi, null, ranges);
+            fail("the failure of a worker is reported");
+        } catch (MDBCServiceException e) {
+            //expected
+        }
+        verify(ownAndCheck).warmup(eq(mi), any(), eq(Collections.singleton(range1)), eq(rows));
+        verify(ownAndCheck).warmup(eq(mi), any(), eq(Collections.singleton(range3)), eq(rows));
+
+        doNothing().when(ownAndCheck).warmup(eq(mi), any(), eq(Collections.singleton(range2)), eq(rows));
+        daemon.warmup(mi, null, ranges);
+        verify(ownAndCheck, times(2)).warmup(eq(mi), any(), eq(Collections.singleton(range2)), eq(rows));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onap.music.mdbc.MDBCUtils;
+import org.onap.music.mdbc.MdbcTestUtils;
+import org.onap.music.mdbc.MdbcTestUtils.DBType;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.mixins.MusicMixin;
+import org.onap.music.mdbc.mixins.MySQLMixin;
+import org.onap.music.mdbc.query.SQLOperation;
+
+/**
+ * Bootstrap of a range from a snapshot stored in music, exported into a file and bulk loaded into mariadb
+ */
+public class RangeSnapshotBootstrapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static MusicMixin mi;
+    private Connection conn;
+    private MySQLMixin dbi;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        MdbcTestUtils.initCassandra();
+        mi = MdbcTestUtils.getMusicMixin();
+        Class.forName("org.mariadb.jdbc.Driver");
+        MdbcTestUtils.startMariaDb();
+    }
+
+    @AfterClass
+    public static void close() {
+        mi = null;
+        MdbcTestUtils.stopDatabase(DBType.MySQL);
+        MdbcTestUtils.stopCassandra();
+    }
+
+    @Before
+    public void beforeTest() throws SQLException {
+        conn = MdbcTestUtils.getConnection(DBType.MySQL);
+        Statement st = conn.createStatement();
+        st.execute("CREATE TABLE PARENTS (ID INT PRIMARY KEY) ENGINE=InnoDB;");
+        st.execute("CREATE TABLE CHILDREN (ID INT PRIMARY KEY, PARENT INT, NAME VARCHAR(255), "
+            + "FOREIGN KEY (PARENT) REFERENCES PARENTS(ID)) ENGINE=InnoDB;");
+        st.close();
+        dbi = new MySQLMixin(mi, null, conn, new Properties());
+        dbi.initTables();
+        dbi.createSQLTriggers("CHILDREN");
+    }
+
+    @After
+    public void afterTest() throws SQLException {
+        Statement st = conn.createStatement();
+        st.execute("DROP TABLE IF EXISTS CHILDREN;");
+        st.execute("DROP TABLE IF EXISTS PARENTS;");
+        st.execute("DROP TABLE IF EXISTS " + MySQLMixin.TRANS_TBL + ";");
+        st.close();
+        conn.close();
+    }
+
+    @Test
+    public void bootstrapFromExportedSnapshot() throws Exception {
+        Range range = new Range(MdbcTestUtils.getMariaDBDBName() + ".CHILDREN");
+        StagingTable contents = new StagingTable();
+        //the parents are bootstrapped from their own snapshot, after the children
+        contents.addOperation(range, SQLOperation.INSERT, "{\"ID\":1,\"PARENT\":1,\"NAME\":\"tab\\there\"}",
+            "{\"ID\":1}");
+        contents.addOperation(range, SQLOperation.INSERT, "{\"ID\":2,\"PARENT\":1,\"NAME\":null}", "{\"ID\":2}");
+        UUID mriRow = MDBCUtils.generateTimebasedUniqueKey();
+        MusicTxDigestId digestId = new MusicTxDigestId(mriRow, MDBCUtils.generateUniqueKey(), -1);
+        mi.addRangeSnapshot(range, Pair.of(new MriReference(mriRow), digestId), contents);
+
+        RangeSnapshot stored = mi.getLatestRangeSnapshot(range);
+        assertNotNull(stored);
+        File path = folder.newFile("CHILDREN" + RangeSnapshotFile.SUFFIX);
+        RangeSnapshotFile.write(path, stored);
+        try (RangeSnapshotFile file = RangeSnapshotFile.open(path)) {
+            file.loadInto(dbi);
+        }
+
+        Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery("SELECT ID, NAME FROM CHILDREN ORDER BY ID;");
+        assertTrue(rs.next());
+        assertEquals("tab\there", rs.getString("NAME"));
+        assertTrue(rs.next());
+        assertNull(rs.getString("NAME"));
+        assertFalse(rs.next());
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM " + MySQLMixin.TRANS_TBL + ";");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+        rs.close();
+        assertEquals(mriRow, dbi.getCheckpointLocations().get(range).getLeft().getIndex());
+
+        //the foreign key checks and the triggers are enabled again after the load
+        try {
+            st.execute("INSERT INTO CHILDREN (ID, PARENT, NAME) VALUES (3, 5, 'orphan');");
+            fail("foreign key checks should be enabled");
+        } catch (SQLException e) {
+            //expected
+        }
+        st.execute("INSERT INTO PARENTS (ID) VALUES (5);");
+        st.execute("INSERT INTO CHILDREN (ID, PARENT, NAME) VALUES (3, 5, 'child');");
+        rs = st.executeQuery("SELECT COUNT(*) FROM " + MySQLMixin.TRANS_TBL + " WHERE TABLENAME = 'CHILDREN';");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+        st.close();
+    }
+
+    @Test
+    public void failedBulkLoadIsRolledBack() throws Exception {
+        Range range = new Range(MdbcTestUtils.getMariaDBDBName() + ".CHILDREN");
+        Statement st = conn.createStatement();
+        st.execute("INSERT INTO PARENTS (ID) VALUES (1);");
+        st.execute("INSERT INTO CHILDREN (ID, PARENT, NAME) VALUES (7, 1, 'existing');");
+        //the stream fails after the first row, while the range was already deleted
+        InputStream rows = new ByteArrayInputStream("1\t1\tloaded\n".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int read = super.read(b, off, len);
+                if (read == -1) {
+                    throw new IllegalStateException("broken stream");
+                }
+                return read;
+            }
+        };
+        try {
+            dbi.bulkLoadRange(range, Arrays.asList("ID", "PARENT", "NAME"), rows);
+            fail("the load should fail with the stream");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+
+        assertTrue(conn.getAutoCommit());
+        ResultSet rs = st.executeQuery("SELECT ID FROM CHILDREN;");
+        assertTrue(rs.next());
+        assertEquals(7, rs.getInt("ID"));
+        assertFalse(rs.next());
+        rs.close();
+        st.close();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.tables;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onap.music.mdbc.MDBCUtils;
+import org.onap.music.mdbc.Range;
+
+public class RangeSnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndOpen() throws Exception {
+        Range range = new Range("PERSONS");
+        StagingTable contents = new StagingTable();
+        contents.addOperation(range, SQLOperation.INSERT, "{\"ID\":1,\"NAME\":\"tab\\there\"}", "{\"ID\":1}");
+        contents.addOperation(range, SQLOperation.INSERT, "{\"ID\":2,\"NAME\":null}", "{\"ID\":2}");
+        UUID mriRow = MDBCUtils.generateTimebasedUniqueKey();
+        MusicTxDigestId digestId = new MusicTxDigestId(mriRow, MDBCUtils.generateUniqueKey(), -1);
+        RangeSnapshot snapshot = new RangeSnapshot(MDBCUtils.generateTimebasedUniqueKey(), range,
+            new MriReference(mriRow), digestId, contents);
+
+        File path = folder.newFile("PERSONS" + RangeSnapshotFile.SUFFIX);
+        RangeSnapshotFile.write(path, snapshot);
+
+        try (RangeSnapshotFile file = RangeSnapshotFile.open(path)) {
+            assertEquals(range, file.getRange());
+            assertEquals(mriRow, file.getPosition().getLeft().getIndex());
+            assertEquals(digestId.transactionId, file.getPosition().getRight().transactionId);
+            assertEquals(Arrays.asList("ID", "NAME"), file.getColumns());
+            ByteArrayOutputStream rows = new ByteArrayOutputStream();
+            try (InputStream in = file.openRows()) {
+                byte[] buffer = new byte[3];
+                int read;
+                while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                    rows.write(buffer, 0, read);
+                }
+            }
+            assertEquals("1\ttab\\there\n2\t\\N\n", new String(rows.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void parseEscapedRow() {
+        String line = RangeSnapshotFile.escape("a\tb\\c") + "\t\\N\t" + RangeSnapshotFile.escape("line\nend");
+        assertEquals(Arrays.asList("a\tb\\c", null, "line\nend"), RangeSnapshotFile.parseRow(line));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * ============LICENSE_START====================================================
+ * org.onap.music.mdbc
+ * =============================================================================
+ * Copyright (C) 2019 AT&T Intellectual Property. All rights reserved.
+ * =============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ============LICENSE_END======================================================
+ */
+
+package org.onap.music.mdbc.tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onap.music.mdbc.Range;
+import org.onap.music.mdbc.query.SQLOperation;
+
+public class StagingTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void disableSpill() {
+        StagingTable.setSpill(0, null);
+    }
+
+    @Test
+    public void spillAndSerialize() throws Exception {
+        StagingTable.setSpill(1024, folder.getRoot());
+        StagingTable staging = new StagingTable(new HashSet<>());
+        Range range = new Range("PERSONS");
+        for (int i = 0; i < 1000; i++) {
+            staging.addOperation(range, SQLOperation.INSERT, "{\"ID\":" + i + ",\"NAME\":\"name" + i + "\"}",
+                "{\"ID\":" + i + "}");
+        }
+        assertTrue(staging.isSpilled());
+        assertFalse(staging.isStrongEmpty());
+        assertEquals(1, folder.getRoot().list().length);
+        assertEquals(1000, staging.getOperationList().size());
+
+        ByteBuffer compressed = staging.getSerializedStagingAndClean(true);
+        assertEquals(0, folder.getRoot().list().length);
+        assertTrue(staging.isStrongEmpty());
+        try (DigestReader reader = DigestReader.of(compressed, true)) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, reader.next().getKey().getInt("ID"));
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    public void clearRemovesSpillFile() throws Exception {
+        StagingTable.setSpill(1, folder.getRoot());
+        StagingTable staging = new StagingTable(new HashSet<>());
+        staging.addOperation(new Range("PERSONS"), SQLOperation.DELETE, "{\"ID\":1}", "{\"ID\":1}");
+        assertEquals(1, folder.getRoot().list().length);
+        staging.clear();
+        assertEquals(0, folder.getRoot().list().length);
+        assertTrue(staging.isStrongEmpty());
+    }
+}